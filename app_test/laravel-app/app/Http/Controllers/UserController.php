@@ -49,4 +49,23 @@ class UserController extends Controller
         
         return response()->json($user, 200);
     }
+
+    /**
+     * Nhập người dùng kèm thông tin người tạo.
+     *
+     * @param  \Illuminate\Http\Request  $request
+     * @return \Illuminate\Http\Response
+     */
+    public function import(Request $request)
+    {
+        // Không an toàn: dữ liệu từ $request->all() đi qua biến trung gian
+        $data = array_merge($request->all(), ['created_by' => auth()->id()]);
+        $user = User::create($data);
+
+        // An toàn: chỉ lấy các trường được liệt kê
+        $input = $request->only(['name', 'email']);
+        $user->update($input);
+
+        return response()->json($user, 201);
+    }
 }
@@ -0,0 +1,83 @@
+package com.sunasterisk.sonar.benchmark;
+
+import com.sunasterisk.sonar.testing.JavaAnalysisHarness;
+import com.sunasterisk.sonar.testing.PhpAnalysisHarness;
+import com.sunasterisk.sonar.testing.SyntheticCorpus;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.plugins.java.api.JavaFileScanner;
+import org.sonar.plugins.php.api.visitors.PHPCheck;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the check benchmarks with the GC profiler and prints time and allocation
+ * per file and per visited node. Extra arguments are passed to JMH, e.g.
+ * {@code java -jar target/benchmarks.jar -p corpus=views}.
+ */
+public final class CheckBenchmarkMain {
+
+  private CheckBenchmarkMain() {
+  }
+
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    Options options = new OptionsBuilder()
+      .parent(new CommandLineOptions(args))
+      .include(PhpChecksBenchmark.class.getSimpleName())
+      .include(JavaChecksBenchmark.class.getSimpleName())
+      .addProfiler(GCProfiler.class)
+      .build();
+    Collection<RunResult> results = new Runner(options).run();
+
+    System.out.println();
+    System.out.printf("%-42s %-12s %12s %14s %12s %14s %12s%n",
+      "Check", "Corpus", "nodes/file", "us/file", "B/file", "ns/node", "B/node");
+    for (RunResult result : results) {
+      String check = result.getParams().getParam("check");
+      String corpus = result.getParams().getParam("corpus");
+      double nodesPerFile = nodesPerFile(result.getParams().getBenchmark(), check, corpus);
+      double microsPerFile = result.getPrimaryResult().getScore();
+      double bytesPerFile = allocationPerOperation(result.getSecondaryResults());
+      System.out.printf("%-42s %-12s %12.1f %14.2f %12.0f %14.2f %12.1f%n",
+        check, corpus, nodesPerFile, microsPerFile, bytesPerFile,
+        microsPerFile * 1000 / nodesPerFile, bytesPerFile / nodesPerFile);
+    }
+  }
+
+  private static double nodesPerFile(String benchmark, String check, String corpus) {
+    long nodes = 0;
+    if (benchmark.contains(PhpChecksBenchmark.class.getSimpleName())) {
+      PHPCheck phpCheck = PhpAnalysisHarness.newCheck(check);
+      List<PhpAnalysisHarness.ParsedFile> files = PhpAnalysisHarness.parse(SyntheticCorpus.php(corpus));
+      for (PhpAnalysisHarness.ParsedFile file : files) {
+        nodes += PhpAnalysisHarness.visitedNodes(phpCheck, file);
+      }
+    } else {
+      JavaFileScanner javaCheck = JavaAnalysisHarness.newCheck(check);
+      List<JavaAnalysisHarness.ParsedFile> files = JavaAnalysisHarness.parse(SyntheticCorpus.java(corpus));
+      for (JavaAnalysisHarness.ParsedFile file : files) {
+        nodes += JavaAnalysisHarness.visitedNodes(javaCheck, file);
+      }
+    }
+    return Math.max(1, (double) nodes / SyntheticCorpus.FILES);
+  }
+
+  private static double allocationPerOperation(Map<String, Result> secondaryResults) {
+    // The label is "gc.alloc.rate.norm" in recent JMH versions and "·gc.alloc.rate.norm" in older ones
+    for (Map.Entry<String, Result> entry : secondaryResults.entrySet()) {
+      if (entry.getKey().endsWith("gc.alloc.rate.norm")) {
+        return entry.getValue().getScore();
+      }
+    }
+    return Double.NaN;
+  }
+}
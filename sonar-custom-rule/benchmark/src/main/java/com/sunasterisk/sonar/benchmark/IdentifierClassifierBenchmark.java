@@ -0,0 +1,143 @@
+package com.sunasterisk.sonar.benchmark;
+
+import com.sunasterisk.sonar.testing.SyntheticCorpus;
+import com.sunasterisk.sonar.text.IdentifierClassifier;
+import com.sunasterisk.sonar.text.PatternMatcher;
+import com.sunasterisk.sonar.text.TextPatterns;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Classification of every identifier of a Java corpus as a password recovery name, a secure
+ * mechanism or a security question, as {@code SpringBootSecureCredentialRecoveryCheck} does on
+ * class, method and variable names: one {@code (?i)} regular expression per question followed by
+ * {@code contains} checks on a lowercase copy, the {@link PatternMatcher} automata, and the
+ * {@link IdentifierClassifier} word tokens. Run it with the GC profiler to compare allocations,
+ * e.g. {@code java -jar target/benchmarks.jar IdentifierClassifierBenchmark -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class IdentifierClassifierBenchmark {
+
+  // Copies of the patterns and phrases of SpringBootSecureCredentialRecoveryCheck
+  private static final String PASSWORD_RECOVERY =
+    "(?i)reset(\\s*|_)password|forgot(\\s*|_)password|recover(\\s*|_)password|password(\\s*|_)recovery";
+  private static final String SECURE_MECHANISM = "(?i)twofactor|2fa|mfa|multifactor|otp|totp|hotp|authenticator|timebased|timebase";
+  private static final String SECURITY_QUESTIONS =
+    "(?i)security(\\s*|_)question|secret(\\s*|_)question|mother(\\s*|_)maiden|birth(\\s*|_)place|first(\\s*|_)pet";
+
+  private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+
+  @Param({SyntheticCorpus.SERVICES, SyntheticCorpus.SPRING_APP})
+  public String corpus;
+
+  private Pattern recoveryRegex;
+  private Pattern secureRegex;
+  private Pattern questionRegex;
+  private PatternMatcher matcher;
+  private long matcherRecovery;
+  private long matcherSecure;
+  private long matcherQuestion;
+  private IdentifierClassifier classifier;
+  private long classifierRecovery;
+  private long classifierSecure;
+  private long classifierQuestion;
+  private List<String> identifiers;
+
+  @Setup
+  public void setUp() {
+    recoveryRegex = Pattern.compile(PASSWORD_RECOVERY);
+    secureRegex = Pattern.compile(SECURE_MECHANISM);
+    questionRegex = Pattern.compile(SECURITY_QUESTIONS);
+
+    matcher = TextPatterns.patterns()
+      .pattern(PASSWORD_RECOVERY)
+      .keywords("forgotpassword", "resetpassword", "sendrecovery")
+      .pattern(SECURE_MECHANISM)
+      .pattern(SECURITY_QUESTIONS)
+      .build();
+    matcherRecovery = matcher.mask(PASSWORD_RECOVERY) | matcher.mask("forgotpassword") | matcher.mask("resetpassword")
+      | matcher.mask("sendrecovery");
+    matcherSecure = matcher.mask(SECURE_MECHANISM);
+    matcherQuestion = matcher.mask(SECURITY_QUESTIONS);
+
+    classifier = IdentifierClassifier.builder()
+      .category("recovery", "reset password", "forgot password", "recover password", "password recovery", "send recovery")
+      .category("secure", "two factor", "2fa", "mfa", "multi factor", "otp", "totp", "hotp", "authenticator", "time based",
+        "time base")
+      .category("securityQuestion", "security question", "secret question", "mother maiden", "birth place", "first pet")
+      .build();
+    classifierRecovery = classifier.mask("recovery");
+    classifierSecure = classifier.mask("secure");
+    classifierQuestion = classifier.mask("securityQuestion");
+
+    // Every occurrence, as the check classifies each declaration it visits
+    identifiers = new ArrayList<>();
+    for (SyntheticCorpus.SourceFile file : SyntheticCorpus.java(corpus)) {
+      Matcher identifier = IDENTIFIER.matcher(file.content());
+      while (identifier.find()) {
+        identifiers.add(identifier.group());
+      }
+    }
+  }
+
+  @Benchmark
+  public int regex() {
+    int hits = 0;
+    for (String identifier : identifiers) {
+      String lowercase = identifier.toLowerCase();
+      if (recoveryRegex.matcher(identifier).find() || lowercase.contains("forgotpassword")
+          || lowercase.contains("resetpassword") || lowercase.contains("sendrecovery")) {
+        hits++;
+      }
+      if (secureRegex.matcher(identifier).find()) {
+        hits++;
+      }
+      if (questionRegex.matcher(identifier).find()) {
+        hits++;
+      }
+    }
+    return hits;
+  }
+
+  @Benchmark
+  public int patternMatcher() {
+    int hits = 0;
+    for (String identifier : identifiers) {
+      long found = matcher.matches(identifier);
+      hits += ((found & matcherRecovery) != 0 ? 1 : 0) + ((found & matcherSecure) != 0 ? 1 : 0)
+        + ((found & matcherQuestion) != 0 ? 1 : 0);
+    }
+    return hits;
+  }
+
+  @Benchmark
+  public int identifierClassifier() {
+    int hits = 0;
+    for (String identifier : identifiers) {
+      long found = classifier.classify(identifier);
+      hits += ((found & classifierRecovery) != 0 ? 1 : 0) + ((found & classifierSecure) != 0 ? 1 : 0)
+        + ((found & classifierQuestion) != 0 ? 1 : 0);
+    }
+    return hits;
+  }
+}
@@ -0,0 +1,60 @@
+package com.sunasterisk.sonar.benchmark;
+
+import com.sunasterisk.sonar.testing.JavaAnalysisHarness;
+import com.sunasterisk.sonar.testing.JavaAnalysisHarness.ParsedFile;
+import com.sunasterisk.sonar.testing.SyntheticCorpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.plugins.java.api.JavaFileScanner;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of each check of {@code JavaCustomRuleRepository} on synthetic Spring services.
+ * Scores are per file; run with {@code -prof gc} (or {@link CheckBenchmarkMain}) for allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class JavaChecksBenchmark {
+
+  // The baseline is the BaseTreeVisitor version of the check, before the subscription-based rewrite
+  @Param({"SpringBootSecureCredentialRecoveryCheck", "SpringBootSecureCredentialRecoveryBaselineCheck"})
+  public String check;
+
+  @Param({SyntheticCorpus.SERVICES, SyntheticCorpus.SPRING_APP})
+  public String corpus;
+
+  private JavaFileScanner javaCheck;
+  private List<ParsedFile> files;
+
+  @Setup
+  public void setUp() {
+    javaCheck = JavaAnalysisHarness.newCheck(check);
+    files = JavaAnalysisHarness.parse(SyntheticCorpus.java(corpus));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SyntheticCorpus.FILES)
+  public int analyzeCorpus() {
+    int issues = 0;
+    for (ParsedFile file : files) {
+      issues += JavaAnalysisHarness.analyze(javaCheck, file);
+    }
+    return issues;
+  }
+}
@@ -0,0 +1,107 @@
+package com.sunasterisk.sonar.benchmark;
+
+import com.sunasterisk.sonar.testing.PhpAnalysisHarness;
+import com.sunasterisk.sonar.testing.PhpAnalysisHarness.ParsedFile;
+import com.sunasterisk.sonar.testing.SyntheticCorpus;
+import com.sunasterisk.sonar.text.KeywordMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.plugins.php.api.tree.Tree;
+import org.sonar.plugins.php.api.tree.Tree.Kind;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keyword lookups of the rule classes on the text of every function call and assignment of the
+ * controllers corpus: the former {@code String.contains} loop against {@link KeywordMatcher}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class KeywordMatcherBenchmark {
+
+  // Copies of the vocabularies of UnsafeSVGContentCheck, LaravelPlaintextOTPCheck and SpringBootSecureCredentialRecoveryCheck
+  private static final List<String> SANITIZATION_METHODS = Arrays.asList(
+    "sanitize", "sanitizeSvg", "DOMPurify", "purify", "clean", "escape", "htmlspecialchars", "strip_tags");
+  private static final List<String> SENSITIVE_STORAGE_CLASSES = Arrays.asList(
+    "db", "database", "session", "cache", "redis", "cookie", "storage", "log");
+  private static final List<String> SECURE_LIBRARIES = Arrays.asList(
+    "totp", "googleauthenticator", "totputils", "otputil", "twofactorauthentication",
+    "webauthn", "pushnotification", "timebased", "speakeasy");
+
+  @Param({"sanitizers", "storage", "secureLibraries"})
+  public String vocabulary;
+
+  private List<String> keywords;
+  private KeywordMatcher matcher;
+  private List<String> texts;
+
+  @Setup
+  public void setUp() {
+    if ("sanitizers".equals(vocabulary)) {
+      keywords = SANITIZATION_METHODS;
+    } else if ("storage".equals(vocabulary)) {
+      keywords = SENSITIVE_STORAGE_CLASSES;
+    } else {
+      keywords = SECURE_LIBRARIES;
+    }
+    matcher = KeywordMatcher.of(keywords);
+    texts = new ArrayList<>();
+    for (ParsedFile file : PhpAnalysisHarness.parse(SyntheticCorpus.php(SyntheticCorpus.CONTROLLERS))) {
+      for (Tree node : PhpAnalysisHarness.nodesOfKinds(file, EnumSet.of(Kind.FUNCTION_CALL, Kind.ASSIGNMENT))) {
+        texts.add(node.toString().toLowerCase(Locale.ROOT));
+      }
+    }
+  }
+
+  @Benchmark
+  public int containsLoop() {
+    int hits = 0;
+    for (String text : texts) {
+      for (String keyword : keywords) {
+        if (text.contains(keyword.toLowerCase())) {
+          hits++;
+          break;
+        }
+      }
+    }
+    return hits;
+  }
+
+  @Benchmark
+  public int keywordMatcher() {
+    int hits = 0;
+    for (String text : texts) {
+      if (matcher.containsAny(text)) {
+        hits++;
+      }
+    }
+    return hits;
+  }
+
+  @Benchmark
+  public long keywordMatcherAllHits() {
+    long hits = 0;
+    for (String text : texts) {
+      hits += Long.bitCount(matcher.matches(text));
+    }
+    return hits;
+  }
+}
@@ -0,0 +1,102 @@
+package com.sunasterisk.sonar.benchmark;
+
+import com.sunasterisk.sonar.testing.PhpAnalysisHarness;
+import com.sunasterisk.sonar.testing.PhpAnalysisHarness.ParsedFile;
+import com.sunasterisk.sonar.testing.SyntheticCorpus.SourceFile;
+import com.sunasterisk.sonar.text.SourceTextCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sonar.php.tree.visitors.PHPCheckContext;
+import org.sonar.plugins.php.api.tree.Tree;
+import org.sonar.plugins.php.api.tree.Tree.Kind;
+import org.sonar.plugins.php.api.tree.expression.ExpressionTree;
+import org.sonar.plugins.php.api.tree.expression.FunctionCallTree;
+import org.sonar.plugins.php.api.visitors.PHPCheck;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lowercase text of every function call and argument of a deeply nested call chain, the access
+ * pattern of {@code UnsafeSVGContentCheck}: {@code toString().toLowerCase()} per node against
+ * {@link SourceTextCache}. Run with {@code -prof gc} to compare allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class NestedCallTextBenchmark {
+
+  @Param({"8", "32", "128"})
+  public int depth;
+
+  private ParsedFile file;
+  private List<Tree> calls;
+  private PHPCheck svgCheck;
+
+  @Setup
+  public void setUp() {
+    file = PhpAnalysisHarness.parse(Collections.singletonList(nestedCalls(depth))).get(0);
+    calls = PhpAnalysisHarness.nodesOfKinds(file, EnumSet.of(Kind.FUNCTION_CALL));
+    svgCheck = PhpAnalysisHarness.newCheck("UnsafeSVGContentCheck");
+  }
+
+  @Benchmark
+  public void treeToString(Blackhole blackhole) {
+    for (Tree call : calls) {
+      blackhole.consume(call.toString().toLowerCase(Locale.ROOT));
+      for (ExpressionTree argument : ((FunctionCallTree) call).arguments()) {
+        blackhole.consume(argument.toString().toLowerCase(Locale.ROOT));
+      }
+    }
+  }
+
+  @Benchmark
+  public void sourceTextCache(Blackhole blackhole) {
+    // A fresh context per invocation so that the per-file cache is rebuilt, as for a new file
+    SourceTextCache cache = SourceTextCache.of(new PHPCheckContext(file, file.tree(), null));
+    for (Tree call : calls) {
+      blackhole.consume(cache.text(call));
+      for (ExpressionTree argument : ((FunctionCallTree) call).arguments()) {
+        blackhole.consume(cache.text(argument));
+      }
+    }
+  }
+
+  @Benchmark
+  public int unsafeSvgCheck() {
+    return PhpAnalysisHarness.analyze(svgCheck, file);
+  }
+
+  private static SourceFile nestedCalls(int depth) {
+    StringBuilder sb = new StringBuilder("<?php\n\nclass IconRenderer\n{\n    public function render($request)\n    {\n");
+    for (int statement = 0; statement < 20; statement++) {
+      sb.append("        $html").append(statement).append(" = $this->view->raw(");
+      for (int level = 0; level < depth; level++) {
+        sb.append("wrap").append(level % 7).append("($request->input('svg").append(level).append("'), ");
+      }
+      sb.append("'<svg></svg>'");
+      for (int level = 0; level < depth; level++) {
+        sb.append(')');
+      }
+      sb.append(");\n");
+    }
+    sb.append("    }\n}\n");
+    return new SourceFile("app/Support/IconRenderer.php", sb.toString());
+  }
+}
@@ -0,0 +1,59 @@
+package com.sunasterisk.sonar.benchmark;
+
+import com.sunasterisk.sonar.testing.PhpAnalysisHarness;
+import com.sunasterisk.sonar.testing.PhpAnalysisHarness.ParsedFile;
+import com.sunasterisk.sonar.testing.SyntheticCorpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.plugins.php.api.visitors.PHPCheck;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of each check of {@code CustomPhpRuleRepository} on synthetic controllers and Blade views.
+ * Scores are per file; run with {@code -prof gc} (or {@link CheckBenchmarkMain}) for allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class PhpChecksBenchmark {
+
+  @Param({"LaravelMassAssignmentCheck", "LaravelPlaintextOTPCheck", "UnsafeSVGContentCheck"})
+  public String check;
+
+  @Param({SyntheticCorpus.CONTROLLERS, SyntheticCorpus.VIEWS})
+  public String corpus;
+
+  private PHPCheck phpCheck;
+  private List<ParsedFile> files;
+
+  @Setup
+  public void setUp() {
+    phpCheck = PhpAnalysisHarness.newCheck(check);
+    files = PhpAnalysisHarness.parse(SyntheticCorpus.php(corpus));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SyntheticCorpus.FILES)
+  public int analyzeCorpus() {
+    int issues = 0;
+    for (ParsedFile file : files) {
+      issues += PhpAnalysisHarness.analyze(phpCheck, file);
+    }
+    return issues;
+  }
+}
@@ -0,0 +1,48 @@
+package com.sunasterisk.sonar.benchmark;
+
+import com.sunasterisk.sonar.testing.SyntheticCorpus;
+import com.sunasterisk.sonar.testing.SyntheticCorpus.SourceFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Writes the synthetic corpora to a directory, one subdirectory per corpus, as input of the
+ * standalone runner (see the {@code runner} module), e.g.
+ * {@code java -cp target/benchmarks.jar com.sunasterisk.sonar.testing.SyntheticCorpusWriterMain /tmp/corpus 5000}
+ * for 5000 files per corpus (20000 files).
+ */
+public final class SyntheticCorpusWriterMain {
+
+  private SyntheticCorpusWriterMain() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    Path directory = Paths.get(args.length > 0 ? args[0] : "target/synthetic-corpus");
+    int files = args.length > 1 ? Integer.parseInt(args[1]) : SyntheticCorpus.FILES;
+    long bytes = 0;
+    for (String corpus : new String[] {SyntheticCorpus.CONTROLLERS, SyntheticCorpus.VIEWS}) {
+      bytes += write(directory.resolve(corpus), SyntheticCorpus.php(corpus, files));
+    }
+    for (String corpus : new String[] {SyntheticCorpus.SERVICES, SyntheticCorpus.SPRING_APP}) {
+      bytes += write(directory.resolve(corpus), SyntheticCorpus.java(corpus, files));
+    }
+    System.out.printf("Wrote %d files (%.1f MB) to %s%n", files * 4, bytes / 1e6, directory);
+  }
+
+  private static long write(Path directory, List<SourceFile> sources) throws IOException {
+    long bytes = 0;
+    for (SourceFile source : sources) {
+      Path file = directory.resolve(source.name());
+      Files.createDirectories(file.getParent());
+      byte[] content = source.content().getBytes(StandardCharsets.UTF_8);
+      Files.write(file, content);
+      bytes += content.length;
+    }
+    return bytes;
+  }
+}
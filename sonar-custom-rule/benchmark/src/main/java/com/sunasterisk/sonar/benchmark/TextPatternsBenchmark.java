@@ -0,0 +1,115 @@
+package com.sunasterisk.sonar.benchmark;
+
+import com.sunasterisk.sonar.testing.PhpAnalysisHarness;
+import com.sunasterisk.sonar.testing.PhpAnalysisHarness.ParsedFile;
+import com.sunasterisk.sonar.testing.SyntheticCorpus;
+import com.sunasterisk.sonar.text.PatternMatcher;
+import com.sunasterisk.sonar.text.SourceText;
+import com.sunasterisk.sonar.text.TextPatterns;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.plugins.php.api.tree.Tree;
+import org.sonar.plugins.php.api.tree.Tree.Kind;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Pattern lookups of the rule classes on the text of every function call and assignment of a PHP
+ * corpus: the former lowercase copy followed by one {@code (?i)} regular expression per pattern,
+ * against one {@link PatternMatcher} pass over the original text. Run it with the GC profiler to
+ * compare allocations, e.g. {@code java -jar target/benchmarks.jar TextPatternsBenchmark -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class TextPatternsBenchmark {
+
+  // Copies of the patterns of UnsafeSVGContentCheck, LaravelPlaintextOTPCheck and SpringBootSecureCredentialRecoveryCheck
+  private static final String SVG = "(?i)<\\s*svg|\\bsvg\\b|image\\/svg\\+xml|\\.(svg)";
+  private static final String SVG_DANGEROUS_ELEMENTS =
+    "(?i)<\\s*script|<\\s*foreignObject|<\\s*use\\s+xlink:href|<\\s*handler|<\\s*event";
+  private static final String OTP = "(?i)\\botp\\b|one.?time.?password|verification.?code|auth.?code";
+  private static final String PASSWORD_RECOVERY =
+    "(?i)reset(\\s*|_)password|forgot(\\s*|_)password|recover(\\s*|_)password|password(\\s*|_)recovery";
+  private static final String SECURITY_QUESTIONS =
+    "(?i)security(\\s*|_)question|secret(\\s*|_)question|mother(\\s*|_)maiden|birth(\\s*|_)place|first(\\s*|_)pet";
+
+  @Param({"svg", "otp", "recovery"})
+  public String patterns;
+
+  @Param({SyntheticCorpus.CONTROLLERS, SyntheticCorpus.VIEWS})
+  public String corpus;
+
+  private Pattern[] regexes;
+  private PatternMatcher matcher;
+  private List<String> texts;
+  private List<CharSequence> slices;
+
+  @Setup
+  public void setUp() {
+    String[] definitions;
+    if ("svg".equals(patterns)) {
+      definitions = new String[] {SVG, SVG_DANGEROUS_ELEMENTS};
+    } else if ("otp".equals(patterns)) {
+      definitions = new String[] {OTP};
+    } else {
+      definitions = new String[] {PASSWORD_RECOVERY, SECURITY_QUESTIONS};
+    }
+    regexes = new Pattern[definitions.length];
+    PatternMatcher.Builder builder = TextPatterns.patterns();
+    for (int i = 0; i < definitions.length; i++) {
+      regexes[i] = Pattern.compile(definitions[i]);
+      builder.pattern(definitions[i]);
+    }
+    matcher = builder.build();
+
+    texts = new ArrayList<>();
+    slices = new ArrayList<>();
+    for (ParsedFile file : PhpAnalysisHarness.parse(SyntheticCorpus.php(corpus))) {
+      for (Tree node : PhpAnalysisHarness.nodesOfKinds(file, EnumSet.of(Kind.FUNCTION_CALL, Kind.ASSIGNMENT, Kind.INLINE_HTML))) {
+        String text = node.toString();
+        texts.add(text);
+        slices.add(new SourceText(text).all());
+      }
+    }
+  }
+
+  @Benchmark
+  public long lowercaseAndRegex() {
+    long hits = 0;
+    for (String text : texts) {
+      String lowercase = text.toLowerCase();
+      for (int i = 0; i < regexes.length; i++) {
+        if (regexes[i].matcher(lowercase).find()) {
+          hits |= 1L << i;
+        }
+      }
+    }
+    return hits;
+  }
+
+  @Benchmark
+  public long patternMatcher() {
+    long hits = 0;
+    for (CharSequence slice : slices) {
+      hits |= matcher.matches(slice);
+    }
+    return hits;
+  }
+}
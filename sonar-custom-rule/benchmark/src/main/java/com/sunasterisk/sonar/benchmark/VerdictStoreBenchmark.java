@@ -0,0 +1,137 @@
+package com.sunasterisk.sonar.benchmark;
+
+import com.sunasterisk.sonar.cache.VerdictStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Startup and lookup cost of the {@link VerdictStore} against loading the same verdicts from a
+ * serialized map, for stores of 100k and 1M (file, rule) pairs. See {@link VerdictStoreFootprintMain}
+ * for the heap retained by each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class VerdictStoreBenchmark {
+
+  static final String PLUGIN_VERSION = "benchmark";
+
+  @Param({"100000", "1000000"})
+  public int entries;
+
+  private Path directory;
+  private Path serializedMap;
+  private byte[][] keys;
+  private VerdictStore store;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("verdict-store");
+    keys = keys(entries);
+    writeStore(directory, keys);
+    serializedMap = directory.resolve("verdicts.ser");
+    writeSerializedMap(serializedMap, keys);
+    store = VerdictStore.open(directory, PLUGIN_VERSION);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  public VerdictStore openVerdictStore() throws IOException {
+    return VerdictStore.open(directory, PLUGIN_VERSION);
+  }
+
+  @Benchmark
+  public Set<String> loadSerializedMap() throws IOException {
+    return readSerializedMap(serializedMap);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public boolean lookup() {
+    next = (next + 1) % keys.length;
+    return store.contains(keys[next]);
+  }
+
+  static byte[][] keys(int count) {
+    Random random = new Random(42L);
+    byte[][] keys = new byte[count][16];
+    for (byte[] key : keys) {
+      random.nextBytes(key);
+    }
+    return keys;
+  }
+
+  static void writeStore(Path directory, byte[][] keys) throws IOException {
+    VerdictStore store = VerdictStore.open(directory, PLUGIN_VERSION);
+    for (byte[] key : keys) {
+      store.add(key);
+    }
+    store.close();
+  }
+
+  /**
+   * The verdicts as a previous design would keep them: one hexadecimal cache key per entry.
+   */
+  static void writeSerializedMap(Path file, byte[][] keys) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+      out.writeInt(keys.length);
+      for (byte[] key : keys) {
+        out.writeUTF(hex(key));
+      }
+    }
+  }
+
+  static Set<String> readSerializedMap(Path file) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      int size = in.readInt();
+      Set<String> verdicts = new HashSet<>(size * 2);
+      for (int i = 0; i < size; i++) {
+        verdicts.add(in.readUTF());
+      }
+      return verdicts;
+    }
+  }
+
+  private static String hex(byte[] bytes) {
+    StringBuilder sb = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,58 @@
+package com.sunasterisk.sonar.benchmark;
+
+import com.sunasterisk.sonar.cache.VerdictStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * Prints the time to open and the heap retained by a {@link VerdictStore} and by the equivalent
+ * serialized map, e.g. {@code java -cp target/benchmarks.jar
+ * com.sunasterisk.sonar.benchmark.VerdictStoreFootprintMain 1000000}.
+ */
+public final class VerdictStoreFootprintMain {
+
+  private VerdictStoreFootprintMain() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    Path directory = Files.createTempDirectory("verdict-store");
+    byte[][] keys = VerdictStoreBenchmark.keys(entries);
+    VerdictStoreBenchmark.writeStore(directory, keys);
+    Path serializedMap = directory.resolve("verdicts.ser");
+    VerdictStoreBenchmark.writeSerializedMap(serializedMap, keys);
+    keys = null;
+
+    long before = usedHeap();
+    long start = System.nanoTime();
+    VerdictStore store = VerdictStore.open(directory, VerdictStoreBenchmark.PLUGIN_VERSION);
+    long openNanos = System.nanoTime() - start;
+    long storeHeap = usedHeap() - before;
+    System.out.printf("%-16s %,12d entries %10.1f ms %,14d bytes of heap%n",
+      "VerdictStore", store.size(), openNanos / 1e6, storeHeap);
+
+    before = usedHeap();
+    start = System.nanoTime();
+    Set<String> map = VerdictStoreBenchmark.readSerializedMap(serializedMap);
+    openNanos = System.nanoTime() - start;
+    long mapHeap = usedHeap() - before;
+    System.out.printf("%-16s %,12d entries %10.1f ms %,14d bytes of heap%n",
+      "Serialized map", map.size(), openNanos / 1e6, mapHeap);
+
+    // Keep both reachable until measured
+    if (store.size() + map.size() < 0) {
+      System.out.println();
+    }
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,76 @@
+package com.sunasterisk.sonar.runner;
+
+import org.sonar.check.Rule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One check instance with the rule it implements. The checks keep no per-file state in their
+ * fields, so the instance is shared by all the analysis threads.
+ */
+final class CheckRule {
+
+  private final Object check;
+  private final String key;
+  private final String severity;
+  private final String type;
+  private final List<String> tags;
+
+  private CheckRule(Object check, String key, String severity, String type, List<String> tags) {
+    this.check = check;
+    this.key = key;
+    this.severity = severity;
+    this.type = type;
+    this.tags = tags;
+  }
+
+  static CheckRule of(String repositoryKey, Class<?> checkClass) {
+    Rule rule = checkClass.getAnnotation(Rule.class);
+    String ruleKey = rule != null && !rule.key().isEmpty() ? rule.key() : checkClass.getSimpleName();
+    String severity = rule != null ? rule.priority().name() : "MAJOR";
+    // As RulesDefinitionAnnotationLoader: the "bug" and "security" tags give the type and are dropped
+    List<String> tags = new ArrayList<>(rule != null ? Arrays.asList(rule.tags()) : Collections.emptyList());
+    String type = tags.contains("bug") ? "BUG" : tags.contains("security") ? "VULNERABILITY" : "CODE_SMELL";
+    tags.removeAll(Arrays.asList("bug", "security"));
+    try {
+      return new CheckRule(checkClass.getDeclaredConstructor().newInstance(), repositoryKey + ":" + ruleKey, severity,
+        type, Collections.unmodifiableList(tags));
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Cannot instantiate " + checkClass, e);
+    }
+  }
+
+  Object check() {
+    return check;
+  }
+
+  /**
+   * Repository and rule key, e.g. {@code custom-laravel-php:LaravelPlaintextOTPForCS2.2.2}.
+   */
+  String key() {
+    return key;
+  }
+
+  String severity() {
+    return severity;
+  }
+
+  /**
+   * {@code CODE_SMELL}, {@code BUG} or {@code VULNERABILITY}.
+   */
+  String type() {
+    return type;
+  }
+
+  List<String> tags() {
+    return tags;
+  }
+
+  @Override
+  public String toString() {
+    return key;
+  }
+}
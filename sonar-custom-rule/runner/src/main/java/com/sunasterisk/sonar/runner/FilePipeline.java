@@ -0,0 +1,273 @@
+package com.sunasterisk.sonar.runner;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * Staged pipeline over the source files: discovery, reads, parse and check, emission.
+ *
+ * <pre>
+ * discovery --(discovered)--&gt; reads --(read)--&gt; CPU workers --(results)--&gt; emission
+ * </pre>
+ *
+ * <p>Each stage runs on its own threads and hands files to the next one through a bounded queue:
+ * a stage blocks when the next one falls behind, so the files held in memory stay bounded
+ * whatever the size of the tree. Reads mostly wait for the disk. On JDK 21 and later they run on
+ * virtual threads, one per file. Before that they run on a small pool of platform threads. At
+ * most {@link #readConcurrency} reads are in progress at any time in both cases. Parsing and
+ * checks only use the CPU and run on one platform thread per processor. Emission runs on the
+ * calling thread, in the order the files complete.</p>
+ */
+final class FilePipeline {
+
+  private static final Set<String> SKIPPED_DIRECTORIES = new TreeSet<>(Arrays.asList(
+    ".git", ".scannerwork", "node_modules", "target", "vendor"));
+
+  // Bounds of the queues between the stages
+  private static final int DISCOVERED_CAPACITY = 1024;
+  private static final int QUEUED_PER_WORKER = 2;
+
+  // End of stream markers, compared by identity
+  private static final SourceFile NO_MORE_FILES = new SourceFile(null, "");
+  private static final ReadFile NO_MORE_READS = new ReadFile(NO_MORE_FILES, null, null);
+  private static final FileResult NO_MORE_RESULTS = new FileResult(NO_MORE_FILES);
+
+  private final int cpuThreads;
+  private final int readConcurrency;
+
+  FilePipeline(int cpuThreads, int readConcurrency) {
+    this.cpuThreads = cpuThreads;
+    this.readConcurrency = readConcurrency;
+  }
+
+  /**
+   * Analysis of one file on a CPU worker, returning the result to emit or {@code null}.
+   */
+  interface FileTask {
+    FileResult analyze(SourceFile file, String contents, IOException readError);
+  }
+
+  /**
+   * Emission of the results, on the thread calling {@link #run}.
+   */
+  interface ResultSink {
+    void accept(FileResult result) throws IOException;
+  }
+
+  /**
+   * Sends the files under the roots accepted by the filter through the stages, and returns once
+   * the last result has been emitted.
+   */
+  PipelineStats run(List<Path> roots, Path baseDir, Predicate<SourceFile> filter, FileTask task, ResultSink sink)
+    throws IOException {
+    BlockingQueue<SourceFile> discovered = new ArrayBlockingQueue<>(DISCOVERED_CAPACITY);
+    BlockingQueue<ReadFile> read = new ArrayBlockingQueue<>(cpuThreads * QUEUED_PER_WORKER);
+    BlockingQueue<FileResult> results = new ArrayBlockingQueue<>(cpuThreads * QUEUED_PER_WORKER);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    PipelineStats stats = new PipelineStats(cpuThreads);
+
+    ExecutorService stages = Executors.newFixedThreadPool(cpuThreads + 2, daemonThreads("custom-rules-stage"));
+    ExecutorService readers = newReaders(stats);
+    try {
+      stages.execute(() -> discover(roots, baseDir, filter, discovered, failure));
+      stages.execute(() -> dispatchReads(discovered, readers, read, stats, failure));
+      for (int i = 0; i < cpuThreads; i++) {
+        stages.execute(() -> analyze(read, task, results, stats, failure));
+      }
+      emit(results, sink, stats);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted analysis", e);
+    } finally {
+      stages.shutdownNow();
+      readers.shutdownNow();
+    }
+    Throwable error = failure.get();
+    if (error instanceof IOException) {
+      throw (IOException) error;
+    } else if (error != null) {
+      throw new IllegalStateException(error);
+    }
+    return stats.finish();
+  }
+
+  private static void discover(List<Path> roots, Path baseDir, Predicate<SourceFile> filter,
+    BlockingQueue<SourceFile> discovered, AtomicReference<Throwable> failure) {
+    Set<Path> seen = new HashSet<>();
+    try {
+      for (Path root : roots) {
+        Files.walkFileTree(root.toAbsolutePath().normalize(), new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+            Path name = dir.getFileName();
+            return name != null && SKIPPED_DIRECTORIES.contains(name.toString())
+              ? FileVisitResult.SKIP_SUBTREE
+              : FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) throws IOException {
+            String name = path.getFileName().toString();
+            if (attributes.isRegularFile() && (name.endsWith(".php") || name.endsWith(".java")) && seen.add(path)) {
+              String component = path.startsWith(baseDir) ? baseDir.relativize(path).toString() : path.toString();
+              SourceFile file = new SourceFile(path, component.replace('\\', '/'));
+              if (filter.test(file)) {
+                put(discovered, file);
+              }
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+      }
+    } catch (IOException | RuntimeException e) {
+      failure.compareAndSet(null, e);
+    } finally {
+      // Always reached so that the next stages stop
+      putQuietly(discovered, NO_MORE_FILES);
+    }
+  }
+
+  private void dispatchReads(BlockingQueue<SourceFile> discovered, ExecutorService readers,
+    BlockingQueue<ReadFile> read, PipelineStats stats, AtomicReference<Throwable> failure) {
+    Semaphore reading = new Semaphore(readConcurrency);
+    try {
+      for (SourceFile file = discovered.take(); file != NO_MORE_FILES; file = discovered.take()) {
+        reading.acquire();
+        SourceFile next = file;
+        readers.execute(() -> {
+          try {
+            put(read, readFile(next, stats));
+          } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+          } finally {
+            reading.release();
+          }
+        });
+      }
+      // Waits for the reads in progress
+      reading.acquire(readConcurrency);
+    } catch (InterruptedException | RuntimeException e) {
+      failure.compareAndSet(null, e);
+    } finally {
+      for (int i = 0; i < cpuThreads; i++) {
+        putQuietly(read, NO_MORE_READS);
+      }
+    }
+  }
+
+  private static ReadFile readFile(SourceFile file, PipelineStats stats) {
+    try {
+      String contents = file.contents();
+      stats.read(contents.length());
+      return new ReadFile(file, contents, null);
+    } catch (IOException e) {
+      return new ReadFile(file, null, e);
+    }
+  }
+
+  private static void analyze(BlockingQueue<ReadFile> read, FileTask task, BlockingQueue<FileResult> results,
+    PipelineStats stats, AtomicReference<Throwable> failure) {
+    try {
+      for (ReadFile file = read.take(); file != NO_MORE_READS; file = read.take()) {
+        FileResult result = task.analyze(file.file, file.contents, file.error);
+        stats.analyzed(file.contents != null ? file.contents.length() : PipelineStats.NOT_READ);
+        if (result != null) {
+          results.put(result);
+        }
+      }
+    } catch (InterruptedException | RuntimeException e) {
+      failure.compareAndSet(null, e);
+    } finally {
+      putQuietly(results, NO_MORE_RESULTS);
+    }
+  }
+
+  private void emit(BlockingQueue<FileResult> results, ResultSink sink, PipelineStats stats)
+    throws InterruptedException, IOException {
+    int runningWorkers = cpuThreads;
+    while (runningWorkers > 0) {
+      FileResult result = results.take();
+      if (result == NO_MORE_RESULTS) {
+        runningWorkers--;
+      } else {
+        sink.accept(result);
+        stats.sampleHeap();
+      }
+    }
+  }
+
+  /**
+   * One virtual thread per read on JDK 21 and later, found by reflection since the runner targets
+   * Java 11. Before that, a pool of {@link #readConcurrency} platform threads.
+   */
+  private ExecutorService newReaders(PipelineStats stats) {
+    try {
+      ExecutorService virtualThreads = (ExecutorService) Executors.class
+        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      stats.readers("virtual threads, " + readConcurrency + " reads at a time");
+      return virtualThreads;
+    } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+      // Before JDK 21, or a preview API that is not enabled
+      stats.readers(readConcurrency + " platform threads");
+      return Executors.newFixedThreadPool(readConcurrency, daemonThreads("custom-rules-reader"));
+    }
+  }
+
+  private static ThreadFactory daemonThreads(String prefix) {
+    AtomicInteger count = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private static <T> void put(BlockingQueue<T> queue, T element) {
+    try {
+      queue.put(element);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted analysis", e);
+    }
+  }
+
+  private static <T> void putQuietly(BlockingQueue<T> queue, T element) {
+    try {
+      queue.put(element);
+    } catch (InterruptedException e) {
+      // The pipeline is being shut down
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static final class ReadFile {
+    private final SourceFile file;
+    private final String contents;
+    private final IOException error;
+
+    ReadFile(SourceFile file, String contents, IOException error) {
+      this.file = file;
+      this.contents = contents;
+      this.error = error;
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package com.sunasterisk.sonar.runner;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Issues and errors of one file, filled by the thread analyzing it.
+ */
+final class FileResult {
+
+  private final SourceFile file;
+  private final List<RuleIssue> issues = new ArrayList<>();
+  private final List<String> errors = new ArrayList<>(0);
+  private final Map<Integer, String> lineHashes = new HashMap<>();
+
+  FileResult(SourceFile file) {
+    this.file = file;
+  }
+
+  SourceFile file() {
+    return file;
+  }
+
+  void addIssue(RuleIssue issue) {
+    issues.add(issue);
+  }
+
+  /**
+   * The file could not be read or parsed, or a check failed on it: the other checks still run.
+   */
+  void addError(String error) {
+    errors.add(error);
+  }
+
+  /**
+   * Hashes the lines holding an issue as SonarQube does to track issues between analyses: MD5 of
+   * the line without its whitespace, empty for a blank line. Done by the analyzing thread, while
+   * the contents are at hand, so that the report only keeps the hashes.
+   */
+  void hashIssueLines(String contents) {
+    for (RuleIssue issue : issues) {
+      if (issue.startLine() != RuleIssue.UNKNOWN) {
+        lineHashes.put(issue.startLine(), null);
+      }
+    }
+    if (lineHashes.isEmpty()) {
+      return;
+    }
+    MessageDigest md5 = md5();
+    StringBuilder line = new StringBuilder();
+    int lineNumber = 1;
+    for (int i = 0; i <= contents.length(); i++) {
+      char c = i < contents.length() ? contents.charAt(i) : '\n';
+      if (c == '\n' || c == '\r') {
+        if (lineHashes.containsKey(lineNumber)) {
+          lineHashes.put(lineNumber, line.length() == 0 ? "" : hex(md5.digest(line.toString().getBytes(StandardCharsets.UTF_8))));
+        }
+        if (c == '\r' && i + 1 < contents.length() && contents.charAt(i + 1) == '\n') {
+          i++;
+        }
+        line.setLength(0);
+        lineNumber++;
+      } else if (c != ' ' && c != '\t' && c != '\f' && c != '\u000B') {
+        line.append(c);
+      }
+    }
+  }
+
+  /**
+   * Hash of a line given by {@link #hashIssueLines(String)}, {@code null} when unknown.
+   */
+  String lineHash(int line) {
+    return lineHashes.get(line);
+  }
+
+  List<RuleIssue> issues() {
+    return Collections.unmodifiableList(issues);
+  }
+
+  List<String> errors() {
+    return Collections.unmodifiableList(errors);
+  }
+
+  private static MessageDigest md5() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("MD5 is not available", e);
+    }
+  }
+
+  private static String hex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+}
@@ -0,0 +1,177 @@
+package com.sunasterisk.sonar.runner;
+
+import com.sunasterisk.sonar.rules.JavaCustomRuleRepository;
+import org.sonar.java.model.JParser;
+import org.sonar.java.model.JParserConfig;
+import org.sonar.java.model.JavaTree;
+import org.sonar.plugins.java.api.IssuableSubscriptionVisitor;
+import org.sonar.plugins.java.api.JavaCheck;
+import org.sonar.plugins.java.api.JavaFileScanner;
+import org.sonar.plugins.java.api.JavaFileScannerContext;
+import org.sonar.plugins.java.api.location.Position;
+import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+import org.sonar.plugins.java.api.tree.Tree;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs the checks of {@link JavaCustomRuleRepository} on a Java file. Without the project
+ * classpath the semantic model only knows the JDK and the file itself, which is enough for the
+ * custom rules, all of them being syntactic. Subscription-based checks are driven the way the Java
+ * sensor does: {@code setContext}, then {@code visitNode}/{@code leaveNode} on the subscribed kinds
+ * in depth-first order, then {@code leaveFile}.
+ */
+final class JavaFileAnalyzer {
+
+  private static final String JAVA_VERSION = "17";
+
+  private final JParserConfig parserConfig = JParserConfig.Mode.FILE_BY_FILE.create(
+    JParserConfig.MAXIMUM_SUPPORTED_JAVA_VERSION, Collections.emptyList());
+  private final List<CheckRule> checks = new ArrayList<>();
+  private final Map<Object, Set<Tree.Kind>> subscribedKinds = new IdentityHashMap<>();
+
+  JavaFileAnalyzer() {
+    for (Class<? extends JavaCheck> checkClass : JavaCustomRuleRepository.checkClasses()) {
+      CheckRule rule = CheckRule.of(JavaCustomRuleRepository.REPOSITORY_KEY, checkClass);
+      if (rule.check() instanceof IssuableSubscriptionVisitor) {
+        Set<Tree.Kind> kinds = EnumSet.noneOf(Tree.Kind.class);
+        kinds.addAll(((IssuableSubscriptionVisitor) rule.check()).nodesToVisit());
+        subscribedKinds.put(rule.check(), kinds);
+      }
+      checks.add(rule);
+    }
+  }
+
+  List<CheckRule> checks() {
+    return checks;
+  }
+
+  void analyze(SourceFile file, String contents, FileResult result) {
+    // A new JDT parser per file: it is not thread-safe
+    CompilationUnitTree tree = JParser.parse(parserConfig.astParser(), JAVA_VERSION, file.filename(), contents);
+    for (CheckRule rule : checks) {
+      JavaFileScannerContext context = new IssueCollectingContext(rule, file, tree, contents, result).proxy();
+      try {
+        Object check = rule.check();
+        if (check instanceof IssuableSubscriptionVisitor) {
+          IssuableSubscriptionVisitor visitor = (IssuableSubscriptionVisitor) check;
+          visitor.setContext(context);
+          try {
+            visit(visitor, subscribedKinds.get(check), tree);
+          } finally {
+            visitor.leaveFile(context);
+          }
+        } else {
+          ((JavaFileScanner) check).scanFile(context);
+        }
+      } catch (RuntimeException e) {
+        result.addError(rule + " failed: " + e);
+      }
+    }
+  }
+
+  private static void visit(IssuableSubscriptionVisitor visitor, Set<Tree.Kind> kinds, Tree tree) {
+    boolean subscribed = kinds.contains(tree.kind());
+    if (subscribed) {
+      visitor.visitNode(tree);
+    }
+    if (!tree.is(Tree.Kind.TOKEN)) {
+      for (Tree child : ((JavaTree) tree).getChildren()) {
+        if (child != null) {
+          visit(visitor, kinds, child);
+        }
+      }
+    }
+    if (subscribed) {
+      visitor.leaveNode(tree);
+    }
+  }
+
+  /**
+   * {@link JavaFileScannerContext} of one check on one file: exposes the tree and source, turns the
+   * reported issues into {@link RuleIssue}s and answers every other call with a neutral value.
+   * A proxy keeps the runner independent of the methods added to the interface between sonar-java
+   * versions.
+   */
+  private static final class IssueCollectingContext implements InvocationHandler {
+    private final CheckRule rule;
+    private final SourceFile file;
+    private final CompilationUnitTree tree;
+    private final String contents;
+    private final FileResult result;
+
+    IssueCollectingContext(CheckRule rule, SourceFile file, CompilationUnitTree tree, String contents, FileResult result) {
+      this.rule = rule;
+      this.file = file;
+      this.tree = tree;
+      this.contents = contents;
+      this.result = result;
+    }
+
+    JavaFileScannerContext proxy() {
+      return (JavaFileScannerContext) Proxy.newProxyInstance(
+        JavaFileScannerContext.class.getClassLoader(), new Class<?>[] {JavaFileScannerContext.class}, this);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+      switch (method.getName()) {
+        case "getTree":
+          return tree;
+        case "getFileContent":
+          return contents;
+        case "reportIssue":
+          // reportIssue(check, tree, message) or reportIssue(check, startTree, endTree, message)
+          reportIssue((Tree) args[1], (Tree) args[args.length == 4 ? 2 : 1], String.valueOf(args[args.length - 1]));
+          return null;
+        case "addIssue":
+          // addIssue(line, check, message) or addIssue(tree, check, message)
+          if (args[0] instanceof Integer) {
+            result.addIssue(RuleIssue.onLine(rule, file.component(), (Integer) args[0], String.valueOf(args[2])));
+          } else {
+            reportIssue((Tree) args[0], (Tree) args[0], String.valueOf(args[2]));
+          }
+          return null;
+        case "addIssueOnFile":
+        case "addIssueOnProject":
+          result.addIssue(RuleIssue.onLine(rule, file.component(), RuleIssue.UNKNOWN, String.valueOf(args[args.length - 1])));
+          return null;
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "equals":
+          return proxy == args[0];
+        case "toString":
+          return "JavaFileScannerContext[" + file + "]";
+        default:
+          return neutralValue(method.getReturnType());
+      }
+    }
+
+    private void reportIssue(Tree from, Tree to, String message) {
+      Position start = from.firstToken().range().start();
+      Position end = to.lastToken().range().end();
+      result.addIssue(new RuleIssue(rule, file.component(), start.line(), start.columnOffset(),
+        end.line(), end.columnOffset(), message));
+    }
+
+    private static Object neutralValue(Class<?> type) {
+      if (type == boolean.class) {
+        return Boolean.FALSE;
+      } else if (type == int.class) {
+        return 0;
+      } else if (type == long.class) {
+        return 0L;
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,276 @@
+package com.sunasterisk.sonar.runner;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Writes the issues in the schema of the SonarQube issue search API ({@code api/issues/search},
+ * see {@code archived/result.json}), so that the tools reading its pages work on the runner output
+ * without a server.
+ *
+ * <p>Issues come as the files complete: those of a file are contiguous and sorted by position, the
+ * files come in completion order. Nothing grows with the number of issues: in the
+ * {@link Format#JSON JSON} format, the issues are spooled to a temporary file until the total is
+ * known, then written as the pages of {@value #PAGE_SIZE} issues the API returns for {@code p=1},
+ * {@code p=2}..., one JSON document after the other, each with the components of its issues; in the
+ * {@link Format#NDJSON NDJSON} format, each line is an issue, flushed with its file. Analysis errors
+ * go to the standard error in both formats: the API has no field for them.</p>
+ *
+ * <p>The issue fields the runner cannot know are given their value for a new issue: status
+ * {@code OPEN}, no author, creation and update dates at the start of the analysis. The custom
+ * rules define no remediation cost, so {@code effort} and {@code debt} are absent, as in the API.
+ * Issue keys are derived from the rule, location and message, so that they are stable between
+ * runs.</p>
+ */
+final class JsonReport implements FilePipeline.ResultSink, Closeable {
+
+  enum Format {
+    JSON,
+    NDJSON
+  }
+
+  private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssZ", Locale.ROOT);
+
+  // Key length of the SonarQube issues, 15 bytes in base 64
+  private static final int KEY_BYTES = 15;
+
+  // Largest page of api/issues/search
+  static final int PAGE_SIZE = 500;
+
+  private final Writer out;
+  private final Format format;
+  private final String project;
+  private final String date;
+  private final MessageDigest sha1;
+  // Issues of the JSON format, each line the component of the issue, a tab and the issue
+  private Spool issues;
+  private long total;
+  private int errorCount;
+
+  JsonReport(Writer out, Format format, String project) {
+    this.out = out;
+    this.format = format;
+    this.project = project;
+    this.date = OffsetDateTime.now().format(DATE);
+    try {
+      this.sha1 = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-1 is not available", e);
+    }
+  }
+
+  void begin() throws IOException {
+    if (format == Format.JSON) {
+      issues = new Spool();
+    }
+  }
+
+  @Override
+  public void accept(FileResult result) throws IOException {
+    String component = project + ":" + result.file().component();
+    if (!result.issues().isEmpty()) {
+      List<RuleIssue> fileIssues = new ArrayList<>(result.issues());
+      fileIssues.sort(RuleIssue.ORDER);
+      String path = result.file().component();
+      String componentJson = "{\"key\": " + string(component) + ", \"enabled\": true, \"qualifier\": \"FIL\", \"name\": "
+        + string(result.file().filename()) + ", \"longName\": " + string(path) + ", \"path\": " + string(path) + "}";
+      for (RuleIssue issue : fileIssues) {
+        String json = issue(issue, component, result);
+        if (format == Format.JSON) {
+          // Escaped JSON has no raw tab nor line break
+          issues.add(componentJson + '\t' + json);
+        } else {
+          out.write(json);
+          out.write('\n');
+        }
+        total++;
+      }
+      if (format == Format.NDJSON) {
+        // Readers following the output see the issues of each file as soon as it is analyzed
+        out.flush();
+      }
+    }
+    for (String error : result.errors()) {
+      errorCount++;
+      System.err.println(component + ": " + error);
+    }
+  }
+
+  void end() throws IOException {
+    if (format == Format.JSON) {
+      try (BufferedReader spooled = issues.read()) {
+        // Without issues, the single empty page the API returns
+        long pages = Math.max(1, (total + PAGE_SIZE - 1) / PAGE_SIZE);
+        for (long page = 1; page <= pages; page++) {
+          page(page, spooled);
+        }
+      }
+    }
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (issues != null) {
+      issues.close();
+    }
+  }
+
+  // Next page of the spooled issues, in the order of the keys of archived/result.json
+  private void page(long page, BufferedReader spooled) throws IOException {
+    out.write("{\n  \"total\": " + total + ",\n");
+    out.write("  \"p\": " + page + ",\n");
+    out.write("  \"ps\": " + PAGE_SIZE + ",\n");
+    out.write("  \"paging\": {\"pageIndex\": " + page + ", \"pageSize\": " + PAGE_SIZE + ", \"total\": " + total + "},\n");
+    out.write("  \"effortTotal\": 0,\n");
+    out.write("  \"issues\": [");
+    Set<String> components = new LinkedHashSet<>();
+    components.add("{\"key\": " + string(project) + ", \"enabled\": true, \"qualifier\": \"TRK\", \"name\": "
+      + string(project) + ", \"longName\": " + string(project) + "}");
+    String line;
+    int count = 0;
+    while (count < PAGE_SIZE && (line = spooled.readLine()) != null) {
+      int tab = line.indexOf('\t');
+      components.add(line.substring(0, tab));
+      out.write(count++ == 0 ? "\n    " : ",\n    ");
+      out.write(line, tab + 1, line.length() - tab - 1);
+    }
+    out.write(count == 0 ? "],\n" : "\n  ],\n");
+    out.write("  \"components\": [");
+    String separator = "\n    ";
+    for (String component : components) {
+      out.write(separator);
+      out.write(component);
+      separator = ",\n    ";
+    }
+    out.write("\n  ],\n  \"facets\": []\n}\n");
+  }
+
+  long total() {
+    return total;
+  }
+
+  int errors() {
+    return errorCount;
+  }
+
+  private String issue(RuleIssue issue, String component, FileResult result) {
+    CheckRule rule = issue.rule();
+    StringBuilder json = new StringBuilder(512);
+    json.append("{\"key\": ").append(string(key(issue)));
+    json.append(", \"rule\": ").append(string(rule.key()));
+    json.append(", \"severity\": ").append(string(rule.severity()));
+    json.append(", \"component\": ").append(string(component));
+    json.append(", \"project\": ").append(string(project));
+    if (issue.startLine() != RuleIssue.UNKNOWN) {
+      json.append(", \"line\": ").append(issue.startLine());
+      String hash = result.lineHash(issue.startLine());
+      if (hash != null) {
+        json.append(", \"hash\": ").append(string(hash));
+      }
+    }
+    if (issue.hasRange()) {
+      json.append(", \"textRange\": {\"startLine\": ").append(issue.startLine())
+        .append(", \"endLine\": ").append(issue.endLine())
+        .append(", \"startOffset\": ").append(issue.startOffset())
+        .append(", \"endOffset\": ").append(issue.endOffset()).append('}');
+    }
+    json.append(", \"flows\": [], \"status\": \"OPEN\"");
+    json.append(", \"message\": ").append(string(issue.message()));
+    json.append(", \"author\": \"\", \"tags\": [");
+    for (int i = 0; i < rule.tags().size(); i++) {
+      json.append(i == 0 ? "" : ", ").append(string(rule.tags().get(i)));
+    }
+    json.append("], \"creationDate\": ").append(string(date));
+    json.append(", \"updateDate\": ").append(string(date));
+    json.append(", \"type\": ").append(string(rule.type()));
+    json.append(", \"scope\": \"MAIN\", \"quickFixAvailable\": false, \"messageFormattings\": []}");
+    return json.toString();
+  }
+
+  // Only called by the emitting thread, like accept
+  private String key(RuleIssue issue) {
+    String identity = issue.rule().key() + '\n' + issue.component() + '\n' + issue.startLine() + ':' + issue.startOffset()
+      + '-' + issue.endLine() + ':' + issue.endOffset() + '\n' + issue.message();
+    byte[] digest = sha1.digest(identity.getBytes(StandardCharsets.UTF_8));
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, KEY_BYTES));
+  }
+
+  static String string(String value) {
+    StringBuilder json = new StringBuilder(value.length() + 2);
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          json.append("\\\"");
+          break;
+        case '\\':
+          json.append("\\\\");
+          break;
+        case '\n':
+          json.append("\\n");
+          break;
+        case '\r':
+          json.append("\\r");
+          break;
+        case '\t':
+          json.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            json.append(String.format("\\u%04x", (int) c));
+          } else {
+            json.append(c);
+          }
+      }
+    }
+    return json.append('"').toString();
+  }
+
+  /**
+   * Lines written to a temporary file until the end of the report.
+   */
+  private static final class Spool implements Closeable {
+
+    private final Path file;
+    private final Writer writer;
+
+    Spool() throws IOException {
+      file = Files.createTempFile("custom-rules-runner", ".json");
+      writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+    }
+
+    void add(String line) throws IOException {
+      writer.write(line);
+      writer.write('\n');
+    }
+
+    BufferedReader read() throws IOException {
+      writer.close();
+      return Files.newBufferedReader(file, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+      writer.close();
+      Files.deleteIfExists(file);
+    }
+  }
+}
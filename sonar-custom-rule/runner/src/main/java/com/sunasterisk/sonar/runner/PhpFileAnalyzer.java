@@ -0,0 +1,113 @@
+package com.sunasterisk.sonar.runner;
+
+import com.sonar.sslr.api.typed.ActionParser;
+import com.sunasterisk.sonar.rules.CustomPhpRuleRepository;
+import org.sonar.php.parser.PHPParserBuilder;
+import org.sonar.php.tree.symbols.SymbolTableImpl;
+import org.sonar.php.tree.visitors.PHPCheckContext;
+import org.sonar.plugins.php.api.symbols.SymbolTable;
+import org.sonar.plugins.php.api.tree.CompilationUnitTree;
+import org.sonar.plugins.php.api.tree.Tree;
+import org.sonar.plugins.php.api.visitors.FileIssue;
+import org.sonar.plugins.php.api.visitors.IssueLocation;
+import org.sonar.plugins.php.api.visitors.LineIssue;
+import org.sonar.plugins.php.api.visitors.PHPCheck;
+import org.sonar.plugins.php.api.visitors.PhpFile;
+import org.sonar.plugins.php.api.visitors.PhpIssue;
+import org.sonar.plugins.php.api.visitors.PreciseIssue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the checks of {@link CustomPhpRuleRepository} on a PHP file the way the PHP sensor does:
+ * one parse and one symbol table per file, one {@link PHPCheckContext} per check.
+ */
+final class PhpFileAnalyzer {
+
+  // The parser keeps state between two files, each thread has its own
+  private static final ThreadLocal<ActionParser<Tree>> PARSER = ThreadLocal.withInitial(PHPParserBuilder::createParser);
+
+  private final List<CheckRule> checks = new ArrayList<>();
+
+  PhpFileAnalyzer() {
+    CustomPhpRuleRepository repository = new CustomPhpRuleRepository();
+    for (Class<?> checkClass : repository.checkClasses()) {
+      CheckRule rule = CheckRule.of(repository.repositoryKey(), checkClass);
+      ((PHPCheck) rule.check()).init();
+      checks.add(rule);
+    }
+  }
+
+  List<CheckRule> checks() {
+    return checks;
+  }
+
+  static CompilationUnitTree parse(String contents) {
+    return (CompilationUnitTree) PARSER.get().parse(contents);
+  }
+
+  void analyze(SourceFile file, String contents, FileResult result) {
+    CompilationUnitTree tree = parse(contents);
+    SymbolTable symbolTable = SymbolTableImpl.create(tree);
+    PhpFile phpFile = new RunnerPhpFile(file, contents);
+    for (CheckRule rule : checks) {
+      try {
+        PHPCheckContext context = new PHPCheckContext(phpFile, tree, null, symbolTable);
+        for (PhpIssue issue : ((PHPCheck) rule.check()).analyze(context)) {
+          result.addIssue(toRuleIssue(rule, file, issue));
+        }
+      } catch (RuntimeException e) {
+        result.addError(rule + " failed: " + e);
+      }
+    }
+  }
+
+  private static RuleIssue toRuleIssue(CheckRule rule, SourceFile file, PhpIssue issue) {
+    if (issue instanceof PreciseIssue) {
+      IssueLocation location = ((PreciseIssue) issue).primaryLocation();
+      return new RuleIssue(rule, file.component(), location.startLine(), location.startLineOffset(),
+        location.endLine(), location.endLineOffset(), location.message());
+    }
+    if (issue instanceof LineIssue) {
+      LineIssue lineIssue = (LineIssue) issue;
+      return RuleIssue.onLine(rule, file.component(), lineIssue.line(), lineIssue.message());
+    }
+    return RuleIssue.onLine(rule, file.component(), RuleIssue.UNKNOWN, ((FileIssue) issue).message());
+  }
+
+  private static final class RunnerPhpFile implements PhpFile {
+    private final SourceFile file;
+    private final String contents;
+
+    RunnerPhpFile(SourceFile file, String contents) {
+      this.file = file;
+      this.contents = contents;
+    }
+
+    @Override
+    public String contents() {
+      return contents;
+    }
+
+    @Override
+    public String filename() {
+      return file.filename();
+    }
+
+    @Override
+    public URI uri() {
+      return file.path().toUri();
+    }
+
+    public String key() {
+      return file.component();
+    }
+
+    @Override
+    public String toString() {
+      return file.component();
+    }
+  }
+}
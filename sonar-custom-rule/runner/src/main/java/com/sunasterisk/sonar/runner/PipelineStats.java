@@ -0,0 +1,87 @@
+package com.sunasterisk.sonar.runner;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput and memory figures of one {@link FilePipeline} run.
+ *
+ * <p>A file is in flight from the end of its read to the end of its analysis: its source text is
+ * then held by the pipeline. Source sizes are counted in characters, about one byte each for
+ * ASCII sources. The heap is sampled after each emitted result.</p>
+ */
+final class PipelineStats {
+
+  // Length of a file that could not be read
+  static final int NOT_READ = -1;
+
+  private final long start = System.nanoTime();
+  private final int cpuThreads;
+  private final AtomicLong files = new AtomicLong();
+  private final AtomicLong characters = new AtomicLong();
+  private final AtomicLong inFlightFiles = new AtomicLong();
+  private final AtomicLong inFlightCharacters = new AtomicLong();
+  private final AtomicLong peakInFlightFiles = new AtomicLong();
+  private final AtomicLong peakInFlightCharacters = new AtomicLong();
+  private volatile long peakHeap;
+  private volatile long nanos = -1;
+  private volatile String readers = "";
+
+  PipelineStats(int cpuThreads) {
+    this.cpuThreads = cpuThreads;
+  }
+
+  void readers(String description) {
+    readers = description;
+  }
+
+  void read(int length) {
+    peakInFlightFiles.accumulateAndGet(inFlightFiles.incrementAndGet(), Math::max);
+    peakInFlightCharacters.accumulateAndGet(inFlightCharacters.addAndGet(length), Math::max);
+  }
+
+  void analyzed(int length) {
+    files.incrementAndGet();
+    if (length != NOT_READ) {
+      characters.addAndGet(length);
+      inFlightFiles.decrementAndGet();
+      inFlightCharacters.addAndGet(-length);
+    }
+  }
+
+  // Only called by the emitting thread
+  void sampleHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    long used = runtime.totalMemory() - runtime.freeMemory();
+    if (used > peakHeap) {
+      peakHeap = used;
+    }
+  }
+
+  PipelineStats finish() {
+    nanos = System.nanoTime() - start;
+    return this;
+  }
+
+  long files() {
+    return files.get();
+  }
+
+  long millis() {
+    return nanos / 1_000_000;
+  }
+
+  double filesPerSecond() {
+    return nanos > 0 ? files.get() * 1e9 / nanos : 0;
+  }
+
+  @Override
+  public String toString() {
+    double seconds = Math.max(nanos, 1) / 1e9;
+    return String.format("%d files (%.1f MB) in %d ms: %.0f files/s, %.1f MB/s%n"
+        + "  in flight: peak %d files, %.1f MB of source; peak heap %.0f MB%n"
+        + "  reads on %s, parse and checks on %d threads",
+      files.get(), characters.get() / 1e6, millis(), filesPerSecond(), characters.get() / 1e6 / seconds,
+      peakInFlightFiles.get(), peakInFlightCharacters.get() / 1e6, peakHeap / 1e6,
+      readers, cpuThreads);
+  }
+}
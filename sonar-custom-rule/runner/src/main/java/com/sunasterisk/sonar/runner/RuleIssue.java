@@ -0,0 +1,73 @@
+package com.sunasterisk.sonar.runner;
+
+import java.util.Comparator;
+
+/**
+ * An issue raised by one of the custom rules, located like the issues of the SonarQube web API:
+ * 1-based lines and 0-based offsets in the line.
+ */
+final class RuleIssue {
+
+  static final Comparator<RuleIssue> ORDER = Comparator.comparing((RuleIssue issue) -> issue.component)
+    .thenComparingInt(issue -> issue.startLine)
+    .thenComparingInt(issue -> issue.startOffset)
+    .thenComparing(issue -> issue.rule.key())
+    .thenComparing(issue -> issue.message);
+
+  // No line, or no range in the line
+  static final int UNKNOWN = -1;
+
+  private final CheckRule rule;
+  private final String component;
+  private final int startLine;
+  private final int startOffset;
+  private final int endLine;
+  private final int endOffset;
+  private final String message;
+
+  RuleIssue(CheckRule rule, String component, int startLine, int startOffset, int endLine, int endOffset, String message) {
+    this.rule = rule;
+    this.component = component;
+    this.startLine = startLine;
+    this.startOffset = startOffset;
+    this.endLine = endLine;
+    this.endOffset = endOffset;
+    this.message = message;
+  }
+
+  static RuleIssue onLine(CheckRule rule, String component, int line, String message) {
+    return new RuleIssue(rule, component, line, UNKNOWN, line, UNKNOWN, message);
+  }
+
+  CheckRule rule() {
+    return rule;
+  }
+
+  String component() {
+    return component;
+  }
+
+  int startLine() {
+    return startLine;
+  }
+
+  int startOffset() {
+    return startOffset;
+  }
+
+  int endLine() {
+    return endLine;
+  }
+
+  int endOffset() {
+    return endOffset;
+  }
+
+  boolean hasRange() {
+    return startOffset != UNKNOWN;
+  }
+
+  String message() {
+    return message;
+  }
+}
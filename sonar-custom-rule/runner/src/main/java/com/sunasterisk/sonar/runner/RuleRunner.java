@@ -0,0 +1,99 @@
+package com.sunasterisk.sonar.runner;
+
+import com.sunasterisk.sonar.laravel.EloquentModelIndex;
+import com.sunasterisk.sonar.laravel.HashingFunctionIndex;
+import com.sunasterisk.sonar.text.KeywordMatcher;
+import com.sunasterisk.sonar.text.TextPatterns;
+import org.sonar.plugins.php.api.tree.CompilationUnitTree;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Analyzes the PHP and Java files under some directories with the custom rules, through two runs
+ * of a {@link FilePipeline}: the first one builds the {@link EloquentModelIndex} and the
+ * {@link HashingFunctionIndex} from the PHP files, as the scanner does before the PHP sensor, the second one runs the checks and streams
+ * the results. Each file is read, parsed and analyzed by one thread, then its tree is dropped.
+ */
+final class RuleRunner {
+
+  private static final KeywordMatcher MODEL_PROPERTIES = TextPatterns.keywords("$fillable", "$guarded");
+  private static final KeywordMatcher HASHING_CALLS = TextPatterns.keywords("hash", "crypt");
+
+  private final FilePipeline pipeline;
+  private final PhpFileAnalyzer phpAnalyzer = new PhpFileAnalyzer();
+  private final JavaFileAnalyzer javaAnalyzer = new JavaFileAnalyzer();
+
+  RuleRunner(int cpuThreads, int readConcurrency) {
+    this.pipeline = new FilePipeline(cpuThreads, readConcurrency);
+  }
+
+  List<CheckRule> checks() {
+    List<CheckRule> checks = new ArrayList<>(phpAnalyzer.checks());
+    checks.addAll(javaAnalyzer.checks());
+    return checks;
+  }
+
+  PipelineStats indexProject(List<Path> roots, Path baseDir) throws IOException {
+    List<CompilationUnitTree> models = new ArrayList<>();
+    List<CompilationUnitTree> hashingFiles = new ArrayList<>();
+    PipelineStats stats = pipeline.run(roots, baseDir, SourceFile::isPhp, (file, contents, readError) -> {
+      // Unreadable and unparsable files are reported by the analysis
+      if (contents == null) {
+        return null;
+      }
+      boolean model = MODEL_PROPERTIES.containsAny(contents);
+      boolean hashing = HASHING_CALLS.containsAny(contents);
+      if (!model && !hashing) {
+        return null;
+      }
+      try {
+        // Parsed once for both indices
+        CompilationUnitTree tree = PhpFileAnalyzer.parse(contents);
+        synchronized (models) {
+          if (model) {
+            models.add(tree);
+          }
+          if (hashing) {
+            hashingFiles.add(tree);
+          }
+        }
+      } catch (RuntimeException e) {
+        // Same as above
+      }
+      return null;
+    }, result -> { });
+    EloquentModelIndex.Builder builder = EloquentModelIndex.builder();
+    models.forEach(builder::add);
+    EloquentModelIndex.install(builder.build());
+    HashingFunctionIndex.Builder hashingBuilder = HashingFunctionIndex.builder();
+    hashingFiles.forEach(hashingBuilder::add);
+    HashingFunctionIndex.install(hashingBuilder.build());
+    return stats;
+  }
+
+  PipelineStats analyze(List<Path> roots, Path baseDir, FilePipeline.ResultSink sink) throws IOException {
+    return pipeline.run(roots, baseDir, file -> true, this::analyze, sink);
+  }
+
+  private FileResult analyze(SourceFile file, String contents, IOException readError) {
+    FileResult result = new FileResult(file);
+    if (readError != null) {
+      result.addError("Unable to read the file: " + readError);
+      return result;
+    }
+    try {
+      if (file.isPhp()) {
+        phpAnalyzer.analyze(file, contents, result);
+      } else {
+        javaAnalyzer.analyze(file, contents, result);
+      }
+    } catch (RuntimeException e) {
+      result.addError("Unable to analyze the file: " + e);
+    }
+    result.hashIssueLines(contents);
+    return result;
+  }
+}
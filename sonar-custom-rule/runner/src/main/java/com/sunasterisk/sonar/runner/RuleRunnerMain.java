@@ -0,0 +1,132 @@
+package com.sunasterisk.sonar.runner;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the custom rules on PHP and Java sources without a SonarQube server and prints the issues
+ * in the schema of the SonarQube issue search API, e.g.
+ * <pre>
+ * java -jar target/custom-rules-runner.jar --threads 8 --output issues.json app_test/laravel-app
+ * </pre>
+ * <p>Options: {@code --threads N} (parse and check threads, the number of processors by default),
+ * {@code --read-concurrency N} (reads in progress at the same time, 32 by default), {@code --output FILE}
+ * (standard output by default), {@code --format json|ndjson} (JSON pages of 500 issues, or one
+ * issue per line, see {@link JsonReport}), {@code --base-dir DIR} (components are relative to it, the
+ * working directory by default), {@code --project KEY} (prefix of the component keys, the name of
+ * the base directory by default) and {@code --fail-on-issues} (exit with status 1 when an issue is
+ * found, for CI pre-checks). The remaining arguments are the files and directories to analyze.
+ * Dependency and build directories are skipped. Throughput and in-flight memory are printed on
+ * the standard error, see {@link FilePipeline}.</p>
+ */
+public final class RuleRunnerMain {
+
+  // Reads in progress at the same time, mostly waiting for the disk
+  private static final int DEFAULT_READ_CONCURRENCY = 32;
+
+  private RuleRunnerMain() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    int threads = Runtime.getRuntime().availableProcessors();
+    int readConcurrency = DEFAULT_READ_CONCURRENCY;
+    Path output = null;
+    JsonReport.Format format = JsonReport.Format.JSON;
+    String project = null;
+    Path baseDir = Paths.get("").toAbsolutePath();
+    boolean failOnIssues = false;
+    List<Path> roots = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "--threads":
+          threads = Integer.parseInt(value(args, ++i));
+          break;
+        case "--read-concurrency":
+          readConcurrency = Integer.parseInt(value(args, ++i));
+          break;
+        case "--output":
+          output = Paths.get(value(args, ++i));
+          break;
+        case "--format":
+          format = format(value(args, ++i));
+          break;
+        case "--project":
+          project = value(args, ++i);
+          break;
+        case "--base-dir":
+          baseDir = Paths.get(value(args, ++i)).toAbsolutePath();
+          break;
+        case "--fail-on-issues":
+          failOnIssues = true;
+          break;
+        default:
+          if (args[i].startsWith("--")) {
+            usage("Unknown option " + args[i]);
+          }
+          roots.add(Paths.get(args[i]));
+      }
+    }
+    if (roots.isEmpty()) {
+      roots.add(baseDir);
+    }
+    if (threads < 1 || readConcurrency < 1) {
+      usage("--threads and --read-concurrency must be at least 1");
+    }
+    if (project == null) {
+      project = baseDir.getFileName() != null ? baseDir.getFileName().toString() : "project";
+    }
+
+    RuleRunner runner = new RuleRunner(threads, readConcurrency);
+    PipelineStats indexing = runner.indexProject(roots, baseDir);
+    PipelineStats analysis;
+    JsonReport report;
+    try (Writer out = output != null
+      ? Files.newBufferedWriter(output, StandardCharsets.UTF_8)
+      : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+      JsonReport sink = new JsonReport(out, format, project)) {
+      report = sink;
+      report.begin();
+      analysis = runner.analyze(roots, baseDir, report);
+      report.end();
+    }
+    System.err.printf("Indexed the Eloquent models and hashing functions of %d PHP files in %d ms%n", indexing.files(), indexing.millis());
+    System.err.printf("Analyzed %s%n", analysis);
+    System.err.printf("%d rules: %d issues, %d errors%n", runner.checks().size(), report.total(), report.errors());
+    if (failOnIssues && report.total() > 0) {
+      System.exit(1);
+    }
+  }
+
+  private static String value(String[] args, int index) {
+    if (index >= args.length) {
+      usage(args[index - 1] + " needs a value");
+    }
+    return args[index];
+  }
+
+  private static JsonReport.Format format(String value) {
+    switch (value) {
+      case "json":
+        return JsonReport.Format.JSON;
+      case "ndjson":
+        return JsonReport.Format.NDJSON;
+      default:
+        usage("Unknown format " + value);
+        return null;
+    }
+  }
+
+  private static void usage(String error) {
+    System.err.println(error);
+    System.err.println("Usage: java -jar custom-rules-runner.jar [--threads N] [--read-concurrency N] [--output FILE] [--format json|ndjson] [--base-dir DIR] [--project KEY] [--fail-on-issues] [PATH...]");
+    System.exit(2);
+  }
+}
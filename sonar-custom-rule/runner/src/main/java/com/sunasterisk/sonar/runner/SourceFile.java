@@ -0,0 +1,54 @@
+package com.sunasterisk.sonar.runner;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A PHP or Java file to analyze. Its contents are only read by the thread analyzing it, so that
+ * the runner never holds more sources in memory than it has threads.
+ */
+final class SourceFile {
+
+  private final Path path;
+  private final String component;
+
+  SourceFile(Path path, String component) {
+    this.path = path;
+    this.component = component;
+  }
+
+  Path path() {
+    return path;
+  }
+
+  /**
+   * Path relative to the base directory, with forward slashes, as in the SonarQube issues.
+   */
+  String component() {
+    return component;
+  }
+
+  String filename() {
+    return path.getFileName().toString();
+  }
+
+  boolean isPhp() {
+    return component.endsWith(".php");
+  }
+
+  boolean isJava() {
+    return component.endsWith(".java");
+  }
+
+  String contents() throws IOException {
+    // Malformed UTF-8 is replaced rather than rejected, like the scanner with a wrong encoding
+    return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public String toString() {
+    return component;
+  }
+}
@@ -0,0 +1,139 @@
+package com.sunasterisk.sonar.runner;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonStreamParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs the runner on a small tree and compares its JSON report with {@code archived/result.json},
+ * a page of {@code api/issues/search} of the SonarQube server.
+ */
+public class JsonReportTest {
+
+  // Relative to the module, where Maven runs the tests
+  private static final Path ARCHIVED_RESULT = Paths.get("..", "..", "archived", "result.json");
+
+  // Fields the custom rules cannot fill: they define no remediation cost
+  private static final List<String> NO_EFFORT = Arrays.asList("effort", "debt");
+
+  @Test
+  public void pages_of_the_issue_search_api() throws IOException {
+    JsonObject archived = archivedPage();
+    Path tree = Files.createTempDirectory("json-report");
+    // 1100 issues: pages of 500, 500 and 100, the second file starting on the first page
+    writeLoggedOtps(tree.resolve("app/Http/LoginController.php"), 400);
+    writeLoggedOtps(tree.resolve("app/Http/VerifyController.php"), 700);
+
+    List<JsonObject> pages = run(tree);
+
+    assertEquals(3, pages.size());
+    int[] sizes = {500, 500, 100};
+    for (int p = 0; p < pages.size(); p++) {
+      JsonObject page = pages.get(p);
+      assertEquals(keys(archived), keys(page));
+      assertEquals(1100, page.get("total").getAsInt());
+      assertEquals(p + 1, page.get("p").getAsInt());
+      assertEquals(archived.get("ps"), page.get("ps"));
+      JsonObject paging = page.getAsJsonObject("paging");
+      assertEquals(keys(archived.getAsJsonObject("paging")), keys(paging));
+      assertEquals(p + 1, paging.get("pageIndex").getAsInt());
+      assertEquals(archived.getAsJsonObject("paging").get("pageSize"), paging.get("pageSize"));
+      assertEquals(1100, paging.get("total").getAsInt());
+      assertEquals(sizes[p], page.getAsJsonArray("issues").size());
+
+      // The project, then the files of the issues of the page
+      Set<String> components = new LinkedHashSet<>();
+      components.add("json-report");
+      for (JsonElement issue : page.getAsJsonArray("issues")) {
+        List<String> expected = keys(archived.getAsJsonArray("issues").get(0).getAsJsonObject());
+        expected.removeAll(NO_EFFORT);
+        assertEquals(expected, keys(issue.getAsJsonObject()));
+        components.add(issue.getAsJsonObject().get("component").getAsString());
+      }
+      List<String> pageComponents = new ArrayList<>();
+      for (JsonElement component : page.getAsJsonArray("components")) {
+        JsonObject object = component.getAsJsonObject();
+        pageComponents.add(object.get("key").getAsString());
+        if ("FIL".equals(object.get("qualifier").getAsString())) {
+          assertEquals(keys(archivedFile(archived)), keys(object));
+        }
+      }
+      assertEquals(new ArrayList<>(components), pageComponents);
+    }
+  }
+
+  @Test
+  public void one_empty_page_without_issues() throws IOException {
+    JsonObject archived = archivedPage();
+    Path tree = Files.createTempDirectory("json-report");
+    Files.write(tree.resolve("index.php"), "<?php\necho 'hello';\n".getBytes(StandardCharsets.UTF_8));
+
+    List<JsonObject> pages = run(tree);
+
+    assertEquals(1, pages.size());
+    JsonObject page = pages.get(0);
+    assertEquals(keys(archived), keys(page));
+    assertEquals(0, page.get("total").getAsInt());
+    assertEquals(1, page.get("p").getAsInt());
+    assertEquals(0, page.getAsJsonArray("issues").size());
+  }
+
+  private static List<JsonObject> run(Path tree) throws IOException {
+    Path output = Files.createTempFile("json-report", ".json");
+    RuleRunnerMain.main(new String[] {"--threads", "2", "--output", output.toString(), "--project", "json-report",
+      "--base-dir", tree.toString(), tree.toString()});
+    List<JsonObject> pages = new ArrayList<>();
+    try (Reader reader = Files.newBufferedReader(output, StandardCharsets.UTF_8)) {
+      JsonStreamParser parser = new JsonStreamParser(reader);
+      while (parser.hasNext()) {
+        pages.add(parser.next().getAsJsonObject());
+      }
+    }
+    return pages;
+  }
+
+  private static void writeLoggedOtps(Path file, int count) throws IOException {
+    StringBuilder php = new StringBuilder("<?php\n\nfunction send($otp)\n{\n");
+    for (int i = 0; i < count; i++) {
+      php.append("    Log::info($otp);\n");
+    }
+    php.append("}\n");
+    Files.createDirectories(file.getParent());
+    Files.write(file, php.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static JsonObject archivedPage() throws IOException {
+    try (Reader reader = Files.newBufferedReader(ARCHIVED_RESULT, StandardCharsets.UTF_8)) {
+      return JsonParser.parseReader(reader).getAsJsonObject();
+    }
+  }
+
+  private static JsonObject archivedFile(JsonObject archived) {
+    for (JsonElement component : archived.getAsJsonArray("components")) {
+      if ("FIL".equals(component.getAsJsonObject().get("qualifier").getAsString())) {
+        return component.getAsJsonObject();
+      }
+    }
+    throw new IllegalStateException("No file in " + ARCHIVED_RESULT);
+  }
+
+  private static List<String> keys(JsonObject object) {
+    return new ArrayList<>(object.keySet());
+  }
+}
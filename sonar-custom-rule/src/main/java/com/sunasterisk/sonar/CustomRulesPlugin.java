@@ -2,6 +2,11 @@ package com.sunasterisk.sonar;
 
 import org.sonar.api.Plugin;
 
+import com.sunasterisk.sonar.cache.IssueCacheLifecycle;
+import com.sunasterisk.sonar.instrumentation.InstrumentationConfiguration;
+import com.sunasterisk.sonar.instrumentation.RuleMetricsReport;
+import com.sunasterisk.sonar.laravel.EloquentModelIndexer;
+import com.sunasterisk.sonar.laravel.HashingFunctionIndexer;
 import com.sunasterisk.sonar.rules.CustomPhpRuleRepository;
 import com.sunasterisk.sonar.rules.JavaCustomRuleRepository;
 import com.sunasterisk.sonar.rules.LaravelCustomRulesDefinition;
@@ -25,5 +30,20 @@ public class CustomRulesPlugin implements Plugin {
     
     // Register the Java rules definition
     context.addExtension(SpringBootCustomRulesDefinition.class);
+    
+    // Apply the sonar.customRules.trace* and sonar.customRules.metrics* scanner properties
+    context.addExtension(InstrumentationConfiguration.class);
+    
+    // Report the time spent in each rule at the end of the analysis
+    context.addExtension(RuleMetricsReport.class);
+    
+    // Load and save the cache of the issues raised on unchanged files
+    context.addExtension(IssueCacheLifecycle.class);
+    
+    // Index the Eloquent models protected by $fillable or $guarded before the PHP analysis
+    context.addExtension(EloquentModelIndexer.class);
+
+    // Index the functions returning a hash, followed by the OTP check across helper functions
+    context.addExtension(HashingFunctionIndexer.class);
   }
 }
@@ -0,0 +1,60 @@
+package com.sunasterisk.sonar.cache;
+
+/**
+ * An issue stored in the {@link IssueCache}: its message and the range of the syntax tree node it
+ * is reported on, from the start of the first token to the end of the last one.
+ */
+public final class CachedIssue {
+
+  private final int line;
+  private final int column;
+  private final int endLine;
+  private final int endColumn;
+  private final String message;
+
+  public CachedIssue(int line, int column, int endLine, int endColumn, String message) {
+    this.line = line;
+    this.column = column;
+    this.endLine = endLine;
+    this.endColumn = endColumn;
+    this.message = message;
+  }
+
+  public int line() {
+    return line;
+  }
+
+  public int column() {
+    return column;
+  }
+
+  public int endLine() {
+    return endLine;
+  }
+
+  public int endColumn() {
+    return endColumn;
+  }
+
+  public String message() {
+    return message;
+  }
+
+  /**
+   * Whether the node range {@code [line:column, endLine:endColumn]} contains the range of this issue.
+   */
+  public boolean isWithin(int fromLine, int fromColumn, int toLine, int toColumn) {
+    return compare(fromLine, fromColumn, line, column) <= 0 && compare(endLine, endColumn, toLine, toColumn) <= 0;
+  }
+
+  /**
+   * Whether the node range {@code [line:column, endLine:endColumn]} is exactly the range of this issue.
+   */
+  public boolean isAt(int fromLine, int fromColumn, int toLine, int toColumn) {
+    return line == fromLine && column == fromColumn && endLine == toLine && endColumn == toColumn;
+  }
+
+  private static int compare(int line1, int column1, int line2, int column2) {
+    return line1 != line2 ? Integer.compare(line1, line2) : Integer.compare(column1, column2);
+  }
+}
@@ -0,0 +1,308 @@
+package com.sunasterisk.sonar.cache;
+
+import com.sunasterisk.sonar.CustomRulesPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.check.Rule;
+import org.sonar.check.RuleProperty;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Issues raised by the custom checks in the previous analysis, keyed by file content hash, rule key
+ * and rule parameters, so that unchanged files replay them instead of being visited again.
+ *
+ * <p>Most (file, rule) pairs have no issue: these are kept apart in a memory-mapped
+ * {@link VerdictStore}, so that a large project does not load one entry per file and rule at
+ * startup. The other entries are few and live in a plain file loaded in memory.</p>
+ *
+ * <p>The whole cache is tied to the plugin version and to the hash of the plugin jar: a different
+ * plugin starts from an empty cache. Only the entries used by the current analysis are written
+ * back, so the file does not grow with deleted or modified files.</p>
+ *
+ * <p>The cache of the running analysis is installed by {@link IssueCacheLifecycle}; until then
+ * {@link #current()} is a disabled cache on which every lookup misses.</p>
+ */
+public final class IssueCache {
+
+  public static final String CACHE_PROPERTY = "sonar.customRules.cache";
+  public static final String CACHE_PATH_PROPERTY = "sonar.customRules.cache.path";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(IssueCache.class);
+
+  private static final int MAGIC = 0x43524943;
+  private static final int FORMAT_VERSION = 1;
+
+  private static final IssueCache DISABLED = new IssueCache(null, "", Collections.emptyMap(), null);
+  private static volatile IssueCache current = DISABLED;
+
+  private static volatile String pluginFingerprint;
+
+  private final Path file;
+  private final String pluginVersion;
+  private final Map<String, List<CachedIssue>> previous;
+  private final VerdictStore verdicts;
+  private final Map<String, List<CachedIssue>> next = new ConcurrentHashMap<>();
+  private final Map<Object, String> ruleFingerprints = Collections.synchronizedMap(new WeakHashMap<>());
+  private final ThreadLocal<HashedFile> lastFile = ThreadLocal.withInitial(HashedFile::new);
+
+  private IssueCache(Path file, String pluginVersion, Map<String, List<CachedIssue>> previous, VerdictStore verdicts) {
+    this.file = file;
+    this.pluginVersion = pluginVersion;
+    this.previous = previous;
+    this.verdicts = verdicts;
+  }
+
+  public static IssueCache current() {
+    return current;
+  }
+
+  static void install(IssueCache cache) {
+    current = cache == null ? DISABLED : cache;
+  }
+
+  public boolean isEnabled() {
+    return file != null;
+  }
+
+  /**
+   * Loads the cache file written by the previous analysis and opens the verdict store of the same
+   * directory. A missing, corrupted or outdated file gives an empty cache.
+   */
+  public static IssueCache load(Path file, String pluginVersion) {
+    Map<String, List<CachedIssue>> entries = Collections.emptyMap();
+    if (Files.isRegularFile(file)) {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+        entries = read(in, pluginVersion);
+      } catch (IOException | RuntimeException e) {
+        LOGGER.warn("Ignoring unreadable custom rules cache {}: {}", file, e.getMessage());
+      }
+    }
+    VerdictStore verdicts = null;
+    try {
+      verdicts = VerdictStore.open(file.getParent(), pluginVersion);
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warn("Ignoring unreadable custom rules verdict store in {}: {}", file.getParent(), e.getMessage());
+    }
+    return new IssueCache(file, pluginVersion, entries, verdicts);
+  }
+
+  private static Map<String, List<CachedIssue>> read(DataInputStream in, String pluginVersion) throws IOException {
+    if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !in.readUTF().equals(pluginVersion)) {
+      // Written by another plugin: its issues may differ
+      return Collections.emptyMap();
+    }
+    int size = in.readInt();
+    Map<String, List<CachedIssue>> entries = new HashMap<>(size * 2);
+    for (int i = 0; i < size; i++) {
+      String key = in.readUTF();
+      int count = in.readInt();
+      List<CachedIssue> issues = new ArrayList<>(count);
+      for (int j = 0; j < count; j++) {
+        issues.add(new CachedIssue(in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readUTF()));
+      }
+      entries.put(key, Collections.unmodifiableList(issues));
+    }
+    return entries;
+  }
+
+  /**
+   * Writes the entries used by this analysis, replacing the previous file atomically.
+   */
+  public void save() throws IOException {
+    if (!isEnabled()) {
+      return;
+    }
+    if (verdicts != null) {
+      verdicts.close();
+    }
+    Files.createDirectories(file.getParent());
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeUTF(pluginVersion);
+      out.writeInt(next.size());
+      for (Map.Entry<String, List<CachedIssue>> entry : next.entrySet()) {
+        out.writeUTF(entry.getKey());
+        out.writeInt(entry.getValue().size());
+        for (CachedIssue issue : entry.getValue()) {
+          out.writeInt(issue.line());
+          out.writeInt(issue.column());
+          out.writeInt(issue.endLine());
+          out.writeInt(issue.endColumn());
+          out.writeUTF(issue.message());
+        }
+      }
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Key of the issues raised by the check on the file, or {@code null} when the cache is disabled.
+   *
+   * @param file identifies the file being analyzed, typically its syntax tree: the contents are only
+   *             hashed when it changes, once for all the checks
+   */
+  public String key(Object check, Object file, Supplier<? extends CharSequence> contents) {
+    if (!isEnabled()) {
+      return null;
+    }
+    HashedFile hashed = lastFile.get();
+    if (hashed.file != file) {
+      hashed.hash = sha256(contents.get().toString().getBytes(StandardCharsets.UTF_8));
+      hashed.file = file;
+    }
+    String key = hashed.hash + '|' + ruleFingerprints.computeIfAbsent(check, IssueCache::ruleFingerprint);
+    if (check instanceof ProjectDependent) {
+      key += '|' + ((ProjectDependent) check).projectFingerprint();
+    }
+    return key;
+  }
+
+  /**
+   * Issues cached for the key, or {@code null} on a miss. A hit is kept for the next analysis.
+   */
+  public List<CachedIssue> get(String key) {
+    if (key == null) {
+      return null;
+    }
+    if (verdicts != null && verdicts.contains(verdictKey(key))) {
+      return Collections.emptyList();
+    }
+    List<CachedIssue> issues = previous.get(key);
+    if (issues != null) {
+      next.put(key, issues);
+    }
+    return issues;
+  }
+
+  public void put(String key, List<CachedIssue> issues) {
+    if (key == null) {
+      return;
+    }
+    if (issues.isEmpty() && verdicts != null) {
+      verdicts.add(verdictKey(key));
+    } else {
+      next.put(key, Collections.unmodifiableList(new ArrayList<>(issues)));
+    }
+  }
+
+  /**
+   * First 128 bits of the SHA-256 of the cache key.
+   */
+  private static byte[] verdictKey(String key) {
+    try {
+      return Arrays.copyOf(MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8)), 16);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  /**
+   * Rule key followed by the values of the {@link RuleProperty} fields of the check: changing a
+   * parameter changes the key.
+   */
+  private static String ruleFingerprint(Object check) {
+    Class<?> checkClass = check.getClass();
+    Rule rule = checkClass.getAnnotation(Rule.class);
+    StringBuilder fingerprint = new StringBuilder(rule != null ? rule.key() : checkClass.getName());
+    for (Class<?> type = checkClass; type != null; type = type.getSuperclass()) {
+      for (Field field : type.getDeclaredFields()) {
+        if (field.isAnnotationPresent(RuleProperty.class)) {
+          try {
+            field.setAccessible(true);
+            fingerprint.append('|').append(field.getName()).append('=').append(field.get(check));
+          } catch (IllegalAccessException | RuntimeException e) {
+            throw new IllegalStateException("Cannot read rule property " + field, e);
+          }
+        }
+      }
+    }
+    return fingerprint.toString();
+  }
+
+  /**
+   * Version of the plugin followed by the hash of its jar, so that rebuilding the plugin without
+   * bumping its version still invalidates the cache.
+   */
+  public static String pluginVersion() {
+    String fingerprint = pluginFingerprint;
+    if (fingerprint == null) {
+      String version = CustomRulesPlugin.class.getPackage().getImplementationVersion();
+      fingerprint = (version != null ? version : "dev") + '|' + pluginJarHash();
+      pluginFingerprint = fingerprint;
+    }
+    return fingerprint;
+  }
+
+  private static String pluginJarHash() {
+    CodeSource codeSource = CustomRulesPlugin.class.getProtectionDomain().getCodeSource();
+    if (codeSource == null || codeSource.getLocation() == null) {
+      return "unknown";
+    }
+    try {
+      Path jar = Paths.get(codeSource.getLocation().toURI());
+      if (!Files.isRegularFile(jar)) {
+        // Classes directory during development: no stable fingerprint, never reuse the cache
+        return Long.toString(System.nanoTime());
+      }
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      byte[] buffer = new byte[8192];
+      try (InputStream in = Files.newInputStream(jar)) {
+        for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+          digest.update(buffer, 0, read);
+        }
+      }
+      return hex(digest.digest());
+    } catch (IOException | URISyntaxException | NoSuchAlgorithmException | RuntimeException e) {
+      return Long.toString(System.nanoTime());
+    }
+  }
+
+  private static String sha256(byte[] bytes) {
+    try {
+      return hex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  static String hex(byte[] bytes) {
+    char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[2 * i] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+      chars[2 * i + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+    }
+    return new String(chars);
+  }
+
+  private static final class HashedFile {
+    private Object file;
+    private String hash;
+  }
+}
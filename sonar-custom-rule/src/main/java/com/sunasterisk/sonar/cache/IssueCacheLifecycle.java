@@ -0,0 +1,74 @@
+package com.sunasterisk.sonar.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.Startable;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.config.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Loads the {@link IssueCache} before the sensors run the checks and writes it back at the end of
+ * the analysis.
+ *
+ * <p>The cache is off unless {@value IssueCache#CACHE_PROPERTY}=true. It is kept in
+ * {@value IssueCache#CACHE_PATH_PROPERTY}, e.g. a directory the CI keeps between analyses, or by
+ * default in the scanner user home ({@code sonar.userHome}, {@code ~/.sonar}), in
+ * {@code custom-rules/<project key>/issues.cache}. Not in the scanner working directory: the
+ * scanner empties it at the start of every analysis, so the cache would never be reused.</p>
+ */
+@ScannerSide
+public class IssueCacheLifecycle implements Startable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(IssueCacheLifecycle.class);
+
+  private static final String USER_HOME_PROPERTY = "sonar.userHome";
+  private static final String PROJECT_KEY_PROPERTY = "sonar.projectKey";
+
+  private final Configuration configuration;
+  private final FileSystem fileSystem;
+
+  public IssueCacheLifecycle(Configuration configuration, FileSystem fileSystem) {
+    this.configuration = configuration;
+    this.fileSystem = fileSystem;
+  }
+
+  @Override
+  public void start() {
+    if (!configuration.getBoolean(IssueCache.CACHE_PROPERTY).orElse(false)) {
+      IssueCache.install(null);
+      return;
+    }
+    Path file = configuration.get(IssueCache.CACHE_PATH_PROPERTY)
+      .map(Paths::get)
+      .orElseGet(this::defaultPath);
+    LOGGER.info("Custom rules cache: {}", file);
+    IssueCache.install(IssueCache.load(file, IssueCache.pluginVersion()));
+  }
+
+  private Path defaultPath() {
+    Path userHome = configuration.get(USER_HOME_PROPERTY)
+      .map(Paths::get)
+      .orElseGet(() -> Paths.get(System.getProperty("user.home"), ".sonar"));
+    // One cache per project, the key being usable as a directory name on every platform
+    String project = configuration.get(PROJECT_KEY_PROPERTY)
+      .orElseGet(() -> fileSystem.baseDir().getName())
+      .replaceAll("[^A-Za-z0-9._-]", "_");
+    return userHome.resolve("custom-rules").resolve(project).resolve("issues.cache");
+  }
+
+  @Override
+  public void stop() {
+    IssueCache cache = IssueCache.current();
+    IssueCache.install(null);
+    try {
+      cache.save();
+    } catch (IOException e) {
+      LOGGER.warn("Unable to write the custom rules cache: {}", e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package com.sunasterisk.sonar.cache;
+
+import org.sonar.plugins.java.api.JavaFileScannerContext;
+import org.sonar.plugins.java.api.location.Position;
+import org.sonar.plugins.java.api.tree.BaseTreeVisitor;
+import org.sonar.plugins.java.api.tree.SyntaxToken;
+import org.sonar.plugins.java.api.tree.Tree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the issues of a Java check for the {@link IssueCache} and replays them on an unchanged
+ * file, re-attached to the nodes they were reported on.
+ *
+ * <p>One instance per file being analyzed: {@link #start} at the beginning of the file tells whether
+ * the cached issues were replayed (then the check must not visit the file), {@link #record} keeps
+ * each issue the check reports otherwise, and {@link #finish} stores them.</p>
+ */
+public final class JavaIssueReplay {
+
+  private String key;
+  private List<CachedIssue> recorded;
+
+  /**
+   * Replays the cached issues of the file through {@code report}, if any.
+   *
+   * @return whether the issues were replayed
+   */
+  public boolean start(Object check, JavaFileScannerContext context, IssueReporter report) {
+    IssueCache cache = IssueCache.current();
+    key = cache.key(check, context.getTree(), context::getFileContent);
+    recorded = key != null ? new ArrayList<>() : null;
+    List<CachedIssue> cached = cache.get(key);
+    if (cached == null) {
+      return false;
+    }
+    List<Tree> anchors = new ArrayList<>(cached.size());
+    for (CachedIssue issue : cached) {
+      Tree anchor = find(context.getTree(), issue);
+      if (anchor == null) {
+        return false;
+      }
+      anchors.add(anchor);
+    }
+    for (int i = 0; i < cached.size(); i++) {
+      report.report(anchors.get(i), cached.get(i).message());
+    }
+    key = null;
+    return true;
+  }
+
+  public void record(Tree tree, String message) {
+    if (recorded != null) {
+      Position start = tree.firstToken().range().start();
+      Position end = tree.lastToken().range().end();
+      recorded.add(new CachedIssue(start.line(), start.column(), end.line(), end.column(), message));
+    }
+  }
+
+  public void finish() {
+    if (key != null) {
+      IssueCache.current().put(key, recorded);
+    }
+    key = null;
+    recorded = null;
+  }
+
+  /**
+   * Outermost node spanning exactly the range of the issue, or {@code null} if there is none.
+   */
+  private static Tree find(Tree root, CachedIssue issue) {
+    return new AnchorFinder(issue).find(root);
+  }
+
+  /**
+   * Only descends into the nodes containing the range of the issue, and stops at the first one
+   * spanning exactly that range. Tokens are not visited: an issue on a bare token is not replayed
+   * and the file is analyzed again.
+   */
+  private static final class AnchorFinder extends BaseTreeVisitor {
+    private final CachedIssue issue;
+    private Tree anchor;
+
+    private AnchorFinder(CachedIssue issue) {
+      this.issue = issue;
+    }
+
+    private Tree find(Tree root) {
+      scan(root);
+      return anchor;
+    }
+
+    @Override
+    protected void scan(Tree tree) {
+      if (tree == null || anchor != null) {
+        return;
+      }
+      SyntaxToken first = tree.firstToken();
+      SyntaxToken last = tree.lastToken();
+      if (first == null || last == null) {
+        return;
+      }
+      Position start = first.range().start();
+      Position end = last.range().end();
+      if (issue.isAt(start.line(), start.column(), end.line(), end.column())) {
+        anchor = tree;
+      } else if (issue.isWithin(start.line(), start.column(), end.line(), end.column())) {
+        super.scan(tree);
+      }
+    }
+  }
+
+  /**
+   * Reports a replayed issue, typically through {@code JavaFileScannerContext.reportIssue}.
+   */
+  public interface IssueReporter {
+    void report(Tree tree, String message);
+  }
+}
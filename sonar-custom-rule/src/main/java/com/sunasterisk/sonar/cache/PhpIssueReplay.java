@@ -0,0 +1,125 @@
+package com.sunasterisk.sonar.cache;
+
+import com.sunasterisk.sonar.tree.PhpTreeWalker;
+import com.sunasterisk.sonar.tree.SourceRange;
+import org.sonar.plugins.php.api.tree.Tree;
+import org.sonar.plugins.php.api.visitors.CheckContext;
+import org.sonar.plugins.php.api.visitors.IssueLocation;
+import org.sonar.plugins.php.api.visitors.PHPCheck;
+import org.sonar.plugins.php.api.visitors.PhpIssue;
+import org.sonar.plugins.php.api.visitors.PreciseIssue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Runs a PHP check through the {@link IssueCache}: an unchanged file gets the issues of the
+ * previous analysis, re-attached to the nodes they were reported on, without being visited.
+ */
+public final class PhpIssueReplay {
+
+  private PhpIssueReplay() {
+  }
+
+  /**
+   * @param analysis the actual analysis of the file by the check, run on a cache miss
+   */
+  public static List<PhpIssue> analyze(PHPCheck check, CheckContext context, Function<CheckContext, List<PhpIssue>> analysis) {
+    IssueCache cache = IssueCache.current();
+    String key = cache.key(check, context.tree(), context.getPhpFile()::contents);
+    List<CachedIssue> cached = cache.get(key);
+    if (cached != null) {
+      List<Tree> anchors = anchors(context.tree(), cached);
+      if (anchors != null) {
+        for (int i = 0; i < cached.size(); i++) {
+          context.newIssue(check, anchors.get(i), cached.get(i).message());
+        }
+        return context.getIssues();
+      }
+    }
+    List<PhpIssue> issues = analysis.apply(context);
+    List<CachedIssue> cacheable = toCachedIssues(issues);
+    if (cacheable != null) {
+      cache.put(key, cacheable);
+    }
+    return issues;
+  }
+
+  /**
+   * The cached issues, or {@code null} if one of them cannot be replayed by
+   * {@link CheckContext#newIssue(PHPCheck, Tree, String)} alone.
+   */
+  private static List<CachedIssue> toCachedIssues(List<PhpIssue> issues) {
+    List<CachedIssue> cached = new ArrayList<>(issues.size());
+    for (PhpIssue issue : issues) {
+      if (!(issue instanceof PreciseIssue)) {
+        return null;
+      }
+      PreciseIssue preciseIssue = (PreciseIssue) issue;
+      if (preciseIssue.cost() != null || !preciseIssue.secondaryLocations().isEmpty()) {
+        return null;
+      }
+      IssueLocation location = preciseIssue.primaryLocation();
+      cached.add(new CachedIssue(location.startLine(), location.startLineOffset(),
+        location.endLine(), location.endLineOffset(), location.message()));
+    }
+    return cached;
+  }
+
+  /**
+   * Node of each cached issue, or {@code null} if one of them is not found.
+   */
+  private static List<Tree> anchors(Tree root, List<CachedIssue> issues) {
+    List<Tree> anchors = new ArrayList<>(issues.size());
+    for (CachedIssue issue : issues) {
+      Tree anchor = find(root, issue);
+      if (anchor == null) {
+        return null;
+      }
+      anchors.add(anchor);
+    }
+    return anchors;
+  }
+
+  /**
+   * Outermost node spanning exactly the range of the issue, or {@code null} if there is none.
+   */
+  private static Tree find(Tree root, CachedIssue issue) {
+    return new AnchorFinder(issue).find(root);
+  }
+
+  /**
+   * Only descends into the nodes containing the range of the issue, and stops at the first one
+   * spanning exactly that range.
+   */
+  private static final class AnchorFinder extends PhpTreeWalker {
+    private final CachedIssue issue;
+    private Tree anchor;
+
+    private AnchorFinder(CachedIssue issue) {
+      this.issue = issue;
+    }
+
+    private Tree find(Tree root) {
+      walk(root);
+      return anchor;
+    }
+
+    @Override
+    protected boolean enter(Tree tree) {
+      if (anchor != null) {
+        return false;
+      }
+      SourceRange range = SourceRange.of(tree);
+      if (range == null) {
+        return false;
+      }
+      if (issue.isAt(range.line(), range.column(), range.endLine(), range.endColumn())) {
+        anchor = tree;
+        return false;
+      }
+      return issue.isWithin(range.line(), range.column(), range.endLine(), range.endColumn());
+    }
+  }
+}
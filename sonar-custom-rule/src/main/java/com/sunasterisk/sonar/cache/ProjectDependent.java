@@ -0,0 +1,11 @@
+package com.sunasterisk.sonar.cache;
+
+/**
+ * Check whose issues on a file also depend on other files of the project, such as the models
+ * indexed before the analysis. The fingerprint is part of the {@link IssueCache} key, so cached
+ * issues are only replayed while it stays the same.
+ */
+public interface ProjectDependent {
+
+  String projectFingerprint();
+}
@@ -0,0 +1,432 @@
+package com.sunasterisk.sonar.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Set of 128-bit keys, each standing for a (file content, rule) pair on which the rule found
+ * nothing, kept on disk between analyses without being deserialized.
+ *
+ * <p>Two files, both starting with a header holding the plugin version:</p>
+ * <ul>
+ *   <li>{@code verdicts.<generation>.idx}: the number of the last analysis, then the keys sorted as
+ *   unsigned 128-bit integers, each with the number of the last analysis that looked it up. The
+ *   file is memory-mapped and binary-searched in place, so opening the store costs the same for ten
+ *   or a million keys and its content stays out of the heap;</li>
+ *   <li>{@value #LOG_FILE}: an append-only log of the keys added since the last compaction, with
+ *   the analysis that added or last used them, loaded in memory at startup.</li>
+ * </ul>
+ *
+ * <p>On {@link #close()}, the analysis numbers of the keys used are updated in the index, and the
+ * keys added and the keys of the log used are appended to the log with the number of this
+ * analysis. A key unused for {@value #MAX_UNUSED_ANALYSES} analyses, such as the files of another
+ * branch or the old content of a modified file, ages out. When the records of the log and the
+ * aged-out keys reach a quarter of the index, the other keys are merged into the index of the next
+ * generation and the log is emptied. A mapped file cannot be replaced on every platform, so an index
+ * is never overwritten: older generations are deleted when the store is next opened.</p>
+ *
+ * <p>Lookups and additions are thread-safe.</p>
+ */
+public final class VerdictStore {
+
+  static final String INDEX_PREFIX = "verdicts.";
+  static final String INDEX_SUFFIX = ".idx";
+  static final String LOG_FILE = "verdicts.log";
+  static final int MAX_UNUSED_ANALYSES = 10;
+
+  private static final int MAGIC = 0x43525653;
+  private static final int FORMAT_VERSION = 2;
+  private static final int KEY_BYTES = 16;
+  // A key and the number of the last analysis that used it
+  private static final int ENTRY_BYTES = KEY_BYTES + Integer.BYTES;
+
+  private final Path directory;
+  private final String pluginVersion;
+  // Null when there is no index yet
+  private final Path indexFile;
+  private final long generation;
+  // Number of this analysis, one more than the last one recorded in the index
+  private final int analysis;
+
+  // Sorted entries of the index file, from indexStart
+  private final ByteBuffer index;
+  private final int indexStart;
+  private final int indexSize;
+  // Index entries used by this analysis, one bit per entry
+  private final AtomicLongArray indexHits;
+
+  // Keys of the log and the analysis that added them, only read once loaded
+  private final Map<Key, Integer> log;
+  // Records of the log file, a key used by several analyses having several records
+  private final int logRecords;
+  private final Set<Key> logHits = ConcurrentHashMap.newKeySet();
+  private final Set<Key> added = ConcurrentHashMap.newKeySet();
+
+  private VerdictStore(Path directory, String pluginVersion, Path indexFile, ByteBuffer index, int indexStart,
+    int lastAnalysis, Map<Key, Integer> log, int logRecords) {
+    this.directory = directory;
+    this.pluginVersion = pluginVersion;
+    this.indexFile = indexFile;
+    this.generation = indexFile == null ? 0L : generation(indexFile);
+    this.analysis = lastAnalysis + 1;
+    this.index = index;
+    this.indexStart = indexStart;
+    this.indexSize = (index.limit() - indexStart) / ENTRY_BYTES;
+    this.indexHits = new AtomicLongArray((indexSize + 63) / 64);
+    this.log = log;
+    this.logRecords = logRecords;
+  }
+
+  /**
+   * Opens the store of the directory. Files written by another plugin version, or unreadable, are ignored.
+   */
+  public static VerdictStore open(Path directory, String pluginVersion) throws IOException {
+    Files.createDirectories(directory);
+    byte[] header = header(pluginVersion);
+
+    ByteBuffer index = ByteBuffer.allocate(0);
+    int indexStart = 0;
+    int lastAnalysis = 0;
+    Path indexFile = latestIndex(directory);
+    if (indexFile != null && hasHeader(indexFile, header)) {
+      try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        long size = channel.size();
+        if (size <= Integer.MAX_VALUE && size >= header.length + Integer.BYTES
+          && (size - header.length - Integer.BYTES) % ENTRY_BYTES == 0) {
+          // Writable so that close() updates the analysis numbers in place
+          MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+          lastAnalysis = mapped.getInt(header.length);
+          index = mapped;
+          indexStart = header.length + Integer.BYTES;
+        }
+      }
+    }
+
+    Map<Key, Integer> log = new HashMap<>();
+    int logRecords = 0;
+    Path logFile = directory.resolve(LOG_FILE);
+    if (hasHeader(logFile, header)) {
+      ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(logFile));
+      bytes.position(header.length);
+      // A partially written last record is dropped
+      while (bytes.remaining() >= ENTRY_BYTES) {
+        log.merge(new Key(bytes.getLong(), bytes.getLong()), bytes.getInt(), Math::max);
+        logRecords++;
+      }
+    }
+    return new VerdictStore(directory, pluginVersion, indexFile, index, indexStart, lastAnalysis, log, logRecords);
+  }
+
+  public int size() {
+    return indexSize + log.size() + added.size();
+  }
+
+  public boolean contains(byte[] key) {
+    return contains(Key.of(key));
+  }
+
+  public void add(byte[] key) {
+    Key k = Key.of(key);
+    if (!contains(k)) {
+      added.add(k);
+    }
+  }
+
+  private boolean contains(Key key) {
+    int position = search(key.high, key.low);
+    if (position >= 0) {
+      setHit(position);
+      return true;
+    }
+    if (log.containsKey(key)) {
+      logHits.add(key);
+      return true;
+    }
+    return added.contains(key);
+  }
+
+  private int search(long high, long low) {
+    int from = 0;
+    int to = indexSize - 1;
+    while (from <= to) {
+      int middle = (from + to) >>> 1;
+      int offset = indexStart + middle * ENTRY_BYTES;
+      int comparison = compare(index.getLong(offset), index.getLong(offset + 8), high, low);
+      if (comparison < 0) {
+        from = middle + 1;
+      } else if (comparison > 0) {
+        to = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -1;
+  }
+
+  private void setHit(int position) {
+    int word = position >>> 6;
+    long bit = 1L << position;
+    long bits = indexHits.get(word);
+    while ((bits & bit) == 0 && !indexHits.compareAndSet(word, bits, bits | bit)) {
+      bits = indexHits.get(word);
+    }
+  }
+
+  private boolean isHit(int position) {
+    return (indexHits.get(position >>> 6) & (1L << position)) != 0;
+  }
+
+  // Last analysis that used the index entry, this one included
+  private int lastUsed(int position) {
+    return isHit(position) ? analysis : index.getInt(indexStart + position * ENTRY_BYTES + KEY_BYTES);
+  }
+
+  private int lastUsed(Key logged) {
+    return logHits.contains(logged) ? analysis : log.get(logged);
+  }
+
+  private boolean isExpired(int lastUsed) {
+    return analysis - lastUsed > MAX_UNUSED_ANALYSES;
+  }
+
+  /**
+   * Persists the keys used and added by this analysis, compacting the store when worth it.
+   */
+  public void close() throws IOException {
+    int expired = 0;
+    for (int i = 0; i < indexSize; i++) {
+      if (isExpired(lastUsed(i))) {
+        expired++;
+      }
+    }
+    for (Key logged : log.keySet()) {
+      if (isExpired(lastUsed(logged))) {
+        expired++;
+      }
+    }
+    if (indexSize == 0 || logRecords + logHits.size() + added.size() + expired > indexSize / 4) {
+      compact();
+    } else {
+      markUsed();
+      if (!logHits.isEmpty() || !added.isEmpty()) {
+        append();
+      }
+    }
+  }
+
+  /**
+   * Records the number of this analysis in the index, for itself and the keys it used.
+   */
+  private void markUsed() {
+    for (int i = 0; i < indexSize; i++) {
+      if (isHit(i)) {
+        index.putInt(indexStart + i * ENTRY_BYTES + KEY_BYTES, analysis);
+      }
+    }
+    index.putInt(indexStart - Integer.BYTES, analysis);
+  }
+
+  /**
+   * Writes the keys that have not aged out as the index of the next generation and empties the log.
+   */
+  private void compact() throws IOException {
+    List<Entry> entries = new ArrayList<>(indexSize + log.size() + added.size());
+    for (int i = 0; i < indexSize; i++) {
+      int lastUsed = lastUsed(i);
+      if (!isExpired(lastUsed)) {
+        int offset = indexStart + i * ENTRY_BYTES;
+        entries.add(new Entry(new Key(index.getLong(offset), index.getLong(offset + 8)), lastUsed));
+      }
+    }
+    for (Key logged : log.keySet()) {
+      int lastUsed = lastUsed(logged);
+      if (!isExpired(lastUsed)) {
+        entries.add(new Entry(logged, lastUsed));
+      }
+    }
+    for (Key key : added) {
+      entries.add(new Entry(key, analysis));
+    }
+    entries.sort(Comparator.comparing((Entry entry) -> entry.key, VerdictStore::compare));
+
+    byte[] header = header(pluginVersion);
+    ByteBuffer content = ByteBuffer.allocate(header.length + Integer.BYTES + entries.size() * ENTRY_BYTES);
+    content.put(header).putInt(analysis);
+    for (int i = 0; i < entries.size(); i++) {
+      Entry entry = entries.get(i);
+      int lastUsed = entry.lastUsed;
+      // A key of the log may already be in the index when a compaction was interrupted
+      while (i + 1 < entries.size() && compare(entries.get(i + 1).key, entry.key) == 0) {
+        lastUsed = Math.max(lastUsed, entries.get(++i).lastUsed);
+      }
+      content.putLong(entry.key.high).putLong(entry.key.low).putInt(lastUsed);
+    }
+    content.flip();
+    replace(directory.resolve(INDEX_PREFIX + (generation + 1) + INDEX_SUFFIX), content);
+    replace(directory.resolve(LOG_FILE), ByteBuffer.wrap(header));
+    if (indexFile != null) {
+      // Fails where a mapped file cannot be deleted, open() deletes it next time
+      deleteQuietly(indexFile);
+    }
+  }
+
+  private void append() throws IOException {
+    Path logFile = directory.resolve(LOG_FILE);
+    byte[] header = header(pluginVersion);
+    // A key used again gets a new record, open() keeping its highest analysis
+    ByteBuffer records = ByteBuffer.allocate((logHits.size() + added.size()) * ENTRY_BYTES);
+    for (Key key : logHits) {
+      records.putLong(key.high).putLong(key.low).putInt(analysis);
+    }
+    for (Key key : added) {
+      records.putLong(key.high).putLong(key.low).putInt(analysis);
+    }
+    records.flip();
+    if (!hasHeader(logFile, header)) {
+      replace(logFile, ByteBuffer.wrap(header));
+    }
+    try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+      while (records.hasRemaining()) {
+        channel.write(records);
+      }
+    }
+  }
+
+  /**
+   * Index of the highest generation in the directory, deleting the older ones.
+   */
+  private static Path latestIndex(Path directory) throws IOException {
+    List<Path> indexes = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, INDEX_PREFIX + "*" + INDEX_SUFFIX)) {
+      for (Path file : files) {
+        if (generation(file) >= 0) {
+          indexes.add(file);
+        }
+      }
+    }
+    if (indexes.isEmpty()) {
+      return null;
+    }
+    indexes.sort(Comparator.comparingLong(VerdictStore::generation));
+    for (int i = 0; i < indexes.size() - 1; i++) {
+      deleteQuietly(indexes.get(i));
+    }
+    return indexes.get(indexes.size() - 1);
+  }
+
+  private static long generation(Path indexFile) {
+    String name = indexFile.getFileName().toString();
+    try {
+      return Long.parseLong(name.substring(INDEX_PREFIX.length(), name.length() - INDEX_SUFFIX.length()));
+    } catch (NumberFormatException | IndexOutOfBoundsException e) {
+      return -1L;
+    }
+  }
+
+  private static void deleteQuietly(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      // Still mapped by a running analysis: deleted by a later one
+    }
+  }
+
+  /**
+   * Writes the file through a temporary one, so that it is either absent, or old, or complete.
+   * Never called on a mapped file.
+   */
+  private static void replace(Path file, ByteBuffer content) throws IOException {
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+      StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (content.hasRemaining()) {
+        channel.write(content);
+      }
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static byte[] header(String pluginVersion) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeUTF(pluginVersion);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static boolean hasHeader(Path file, byte[] header) throws IOException {
+    if (!Files.isRegularFile(file) || Files.size(file) < header.length) {
+      return false;
+    }
+    byte[] actual = new byte[header.length];
+    try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+      in.readFully(actual);
+    }
+    return Arrays.equals(actual, header);
+  }
+
+  private static int compare(Key a, Key b) {
+    return compare(a.high, a.low, b.high, b.low);
+  }
+
+  private static int compare(long high1, long low1, long high2, long low2) {
+    int comparison = Long.compareUnsigned(high1, high2);
+    return comparison != 0 ? comparison : Long.compareUnsigned(low1, low2);
+  }
+
+  private static final class Key {
+    private final long high;
+    private final long low;
+
+    Key(long high, long low) {
+      this.high = high;
+      this.low = low;
+    }
+
+    static Key of(byte[] bytes) {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      return new Key(buffer.getLong(), buffer.getLong());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key && ((Key) o).high == high && ((Key) o).low == low;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(high * 31 + low);
+    }
+  }
+
+  private static final class Entry {
+    private final Key key;
+    private final int lastUsed;
+
+    Entry(Key key, int lastUsed) {
+      this.key = key;
+      this.lastUsed = lastUsed;
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package com.sunasterisk.sonar.dataflow;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Intraprocedural def-use state of a check: which local variables currently hold a value coming
+ * from a source the check cares about, function by function.
+ *
+ * <p>The check feeds it the assignments of the function in source order and updates a variable
+ * each time it is assigned (strong update, branches are not distinguished), so tracking costs
+ * one map operation per assignment and the whole file is handled in linear time. Each variable
+ * is mapped to a label chosen by the check, typically the name of the source it comes from.</p>
+ *
+ * <p>Memory is bounded: at most {@link #MAX_VARIABLES} variables are tracked per function and
+ * further variables are ignored, and functions without any tainted variable allocate nothing.
+ * Instances are not thread-safe and are meant to be owned by one check.</p>
+ */
+public final class LocalTaint {
+
+  public static final int MAX_VARIABLES = 64;
+
+  // Untainted value shadowing a tainted variable of the enclosing function
+  private static final String CLEAN = new String("");
+
+  private final Deque<Scope> scopes = new ArrayDeque<>();
+
+  /**
+   * Starts a function body.
+   *
+   * @param inheritsEnclosing whether variables of the enclosing function can be read from this
+   *                          one, as in PHP closures and arrow functions
+   */
+  public void enterFunction(boolean inheritsEnclosing) {
+    scopes.push(new Scope(inheritsEnclosing ? scopes.peek() : null));
+  }
+
+  public void leaveFunction() {
+    scopes.pop();
+  }
+
+  public void clear() {
+    scopes.clear();
+  }
+
+  /**
+   * Label of the value held by the variable, or {@code null} when it is not tainted.
+   */
+  public String sourceOf(String variable) {
+    for (Scope scope = scopes.peek(); scope != null; scope = scope.enclosing) {
+      String source = scope.get(variable);
+      if (source != null) {
+        return source == CLEAN ? null : source;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Records an assignment, {@code null} meaning the variable now holds an untainted value.
+   */
+  public void define(String variable, String source) {
+    Scope scope = scopes.peek();
+    if (scope == null) {
+      return;
+    }
+    if (source == null) {
+      if (scope.enclosing != null && sourceOf(variable) != null) {
+        scope.put(variable, CLEAN);
+      } else {
+        scope.remove(variable);
+      }
+    } else {
+      scope.put(variable, source);
+    }
+  }
+
+  /**
+   * Records a compound assignment such as {@code $a += $b}: the variable stays tainted if it was.
+   */
+  public void merge(String variable, String source) {
+    if (source != null && sourceOf(variable) == null) {
+      define(variable, source);
+    }
+  }
+
+  private static final class Scope {
+    private final Scope enclosing;
+    // Created on the first tainted variable, most functions never need it
+    private Map<String, String> sources;
+
+    Scope(Scope enclosing) {
+      this.enclosing = enclosing;
+    }
+
+    String get(String variable) {
+      return sources == null ? null : sources.get(variable);
+    }
+
+    void put(String variable, String source) {
+      if (sources == null) {
+        sources = new HashMap<>();
+      }
+      if (sources.size() < MAX_VARIABLES || sources.containsKey(variable)) {
+        sources.put(variable, source);
+      }
+    }
+
+    void remove(String variable) {
+      if (sources != null) {
+        sources.remove(variable);
+      }
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package com.sunasterisk.sonar.instrumentation;
+
+import org.sonar.api.Startable;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.config.Configuration;
+
+/**
+ * Reads the tracing and metrics properties of the scanner and applies them to {@link RuleTracer}
+ * and {@link RuleMetrics} before the sensors run the checks.
+ */
+@ScannerSide
+public class InstrumentationConfiguration implements Startable {
+
+  private final Configuration configuration;
+
+  public InstrumentationConfiguration(Configuration configuration) {
+    this.configuration = configuration;
+  }
+
+  @Override
+  public void start() {
+    RuleTracer.configure(
+      configuration.getBoolean(RuleTracer.TRACE_PROPERTY).orElse(false),
+      configuration.getInt(RuleTracer.SAMPLE_RATE_PROPERTY).orElse(1));
+    RuleMetrics.configure(
+      configuration.getBoolean(RuleMetrics.METRICS_PROPERTY).orElse(false),
+      configuration.getInt(RuleMetrics.SAMPLE_RATE_PROPERTY).orElse(RuleMetrics.DEFAULT_SAMPLE_RATE),
+      configuration.getInt(RuleMetrics.TOP_FILES_PROPERTY).orElse(RuleMetrics.DEFAULT_TOP_FILES));
+  }
+
+  @Override
+  public void stop() {
+    RuleTracer.configure(false, 1);
+  }
+}
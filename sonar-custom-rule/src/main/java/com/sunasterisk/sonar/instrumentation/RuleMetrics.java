@@ -0,0 +1,245 @@
+package com.sunasterisk.sonar.instrumentation;
+
+import org.sonar.check.Rule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Time and node counts of one custom rule, per file and for the whole scan, reported at the end of
+ * the analysis by {@link RuleMetricsReport}.
+ *
+ * <p>Off unless {@value #METRICS_PROPERTY} is true. When on, nodes are counted in a plain per-thread
+ * field, only one node out of 16 ({@value #SAMPLE_RATE_PROPERTY}) is timed with
+ * {@link System#nanoTime()} (its time is then multiplied by the rate), and the per-file figures are
+ * added to striped {@link LongAdder} counters once per file. Checks call it like this:</p>
+ * <pre>
+ * long start = METRICS.enterNode();
+ * ...
+ * METRICS.exitNode(start);
+ * </pre>
+ * <p>between {@link #startFile(Object)} and {@link #endFile()}.</p>
+ */
+public final class RuleMetrics {
+
+  public static final String METRICS_PROPERTY = "sonar.customRules.metrics";
+  public static final String SAMPLE_RATE_PROPERTY = "sonar.customRules.metrics.sampleRate";
+  public static final String TOP_FILES_PROPERTY = "sonar.customRules.metrics.topFiles";
+
+  static final int DEFAULT_SAMPLE_RATE = 16;
+  static final int DEFAULT_TOP_FILES = 10;
+
+  private static final long NOT_SAMPLED = 0L;
+
+  private static final ConcurrentMap<String, RuleMetrics> RULES = new ConcurrentHashMap<>();
+  private static final SlowestFiles SLOWEST_FILES = new SlowestFiles();
+
+  private static volatile boolean enabled = Boolean.getBoolean(METRICS_PROPERTY);
+  private static volatile int sampleRate = Math.max(1, Integer.getInteger(SAMPLE_RATE_PROPERTY, DEFAULT_SAMPLE_RATE));
+
+  private final String ruleKey;
+  private final LongAdder files = new LongAdder();
+  private final LongAdder nodes = new LongAdder();
+  private final LongAdder nanos = new LongAdder();
+  private final ThreadLocal<FileStats> currentFile = ThreadLocal.withInitial(FileStats::new);
+
+  private RuleMetrics(String ruleKey) {
+    this.ruleKey = ruleKey;
+  }
+
+  /**
+   * Metrics of the rule implemented by the given check, keyed by its {@link Rule#key()}.
+   */
+  public static RuleMetrics forCheck(Class<?> checkClass) {
+    Rule rule = checkClass.getAnnotation(Rule.class);
+    String ruleKey = rule != null && !rule.key().isEmpty() ? rule.key() : checkClass.getSimpleName();
+    return RULES.computeIfAbsent(ruleKey, RuleMetrics::new);
+  }
+
+  /**
+   * Applies the scanner configuration and forgets the figures of a previous analysis,
+   * see {@link InstrumentationConfiguration}.
+   */
+  public static void configure(boolean metricsEnabled, int metricsSampleRate, int topFiles) {
+    for (RuleMetrics metrics : RULES.values()) {
+      metrics.files.reset();
+      metrics.nodes.reset();
+      metrics.nanos.reset();
+    }
+    SLOWEST_FILES.reset(Math.max(0, topFiles));
+    sampleRate = Math.max(1, metricsSampleRate);
+    enabled = metricsEnabled;
+  }
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  public static List<RuleMetrics> rules() {
+    List<RuleMetrics> rules = new ArrayList<>(RULES.values());
+    rules.sort(Comparator.comparingLong(RuleMetrics::nanos).reversed());
+    return rules;
+  }
+
+  /**
+   * Slowest (file, rule) pairs of the analysis, slowest first.
+   */
+  public static List<FileTiming> slowestFiles() {
+    return SLOWEST_FILES.snapshot();
+  }
+
+  public void startFile(Object file) {
+    if (!enabled) {
+      return;
+    }
+    FileStats stats = currentFile.get();
+    stats.file = file;
+    stats.nodes = 0;
+    stats.nanos = 0;
+  }
+
+  /**
+   * Counts one visited node and returns the start time if this node is sampled for timing.
+   */
+  public long enterNode() {
+    if (!enabled) {
+      return NOT_SAMPLED;
+    }
+    FileStats stats = currentFile.get();
+    stats.nodes++;
+    int rate = sampleRate;
+    if (rate > 1 && (stats.nodes - 1) % rate != 0) {
+      return NOT_SAMPLED;
+    }
+    stats.rate = rate;
+    return System.nanoTime();
+  }
+
+  public void exitNode(long start) {
+    if (start == NOT_SAMPLED) {
+      return;
+    }
+    FileStats stats = currentFile.get();
+    stats.nanos += (System.nanoTime() - start) * stats.rate;
+  }
+
+  public void endFile() {
+    if (!enabled) {
+      return;
+    }
+    FileStats stats = currentFile.get();
+    if (stats.file == null) {
+      return;
+    }
+    files.increment();
+    nodes.add(stats.nodes);
+    nanos.add(stats.nanos);
+    SLOWEST_FILES.offer(stats.file, ruleKey, stats.nodes, stats.nanos);
+    stats.file = null;
+  }
+
+  public String ruleKey() {
+    return ruleKey;
+  }
+
+  public long files() {
+    return files.sum();
+  }
+
+  public long nodes() {
+    return nodes.sum();
+  }
+
+  /**
+   * Estimated time spent in the rule, in nanoseconds.
+   */
+  public long nanos() {
+    return nanos.sum();
+  }
+
+  private static final class FileStats {
+    private Object file;
+    private long nodes;
+    private long nanos;
+    private int rate = 1;
+  }
+
+  /**
+   * Time spent by one rule on one file.
+   */
+  public static final class FileTiming {
+    private final String file;
+    private final String ruleKey;
+    private final long nodes;
+    private final long nanos;
+
+    FileTiming(String file, String ruleKey, long nodes, long nanos) {
+      this.file = file;
+      this.ruleKey = ruleKey;
+      this.nodes = nodes;
+      this.nanos = nanos;
+    }
+
+    public String file() {
+      return file;
+    }
+
+    public String ruleKey() {
+      return ruleKey;
+    }
+
+    public long nodes() {
+      return nodes;
+    }
+
+    public long nanos() {
+      return nanos;
+    }
+  }
+
+  /**
+   * Bounded min-heap of the slowest files. Most files are faster than the current threshold and
+   * are rejected with a single volatile read, without taking the lock.
+   */
+  private static final class SlowestFiles {
+    private final PriorityQueue<FileTiming> heap = new PriorityQueue<>(Comparator.comparingLong(FileTiming::nanos));
+    private int capacity = DEFAULT_TOP_FILES;
+    private volatile long threshold = -1L;
+
+    void offer(Object file, String ruleKey, long nodes, long nanos) {
+      if (nanos <= threshold) {
+        return;
+      }
+      synchronized (this) {
+        if (capacity == 0) {
+          return;
+        }
+        heap.add(new FileTiming(String.valueOf(file), ruleKey, nodes, nanos));
+        if (heap.size() > capacity) {
+          heap.poll();
+        }
+        if (heap.size() == capacity) {
+          threshold = heap.peek().nanos();
+        }
+      }
+    }
+
+    synchronized void reset(int newCapacity) {
+      heap.clear();
+      capacity = newCapacity;
+      threshold = newCapacity == 0 ? Long.MAX_VALUE : -1L;
+    }
+
+    synchronized List<FileTiming> snapshot() {
+      List<FileTiming> files = new ArrayList<>(heap);
+      files.sort(Comparator.comparingLong(FileTiming::nanos).reversed());
+      return Collections.unmodifiableList(files);
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package com.sunasterisk.sonar.instrumentation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.postjob.PostJob;
+import org.sonar.api.batch.postjob.PostJobContext;
+import org.sonar.api.batch.postjob.PostJobDescriptor;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Logs the totals of each custom rule and the slowest files at the end of the analysis.
+ */
+public class RuleMetricsReport implements PostJob {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RuleMetricsReport.class);
+
+  @Override
+  public void describe(PostJobDescriptor descriptor) {
+    descriptor.name("Custom rules performance report");
+  }
+
+  @Override
+  public void execute(PostJobContext context) {
+    if (!RuleMetrics.isEnabled()) {
+      return;
+    }
+    List<RuleMetrics> rules = RuleMetrics.rules();
+    if (rules.stream().allMatch(rule -> rule.files() == 0)) {
+      return;
+    }
+
+    LOGGER.info("Custom rules: time per rule (estimated from sampled timings)");
+    for (RuleMetrics rule : rules) {
+      if (rule.files() > 0) {
+        LOGGER.info("  {}: {} ms, {} files, {} nodes", rule.ruleKey(), millis(rule.nanos()), rule.files(), rule.nodes());
+      }
+    }
+
+    List<RuleMetrics.FileTiming> slowestFiles = RuleMetrics.slowestFiles();
+    if (!slowestFiles.isEmpty()) {
+      LOGGER.info("Custom rules: {} slowest files", slowestFiles.size());
+      for (RuleMetrics.FileTiming file : slowestFiles) {
+        LOGGER.info("  {} ms {} [{}], {} nodes", millis(file.nanos()), file.file(), file.ruleKey(), file.nodes());
+      }
+    }
+  }
+
+  private static String millis(long nanos) {
+    return String.format(Locale.ROOT, "%.1f", nanos / 1_000_000.0);
+  }
+}
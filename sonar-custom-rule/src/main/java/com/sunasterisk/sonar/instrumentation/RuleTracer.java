@@ -0,0 +1,77 @@
+package com.sunasterisk.sonar.instrumentation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Debug tracing for the custom checks, off by default.
+ *
+ * <p>Turn it on with {@value #TRACE_PROPERTY}=true and optionally keep only one event out of
+ * {@value #SAMPLE_RATE_PROPERTY} per thread. Traces are logged at DEBUG level, so the scanner must
+ * also run in verbose mode ({@code -X} or {@code sonar.verbose=true}).</p>
+ *
+ * <p>Call sites guard each trace with {@link #sample()}:</p>
+ * <pre>
+ * if (TRACER.sample()) {
+ *   TRACER.trace("Method name: {}", methodName);
+ * }
+ * </pre>
+ * <p>so that when tracing is disabled nothing is computed, formatted or allocated: the whole cost is
+ * one volatile read.</p>
+ */
+public final class RuleTracer {
+
+  public static final String TRACE_PROPERTY = "sonar.customRules.trace";
+  public static final String SAMPLE_RATE_PROPERTY = "sonar.customRules.trace.sampleRate";
+
+  private static volatile boolean enabled = Boolean.getBoolean(TRACE_PROPERTY);
+  private static volatile int sampleRate = Math.max(1, Integer.getInteger(SAMPLE_RATE_PROPERTY, 1));
+
+  private static final ThreadLocal<int[]> EVENTS = ThreadLocal.withInitial(() -> new int[1]);
+
+  private final Logger logger;
+
+  private RuleTracer(Logger logger) {
+    this.logger = logger;
+  }
+
+  public static RuleTracer forCheck(Class<?> checkClass) {
+    return new RuleTracer(LoggerFactory.getLogger(checkClass));
+  }
+
+  /**
+   * Applies the scanner configuration, see {@link InstrumentationConfiguration}.
+   */
+  public static void configure(boolean traceEnabled, int traceSampleRate) {
+    sampleRate = Math.max(1, traceSampleRate);
+    enabled = traceEnabled;
+  }
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Whether the current event should be traced: tracing is enabled and the event is selected by sampling.
+   */
+  public boolean sample() {
+    if (!enabled) {
+      return false;
+    }
+    int rate = sampleRate;
+    if (rate == 1) {
+      return true;
+    }
+    int[] events = EVENTS.get();
+    events[0]++;
+    if (events[0] >= rate) {
+      events[0] = 0;
+      return true;
+    }
+    return false;
+  }
+
+  public void trace(String format, Object... arguments) {
+    logger.debug(format, arguments);
+  }
+}
@@ -0,0 +1,368 @@
+package com.sunasterisk.sonar.laravel;
+
+/**
+ * Streaming tokenizer of Blade templates: follows the HTML elements of the template, enough to
+ * know whether a point is inside an {@code <svg>} element, and reports the unescaped Blade outputs
+ * ({@code {!! ... !!}}) to a {@link Listener}.
+ *
+ * <p>The PHP parser splits a template into inline HTML nodes around the PHP blocks, so the text is
+ * fed chunk by chunk, in document order, and the state carries over from one chunk to the next: a
+ * {@code <?php echo ?>} between two chunks can ask {@link #inSvg()} for its own context, and a
+ * Blade output or comment left open by a chunk goes on in the next one. Each character is looked at
+ * once, element names are compared in place, nothing is copied, except in the rare chunks ending
+ * in the middle of a Blade delimiter or of a {@code {!! ... !!}} output.</p>
+ *
+ * <p>One instance per file: scanners are not thread-safe.</p>
+ */
+public final class BladeTemplateScanner {
+
+  /**
+   * Receives the unescaped outputs found by {@link #scan(CharSequence, Listener)}.
+   */
+  public interface Listener {
+
+    /**
+     * The expression of a {@code {!! ... !!}} output is {@code chunk[from, to)}. The state of the
+     * scanner, e.g. {@link #inSvg()}, is the one at the output.
+     */
+    void rawOutput(CharSequence chunk, int from, int to);
+  }
+
+  private enum Mode {
+    TEXT,
+    // Between the name and the '>' of a start or end tag
+    TAG,
+    // Contents of <script> and <style>, only ended by their end tag
+    RAW_TEXT,
+    HTML_COMMENT,
+    // Blade constructs, which may span chunks: {{-- --}}, {{ }} and {!! !!}
+    BLADE_COMMENT,
+    ESCAPED_OUTPUT,
+    RAW_OUTPUT
+  }
+
+  private enum Element {
+    SVG,
+    // Elements running or embedding active content in an SVG image
+    DANGEROUS,
+    SCRIPT,
+    STYLE,
+    OTHER
+  }
+
+  private static final String SVG_DATA = "image/svg+xml";
+  private static final String RAW_OUTPUT_START = "{!!";
+  private static final String RAW_OUTPUT_END = "!!}";
+  private static final String ESCAPED_OUTPUT_START = "{{";
+  private static final String ESCAPED_OUTPUT_END = "}}";
+  private static final String BLADE_COMMENT_START = "{{--";
+  private static final String BLADE_COMMENT_END = "--}}";
+  private static final String HTML_COMMENT_END = "-->";
+
+  private Mode mode = Mode.TEXT;
+  // Mode a Blade construct returns to when it ends
+  private Mode outer = Mode.TEXT;
+  private Element tag = Element.OTHER;
+  private boolean endTag;
+  private boolean tagHasSvgData;
+  private char quote;
+  private char previous;
+  private Element rawTextElement;
+  private int svgDepth;
+  private int dangerousDepth;
+  // End of the last chunk that may start a delimiter, scanned again with the next chunk
+  private String carry;
+  // Start of a raw output expression that spans chunks
+  private StringBuilder pendingOutput;
+
+  /**
+   * Whether the last scanned point is in an {@code <svg>} element, in the start tag of one, or in
+   * a tag embedding an SVG image ({@code image/svg+xml} data URI).
+   */
+  public boolean inSvg() {
+    return svgDepth > 0 || (mode == Mode.TAG && !endTag && (tag == Element.SVG || tagHasSvgData));
+  }
+
+  /**
+   * Whether the last scanned point is in a {@code <script>}, {@code <foreignObject>} or
+   * {@code <handler>} element of an SVG image.
+   */
+  public boolean inDangerousElement() {
+    return dangerousDepth > 0;
+  }
+
+  public void scan(CharSequence chunk, Listener listener) {
+    CharSequence text = chunk;
+    if (carry != null) {
+      text = new StringBuilder(carry).append(chunk);
+      carry = null;
+    }
+    int length = text.length();
+    int i = 0;
+    while (i < length) {
+      if (mode == Mode.BLADE_COMMENT) {
+        i = skipPast(text, i, BLADE_COMMENT_END, outer);
+        continue;
+      }
+      if (mode == Mode.ESCAPED_OUTPUT) {
+        i = skipPast(text, i, ESCAPED_OUTPUT_END, outer);
+        continue;
+      }
+      if (mode == Mode.RAW_OUTPUT) {
+        i = rawOutput(text, i, listener);
+        continue;
+      }
+      char c = text.charAt(i);
+      // Blade compiles its echoes wherever they are, before the browser parses the HTML
+      if (c == '{' && previous != '@') {
+        if (length - i < BLADE_COMMENT_START.length() && (isPrefix(text, i, RAW_OUTPUT_START) || isPrefix(text, i, BLADE_COMMENT_START))) {
+          // Either a delimiter or text, depending on the next chunk
+          carry = text.subSequence(i, length).toString();
+          return;
+        }
+        if (startsWith(text, i, RAW_OUTPUT_START)) {
+          outer = mode;
+          mode = Mode.RAW_OUTPUT;
+          i = rawOutput(text, i + RAW_OUTPUT_START.length(), listener);
+          continue;
+        }
+        if (startsWith(text, i, ESCAPED_OUTPUT_START)) {
+          outer = mode;
+          // Comment or escaped output: their contents are not markup
+          boolean comment = startsWith(text, i, BLADE_COMMENT_START);
+          mode = comment ? Mode.BLADE_COMMENT : Mode.ESCAPED_OUTPUT;
+          i = comment
+            ? skipPast(text, i + BLADE_COMMENT_START.length(), BLADE_COMMENT_END, outer)
+            : skipPast(text, i + ESCAPED_OUTPUT_START.length(), ESCAPED_OUTPUT_END, outer);
+          continue;
+        }
+      }
+      switch (mode) {
+        case TEXT:
+          i = text(text, i, c);
+          break;
+        case TAG:
+          i = tag(text, i, c);
+          break;
+        case RAW_TEXT:
+          i = rawText(text, i, c);
+          break;
+        default:
+          i = skipPast(text, i, HTML_COMMENT_END, Mode.TEXT);
+          break;
+      }
+    }
+  }
+
+  /**
+   * Reads the expression of a raw output up to its end, reporting it once complete.
+   */
+  private int rawOutput(CharSequence chunk, int from, Listener listener) {
+    int end = indexOf(chunk, from, RAW_OUTPUT_END);
+    if (end < 0) {
+      int expressionEnd = chunk.length() - carryEnd(chunk, from, RAW_OUTPUT_END);
+      if (pendingOutput == null) {
+        pendingOutput = new StringBuilder();
+      }
+      pendingOutput.append(chunk, from, expressionEnd);
+      return chunk.length();
+    }
+    if (pendingOutput == null) {
+      listener.rawOutput(chunk, from, end);
+    } else {
+      pendingOutput.append(chunk, from, end);
+      listener.rawOutput(pendingOutput, 0, pendingOutput.length());
+      pendingOutput = null;
+    }
+    mode = outer;
+    previous = '}';
+    return end + RAW_OUTPUT_END.length();
+  }
+
+  private int text(CharSequence chunk, int i, char c) {
+    previous = c;
+    if (c != '<') {
+      return i + 1;
+    }
+    if (startsWith(chunk, i, "<!--")) {
+      mode = Mode.HTML_COMMENT;
+      return i + 4;
+    }
+    boolean closing = i + 1 < chunk.length() && chunk.charAt(i + 1) == '/';
+    int nameStart = closing ? i + 2 : i + 1;
+    if (nameStart >= chunk.length() || !isLetter(chunk.charAt(nameStart))) {
+      // A lone '<' is text
+      return i + 1;
+    }
+    return startTag(chunk, nameStart, closing);
+  }
+
+  private int startTag(CharSequence chunk, int nameStart, boolean closing) {
+    int nameEnd = nameStart;
+    while (nameEnd < chunk.length() && isNameChar(chunk.charAt(nameEnd))) {
+      nameEnd++;
+    }
+    mode = Mode.TAG;
+    tag = element(chunk, nameStart, nameEnd);
+    endTag = closing;
+    tagHasSvgData = false;
+    quote = 0;
+    return nameEnd;
+  }
+
+  private int tag(CharSequence chunk, int i, char c) {
+    if (c == 'i' || c == 'I') {
+      tagHasSvgData |= startsWith(chunk, i, SVG_DATA);
+    }
+    if (quote != 0) {
+      if (c == quote) {
+        quote = 0;
+      }
+    } else if (c == '"' || c == '\'') {
+      quote = c;
+    } else if (c == '>') {
+      endTag(previous == '/');
+      previous = c;
+      return i + 1;
+    }
+    if (!Character.isWhitespace(c)) {
+      previous = c;
+    }
+    return i + 1;
+  }
+
+  private void endTag(boolean selfClosing) {
+    mode = Mode.TEXT;
+    if (endTag) {
+      if (tag == Element.SVG && svgDepth > 0) {
+        svgDepth--;
+        if (svgDepth == 0) {
+          dangerousDepth = 0;
+        }
+      } else if (isDangerous(tag) && dangerousDepth > 0) {
+        dangerousDepth--;
+      }
+      return;
+    }
+    if (selfClosing) {
+      return;
+    }
+    if (tag == Element.SVG) {
+      svgDepth++;
+    } else if (isDangerous(tag) && svgDepth > 0) {
+      dangerousDepth++;
+    }
+    if (tag == Element.SCRIPT || tag == Element.STYLE) {
+      mode = Mode.RAW_TEXT;
+      rawTextElement = tag;
+    }
+  }
+
+  private int rawText(CharSequence chunk, int i, char c) {
+    previous = c;
+    if (c == '<' && i + 2 < chunk.length() && chunk.charAt(i + 1) == '/') {
+      int nameEnd = i + 2;
+      while (nameEnd < chunk.length() && isNameChar(chunk.charAt(nameEnd))) {
+        nameEnd++;
+      }
+      if (element(chunk, i + 2, nameEnd) == rawTextElement) {
+        return startTag(chunk, i + 2, true);
+      }
+    }
+    return i + 1;
+  }
+
+  private int skipPast(CharSequence chunk, int from, String end, Mode next) {
+    int index = indexOf(chunk, from, end);
+    if (index < 0) {
+      carryEnd(chunk, from, end);
+      return chunk.length();
+    }
+    mode = next;
+    previous = end.charAt(end.length() - 1);
+    return index + end.length();
+  }
+
+  /**
+   * Keeps the end of the chunk that starts the delimiter, if any, for the next chunk, and returns
+   * its length.
+   */
+  private int carryEnd(CharSequence chunk, int from, String delimiter) {
+    for (int length = Math.min(delimiter.length() - 1, chunk.length() - from); length > 0; length--) {
+      if (isPrefix(chunk, chunk.length() - length, delimiter)) {
+        carry = chunk.subSequence(chunk.length() - length, chunk.length()).toString();
+        return length;
+      }
+    }
+    return 0;
+  }
+
+  // Whether chunk[from, end of chunk) is the start of the delimiter
+  private static boolean isPrefix(CharSequence chunk, int from, String delimiter) {
+    int length = chunk.length() - from;
+    if (length >= delimiter.length()) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (chunk.charAt(from + i) != delimiter.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static Element element(CharSequence chunk, int from, int to) {
+    if (regionIs(chunk, from, to, "svg")) {
+      return Element.SVG;
+    }
+    if (regionIs(chunk, from, to, "script")) {
+      return Element.SCRIPT;
+    }
+    if (regionIs(chunk, from, to, "style")) {
+      return Element.STYLE;
+    }
+    if (regionIs(chunk, from, to, "foreignObject") || regionIs(chunk, from, to, "handler")) {
+      return Element.DANGEROUS;
+    }
+    return Element.OTHER;
+  }
+
+  private static boolean isDangerous(Element element) {
+    return element == Element.DANGEROUS || element == Element.SCRIPT;
+  }
+
+  private static boolean regionIs(CharSequence chunk, int from, int to, String name) {
+    return to - from == name.length() && startsWith(chunk, from, name);
+  }
+
+  private static boolean startsWith(CharSequence chunk, int from, String prefix) {
+    if (from + prefix.length() > chunk.length()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (Character.toLowerCase(chunk.charAt(from + i)) != Character.toLowerCase(prefix.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int indexOf(CharSequence chunk, int from, String needle) {
+    int limit = chunk.length() - needle.length();
+    char first = needle.charAt(0);
+    for (int i = from; i <= limit; i++) {
+      if (chunk.charAt(i) == first && startsWith(chunk, i, needle)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isLetter(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  private static boolean isNameChar(char c) {
+    return isLetter(c) || (c >= '0' && c <= '9') || c == '-' || c == ':';
+  }
+}
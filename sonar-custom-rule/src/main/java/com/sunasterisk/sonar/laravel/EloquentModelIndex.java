@@ -0,0 +1,196 @@
+package com.sunasterisk.sonar.laravel;
+
+import com.sunasterisk.sonar.tree.PhpTreeWalker;
+import org.sonar.plugins.php.api.tree.Tree;
+import org.sonar.plugins.php.api.tree.Tree.Kind;
+import org.sonar.plugins.php.api.tree.declaration.ClassDeclarationTree;
+import org.sonar.plugins.php.api.tree.declaration.ClassMemberTree;
+import org.sonar.plugins.php.api.tree.declaration.ClassPropertyDeclarationTree;
+import org.sonar.plugins.php.api.tree.declaration.NamespaceNameTree;
+import org.sonar.plugins.php.api.tree.declaration.VariableDeclarationTree;
+import org.sonar.plugins.php.api.tree.expression.ArrayInitializerTree;
+import org.sonar.plugins.php.api.tree.expression.ExpressionTree;
+import org.sonar.plugins.php.api.tree.statement.NamespaceStatementTree;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Eloquent models of the project protected against mass assignment, that is declaring a non-empty
+ * {@code $fillable} or {@code $guarded} array.
+ *
+ * <p>Models are known by their fully qualified class name in lowercase, without the leading
+ * backslash, e.g. {@code app\models\post}, PHP class names being case-insensitive: that is the
+ * {@link org.sonar.plugins.php.api.symbols.Symbol#qualifiedName()} of the class names the checks
+ * resolve through the symbol table. A name declared by several classes is only considered guarded
+ * when all of them are. Classes inheriting their protection from a parent model are not indexed,
+ * the check keeps reporting on them.</p>
+ *
+ * <p>The index is built once, before the analysis, by {@link EloquentModelIndexer} and is then
+ * immutable: the analysis threads share it without synchronization. Until it is installed
+ * {@link #current()} is an empty index.</p>
+ */
+public final class EloquentModelIndex {
+
+  private static final EloquentModelIndex EMPTY = new EloquentModelIndex(Collections.emptySet());
+  private static volatile EloquentModelIndex current = EMPTY;
+
+  private final Set<String> guardedModels;
+  private final String fingerprint;
+
+  private EloquentModelIndex(Set<String> guardedModels) {
+    this.guardedModels = guardedModels;
+    this.fingerprint = guardedModels.isEmpty() ? "" : sha256(String.join(",", new TreeSet<>(guardedModels)));
+  }
+
+  public static EloquentModelIndex current() {
+    return current;
+  }
+
+  /**
+   * Makes the index available to the checks, {@code null} going back to the empty index. The scanner
+   * installs it through {@link EloquentModelIndexer}, standalone runners directly.
+   */
+  public static void install(EloquentModelIndex index) {
+    current = index == null ? EMPTY : index;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Whether the class, given by its fully qualified name, declares a non-empty {@code $fillable} or
+   * {@code $guarded} array.
+   */
+  public boolean isGuarded(String qualifiedName) {
+    return !guardedModels.isEmpty() && guardedModels.contains(normalize(qualifiedName));
+  }
+
+  // Index key of a class name, e.g. app\models\post for \App\Models\Post
+  static String normalize(String qualifiedName) {
+    String name = qualifiedName.startsWith("\\") ? qualifiedName.substring(1) : qualifiedName;
+    return name.toLowerCase(Locale.ROOT);
+  }
+
+  public int size() {
+    return guardedModels.size();
+  }
+
+  /**
+   * Hash of the guarded models, so that issues cached for unchanged files are dropped when a model
+   * changes (see {@link com.sunasterisk.sonar.cache.ProjectDependent}).
+   */
+  public String fingerprint() {
+    return fingerprint;
+  }
+
+  public static final class Builder {
+    private final Set<String> guarded = new HashSet<>();
+    private final Set<String> unguarded = new HashSet<>();
+
+    private Builder() {
+    }
+
+    /**
+     * Indexes the classes declared in a parsed PHP file.
+     */
+    public Builder add(Tree compilationUnit) {
+      new ClassCollector(this).walk(compilationUnit);
+      return this;
+    }
+
+    private void add(String namespace, ClassDeclarationTree classTree) {
+      boolean protectedModel = false;
+      boolean declaresProtection = false;
+      for (ClassMemberTree member : classTree.members()) {
+        if (!member.is(Kind.CLASS_PROPERTY_DECLARATION)) {
+          continue;
+        }
+        for (VariableDeclarationTree property : ((ClassPropertyDeclarationTree) member).declarations()) {
+          String name = property.identifier().text();
+          if ("$fillable".equals(name) || "$guarded".equals(name)) {
+            declaresProtection = true;
+            protectedModel |= isNonEmptyArray(property.initValue());
+          }
+        }
+      }
+      if (!declaresProtection) {
+        return;
+      }
+      String className = normalize(namespace.isEmpty() ? classTree.name().text() : (namespace + "\\" + classTree.name().text()));
+      if (protectedModel) {
+        guarded.add(className);
+      } else {
+        unguarded.add(className);
+      }
+    }
+
+    // Values computed at runtime cannot be checked
+    private static boolean isNonEmptyArray(ExpressionTree value) {
+      return value != null
+        && value.is(Kind.ARRAY_INITIALIZER_BRACKET, Kind.ARRAY_INITIALIZER_FUNCTION)
+        && !((ArrayInitializerTree) value).arrayPairs().isEmpty();
+    }
+
+    public EloquentModelIndex build() {
+      Set<String> models = new HashSet<>(guarded);
+      models.removeAll(unguarded);
+      return new EloquentModelIndex(Collections.unmodifiableSet(models));
+    }
+  }
+
+  /**
+   * Finds the class declarations of a file with the namespace they are declared in, either by a
+   * {@code namespace} statement preceding them or by the block of a {@code namespace}.
+   */
+  private static final class ClassCollector extends PhpTreeWalker {
+    private final Builder builder;
+    private String namespace = "";
+
+    private ClassCollector(Builder builder) {
+      this.builder = builder;
+    }
+
+    @Override
+    protected boolean enter(Tree tree) {
+      if (tree.is(Kind.NAMESPACE_STATEMENT)) {
+        NamespaceNameTree name = ((NamespaceStatementTree) tree).namespaceName();
+        namespace = name == null ? "" : name.fullName();
+        return true;
+      }
+      if (tree.is(Kind.CLASS_DECLARATION)) {
+        builder.add(namespace, (ClassDeclarationTree) tree);
+        return false;
+      }
+      return true;
+    }
+
+    @Override
+    protected void leave(Tree tree) {
+      // The namespace of a block ends with it, the one of a statement with the next namespace
+      if (tree.is(Kind.NAMESPACE_STATEMENT) && !((NamespaceStatementTree) tree).statements().isEmpty()) {
+        namespace = "";
+      }
+    }
+  }
+
+  static String sha256(String text) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+      StringBuilder hex = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+}
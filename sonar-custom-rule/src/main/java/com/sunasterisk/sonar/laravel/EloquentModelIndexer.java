@@ -0,0 +1,70 @@
+package com.sunasterisk.sonar.laravel;
+
+import com.sunasterisk.sonar.text.KeywordMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.Startable;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.batch.fs.FilePredicates;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+
+import java.io.IOException;
+
+/**
+ * Builds the {@link EloquentModelIndex} of the project before the sensors run the checks.
+ *
+ * <p>Only the PHP files mentioning {@code $fillable} or {@code $guarded} are parsed, in a single
+ * pass over the main files of the project.</p>
+ */
+@ScannerSide
+public class EloquentModelIndexer implements Startable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(EloquentModelIndexer.class);
+
+  private static final KeywordMatcher MODEL_PROPERTIES = KeywordMatcher.of("$fillable", "$guarded");
+
+  private final FileSystem fileSystem;
+
+  public EloquentModelIndexer(FileSystem fileSystem) {
+    this.fileSystem = fileSystem;
+  }
+
+  @Override
+  public void start() {
+    long start = System.nanoTime();
+    FilePredicates predicates = fileSystem.predicates();
+    PhpSourceParser parser = null;
+    EloquentModelIndex.Builder builder = EloquentModelIndex.builder();
+    int parsedFiles = 0;
+    for (InputFile file : fileSystem.inputFiles(predicates.and(predicates.hasLanguage("php"), predicates.hasType(InputFile.Type.MAIN)))) {
+      try {
+        String contents = file.contents();
+        if (!MODEL_PROPERTIES.containsAny(contents)) {
+          continue;
+        }
+        if (parser == null) {
+          parser = PhpSourceParser.create();
+          if (parser == null) {
+            // Not exposed by the PHP analyzer, see PhpSourceParser
+            break;
+          }
+        }
+        builder.add(parser.parse(contents));
+        parsedFiles++;
+      } catch (IOException | RuntimeException e) {
+        // The PHP sensor reports unreadable and unparsable files
+        LOGGER.debug("Unable to index the Eloquent models of {}: {}", file, e.getMessage());
+      }
+    }
+    EloquentModelIndex index = builder.build();
+    EloquentModelIndex.install(index);
+    LOGGER.info("Indexed {} guarded Eloquent models from {} files in {} ms",
+      index.size(), parsedFiles, (System.nanoTime() - start) / 1_000_000);
+  }
+
+  @Override
+  public void stop() {
+    EloquentModelIndex.install(null);
+  }
+}
@@ -0,0 +1,311 @@
+package com.sunasterisk.sonar.laravel;
+
+import com.sunasterisk.sonar.dataflow.LocalTaint;
+import com.sunasterisk.sonar.tree.PhpTreeWalker;
+import org.sonar.plugins.php.api.tree.Tree;
+import org.sonar.plugins.php.api.tree.Tree.Kind;
+import org.sonar.plugins.php.api.tree.declaration.FunctionDeclarationTree;
+import org.sonar.plugins.php.api.tree.declaration.FunctionTree;
+import org.sonar.plugins.php.api.tree.declaration.MethodDeclarationTree;
+import org.sonar.plugins.php.api.tree.declaration.NamespaceNameTree;
+import org.sonar.plugins.php.api.tree.expression.AssignmentExpressionTree;
+import org.sonar.plugins.php.api.tree.expression.ExpressionTree;
+import org.sonar.plugins.php.api.tree.expression.FunctionCallTree;
+import org.sonar.plugins.php.api.tree.expression.IdentifierTree;
+import org.sonar.plugins.php.api.tree.expression.LiteralTree;
+import org.sonar.plugins.php.api.tree.expression.MemberAccessTree;
+import org.sonar.plugins.php.api.tree.expression.ParenthesisedExpressionTree;
+import org.sonar.plugins.php.api.tree.expression.VariableIdentifierTree;
+import org.sonar.plugins.php.api.tree.statement.ReturnStatementTree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Functions and methods of the project returning a hash, that is whose every {@code return}
+ * gives the result of a hashing primitive ({@code Hash::make()}, {@code bcrypt()},
+ * {@code password_hash()}...), of another such function, or a local variable assigned one of them.
+ * {@code 'otp' => $this->hashOtp($otp)} then stores a hash, as {@code 'otp' => Hash::make($otp)}.
+ *
+ * <p>Functions are known by their name, methods by their name whatever their class, as calls are
+ * not typed: a name declared several times only returns a hash when all of its declarations do.
+ * Summaries are computed once for the project, in time linear in the size of the indexed code:
+ * each function is walked once, then the calls between functions are resolved by propagating from
+ * the functions depending on no other one.</p>
+ *
+ * <p>Like {@link EloquentModelIndex}, the index is built before the analysis by
+ * {@link HashingFunctionIndexer}, then immutable and shared by the analysis threads. Until it is
+ * installed {@link #current()} is an empty index.</p>
+ */
+public final class HashingFunctionIndex {
+
+  private static final HashingFunctionIndex EMPTY = new HashingFunctionIndex(Collections.emptySet());
+  private static volatile HashingFunctionIndex current = EMPTY;
+
+  private static final Set<String> HASHING_FUNCTIONS = new HashSet<>(Arrays.asList(
+    "hash", "hash_hmac", "hash_pbkdf2", "password_hash", "bcrypt", "crypt", "encrypt", "sodium_crypto_pwhash_str"));
+  private static final Set<String> ENCRYPTING_METHODS = new HashSet<>(Arrays.asList("encrypt", "encryptstring"));
+
+  // Label of the values coming from a hashing primitive, other labels are the key of a function
+  private static final String HASHED = "#";
+  private static final String FUNCTION_PREFIX = "f:";
+  private static final String METHOD_PREFIX = "m:";
+
+  // Keys (prefix and lowercase name) of the functions and methods returning a hash
+  private final Set<String> hashingFunctions;
+  private final String fingerprint;
+
+  private HashingFunctionIndex(Set<String> hashingFunctions) {
+    this.hashingFunctions = hashingFunctions;
+    this.fingerprint = hashingFunctions.isEmpty() ? "" : EloquentModelIndex.sha256(String.join(",", new TreeSet<>(hashingFunctions)));
+  }
+
+  public static HashingFunctionIndex current() {
+    return current;
+  }
+
+  /**
+   * Makes the index available to the checks, {@code null} going back to the empty index.
+   */
+  public static void install(HashingFunctionIndex index) {
+    current = index == null ? EMPTY : index;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Whether the call returns a hash: a hashing primitive or a function of the project returning one.
+   */
+  public boolean returnsHash(FunctionCallTree call) {
+    if (isHashingPrimitive(call)) {
+      return true;
+    }
+    String key = keyOf(call);
+    return key != null && !hashingFunctions.isEmpty() && hashingFunctions.contains(key);
+  }
+
+  /**
+   * Calls hashing or encrypting their argument: {@code hash()}, {@code bcrypt()},
+   * {@code password_hash()}..., {@code make()} on a hasher such as {@code Hash::make()} or
+   * {@code $this->hasher->make()}, and {@code Crypt::encrypt()}.
+   */
+  public static boolean isHashingPrimitive(FunctionCallTree call) {
+    ExpressionTree callee = call.callee();
+    if (callee.is(Kind.NAMESPACE_NAME)) {
+      return HASHING_FUNCTIONS.contains(((NamespaceNameTree) callee).name().text().toLowerCase(Locale.ROOT));
+    }
+    if (!callee.is(Kind.OBJECT_MEMBER_ACCESS, Kind.CLASS_MEMBER_ACCESS)) {
+      return false;
+    }
+    MemberAccessTree access = (MemberAccessTree) callee;
+    if (!access.member().is(Kind.NAME_IDENTIFIER)) {
+      return false;
+    }
+    String method = ((IdentifierTree) access.member()).text().toLowerCase(Locale.ROOT);
+    return ENCRYPTING_METHODS.contains(method) || ("make".equals(method) && namesHasher(access.object()));
+  }
+
+  public int size() {
+    return hashingFunctions.size();
+  }
+
+  /**
+   * Hash of the functions returning a hash, so that issues cached for unchanged files are dropped
+   * when one of them changes (see {@link com.sunasterisk.sonar.cache.ProjectDependent}).
+   */
+  public String fingerprint() {
+    return fingerprint;
+  }
+
+  // Hash, $hasher, $this->hash, app('hash'), Hash::driver('argon')
+  private static boolean namesHasher(ExpressionTree receiver) {
+    switch (receiver.getKind()) {
+      case NAMESPACE_NAME:
+        return containsHash(((NamespaceNameTree) receiver).name().text());
+      case VARIABLE_IDENTIFIER:
+        return containsHash(((VariableIdentifierTree) receiver).text());
+      case OBJECT_MEMBER_ACCESS:
+      case CLASS_MEMBER_ACCESS:
+        Tree member = ((MemberAccessTree) receiver).member();
+        return member.is(Kind.NAME_IDENTIFIER) && containsHash(((IdentifierTree) member).text());
+      case FUNCTION_CALL:
+        FunctionCallTree call = (FunctionCallTree) receiver;
+        return namesHasher(call.callee())
+          || (!call.callArguments().isEmpty() && call.callArguments().get(0).value().is(Kind.REGULAR_STRING_LITERAL)
+            && containsHash(((LiteralTree) call.callArguments().get(0).value()).value()));
+      default:
+        return false;
+    }
+  }
+
+  private static boolean containsHash(String name) {
+    return name.toLowerCase(Locale.ROOT).contains("hash");
+  }
+
+  /**
+   * Key of the function or method called, {@code null} for dynamic calls such as {@code $f()}.
+   */
+  private static String keyOf(FunctionCallTree call) {
+    ExpressionTree callee = call.callee();
+    if (callee.is(Kind.NAMESPACE_NAME)) {
+      return FUNCTION_PREFIX + ((NamespaceNameTree) callee).name().text().toLowerCase(Locale.ROOT);
+    }
+    if (callee.is(Kind.OBJECT_MEMBER_ACCESS, Kind.CLASS_MEMBER_ACCESS)) {
+      Tree member = ((MemberAccessTree) callee).member();
+      if (member.is(Kind.NAME_IDENTIFIER)) {
+        return METHOD_PREFIX + ((IdentifierTree) member).text().toLowerCase(Locale.ROOT);
+      }
+    }
+    return null;
+  }
+
+  public static final class Builder {
+    private final List<Summary> summaries = new ArrayList<>();
+
+    private Builder() {
+    }
+
+    /**
+     * Summarizes the functions and methods declared in a parsed PHP file.
+     */
+    public Builder add(Tree compilationUnit) {
+      new PhpTreeWalker() {
+        @Override
+        protected boolean enter(Tree tree) {
+          if (tree.is(Kind.FUNCTION_DECLARATION)) {
+            summarize(FUNCTION_PREFIX + ((FunctionDeclarationTree) tree).name().text(), (FunctionTree) tree);
+          } else if (tree.is(Kind.METHOD_DECLARATION)) {
+            summarize(METHOD_PREFIX + ((MethodDeclarationTree) tree).name().text(), (FunctionTree) tree);
+          }
+          // Functions declared in functions and methods of anonymous classes are indexed too
+          return true;
+        }
+      }.walk(compilationUnit);
+      return this;
+    }
+
+    private void summarize(String key, FunctionTree function) {
+      Summary summary = new Summary(key.toLowerCase(Locale.ROOT));
+      LocalTaint locals = new LocalTaint();
+      locals.enterFunction(false);
+      if (function.body() != null) {
+        new ReturnCollector(summary, locals).walk(function.body());
+      }
+      summaries.add(summary);
+    }
+
+    /**
+     * Labels of the returns of a function body, in source order so that a variable is assigned
+     * before it is returned.
+     */
+    private static final class ReturnCollector extends PhpTreeWalker {
+      private final Summary summary;
+      private final LocalTaint locals;
+
+      private ReturnCollector(Summary summary, LocalTaint locals) {
+        this.summary = summary;
+        this.locals = locals;
+      }
+
+      @Override
+      protected boolean enter(Tree tree) {
+        if (tree instanceof FunctionTree) {
+          // Returns of closures are not returns of the function
+          return false;
+        }
+        if (tree.is(Kind.ASSIGNMENT) && ((AssignmentExpressionTree) tree).variable().is(Kind.VARIABLE_IDENTIFIER)) {
+          AssignmentExpressionTree assignment = (AssignmentExpressionTree) tree;
+          locals.define(((VariableIdentifierTree) assignment.variable()).text(), labelOf(assignment.value(), locals));
+        } else if (tree.is(Kind.RETURN_STATEMENT) && ((ReturnStatementTree) tree).expression() != null) {
+          summary.addReturn(labelOf(((ReturnStatementTree) tree).expression(), locals));
+        }
+        return true;
+      }
+    }
+
+    /**
+     * {@link #HASHED} for a hash, the key of the function giving the value, {@code null} otherwise.
+     */
+    private static String labelOf(ExpressionTree expression, LocalTaint locals) {
+      if (expression.is(Kind.PARENTHESISED_EXPRESSION)) {
+        return labelOf(((ParenthesisedExpressionTree) expression).expression(), locals);
+      }
+      if (expression.is(Kind.VARIABLE_IDENTIFIER)) {
+        return locals.sourceOf(((VariableIdentifierTree) expression).text());
+      }
+      if (expression.is(Kind.FUNCTION_CALL)) {
+        FunctionCallTree call = (FunctionCallTree) expression;
+        return isHashingPrimitive(call) ? HASHED : keyOf(call);
+      }
+      return null;
+    }
+
+    public HashingFunctionIndex build() {
+      // Declarations of each key not known to return a hash yet, and summaries waiting for a key
+      Map<String, Integer> unresolved = new HashMap<>();
+      Map<String, List<Summary>> dependents = new HashMap<>();
+      Deque<Summary> resolved = new ArrayDeque<>();
+      for (Summary summary : summaries) {
+        unresolved.merge(summary.key, 1, Integer::sum);
+        if (!summary.returnsValue || summary.returnsPlainValue) {
+          continue;
+        }
+        for (String required : summary.required) {
+          dependents.computeIfAbsent(required, key -> new ArrayList<>()).add(summary);
+        }
+        if (summary.required.isEmpty()) {
+          resolved.add(summary);
+        }
+      }
+      Set<String> hashing = new HashSet<>();
+      while (!resolved.isEmpty()) {
+        Summary summary = resolved.poll();
+        if (unresolved.merge(summary.key, -1, Integer::sum) > 0) {
+          continue;
+        }
+        // Every declaration of the name returns a hash
+        hashing.add(summary.key);
+        for (Summary dependent : dependents.getOrDefault(summary.key, Collections.emptyList())) {
+          if (--dependent.pending == 0) {
+            resolved.add(dependent);
+          }
+        }
+      }
+      return new HashingFunctionIndex(Collections.unmodifiableSet(hashing));
+    }
+  }
+
+  private static final class Summary {
+    private final String key;
+    private final Set<String> required = new HashSet<>();
+    private boolean returnsValue;
+    private boolean returnsPlainValue;
+    // Required keys not known to return a hash yet
+    private int pending;
+
+    private Summary(String key) {
+      this.key = key;
+    }
+
+    private void addReturn(String label) {
+      returnsValue = true;
+      if (label == null) {
+        returnsPlainValue = true;
+      } else if (!HASHED.equals(label) && required.add(label)) {
+        pending++;
+      }
+    }
+  }
+}
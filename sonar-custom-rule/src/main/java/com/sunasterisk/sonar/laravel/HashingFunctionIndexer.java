@@ -0,0 +1,72 @@
+package com.sunasterisk.sonar.laravel;
+
+import com.sunasterisk.sonar.text.KeywordMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.Startable;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.batch.fs.FilePredicates;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+
+import java.io.IOException;
+
+/**
+ * Builds the {@link HashingFunctionIndex} of the project before the sensors run the checks.
+ *
+ * <p>Only the PHP files mentioning a hashing primitive ({@code hash} or {@code crypt},
+ * case-insensitively, as in {@code Hash::make()} or {@code bcrypt()}) are parsed, in a single pass over the main files of the
+ * project: a function calling none of them can only return a hash through a function of such a
+ * file.</p>
+ */
+@ScannerSide
+public class HashingFunctionIndexer implements Startable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(HashingFunctionIndexer.class);
+
+  private static final KeywordMatcher HASHING_CALLS = KeywordMatcher.of("hash", "crypt");
+
+  private final FileSystem fileSystem;
+
+  public HashingFunctionIndexer(FileSystem fileSystem) {
+    this.fileSystem = fileSystem;
+  }
+
+  @Override
+  public void start() {
+    long start = System.nanoTime();
+    FilePredicates predicates = fileSystem.predicates();
+    PhpSourceParser parser = null;
+    HashingFunctionIndex.Builder builder = HashingFunctionIndex.builder();
+    int parsedFiles = 0;
+    for (InputFile file : fileSystem.inputFiles(predicates.and(predicates.hasLanguage("php"), predicates.hasType(InputFile.Type.MAIN)))) {
+      try {
+        String contents = file.contents();
+        if (!HASHING_CALLS.containsAny(contents)) {
+          continue;
+        }
+        if (parser == null) {
+          parser = PhpSourceParser.create();
+          if (parser == null) {
+            // Not exposed by the PHP analyzer, see PhpSourceParser
+            break;
+          }
+        }
+        builder.add(parser.parse(contents));
+        parsedFiles++;
+      } catch (IOException | RuntimeException e) {
+        // The PHP sensor reports unreadable and unparsable files
+        LOGGER.debug("Unable to index the hashing functions of {}: {}", file, e.getMessage());
+      }
+    }
+    HashingFunctionIndex index = builder.build();
+    HashingFunctionIndex.install(index);
+    LOGGER.info("Indexed {} functions returning a hash from {} files in {} ms",
+      index.size(), parsedFiles, (System.nanoTime() - start) / 1_000_000);
+  }
+
+  @Override
+  public void stop() {
+    HashingFunctionIndex.install(null);
+  }
+}
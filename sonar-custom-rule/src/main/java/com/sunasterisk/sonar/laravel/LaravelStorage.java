@@ -0,0 +1,94 @@
+package com.sunasterisk.sonar.laravel;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Laravel classes and helpers writing to a cache, the session, Redis, cookies, the database, the
+ * logs or a filesystem, that is storing what they are given outside of the request.
+ *
+ * <p>Classes are known by their fully qualified name: the facades, the global aliases Laravel
+ * declares for them (e.g. {@code Cache}, resolved in the global namespace) and the classes and
+ * contracts behind them, as injected in constructors and methods. Lookups are exact, in a hash
+ * set: {@code $dbg} or {@code App\Support\Cacheable} are not storage.</p>
+ */
+public final class LaravelStorage {
+
+  private static final Set<String> CLASSES = lowerCase(
+    // Global aliases of config/app.php
+    "Cache", "Session", "Redis", "Cookie", "DB", "Log", "Storage",
+    "Illuminate\\Support\\Facades\\Cache",
+    "Illuminate\\Support\\Facades\\Session",
+    "Illuminate\\Support\\Facades\\Redis",
+    "Illuminate\\Support\\Facades\\Cookie",
+    "Illuminate\\Support\\Facades\\DB",
+    "Illuminate\\Support\\Facades\\Log",
+    "Illuminate\\Support\\Facades\\Storage",
+    "Illuminate\\Cache\\CacheManager",
+    "Illuminate\\Cache\\Repository",
+    "Illuminate\\Contracts\\Cache\\Factory",
+    "Illuminate\\Contracts\\Cache\\Repository",
+    "Illuminate\\Contracts\\Cache\\Store",
+    "Illuminate\\Session\\SessionManager",
+    "Illuminate\\Session\\Store",
+    "Illuminate\\Contracts\\Session\\Session",
+    "Illuminate\\Redis\\RedisManager",
+    "Illuminate\\Redis\\Connections\\Connection",
+    "Illuminate\\Contracts\\Redis\\Factory",
+    "Illuminate\\Contracts\\Redis\\Connection",
+    "Predis\\Client",
+    "Illuminate\\Cookie\\CookieJar",
+    "Illuminate\\Contracts\\Cookie\\Factory",
+    "Illuminate\\Contracts\\Cookie\\QueueingFactory",
+    "Illuminate\\Database\\DatabaseManager",
+    "Illuminate\\Database\\Connection",
+    "Illuminate\\Database\\ConnectionInterface",
+    "Illuminate\\Log\\LogManager",
+    "Illuminate\\Log\\Logger",
+    "Psr\\Log\\LoggerInterface",
+    "Illuminate\\Filesystem\\FilesystemManager",
+    "Illuminate\\Filesystem\\Filesystem",
+    "Illuminate\\Contracts\\Filesystem\\Factory",
+    "Illuminate\\Contracts\\Filesystem\\Filesystem");
+
+  // Global helper functions returning a storage, e.g. session()->put(...)
+  private static final Set<String> HELPERS = lowerCase("session", "cache", "cookie", "logger");
+
+  // Methods of a storage returning another one, e.g. Cache::store('redis') or Storage::disk('s3')
+  private static final Set<String> ACCESSORS = lowerCase("store", "driver", "connection", "disk", "channel");
+
+  private LaravelStorage() {
+  }
+
+  /**
+   * Whether the class, given by its fully qualified name with or without the leading backslash, is
+   * a storage. PHP class names are case-insensitive.
+   */
+  public static boolean isStorageClass(String qualifiedName) {
+    String name = qualifiedName.startsWith("\\") ? qualifiedName.substring(1) : qualifiedName;
+    return CLASSES.contains(name.toLowerCase(Locale.ROOT));
+  }
+
+  /**
+   * Whether the global function returns a storage.
+   */
+  public static boolean isStorageHelper(String functionName) {
+    return HELPERS.contains(functionName.toLowerCase(Locale.ROOT));
+  }
+
+  /**
+   * Whether the method, called on a storage, returns a storage.
+   */
+  public static boolean isStorageAccessor(String methodName) {
+    return ACCESSORS.contains(methodName.toLowerCase(Locale.ROOT));
+  }
+
+  private static Set<String> lowerCase(String... names) {
+    Set<String> set = new HashSet<>();
+    Arrays.stream(names).map(name -> name.toLowerCase(Locale.ROOT)).forEach(set::add);
+    return Collections.unmodifiableSet(set);
+  }
+}
@@ -0,0 +1,55 @@
+package com.sunasterisk.sonar.laravel;
+
+import com.sonar.sslr.api.typed.ActionParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.php.parser.PHPParserBuilder;
+import org.sonar.plugins.php.api.tree.CompilationUnitTree;
+import org.sonar.plugins.php.api.tree.Tree;
+
+/**
+ * Parser of the PHP files indexed before the analysis, when the PHP analyzer lets this plugin use it.
+ *
+ * <p>The public API of the PHP analyzer has no parser: the indexes are built with the internal
+ * {@link PHPParserBuilder}, which the PHP plugin does not export to the other plugins. A missing
+ * class fails with a {@link LinkageError}, which the indexers would not catch and which would stop
+ * the analysis, so {@link #create()} first checks that the parser can be loaded, and only then
+ * loads the class referencing it. Without a parser the indexes stay empty and the checks fall back
+ * to their report-by-default behavior.</p>
+ *
+ * <p>The indexed files are parsed a second time by the PHP sensor: only the few files mentioning
+ * what an index looks for are parsed here (see the indexers).</p>
+ */
+abstract class PhpSourceParser {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PhpSourceParser.class);
+
+  private static final String PARSER_CLASS = "org.sonar.php.parser.PHPParserBuilder";
+
+  abstract CompilationUnitTree parse(String contents);
+
+  /**
+   * A new parser, not thread-safe, or {@code null} if the PHP analyzer does not expose one.
+   */
+  static PhpSourceParser create() {
+    try {
+      Class.forName(PARSER_CLASS, false, PhpSourceParser.class.getClassLoader());
+      return new ActionPhpSourceParser();
+    } catch (ClassNotFoundException | LinkageError e) {
+      LOGGER.warn("The PHP parser is not available to the custom rules, the Laravel indexes stay empty: {}", e.toString());
+      return null;
+    }
+  }
+
+  /**
+   * Only loaded once the parser classes are known to be available.
+   */
+  private static final class ActionPhpSourceParser extends PhpSourceParser {
+    private final ActionParser<Tree> parser = PHPParserBuilder.createParser();
+
+    @Override
+    CompilationUnitTree parse(String contents) {
+      return (CompilationUnitTree) parser.parse(contents);
+    }
+  }
+}
@@ -0,0 +1,189 @@
+package com.sunasterisk.sonar.prefilter;
+
+import com.sunasterisk.sonar.text.CompiledParameter;
+import com.sunasterisk.sonar.text.KeywordList;
+import com.sunasterisk.sonar.text.KeywordMatcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Tells which rules may raise issues on a file from its raw text, before the checks visit its
+ * syntax tree.
+ *
+ * <p>Each rule declares its trigger vocabulary: words, matched case-insensitively, at least one of
+ * which occurs in the source of any file the rule can report on. The vocabularies of all the rules
+ * of a repository are merged into a single {@link KeywordMatcher}, so the file is scanned once
+ * whatever the number of rules; the result is kept per thread for the file being analyzed and
+ * shared by the checks that run on it one after the other.</p>
+ *
+ * <p>Vocabularies must stay conservative: a missing word would silently hide issues. A rule
+ * reporting on names taken from a {@code @RuleProperty} list declares the parameter too: the words
+ * of its configured value that the trigger vocabulary does not cover are looked for in the files the
+ * vocabulary rules out.</p>
+ */
+public final class FilePrefilter {
+
+  private final KeywordMatcher vocabulary;
+  private final Map<Class<?>, Long> ruleTriggers;
+  private final Map<Class<?>, List<TriggerParameter>> ruleParameters;
+  private final ThreadLocal<ScannedFile> lastFile = ThreadLocal.withInitial(ScannedFile::new);
+
+  private FilePrefilter(KeywordMatcher vocabulary, Map<Class<?>, Long> ruleTriggers,
+    Map<Class<?>, List<TriggerParameter>> ruleParameters) {
+    this.vocabulary = vocabulary;
+    this.ruleTriggers = ruleTriggers;
+    this.ruleParameters = ruleParameters;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Whether the given check may raise issues on the file. Checks without a declared vocabulary
+   * always apply.
+   *
+   * @param check instance of the check, whose parameters are read
+   * @param file identifies the file being analyzed, typically its syntax tree: the text is only
+   *             scanned when it changes
+   * @param contents source of the file, only read when the file is scanned
+   */
+  public boolean isApplicable(Object check, Object file, Supplier<? extends CharSequence> contents) {
+    Long triggers = ruleTriggers.get(check.getClass());
+    if (triggers == null) {
+      return true;
+    }
+    ScannedFile scanned = lastFile.get();
+    if (scanned.file != file) {
+      scanned.keywords = vocabulary.matches(contents.get());
+      scanned.file = file;
+    }
+    if ((scanned.keywords & triggers) != 0) {
+      return true;
+    }
+    for (TriggerParameter parameter : ruleParameters.getOrDefault(check.getClass(), Collections.emptyList())) {
+      KeywordList words = parameter.uncoveredWords(check);
+      if (!words.keywords().isEmpty() && words.containsAny(contents.get())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public KeywordMatcher vocabulary() {
+    return vocabulary;
+  }
+
+  private static final class ScannedFile {
+    private Object file;
+    private long keywords;
+  }
+
+  /**
+   * {@code @RuleProperty} list of a rule, and its words missing from the rule vocabulary, compiled
+   * once per value (see {@link CompiledParameter}).
+   */
+  private static final class TriggerParameter {
+    private final Function<Object, String> value;
+    private final CompiledParameter<KeywordList> uncovered;
+
+    private TriggerParameter(Function<Object, String> value, KeywordMatcher vocabulary, long triggers) {
+      this.value = value;
+      // A word containing a trigger, such as rawSvg for raw, only occurs in files the vocabulary lets through
+      this.uncovered = CompiledParameter.of(words -> {
+        List<String> missing = new ArrayList<>();
+        for (String word : words) {
+          if ((vocabulary.matches(word) & triggers) == 0) {
+            missing.add(word);
+          }
+        }
+        return KeywordList.of(missing);
+      });
+    }
+
+    private KeywordList uncoveredWords(Object check) {
+      return uncovered.get(value.apply(check));
+    }
+  }
+
+  /**
+   * Collects the trigger vocabulary of each rule.
+   */
+  public static final class Builder {
+    private final Map<Class<?>, List<String>> rules = new LinkedHashMap<>();
+    private final Map<Class<?>, List<Function<Object, String>>> parameters = new LinkedHashMap<>();
+
+    private Builder() {
+    }
+
+    public Builder rule(Class<?> check, String... triggers) {
+      List<String> words = new ArrayList<>();
+      for (String trigger : triggers) {
+        // A word containing another trigger of the rule only occurs in files the other one lets through
+        if (!containsAnyOther(trigger, triggers) && !words.contains(trigger)) {
+          words.add(trigger);
+        }
+      }
+      rules.put(check, words);
+      return this;
+    }
+
+    private static boolean containsAnyOther(String word, String[] triggers) {
+      String lowerCase = word.toLowerCase(Locale.ROOT);
+      for (String trigger : triggers) {
+        String other = trigger.toLowerCase(Locale.ROOT);
+        if (other.length() < lowerCase.length() && lowerCase.contains(other)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Declares a comma-separated {@code @RuleProperty} list of the rule, any word of which may
+     * lead to an issue, e.g. the names of the methods it reports.
+     */
+    public <T> Builder parameter(Class<T> check, Function<? super T, String> parameter) {
+      parameters.computeIfAbsent(check, c -> new ArrayList<>()).add(instance -> parameter.apply(check.cast(instance)));
+      return this;
+    }
+
+    public FilePrefilter build() {
+      List<String> keywords = new ArrayList<>();
+      for (List<String> words : rules.values()) {
+        for (String word : words) {
+          if (!keywords.contains(word)) {
+            keywords.add(word);
+          }
+        }
+      }
+      KeywordMatcher vocabulary = KeywordMatcher.of(keywords);
+      Map<Class<?>, Long> ruleTriggers = new IdentityHashMap<>();
+      for (Map.Entry<Class<?>, List<String>> rule : rules.entrySet()) {
+        long mask = 0L;
+        for (String word : rule.getValue()) {
+          mask |= vocabulary.mask(word);
+        }
+        ruleTriggers.put(rule.getKey(), mask);
+      }
+      Map<Class<?>, List<TriggerParameter>> ruleParameters = new IdentityHashMap<>();
+      for (Map.Entry<Class<?>, List<Function<Object, String>>> rule : parameters.entrySet()) {
+        long triggers = ruleTriggers.getOrDefault(rule.getKey(), 0L);
+        List<TriggerParameter> compiled = new ArrayList<>();
+        for (Function<Object, String> parameter : rule.getValue()) {
+          compiled.add(new TriggerParameter(parameter, vocabulary, triggers));
+        }
+        ruleParameters.put(rule.getKey(), compiled);
+      }
+      return new FilePrefilter(vocabulary, ruleTriggers, ruleParameters);
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package com.sunasterisk.sonar.rules;
 
+import com.sunasterisk.sonar.prefilter.FilePrefilter;
 import org.sonar.api.ExtensionPoint;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.plugins.php.api.visitors.PHPCustomRuleRepository;
@@ -11,6 +12,14 @@ import java.util.List;
 @ExtensionPoint
 public class CustomPhpRuleRepository implements PHPCustomRuleRepository {
 
+  // Words at least one of which occurs in any file a check can report on: the checks skip the other files
+  static final FilePrefilter PREFILTER = FilePrefilter.builder()
+    .rule(LaravelMassAssignmentCheck.class, "create", "fill", "update")
+    .rule(LaravelPlaintextOTPCheck.class, "otp", "time", "code")
+    .rule(UnsafeSVGContentCheck.class, "svg", "html", "raw", "unescape", "render")
+    .parameter(UnsafeSVGContentCheck.class, check -> check.unsafeOutputMethods)
+    .build();
+
   @Override
   public String repositoryKey() {
     return "custom-laravel-php";
@@ -0,0 +1,53 @@
+package com.sunasterisk.sonar.rules;
+
+import com.sunasterisk.sonar.tree.SourceRange;
+import org.sonar.plugins.php.api.tree.Tree;
+import org.sonar.plugins.php.api.visitors.CheckContext;
+import org.sonar.plugins.php.api.visitors.PHPCheck;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Issues raised by one check on one file, sent to the context in one batch at the end of the file.
+ *
+ * <p>Several detections of a check can fire on the same code, e.g. an argument both holding SVG
+ * content and user input: issues on the same source range become one issue whose message lists
+ * the distinct messages, in the order they were raised. The issues keep the order of their first
+ * report.</p>
+ */
+final class FileIssueCollector {
+
+  private final Map<Object, PendingIssue> issues = new LinkedHashMap<>();
+
+  void add(Tree tree, String message) {
+    PendingIssue issue = issues.computeIfAbsent(rangeOf(tree), key -> new PendingIssue(tree));
+    if (!issue.messages.contains(message)) {
+      issue.messages.add(message);
+    }
+  }
+
+  void flush(PHPCheck check, CheckContext context) {
+    for (PendingIssue issue : issues.values()) {
+      context.newIssue(check, issue.tree, String.join(" ", issue.messages));
+    }
+    issues.clear();
+  }
+
+  private static Object rangeOf(Tree tree) {
+    SourceRange range = SourceRange.of(tree);
+    // No source range to compare, only the same node is merged
+    return range != null ? range : tree;
+  }
+
+  private static final class PendingIssue {
+    private final Tree tree;
+    private final List<String> messages = new ArrayList<>(1);
+
+    private PendingIssue(Tree tree) {
+      this.tree = tree;
+    }
+  }
+}
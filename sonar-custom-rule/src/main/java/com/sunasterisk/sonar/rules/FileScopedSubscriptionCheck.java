@@ -0,0 +1,203 @@
+package com.sunasterisk.sonar.rules;
+
+import com.sunasterisk.sonar.cache.PhpIssueReplay;
+import com.sunasterisk.sonar.instrumentation.RuleMetrics;
+import com.sunasterisk.sonar.tree.PhpTreeWalker;
+import org.sonar.plugins.php.api.symbols.SymbolTable;
+import org.sonar.plugins.php.api.tree.CompilationUnitTree;
+import org.sonar.plugins.php.api.tree.Tree;
+import org.sonar.plugins.php.api.tree.Tree.Kind;
+import org.sonar.plugins.php.api.visitors.CheckContext;
+import org.sonar.plugins.php.api.visitors.PHPCheck;
+import org.sonar.plugins.php.api.visitors.PHPSubscriptionCheck;
+import org.sonar.plugins.php.api.visitors.PHPVisitorCheck;
+import org.sonar.plugins.php.api.visitors.PhpFile;
+import org.sonar.plugins.php.api.visitors.PhpIssue;
+import org.sonar.plugins.php.api.visitors.PreciseIssue;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * PHP subscription check whose instances can analyze several files at the same time.
+ *
+ * <p>{@link PHPSubscriptionCheck#analyze(CheckContext)} is final and keeps the context of the file
+ * in a field of the check, so this class implements {@link PHPCheck} itself: {@link #analyze(CheckContext)}
+ * walks the syntax tree, calling {@link #visitNode(Tree)} and {@link #leaveNode(Tree)} on the
+ * subscribed kinds in the same order as {@link PHPSubscriptionCheck}, and {@link #context()} answers
+ * the context of the file analyzed by the calling thread. Subclasses keep any other per-file state
+ * in the object created by {@link #newFileState(CheckContext)} and answered by {@link #fileState()},
+ * never in fields.</p>
+ *
+ * <p>Only the public API of the PHP analyzer is used, the only part the PHP plugin exposes to
+ * other plugins: the tree is walked by a {@link PhpTreeWalker}, and the context is the one the PHP
+ * sensor passes to {@link #analyze(CheckContext)}, or the one the PHP analyzer creates for
+ * {@link #analyze(PhpFile, CompilationUnitTree, SymbolTable)}.</p>
+ *
+ * <p>Files the {@link CustomPhpRuleRepository#PREFILTER} rules out are not visited, and unchanged
+ * files replay the issues of the previous analysis (see {@link PhpIssueReplay}).</p>
+ *
+ * <p>Subclasses raise their issues with {@link #addIssue(Tree, String)}: they are merged per source
+ * range and sent to the context once the file is visited (see {@link FileIssueCollector}).</p>
+ *
+ * <p>The files visited are counted and timed in the {@link RuleMetrics} of the rule, whose nodes the
+ * subclasses count themselves.</p>
+ *
+ * @param <S> state of the file being visited
+ */
+public abstract class FileScopedSubscriptionCheck<S> implements PHPCheck {
+
+  private final ThreadLocal<FileScope<S>> currentFile = new ThreadLocal<>();
+  // Same instance as the one of the subclass, both keyed by the rule key
+  private final RuleMetrics metrics = RuleMetrics.forCheck(getClass());
+  // nodesToVisit() only returns constants, computed once per instance by init()
+  private volatile Set<Kind> subscribedKinds;
+
+  public abstract List<Kind> nodesToVisit();
+
+  /**
+   * State of the file about to be visited, such as the variables tracked function by function,
+   * answered by {@link #fileState()} until the file is visited.
+   */
+  protected abstract S newFileState(CheckContext context);
+
+  public void visitNode(Tree tree) {
+    // Nothing by default
+  }
+
+  public void leaveNode(Tree tree) {
+    // Nothing by default
+  }
+
+  @Override
+  public void init() {
+    subscribedKinds = EnumSet.copyOf(nodesToVisit());
+  }
+
+  @Override
+  public List<PhpIssue> analyze(PhpFile file, CompilationUnitTree tree) {
+    return new ContextFactory(this).analyze(file, tree);
+  }
+
+  @Override
+  public List<PhpIssue> analyze(PhpFile file, CompilationUnitTree tree, SymbolTable symbolTable) {
+    return new ContextFactory(this).analyze(file, tree, symbolTable);
+  }
+
+  @Override
+  public List<PhpIssue> analyze(CheckContext context) {
+    // Skip files whose text cannot match this rule without visiting their syntax tree
+    if (!CustomPhpRuleRepository.PREFILTER.isApplicable(this, context.tree(), context.getPhpFile()::contents)) {
+      return Collections.emptyList();
+    }
+    // Unchanged files replay the issues of the previous analysis (see IssueCache)
+    return PhpIssueReplay.analyze(this, context, this::scanFile);
+  }
+
+  @Override
+  public PreciseIssue newIssue(Tree tree, String message) {
+    return context().newIssue(this, tree, message);
+  }
+
+  private List<PhpIssue> scanFile(CheckContext context) {
+    FileScope<S> file = new FileScope<>(context);
+    currentFile.set(file);
+    metrics.startFile(context.getPhpFile().uri());
+    try {
+      file.state = newFileState(context);
+      new SubscriptionWalker(this, subscribedKinds()).walk(context.tree());
+      file.issues.flush(this, context);
+      return context.getIssues();
+    } finally {
+      metrics.endFile();
+      currentFile.remove();
+    }
+  }
+
+  @Override
+  public CheckContext context() {
+    FileScope<S> file = currentFile.get();
+    return file != null ? file.context : null;
+  }
+
+  /**
+   * State of the file analyzed by the calling thread, see {@link #newFileState(CheckContext)}.
+   */
+  protected S fileState() {
+    return currentFile.get().state;
+  }
+
+  /**
+   * Raises an issue on the node, merged with the other issues of this check on the same range.
+   */
+  protected void addIssue(Tree tree, String message) {
+    currentFile.get().issues.add(tree, message);
+  }
+
+  private Set<Kind> subscribedKinds() {
+    Set<Kind> kinds = subscribedKinds;
+    if (kinds == null) {
+      // Analysis without init(), e.g. by a test harness
+      init();
+      kinds = subscribedKinds;
+    }
+    return kinds;
+  }
+
+  /**
+   * Calls {@link #visitNode(Tree)} and {@link #leaveNode(Tree)} on the subscribed kinds.
+   */
+  private static final class SubscriptionWalker extends PhpTreeWalker {
+    private final FileScopedSubscriptionCheck<?> check;
+    private final Set<Kind> kinds;
+
+    private SubscriptionWalker(FileScopedSubscriptionCheck<?> check, Set<Kind> kinds) {
+      this.check = check;
+      this.kinds = kinds;
+    }
+
+    @Override
+    protected boolean enter(Tree tree) {
+      if (kinds.contains(tree.getKind())) {
+        check.visitNode(tree);
+      }
+      return true;
+    }
+
+    @Override
+    protected void leave(Tree tree) {
+      if (kinds.contains(tree.getKind())) {
+        check.leaveNode(tree);
+      }
+    }
+  }
+
+  /**
+   * Lets the PHP analyzer create the context of a file analyzed outside of the PHP sensor, e.g. by
+   * a test, then hands it over to the check.
+   */
+  private static final class ContextFactory extends PHPVisitorCheck {
+    private final PHPCheck check;
+
+    private ContextFactory(PHPCheck check) {
+      this.check = check;
+    }
+
+    @Override
+    public List<PhpIssue> analyze(CheckContext context) {
+      return check.analyze(context);
+    }
+  }
+
+  private static final class FileScope<S> {
+    private final CheckContext context;
+    private final FileIssueCollector issues = new FileIssueCollector();
+    private S state;
+
+    private FileScope(CheckContext context) {
+      this.context = context;
+    }
+  }
+}
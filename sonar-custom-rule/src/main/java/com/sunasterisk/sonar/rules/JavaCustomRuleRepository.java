@@ -1,5 +1,6 @@
 package com.sunasterisk.sonar.rules;
 
+import com.sunasterisk.sonar.prefilter.FilePrefilter;
 import org.sonar.api.ExtensionPoint;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.plugins.java.api.CheckRegistrar;
@@ -16,6 +17,11 @@ public class JavaCustomRuleRepository implements CheckRegistrar {
   
   public static final String REPOSITORY_KEY = "custom-spring-boot-java";
   
+  // Words at least one of which occurs in any file a check can report on: the checks skip the other files
+  static final FilePrefilter PREFILTER = FilePrefilter.builder()
+    .rule(SpringBootSecureCredentialRecoveryCheck.class, SpringBootSecureCredentialRecoveryCheck.triggerWords())
+    .build();
+  
   @Override
   public void register(RegistrarContext registrarContext) {
     registrarContext.registerClassesForRepository(
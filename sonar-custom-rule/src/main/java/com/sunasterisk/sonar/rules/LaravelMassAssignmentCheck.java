@@ -3,26 +3,38 @@ package com.sunasterisk.sonar.rules;
 import org.sonar.check.Rule;
 import org.sonar.check.Priority;
 import org.sonar.plugins.php.api.visitors.PHPVisitorCheck;
+import org.sonar.plugins.php.api.visitors.CheckContext;
 import org.sonar.plugins.php.api.tree.Tree;
 import org.sonar.plugins.php.api.tree.Tree.Kind;
 import org.sonar.plugins.php.api.tree.expression.FunctionCallTree;
 import org.sonar.plugins.php.api.tree.expression.MemberAccessTree;
 import org.sonar.plugins.php.api.tree.expression.ExpressionTree;
 import org.sonar.plugins.php.api.tree.expression.LiteralTree;
-import org.sonar.plugins.php.api.tree.declaration.ClassDeclarationTree;
-import org.sonar.plugins.php.api.tree.declaration.ClassPropertyDeclarationTree;
 import org.sonar.plugins.php.api.tree.expression.IdentifierTree;
+import org.sonar.plugins.php.api.tree.expression.AssignmentExpressionTree;
+import org.sonar.plugins.php.api.tree.expression.BinaryExpressionTree;
+import org.sonar.plugins.php.api.tree.expression.NewExpressionTree;
+import org.sonar.plugins.php.api.tree.expression.ParenthesisedExpressionTree;
+import org.sonar.plugins.php.api.tree.expression.VariableIdentifierTree;
+import org.sonar.plugins.php.api.tree.declaration.CallArgumentTree;
+import org.sonar.plugins.php.api.tree.declaration.DeclaredTypeTree;
+import org.sonar.plugins.php.api.tree.declaration.FunctionTree;
+import org.sonar.plugins.php.api.tree.declaration.NamespaceNameTree;
+import org.sonar.plugins.php.api.tree.declaration.ParameterTree;
+import org.sonar.plugins.php.api.tree.declaration.TypeTree;
 import org.sonar.plugins.php.api.symbols.Symbol;
-import org.sonar.plugins.php.api.visitors.PHPSubscriptionCheck;
-import org.sonar.plugins.php.api.visitors.CheckContext;
 
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-// Add SLF4J imports
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+
+import com.sunasterisk.sonar.cache.ProjectDependent;
+import com.sunasterisk.sonar.dataflow.LocalTaint;
+import com.sunasterisk.sonar.instrumentation.RuleMetrics;
+import com.sunasterisk.sonar.laravel.EloquentModelIndex;
+import com.sunasterisk.sonar.text.TextPatterns;
+import com.sunasterisk.sonar.instrumentation.RuleTracer;
 
 @Rule(
   key = "LaravelMassAssignmentForCS1.1.1",
@@ -30,87 +42,314 @@ import org.slf4j.LoggerFactory;
   priority = Priority.CRITICAL,
   tags = {"security", "laravel", "mass-assignment"}
 )
-public class LaravelMassAssignmentCheck extends PHPSubscriptionCheck {
+public class LaravelMassAssignmentCheck extends FileScopedSubscriptionCheck<LaravelMassAssignmentCheck.FileState>
+  implements ProjectDependent {
 
   private static final List<String> UNSAFE_METHODS = Arrays.asList("create", "fill", "update");
   private static final List<String> UNSAFE_REQUEST_METHODS = Arrays.asList("all", "input");
+  // Functions returning an array with the entries of all their arguments
+  private static final List<String> ARRAY_MERGE_FUNCTIONS = Arrays.asList(
+    "array_merge", "array_merge_recursive", "array_replace", "array_replace_recursive");
+  // Label of the variables holding the request itself rather than data read from it
+  private static final String REQUEST = "Request";
+  // Static methods of a model returning an instance of it
+  private static final List<String> MODEL_INSTANCE_METHODS = Arrays.asList(
+    "find", "findOrFail", "findOrNew", "first", "firstOrFail", "firstOrNew", "firstOrCreate",
+    "create", "forceCreate", "make", "updateOrCreate");
 
-  // Add logger initialization
-  private static final Logger LOGGER = LoggerFactory.getLogger(LaravelMassAssignmentCheck.class);
+  // Sampled debug tracing, off by default (see RuleTracer)
+  private static final RuleTracer TRACER = RuleTracer.forCheck(LaravelMassAssignmentCheck.class);
+  // Time and node counts reported at the end of the analysis (see RuleMetrics)
+  private static final RuleMetrics METRICS = RuleMetrics.forCheck(LaravelMassAssignmentCheck.class);
 
   @Override
   public List<Kind> nodesToVisit() {
-    return Collections.singletonList(Kind.FUNCTION_CALL);
+    return Arrays.asList(
+      Kind.FUNCTION_DECLARATION,
+      Kind.METHOD_DECLARATION,
+      Kind.FUNCTION_EXPRESSION,
+      Kind.ARROW_FUNCTION_EXPRESSION,
+      Kind.ASSIGNMENT,
+      Kind.ASSIGNMENT_BY_REFERENCE,
+      Kind.PLUS_ASSIGNMENT,
+      Kind.FUNCTION_CALL);
+  }
+
+  @Override
+  protected FileState newFileState(CheckContext context) {
+    FileState file = new FileState();
+    // Code outside of any function
+    file.taint.enterFunction(false);
+    file.models.enterFunction(false);
+    return file;
   }
 
   @Override
   public void visitNode(Tree tree) {
-    FunctionCallTree functionCall = (FunctionCallTree) tree;
-    // Check if it's a function call
-    if (!functionCall.callee().is(Kind.OBJECT_MEMBER_ACCESS) &&
-        !functionCall.callee().is(Kind.CLASS_MEMBER_ACCESS)) {
+    if (tree instanceof FunctionTree) {
+      long start = METRICS.enterNode();
+      try {
+        enterFunction(fileState(), (FunctionTree) tree);
+      } finally {
+        METRICS.exitNode(start);
+      }
+    }
+  }
+
+  // Assignments and calls are handled once their operands have been visited, so that the value of
+  // a nested assignment such as create($data = $request->all()) is already known. Functions were
+  // counted when entered.
+  @Override
+  public void leaveNode(Tree tree) {
+    FileState file = fileState();
+    if (tree instanceof FunctionTree) {
+      file.taint.leaveFunction();
+      file.models.leaveFunction();
+    } else {
+      long start = METRICS.enterNode();
+      try {
+        if (tree.is(Kind.FUNCTION_CALL)) {
+          checkFunctionCall(file, (FunctionCallTree) tree);
+        } else {
+          recordAssignment(file, (AssignmentExpressionTree) tree);
+        }
+      } finally {
+        METRICS.exitNode(start);
+      }
+    }
+  }
+
+  private void enterFunction(FileState file, FunctionTree function) {
+    // Closures and arrow functions can read the variables of the enclosing function
+    boolean inheritsEnclosing = function.is(Kind.FUNCTION_EXPRESSION, Kind.ARROW_FUNCTION_EXPRESSION);
+    file.taint.enterFunction(inheritsEnclosing);
+    file.models.enterFunction(inheritsEnclosing);
+    for (ParameterTree parameter : function.parameters().parameters()) {
+      NamespaceNameTree type = classTypeOf(parameter.declaredType());
+      if (type == null) {
+        continue;
+      }
+      if (type.name().text().endsWith(REQUEST)) {
+        // Parameters typed with Request or a FormRequest subclass hold the request
+        file.taint.define(parameter.variableIdentifier().text(), REQUEST);
+      } else {
+        // Route model binding, e.g. update(User $user)
+        file.models.define(parameter.variableIdentifier().text(), qualifiedName(type));
+      }
+    }
+  }
+
+  /**
+   * Class of a parameter type, e.g. {@code \Illuminate\Http\Request} for {@code ?\Illuminate\Http\Request}.
+   */
+  private static NamespaceNameTree classTypeOf(DeclaredTypeTree declaredType) {
+    if (declaredType instanceof TypeTree && ((TypeTree) declaredType).typeName().is(Kind.NAMESPACE_NAME)) {
+      return (NamespaceNameTree) ((TypeTree) declaredType).typeName();
+    }
+    // No type, a built-in type or a union of types
+    return null;
+  }
+
+  private void recordAssignment(FileState file, AssignmentExpressionTree assignment) {
+    // Only local variables are tracked, not array elements or properties
+    if (!assignment.variable().is(Kind.VARIABLE_IDENTIFIER)) {
       return;
     }
+    String variable = ((VariableIdentifierTree) assignment.variable()).text();
+    String source = sourceOf(file, assignment.value());
+    if (assignment.is(Kind.PLUS_ASSIGNMENT)) {
+      file.taint.merge(variable, source);
+    } else {
+      file.taint.define(variable, source);
+      file.models.define(variable, modelOf(file, assignment.value()));
+    }
+    if (source != null && TRACER.sample()) {
+      TRACER.trace("{} now holds {}", variable, source);
+    }
+  }
 
-    // Add log to check tree type
-    LOGGER.info("Function call detected: {}", functionCall);
+  /**
+   * What the expression evaluates to: {@link #REQUEST} for the request itself, the name of the
+   * request method for data coming from {@link #UNSAFE_REQUEST_METHODS}, {@code null} otherwise.
+   */
+  private String sourceOf(FileState file, ExpressionTree expression) {
+    if (expression.is(Kind.VARIABLE_IDENTIFIER)) {
+      String variable = ((VariableIdentifierTree) expression).text();
+      String source = file.taint.sourceOf(variable);
+      return source == null && "$request".equals(variable) ? REQUEST : source;
+    }
+    if (expression.is(Kind.ASSIGNMENT, Kind.ASSIGNMENT_BY_REFERENCE, Kind.PLUS_ASSIGNMENT)) {
+      // Already recorded, see leaveNode
+      return sourceOf(file, ((AssignmentExpressionTree) expression).variable());
+    }
+    if (expression.is(Kind.PARENTHESISED_EXPRESSION)) {
+      return sourceOf(file, ((ParenthesisedExpressionTree) expression).expression());
+    }
+    if (expression.is(Kind.PLUS)) {
+      // Array union
+      BinaryExpressionTree union = (BinaryExpressionTree) expression;
+      String source = sourceOf(file, union.leftOperand());
+      return source != null && !REQUEST.equals(source) ? source : requestData(sourceOf(file, union.rightOperand()));
+    }
+    if (expression.is(Kind.OBJECT_MEMBER_ACCESS)) {
+      // $this->request
+      Tree member = ((MemberAccessTree) expression).member();
+      return member.is(Kind.NAME_IDENTIFIER) && "request".equals(((IdentifierTree) member).text()) ? REQUEST : null;
+    }
+    if (expression.is(Kind.FUNCTION_CALL)) {
+      return sourceOfCall(file, (FunctionCallTree) expression);
+    }
+    return null;
+  }
 
-    // Check if this is a Model::create(), $model->fill() or $model->update() call
-    if (functionCall.callee().is(Kind.OBJECT_MEMBER_ACCESS) || 
-        functionCall.callee().is(Kind.CLASS_MEMBER_ACCESS)) {
-      
-      MemberAccessTree memberAccess = (MemberAccessTree) functionCall.callee();
-      // Fix: Get method name from member access
-      String methodName = ((IdentifierTree)memberAccess.member()).text();
-      LOGGER.info("Method name: {}", methodName);
-      
-      // Check if the method is in the list of unsafe methods
-      if (UNSAFE_METHODS.contains(methodName)) {
-        LOGGER.info("Found unsafe method: {}", methodName);
-        
-        // Check what the first parameter of the method is
-        if (!functionCall.arguments().isEmpty()) {
-          ExpressionTree firstArgument = functionCall.arguments().get(0);
-          LOGGER.info("First argument type: {}", firstArgument.getClass().getSimpleName());
-          
-          // Check if the first parameter is $request->all() or $request->input()
-          if (firstArgument.is(Kind.FUNCTION_CALL)) {
-            FunctionCallTree argFunctionCall = (FunctionCallTree) firstArgument;
-            LOGGER.info("First argument is a function call: {}", argFunctionCall.toString().replaceAll("\\s+", " ").trim());
-            
-            if (argFunctionCall.callee().is(Kind.OBJECT_MEMBER_ACCESS)) {
-              MemberAccessTree argMemberAccess = (MemberAccessTree) argFunctionCall.callee();
-              // Fix: Get method name from member access
-              String argMethodName = ((IdentifierTree)argMemberAccess.member()).text();
-              LOGGER.info("Argument method name: {}", argMethodName);
-              
-              if (UNSAFE_REQUEST_METHODS.contains(argMethodName)) {
-                // This is a mass assignment vulnerability
-                context().newIssue(this, tree, 
-                  "Unsafe mass assignment detected: Using " + methodName + "() with " + 
-                  argMethodName + "() can lead to mass assignment vulnerabilities. " + 
-                  "Make sure $fillable or $guarded is properly set in the model.");
-              }
-            }
-          }
-          
-          // Check for $request->all() case
-          if (firstArgument.is(Kind.VARIABLE_IDENTIFIER)) {
-            // Detect direct variables like $request or $input
-            String varName = firstArgument.toString();
-            LOGGER.info("First argument is a variable: {}", varName);
-            
-            if (varName.contains("request") || varName.contains("input")) {
-              context().newIssue(this, tree,
-                "Potential unsafe mass assignment detected: Using " + methodName + "() with " + 
-                varName + " can lead to mass assignment vulnerabilities. " +
-                "Make sure $fillable or $guarded is properly set in the model.");
-            }
+  private String sourceOfCall(FileState file, FunctionCallTree call) {
+    ExpressionTree callee = call.callee();
+    if (callee.is(Kind.NAMESPACE_NAME)) {
+      String function = ((NamespaceNameTree) callee).name().text();
+      if ("request".equalsIgnoreCase(function) && call.callArguments().isEmpty()) {
+        return REQUEST;
+      }
+      if (TextPatterns.isOneOf(function, ARRAY_MERGE_FUNCTIONS)) {
+        for (CallArgumentTree argument : call.callArguments()) {
+          String source = requestData(sourceOf(file, argument.value()));
+          if (source != null) {
+            return source;
           }
-        } else {
-          LOGGER.info("No arguments found for unsafe method call");
         }
       }
+      return null;
+    }
+    if (callee.is(Kind.OBJECT_MEMBER_ACCESS, Kind.CLASS_MEMBER_ACCESS)) {
+      MemberAccessTree memberAccess = (MemberAccessTree) callee;
+      if (!memberAccess.member().is(Kind.NAME_IDENTIFIER)) {
+        return null;
+      }
+      String method = ((IdentifierTree) memberAccess.member()).text();
+      if (UNSAFE_REQUEST_METHODS.contains(method) && isRequest(file, memberAccess)) {
+        return method;
+      }
     }
+    return null;
+  }
+
+  private boolean isRequest(FileState file, MemberAccessTree memberAccess) {
+    ExpressionTree object = memberAccess.object();
+    if (memberAccess.is(Kind.CLASS_MEMBER_ACCESS)) {
+      // Request::all() through the facade
+      return object.is(Kind.NAMESPACE_NAME) && REQUEST.equals(((NamespaceNameTree) object).name().text());
+    }
+    return REQUEST.equals(sourceOf(file, object));
+  }
+
+  /**
+   * Fully qualified class name of the model the expression evaluates to, when known.
+   */
+  private String modelOf(FileState file, ExpressionTree expression) {
+    if (expression.is(Kind.VARIABLE_IDENTIFIER)) {
+      return file.models.sourceOf(((VariableIdentifierTree) expression).text());
+    }
+    if (expression.is(Kind.ASSIGNMENT, Kind.ASSIGNMENT_BY_REFERENCE)) {
+      return modelOf(file, ((AssignmentExpressionTree) expression).variable());
+    }
+    if (expression.is(Kind.PARENTHESISED_EXPRESSION)) {
+      return modelOf(file, ((ParenthesisedExpressionTree) expression).expression());
+    }
+    if (expression.is(Kind.NEW_EXPRESSION)) {
+      // new User() or new User
+      ExpressionTree created = ((NewExpressionTree) expression).expression();
+      if (created.is(Kind.FUNCTION_CALL)) {
+        created = ((FunctionCallTree) created).callee();
+      }
+      return className(created);
+    }
+    if (expression.is(Kind.FUNCTION_CALL) && ((FunctionCallTree) expression).callee().is(Kind.CLASS_MEMBER_ACCESS)) {
+      // User::find($id)
+      MemberAccessTree memberAccess = (MemberAccessTree) ((FunctionCallTree) expression).callee();
+      if (memberAccess.member().is(Kind.NAME_IDENTIFIER)
+        && MODEL_INSTANCE_METHODS.contains(((IdentifierTree) memberAccess.member()).text())) {
+        return className(memberAccess.object());
+      }
+    }
+    return null;
+  }
+
+  private String className(ExpressionTree expression) {
+    return expression.is(Kind.NAMESPACE_NAME) ? qualifiedName((NamespaceNameTree) expression) : null;
+  }
+
+  /**
+   * Fully qualified name of a class name, resolved against the namespace and the imports of the file.
+   */
+  private String qualifiedName(NamespaceNameTree name) {
+    // The symbol table resolves class names on their last identifier
+    Symbol symbol = context().symbolTable().getSymbol(name.name());
+    if (symbol != null && symbol.qualifiedName() != null) {
+      return symbol.qualifiedName().toString();
+    }
+    return name.fullName();
+  }
+
+  // Data read from the request, the request object itself is not an array of attributes
+  private static String requestData(String source) {
+    return REQUEST.equals(source) ? null : source;
+  }
+
+  @Override
+  public String projectFingerprint() {
+    return EloquentModelIndex.current().fingerprint();
+  }
+
+  private void checkFunctionCall(FileState file, FunctionCallTree functionCall) {
+    // Check if this is a Model::create(), $model->fill() or $model->update() call
+    if (!functionCall.callee().is(Kind.OBJECT_MEMBER_ACCESS, Kind.CLASS_MEMBER_ACCESS)) {
+      return;
+    }
+    MemberAccessTree memberAccess = (MemberAccessTree) functionCall.callee();
+    if (!memberAccess.member().is(Kind.NAME_IDENTIFIER)) {
+      return;
+    }
+    String methodName = ((IdentifierTree) memberAccess.member()).text();
+    if (!UNSAFE_METHODS.contains(methodName) || functionCall.callArguments().isEmpty()) {
+      return;
+    }
+    if (TRACER.sample()) {
+      TRACER.trace("Found unsafe method: {}", methodName);
+    }
+
+    // Check whether the first parameter holds $request->all() or $request->input()
+    ExpressionTree firstArgument = functionCall.callArguments().get(0).value();
+    String argMethodName = requestData(sourceOf(file, firstArgument));
+    if (argMethodName == null) {
+      return;
+    }
+    // Models declaring $fillable or $guarded are protected (see EloquentModelIndex)
+    String model = memberAccess.is(Kind.CLASS_MEMBER_ACCESS) ? className(memberAccess.object()) : modelOf(file, memberAccess.object());
+    if (model != null && EloquentModelIndex.current().isGuarded(model)) {
+      if (TRACER.sample()) {
+        TRACER.trace("{} is guarded, ignoring {}()", model, methodName);
+      }
+      return;
+    }
+    if (firstArgument.is(Kind.FUNCTION_CALL)) {
+      addIssue(functionCall,
+        "Unsafe mass assignment detected: Using " + methodName + "() with " +
+        argMethodName + "() can lead to mass assignment vulnerabilities. " +
+        "Make sure $fillable or $guarded is properly set in the model.");
+    } else {
+      addIssue(functionCall,
+        "Unsafe mass assignment detected: Using " + methodName + "() with data coming from " +
+        argMethodName + "() can lead to mass assignment vulnerabilities. " +
+        "Make sure $fillable or $guarded is properly set in the model.");
+    }
+  }
+
+  /**
+   * Variables of one file, tracked function by function while the file is scanned.
+   */
+  static final class FileState {
+    // Local variables holding the request or data read from it
+    private final LocalTaint taint = new LocalTaint();
+    // Local variables holding a model, mapped to its class name
+    private final LocalTaint models = new LocalTaint();
   }
 }
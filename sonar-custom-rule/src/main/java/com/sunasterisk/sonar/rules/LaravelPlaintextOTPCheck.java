@@ -2,6 +2,7 @@ package com.sunasterisk.sonar.rules;
 
 import org.sonar.check.Rule;
 import org.sonar.check.Priority;
+import org.sonar.check.RuleProperty;
 import org.sonar.plugins.php.api.tree.Tree;
 import org.sonar.plugins.php.api.tree.Tree.Kind;
 import org.sonar.plugins.php.api.tree.expression.FunctionCallTree;
@@ -11,23 +12,41 @@ import org.sonar.plugins.php.api.tree.expression.ExpressionTree;
 import org.sonar.plugins.php.api.tree.expression.LiteralTree;
 import org.sonar.plugins.php.api.tree.expression.ArrayInitializerTree;
 import org.sonar.plugins.php.api.tree.expression.ArrayPairTree;
+import org.sonar.plugins.php.api.tree.declaration.CallArgumentTree;
 import org.sonar.plugins.php.api.tree.declaration.ClassDeclarationTree;
 import org.sonar.plugins.php.api.tree.declaration.ClassPropertyDeclarationTree;
+import org.sonar.plugins.php.api.tree.declaration.DeclaredTypeTree;
+import org.sonar.plugins.php.api.tree.declaration.FunctionTree;
+import org.sonar.plugins.php.api.tree.declaration.NamespaceNameTree;
+import org.sonar.plugins.php.api.tree.declaration.ParameterTree;
+import org.sonar.plugins.php.api.tree.declaration.TypeTree;
 import org.sonar.plugins.php.api.tree.expression.IdentifierTree;
 import org.sonar.plugins.php.api.tree.expression.AssignmentExpressionTree;
+import org.sonar.plugins.php.api.tree.expression.ParenthesisedExpressionTree;
 import org.sonar.plugins.php.api.tree.statement.ExpressionStatementTree;
-import org.sonar.plugins.php.api.visitors.PHPSubscriptionCheck;
-import org.sonar.plugins.php.api.visitors.PHPVisitorCheck;
+import org.sonar.plugins.php.api.symbols.Symbol;
 import org.sonar.plugins.php.api.visitors.CheckContext;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.sonar.plugins.php.api.visitors.PHPVisitorCheck;
+import com.sunasterisk.sonar.cache.ProjectDependent;
+import com.sunasterisk.sonar.dataflow.LocalTaint;
+import com.sunasterisk.sonar.instrumentation.RuleMetrics;
+import com.sunasterisk.sonar.instrumentation.RuleTracer;
+import com.sunasterisk.sonar.laravel.HashingFunctionIndex;
+import com.sunasterisk.sonar.laravel.LaravelStorage;
+import com.sunasterisk.sonar.text.KeywordMatcher;
+import com.sunasterisk.sonar.text.PatternMatcher;
+import com.sunasterisk.sonar.text.SourceTextCache;
+import com.sunasterisk.sonar.text.TextPatterns;
+import com.sunasterisk.sonar.text.TextSlice;
+import com.sunasterisk.sonar.text.WordSet;
 
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.regex.Pattern;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
 
 @Rule(
   key = "LaravelPlaintextOTPForCS2.2.2",
@@ -35,27 +54,66 @@ import java.util.regex.Pattern;
   priority = Priority.CRITICAL,
   tags = {"security", "laravel", "otp", "plaintext"}
 )
-public class LaravelPlaintextOTPCheck extends PHPSubscriptionCheck {
+public class LaravelPlaintextOTPCheck extends FileScopedSubscriptionCheck<LaravelPlaintextOTPCheck.FileState>
+    implements ProjectDependent {
 
-  private static final Logger LOGGER = LoggerFactory.getLogger(LaravelPlaintextOTPCheck.class);
+  // Sampled debug tracing, off by default (see RuleTracer)
+  private static final RuleTracer TRACER = RuleTracer.forCheck(LaravelPlaintextOTPCheck.class);
+  // Time and node counts reported at the end of the analysis (see RuleMetrics)
+  private static final RuleMetrics METRICS = RuleMetrics.forCheck(LaravelPlaintextOTPCheck.class);
   
   // Define patterns for OTP variable names
-  private static final Pattern OTP_VAR_PATTERN = Pattern.compile("(?i)\\botp\\b|one.?time.?password|verification.?code|auth.?code");
+  private static final String OTP_VAR_PATTERN = "(?i)\\botp\\b|one.?time.?password|verification.?code|auth.?code";
   
   // List of methods that should not receive plaintext OTP
-  private static final List<String> UNSAFE_DB_METHODS = Arrays.asList(
-      "create", "insert", "save", "update", "execute"
-  );
+  private static final String DEFAULT_UNSAFE_DB_METHODS = "create,insert,save,update,execute";
   
   // List of Laravel storage mechanisms that should not store OTP
-  private static final List<String> UNSAFE_STORAGE_METHODS = Arrays.asList(
-      "put", "set", "add", "remember", "forever", "store"
-  );
-  
-  // List of classes/contexts where OTP should not be stored in plaintext
-  private static final List<String> SENSITIVE_STORAGE_CLASSES = Arrays.asList(
-      "db", "database", "session", "cache", "redis", "cookie", "storage", "log"
-  );
+  private static final String DEFAULT_UNSAFE_STORAGE_METHODS = "put,set,add,remember,forever,store";
+
+  // Functions and static methods hashing their argument
+  private static final String DEFAULT_HASH_FUNCTIONS = "hash,bcrypt,password_hash,encrypt,Hash::make";
+
+  // Method of the request returning its session
+  private static final String SESSION = "session";
+  // Label of the local variables holding a storage that is not a typed parameter
+  private static final String STORAGE = "storage";
+  // Label of the local variables holding a hash, e.g. $hashed = Hash::make($otp)
+  private static final String HASHED = "hashed";
+
+  // Shared automata (see TextPatterns), each finding all of its patterns in a single pass over the node text
+  private static final PatternMatcher OTP_NAMES = TextPatterns.pattern(OTP_VAR_PATTERN);
+  private static final PatternMatcher SESSION_OTP = TextPatterns.patterns()
+      .keywords("_session")
+      .pattern(OTP_VAR_PATTERN)
+      .build();
+  private static final long SESSION_VARIABLE = SESSION_OTP.mask("_session");
+  private static final long OTP_VARIABLE = SESSION_OTP.mask(OTP_VAR_PATTERN);
+  private static final KeywordMatcher SQL_FUNCTIONS = TextPatterns.keywords("query", "exec", "execute");
+  private static final KeywordMatcher SQL_TERMS = TextPatterns.keywords(
+      "insert into", "update", "otp", "one time", "verification code", "hash", "password_hash", "bcrypt");
+  private static final long SQL_WRITE = SQL_TERMS.mask("insert into") | SQL_TERMS.mask("update");
+  private static final long SQL_OTP = SQL_TERMS.mask("otp") | SQL_TERMS.mask("one time") | SQL_TERMS.mask("verification code");
+  private static final long SQL_HASH = SQL_TERMS.mask("hash") | SQL_TERMS.mask("password_hash") | SQL_TERMS.mask("bcrypt");
+
+  @RuleProperty(
+    key = "unsafeDbMethods",
+    description = "Comma-separated methods writing their array argument to the database, e.g. Model::create([...])",
+    defaultValue = DEFAULT_UNSAFE_DB_METHODS)
+  public String unsafeDbMethods = DEFAULT_UNSAFE_DB_METHODS;
+
+  @RuleProperty(
+    key = "unsafeStorageMethods",
+    description = "Comma-separated methods of a cache, session or other storage writing their arguments, e.g. Cache::put()",
+    defaultValue = DEFAULT_UNSAFE_STORAGE_METHODS)
+  public String unsafeStorageMethods = DEFAULT_UNSAFE_STORAGE_METHODS;
+
+  @RuleProperty(
+    key = "hashFunctions",
+    description = "Comma-separated functions hashing their argument, e.g. bcrypt, and static methods written "
+      + "Class::method, e.g. Hash::make, matched on their whole name ignoring case",
+    defaultValue = DEFAULT_HASH_FUNCTIONS)
+  public String hashFunctions = DEFAULT_HASH_FUNCTIONS;
 
   @Override
   public List<Kind> nodesToVisit() {
@@ -63,39 +121,191 @@ public class LaravelPlaintextOTPCheck extends PHPSubscriptionCheck {
         Kind.FUNCTION_CALL,            // For DB operations and logging functions
         Kind.ASSIGNMENT_BY_REFERENCE,  // For references
         Kind.ASSIGNMENT,               // For session storage like $_SESSION['otp'] = $otp
-        Kind.ARRAY_INITIALIZER_BRACKET // For array initializers in create() methods
+        Kind.ARRAY_INITIALIZER_BRACKET, // For array initializers in create() methods
+        Kind.FUNCTION_DECLARATION,      // For parameters typed with a storage class
+        Kind.METHOD_DECLARATION,
+        Kind.FUNCTION_EXPRESSION,
+        Kind.ARROW_FUNCTION_EXPRESSION
     );
   }
 
+  @Override
+  protected FileState newFileState(CheckContext context) {
+    FileState file = new FileState(TextPatterns.words(unsafeDbMethods), TextPatterns.words(unsafeStorageMethods),
+        TextPatterns.words(hashFunctions));
+    // Code outside of any function
+    file.storage.enterFunction(false);
+    file.hashed.enterFunction(false);
+    return file;
+  }
+
   @Override
   public void visitNode(Tree tree) {
-    switch (tree.getKind()) {
+    long start = METRICS.enterNode();
+    try {
+      if (TRACER.sample()) {
+        TRACER.trace("Visiting {}", tree.getKind());
+      }
+      FileState file = fileState();
+      switch (tree.getKind()) {
+        case FUNCTION_CALL:
+          checkFunctionCall(file, (FunctionCallTree) tree);
+          break;
+        case ASSIGNMENT:
+        case ASSIGNMENT_BY_REFERENCE:
+          recordStorage(file, (AssignmentExpressionTree) tree);
+          recordHash(file, (AssignmentExpressionTree) tree);
+          checkAssignment((AssignmentExpressionTree) tree);
+          break;
+        case ARRAY_INITIALIZER_BRACKET:
+          checkArrayInitializer(file, (ArrayInitializerTree) tree);
+          break;
+        case FUNCTION_DECLARATION:
+        case METHOD_DECLARATION:
+        case FUNCTION_EXPRESSION:
+        case ARROW_FUNCTION_EXPRESSION:
+          enterFunction(file, (FunctionTree) tree);
+          break;
+        default:
+          // Not interested in other tree types
+      }
+    } finally {
+      METRICS.exitNode(start);
+    }
+  }
+
+  @Override
+  public void leaveNode(Tree tree) {
+    if (tree instanceof FunctionTree) {
+      FileState file = fileState();
+      file.storage.leaveFunction();
+      file.hashed.leaveFunction();
+    }
+  }
+
+
+  @Override
+  public String projectFingerprint() {
+    return HashingFunctionIndex.current().fingerprint();
+  }
+
+  private void enterFunction(FileState file, FunctionTree function) {
+    // Closures and arrow functions can use the storages and hashes of the enclosing function
+    boolean inherits = function.is(Kind.FUNCTION_EXPRESSION, Kind.ARROW_FUNCTION_EXPRESSION);
+    file.storage.enterFunction(inherits);
+    file.hashed.enterFunction(inherits);
+    for (ParameterTree parameter : function.parameters().parameters()) {
+      // Injected storages, e.g. __construct(Repository $cache) or store(Request $request, Session $session)
+      String type = typeOf(parameter.declaredType());
+      if (type != null && LaravelStorage.isStorageClass(type)) {
+        file.storage.define(parameter.variableIdentifier().text(), type);
+      }
+    }
+  }
+
+  private void recordStorage(FileState file, AssignmentExpressionTree assignment) {
+    ExpressionTree variable = assignment.variable();
+    boolean storage = isStorage(file, assignment.value());
+    if (variable.is(Kind.VARIABLE_IDENTIFIER)) {
+      file.storage.define(((VariableIdentifierTree) variable).text(), storage ? STORAGE : null);
+    } else if (storage && thisProperty(variable) != null) {
+      // $this->cache = $cache in a constructor, used by the other methods of the class
+      file.storageProperties.add(thisProperty(variable));
+    }
+  }
+
+  private void recordHash(FileState file, AssignmentExpressionTree assignment) {
+    if (assignment.variable().is(Kind.VARIABLE_IDENTIFIER)) {
+      // Reassigning a plaintext value to the variable of a hash makes it plaintext again
+      file.hashed.define(((VariableIdentifierTree) assignment.variable()).text(), isHashed(file, assignment.value()) ? HASHED : null);
+    }
+  }
+
+  /**
+   * Whether the expression is a cache, the session, Redis, a cookie jar, a database connection, a
+   * logger or a filesystem (see {@link LaravelStorage}): a storage class such as {@code Cache}, a
+   * variable or property holding one, a helper such as {@code session()} or a storage returned by
+   * {@code $request->session()} or {@code Cache::store()}.
+   */
+  private boolean isStorage(FileState file, ExpressionTree expression) {
+    switch (expression.getKind()) {
+      case NAMESPACE_NAME:
+        return LaravelStorage.isStorageClass(qualifiedName((NamespaceNameTree) expression));
+      case VARIABLE_IDENTIFIER:
+        return file.storage.sourceOf(((VariableIdentifierTree) expression).text()) != null;
+      case OBJECT_MEMBER_ACCESS:
+        String property = thisProperty(expression);
+        return property != null && file.storageProperties.contains(property);
       case FUNCTION_CALL:
-        checkFunctionCall((FunctionCallTree) tree);
-        break;
-      case ASSIGNMENT:
-      case ASSIGNMENT_BY_REFERENCE:
-        checkAssignment((AssignmentExpressionTree) tree);
-        break;
-      case ARRAY_INITIALIZER_BRACKET:
-        checkArrayInitializer((ArrayInitializerTree) tree);
-        break;
+        ExpressionTree callee = ((FunctionCallTree) expression).callee();
+        if (callee.is(Kind.NAMESPACE_NAME)) {
+          return LaravelStorage.isStorageHelper(((NamespaceNameTree) callee).name().text());
+        }
+        if (callee.is(Kind.OBJECT_MEMBER_ACCESS, Kind.CLASS_MEMBER_ACCESS)) {
+          MemberAccessTree access = (MemberAccessTree) callee;
+          if (!access.member().is(Kind.NAME_IDENTIFIER)) {
+            return false;
+          }
+          String method = ((IdentifierTree) access.member()).text();
+          return SESSION.equalsIgnoreCase(method)
+            || (LaravelStorage.isStorageAccessor(method) && isStorage(file, access.object()));
+        }
+        return false;
       default:
-        // Not interested in other tree types
+        return false;
+    }
+  }
+
+  /**
+   * Fully qualified name of a class reference, resolved by the symbol table through the namespace
+   * and the {@code use} statements of the file.
+   */
+  private String qualifiedName(NamespaceNameTree name) {
+    // The symbol table resolves class names on their last identifier
+    Symbol symbol = context().symbolTable().getSymbol(name.name());
+    if (symbol != null && symbol.qualifiedName() != null) {
+      return symbol.qualifiedName().toString();
+    }
+    // Unresolved names are taken as written, e.g. the global aliases declared by Laravel
+    return name.fullName();
+  }
+
+  private String typeOf(DeclaredTypeTree declaredType) {
+    if (declaredType instanceof TypeTree && ((TypeTree) declaredType).typeName().is(Kind.NAMESPACE_NAME)) {
+      return qualifiedName((NamespaceNameTree) ((TypeTree) declaredType).typeName());
+    }
+    // No type, a built-in type or a union of types
+    return null;
+  }
+
+  /**
+   * Name of the property for {@code $this->name}, {@code null} for any other expression.
+   */
+  private static String thisProperty(ExpressionTree expression) {
+    if (!expression.is(Kind.OBJECT_MEMBER_ACCESS)) {
+      return null;
+    }
+    MemberAccessTree access = (MemberAccessTree) expression;
+    if (!access.object().is(Kind.VARIABLE_IDENTIFIER) || !"$this".equals(((VariableIdentifierTree) access.object()).text())
+        || !access.member().is(Kind.NAME_IDENTIFIER)) {
+      return null;
     }
+    return ((IdentifierTree) access.member()).text().toLowerCase(Locale.ROOT);
   }
 
-  private void checkFunctionCall(FunctionCallTree functionCall) {
+  private void checkFunctionCall(FileState file, FunctionCallTree functionCall) {
     // Case 1: Check for ORM operations with plaintext OTP - Model::create(['otp' => $otp])
-    if (functionCall.callee().is(Kind.OBJECT_MEMBER_ACCESS) || 
-        functionCall.callee().is(Kind.CLASS_MEMBER_ACCESS)) {
+    // $obj->{$name}() has no method name to check
+    if ((functionCall.callee().is(Kind.OBJECT_MEMBER_ACCESS) || 
+        functionCall.callee().is(Kind.CLASS_MEMBER_ACCESS))
+        && ((MemberAccessTree) functionCall.callee()).member().is(Kind.NAME_IDENTIFIER)) {
       
       MemberAccessTree memberAccess = (MemberAccessTree) functionCall.callee();
       String methodName = ((IdentifierTree) memberAccess.member()).text();
 
-      if (UNSAFE_DB_METHODS.contains(methodName.toLowerCase())) {
+      if (file.dbMethods.contains(methodName)) {
         // Check if the arguments contain plaintext OTP
-        checkArgumentsForPlaintextOTP(functionCall, methodName);
+        checkArgumentsForPlaintextOTP(file, functionCall, methodName);
       }
       
       // Case 2: Check logging functions containing OTP values
@@ -109,23 +319,13 @@ public class LaravelPlaintextOTPCheck extends PHPSubscriptionCheck {
       }
       
       // Case 3: Check cache/session storage with plaintext OTP
-      if (UNSAFE_STORAGE_METHODS.contains(methodName.toLowerCase())) {
-        ExpressionTree object = memberAccess.object();
-        if (object.is(Kind.VARIABLE_IDENTIFIER) || object.is(Kind.NAMESPACE_NAME)) {
-          String objectName = object.toString().toLowerCase();
-          for (String sensitiveClass : SENSITIVE_STORAGE_CLASSES) {
-            if (objectName.contains(sensitiveClass)) {
-              checkArgumentsForPlaintextOTP(functionCall, methodName);
-              break;
-            }
-          }
-        }
+      if (file.storageMethods.contains(methodName) && isStorage(file, memberAccess.object())) {
+        checkArgumentsForPlaintextOTP(file, functionCall, methodName);
       }
     }
     
     // Case 4: Check direct SQL queries with OTP
-    String functionName = functionCall.callee().toString();
-    if (functionName.contains("query") || functionName.contains("exec") || functionName.contains("execute")) {
+    if (SQL_FUNCTIONS.containsAny(text(functionCall.callee()))) {
       checkSQLQueriesForOTP(functionCall);
     }
   }
@@ -135,33 +335,34 @@ public class LaravelPlaintextOTPCheck extends PHPSubscriptionCheck {
     ExpressionTree variable = assignment.variable();
     
     if (variable.is(Kind.ARRAY_ACCESS)) {
-      String varText = variable.toString().toLowerCase();
-      if (varText.contains("_session") && OTP_VAR_PATTERN.matcher(varText).find()) {
+      long found = SESSION_OTP.matches(text(variable));
+      if ((found & SESSION_VARIABLE) != 0 && (found & OTP_VARIABLE) != 0) {
         // Direct session storage without hashing is being used
-        context().newIssue(this, variable,
+        addIssue(variable,
             "OTP should not be stored in plaintext in session variables. Use hashing with a salt.");
       }
     }
   }
   
-  private void checkArrayInitializer(ArrayInitializerTree arrayInitializer) {
+  private void checkArrayInitializer(FileState file, ArrayInitializerTree arrayInitializer) {
     // Check for ['otp' => $value] patterns in array initializers
     for (ArrayPairTree pair : arrayInitializer.arrayPairs()) {
       if (pair.key() != null && pair.key().is(Kind.REGULAR_STRING_LITERAL)) {
-        String key = ((LiteralTree) pair.key()).value().toLowerCase();
-        // Remove quotes from the key
-        key = key.replaceAll("['\"]", "");
-        
-        if (OTP_VAR_PATTERN.matcher(key).find()) {
+        // Quotes of the key literal cannot change the match
+        if (OTP_NAMES.find(((LiteralTree) pair.key()).value())) {
           // Array has an 'otp' key with a value, check if the value is hashed
           ExpressionTree value = pair.value();
+          if (isHashed(file, value)) {
+            // Hashed before, e.g. $hashed = Hash::make($otp), or by a helper such as $this->hashOtp($otp)
+            continue;
+          }
           if (value.is(Kind.VARIABLE_IDENTIFIER)) {
             // If it's just a variable like $otp, it's likely plaintext
-            context().newIssue(this, pair,
+            addIssue(pair,
                 "OTP should not be stored in plaintext. Use a secure hashing function with a salt.");
-          } else if (!isFunctionCallWithHash(value)) {
+          } else {
             // If it's not a hash function call, it's likely plaintext
-            context().newIssue(this, pair,
+            addIssue(pair,
                 "Potential plaintext OTP detected in array. Use a secure hashing function.");
           }
         }
@@ -169,48 +370,75 @@ public class LaravelPlaintextOTPCheck extends PHPSubscriptionCheck {
     }
   }
 
-  private boolean isFunctionCallWithHash(ExpressionTree expression) {
+  /**
+   * Whether the value is a hash: a hashing call, a call to a function of the project returning a
+   * hash (see {@link HashingFunctionIndex}) or a local variable assigned one of them.
+   */
+  private boolean isHashed(FileState file, ExpressionTree expression) {
+    if (expression.is(Kind.PARENTHESISED_EXPRESSION)) {
+      return isHashed(file, ((ParenthesisedExpressionTree) expression).expression());
+    }
+    if (expression.is(Kind.VARIABLE_IDENTIFIER)) {
+      return file.hashed.sourceOf(((VariableIdentifierTree) expression).text()) != null;
+    }
+    return isFunctionCallWithHash(file, expression);
+  }
+
+  private boolean isFunctionCallWithHash(FileState file, ExpressionTree expression) {
     if (expression.is(Kind.FUNCTION_CALL)) {
       FunctionCallTree functionCall = (FunctionCallTree) expression;
-      String functionName = functionCall.callee().toString().toLowerCase();
-      return functionName.contains("hash") || 
-             functionName.contains("bcrypt") ||
-             functionName.contains("password_hash") || 
-             functionName.contains("encrypt") || 
-             functionName.contains("make");
+      // A single lookup in the summaries computed once for the project
+      return isHashFunction(file.hashFunctions, functionCall) || HashingFunctionIndex.current().returnsHash(functionCall);
     }
     return false;
   }
+
+  /**
+   * Whether the call is one of the {@code hashFunctions} parameter: a function by its name, such as
+   * {@code bcrypt()}, or a static method by its class and name, such as {@code Hash::make()}.
+   */
+  private static boolean isHashFunction(WordSet hashFunctions, FunctionCallTree functionCall) {
+    ExpressionTree callee = functionCall.callee();
+    if (callee.is(Kind.NAMESPACE_NAME)) {
+      return hashFunctions.contains(((NamespaceNameTree) callee).name().text());
+    }
+    if (!callee.is(Kind.CLASS_MEMBER_ACCESS)) {
+      return false;
+    }
+    MemberAccessTree access = (MemberAccessTree) callee;
+    return access.object().is(Kind.NAMESPACE_NAME) && access.member().is(Kind.NAME_IDENTIFIER)
+      && hashFunctions.contains(((NamespaceNameTree) access.object()).name().text() + "::" + ((IdentifierTree) access.member()).text());
+  }
   
-  private void checkArgumentsForPlaintextOTP(FunctionCallTree functionCall, String methodName) {
-    if (functionCall.arguments().isEmpty()) {
+  private void checkArgumentsForPlaintextOTP(FileState file, FunctionCallTree functionCall, String methodName) {
+    if (functionCall.callArguments().isEmpty()) {
       return;
     }
     
     // For create/insert methods, the first argument is usually an array with column => value pairs
-    ExpressionTree firstArg = functionCall.arguments().get(0);
+    ExpressionTree firstArg = functionCall.callArguments().get(0).value();
     
     if (firstArg.is(Kind.ARRAY_INITIALIZER_BRACKET)) {
       ArrayInitializerTree arrayInit = (ArrayInitializerTree) firstArg;
       
       for (ArrayPairTree pair : arrayInit.arrayPairs()) {
         if (pair.key() != null && pair.key().is(Kind.REGULAR_STRING_LITERAL)) {
-          String key = ((LiteralTree) pair.key()).value().toLowerCase();
-          key = key.replaceAll("['\"]", ""); // Remove quotes
-          
-          if (OTP_VAR_PATTERN.matcher(key).find()) {
+          if (OTP_NAMES.find(((LiteralTree) pair.key()).value())) {
             ExpressionTree value = pair.value();
             
             // Check if the value is properly hashed or not
+            if (isHashed(file, value)) {
+              continue;
+            }
             if (value.is(Kind.VARIABLE_IDENTIFIER) || 
                 value.is(Kind.REGULAR_STRING_LITERAL) || 
                 value.is(Kind.NUMERIC_LITERAL) ||
                 value.is(Kind.BOOLEAN_LITERAL) ||
                 value.is(Kind.NULL_LITERAL)) {
-              context().newIssue(this, pair,
+              addIssue(pair,
                   "OTP should not be stored in plaintext when using " + methodName + "(). Use a secure hashing function.");
-            } else if (!isFunctionCallWithHash(value)) {
-              context().newIssue(this, pair,
+            } else {
+              addIssue(pair,
                   "Potential plaintext OTP detected in " + methodName + "() call. Use a secure hashing function.");
             }
           }
@@ -221,10 +449,10 @@ public class LaravelPlaintextOTPCheck extends PHPSubscriptionCheck {
   
   private void checkLogStatementsForOTP(FunctionCallTree functionCall) {
     // Check for OTP variables in log statements
-    for (ExpressionTree argument : functionCall.arguments()) {
-      String argText = argument.toString().toLowerCase();
-      if (OTP_VAR_PATTERN.matcher(argText).find()) {
-        context().newIssue(this, argument,
+    for (CallArgumentTree callArgument : functionCall.callArguments()) {
+      ExpressionTree argument = callArgument.value();
+      if (OTP_NAMES.find(text(argument))) {
+        addIssue(argument,
             "OTP values should never be logged in plaintext. This could expose sensitive authentication codes in logs.");
       }
     }
@@ -232,21 +460,49 @@ public class LaravelPlaintextOTPCheck extends PHPSubscriptionCheck {
   
   private void checkSQLQueriesForOTP(FunctionCallTree functionCall) {
     // Check for SQL queries with OTP
-    for (ExpressionTree argument : functionCall.arguments()) {
+    for (CallArgumentTree callArgument : functionCall.callArguments()) {
+      ExpressionTree argument = callArgument.value();
       if (argument.is(Kind.REGULAR_STRING_LITERAL) || argument.is(Kind.CONCATENATION)) {
-        String argText = argument.toString().toLowerCase();
+        long terms = SQL_TERMS.matches(text(argument));
         
         // Look for SQL INSERT/UPDATE with OTP column references
-        if ((argText.contains("insert into") || argText.contains("update")) && 
-            (argText.contains("otp") || argText.contains("one time") || argText.contains("verification code"))) {
+        if ((terms & SQL_WRITE) != 0 && (terms & SQL_OTP) != 0) {
           
           // Check if it's using a hash function
-          if (!argText.contains("hash") && !argText.contains("password_hash") && !argText.contains("bcrypt")) {
-            context().newIssue(this, argument,
+          if ((terms & SQL_HASH) == 0) {
+            addIssue(argument,
                 "SQL query appears to store OTP in plaintext. OTP values should be securely hashed before storage.");
           }
         }
       }
     }
   }
-}
\ No newline at end of file
+  
+  private TextSlice text(Tree tree) {
+    // Source of the node, computed once per file and shared with the other checks
+    return SourceTextCache.of(context()).text(tree);
+  }
+
+  /**
+   * Storage receivers and hashes of one file, tracked function by function while the file is
+   * scanned, and the matchers of the rule parameters.
+   */
+  static final class FileState {
+    // Compiled once per parameter value and shared (see CompiledParameter)
+    private final WordSet dbMethods;
+    private final WordSet storageMethods;
+    private final WordSet hashFunctions;
+    // Local variables holding a storage
+    private final LocalTaint storage = new LocalTaint();
+    // Properties of $this assigned a storage, by lowercase name
+    private final Set<String> storageProperties = new HashSet<>();
+    // Local variables holding a hash of their value
+    private final LocalTaint hashed = new LocalTaint();
+
+    private FileState(WordSet dbMethods, WordSet storageMethods, WordSet hashFunctions) {
+      this.dbMethods = dbMethods;
+      this.storageMethods = storageMethods;
+      this.hashFunctions = hashFunctions;
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package com.sunasterisk.sonar.rules;
+
+import com.sunasterisk.sonar.text.IdentifierClassifier;
+import org.sonar.plugins.java.api.tree.BaseTreeVisitor;
+import org.sonar.plugins.java.api.tree.IdentifierTree;
+import org.sonar.plugins.java.api.tree.LiteralTree;
+import org.sonar.plugins.java.api.tree.Tree;
+
+/**
+ * Looks for the secure recovery vocabulary (TOTP, 2FA, authenticator libraries...) in a subtree
+ * without turning it into a string. Identifiers cover variable, method and type names as well as
+ * both sides of member selects; string literals are matched too.
+ *
+ * <p>Names and literals are classified on whole words (see {@link IdentifierClassifier}), so
+ * {@code forgotPassword} or {@code footprint} do not count as "otp".</p>
+ *
+ * <p>The walk stops at the first hit and only reads the names already held by the tree, so a
+ * detection allocates nothing beyond the visitor itself, which is reused across calls.</p>
+ */
+final class SecureMechanismDetector extends BaseTreeVisitor {
+
+  private final IdentifierClassifier vocabulary;
+  private boolean found;
+
+  /**
+   * @param vocabulary classifier whose categories all stand for a secure mechanism
+   */
+  SecureMechanismDetector(IdentifierClassifier vocabulary) {
+    this.vocabulary = vocabulary;
+  }
+
+  boolean containsSecureMechanism(Tree tree) {
+    found = false;
+    scan(tree);
+    return found;
+  }
+
+  @Override
+  protected void scan(Tree tree) {
+    if (!found) {
+      super.scan(tree);
+    }
+  }
+
+  @Override
+  public void visitIdentifier(IdentifierTree tree) {
+    if (vocabulary.classify(tree.name()) != 0L) {
+      found = true;
+      return;
+    }
+    super.visitIdentifier(tree);
+  }
+
+  @Override
+  public void visitLiteral(LiteralTree tree) {
+    if (vocabulary.classify(tree.value()) != 0L) {
+      found = true;
+    }
+  }
+}
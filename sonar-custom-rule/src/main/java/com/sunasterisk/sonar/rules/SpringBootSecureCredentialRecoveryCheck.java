@@ -2,17 +2,24 @@ package com.sunasterisk.sonar.rules;
 
 import org.sonar.check.Rule;
 import org.sonar.check.Priority;
-import org.sonar.plugins.java.api.JavaFileScanner;
+import org.sonar.check.RuleProperty;
+import org.sonar.plugins.java.api.IssuableSubscriptionVisitor;
 import org.sonar.plugins.java.api.JavaFileScannerContext;
 import org.sonar.plugins.java.api.tree.*;
 import org.sonar.plugins.java.api.semantic.Symbol;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.sunasterisk.sonar.cache.JavaIssueReplay;
+import com.sunasterisk.sonar.instrumentation.RuleMetrics;
+import com.sunasterisk.sonar.instrumentation.RuleTracer;
+import com.sunasterisk.sonar.text.CompiledParameter;
+import com.sunasterisk.sonar.text.IdentifierClassifier;
+import com.sunasterisk.sonar.text.KeywordList;
+import com.sunasterisk.sonar.text.KeywordMatcher;
+import com.sunasterisk.sonar.text.TextPatterns;
 
 import java.util.List;
+import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.regex.Pattern;
+import java.util.Deque;
 import java.util.ArrayList;
 
 @Rule(
@@ -21,119 +28,214 @@ import java.util.ArrayList;
   priority = Priority.CRITICAL,
   tags = {"security", "spring-boot", "password-reset", "owasp-asvs"}
 )
-public class SpringBootSecureCredentialRecoveryCheck extends BaseTreeVisitor implements JavaFileScanner {
+public class SpringBootSecureCredentialRecoveryCheck extends IssuableSubscriptionVisitor {
 
-  private static final Logger LOGGER = LoggerFactory.getLogger(SpringBootSecureCredentialRecoveryCheck.class);
-  private JavaFileScannerContext context;
+  // Sampled debug tracing, off by default (see RuleTracer)
+  private static final RuleTracer TRACER = RuleTracer.forCheck(SpringBootSecureCredentialRecoveryCheck.class);
+  // Time and node counts reported at the end of the analysis (see RuleMetrics)
+  private static final RuleMetrics METRICS = RuleMetrics.forCheck(SpringBootSecureCredentialRecoveryCheck.class);
+  
+  // State of the file being analyzed by the current thread, so that one instance can analyze
+  // several files at the same time (see FileState)
+  private final ThreadLocal<FileState> currentFile = new ThreadLocal<>();
   
-  // Patterns for insecure password recovery mechanism detection
-  private static final Pattern PASSWORD_RECOVERY_PATTERN = Pattern.compile(
-      "(?i)reset(\\s*|_)password|forgot(\\s*|_)password|recover(\\s*|_)password|password(\\s*|_)recovery");
+  // Phrases of the names of insecure password recovery mechanisms, spelled word by word, e.g.
+  // resetPassword or reset_password (see IdentifierClassifier)
+  private static final String[] PASSWORD_RECOVERY_PHRASES = {
+      "reset password", "forgot password", "recover password", "password recovery"};
   
-  // Patterns for security questions - often used as an insecure recovery mechanism
-  private static final Pattern SECURITY_QUESTIONS_PATTERN = Pattern.compile(
-      "(?i)security(\\s*|_)question|secret(\\s*|_)question|mother(\\s*|_)maiden|birth(\\s*|_)place|first(\\s*|_)pet");
+  // Phrases of security questions - often used as an insecure recovery mechanism
+  private static final String[] SECURITY_QUESTION_PHRASES = {
+      "security question", "secret question", "mother maiden", "birth place", "first pet"};
   
   // Methods/classes that might indicate email-only password reset
-  private static final List<String> SIMPLE_EMAIL_RESET_INDICATORS = Arrays.asList(
-      "sendpasswordresetemail", 
-      "forgotpasswordemail", 
-      "resetlink", 
-      "passwordresettoken",
-      "generateresettoken"
-  );
+  private static final String DEFAULT_SIMPLE_EMAIL_RESET_INDICATORS =
+      "sendpasswordresetemail,forgotpasswordemail,resetlink,passwordresettoken,generateresettoken";
   
-  // Patterns for secure recovery mechanisms
-  private static final Pattern SECURE_MECHANISM_PATTERN = Pattern.compile(
-      "(?i)twofactor|2fa|mfa|multifactor|otp|totp|hotp|authenticator|timebased|timebase");
+  // Phrases of secure recovery mechanisms
+  private static final String[] SECURE_MECHANISM_PHRASES = {
+      "two factor", "2fa", "mfa", "multi factor", "otp", "totp", "hotp", "authenticator", "time based", "time base"};
   
   // Classes that indicate secure implementations
-  private static final List<String> SECURE_LIBRARIES = Arrays.asList(
-      "totp", 
-      "googleauthenticator", 
-      "totputils", 
-      "otputil", 
-      "twofactorauthentication",
-      "webauthn",
-      "pushnotification",
-      "timebased",
-      "speakeasy"
-  );
+  static final String DEFAULT_SECURE_LIBRARIES =
+      "totp,googleauthenticator,totputils,otputil,twofactorauthentication,webauthn,pushnotification,timebased,speakeasy";
+
+  // Shared automata (see TextPatterns), each finding all of its patterns in a single pass over the
+  // text, whatever its case; the names of the secure mechanisms and libraries, matched on whole
+  // words (see IdentifierClassifier), are compiled once per value of secureLibraries
+  private static final CompiledParameter<IdentifierClassifier> SECURE_VOCABULARIES = CompiledParameter.of(libraries ->
+      IdentifierClassifier.builder()
+          .category("secure", SECURE_MECHANISM_PHRASES)
+          .category("secure", libraries.toArray(new String[0]))
+          .build());
+  // Secure mechanism phrases and secureLibraries, as matched by the SecureMechanismDetector of a file
+  static IdentifierClassifier secureVocabulary(String secureLibraries) {
+    return SECURE_VOCABULARIES.get(secureLibraries);
+  }
+
+  private static final KeywordMatcher EMAIL = TextPatterns.keywords("email");
+  private static final KeywordMatcher SEND_OR_RESET = TextPatterns.keywords("send", "reset");
+  // Class, method and variable names, split into words once and classified in a single pass
+  private static final IdentifierClassifier NAMES = IdentifierClassifier.builder()
+      .category("recovery", PASSWORD_RECOVERY_PHRASES)
+      .category("recoveryClass", "password reset", "account recovery")
+      .category("recoveryMethod", "send recovery")
+      .category("tokenGeneration", "generate token")
+      .category("resetOrRecovery", "reset", "recovery")
+      .category("secure", SECURE_MECHANISM_PHRASES)
+      .category("securityQuestion", SECURITY_QUESTION_PHRASES)
+      .build();
+  private static final long RECOVERY_CLASS = NAMES.mask("recovery") | NAMES.mask("recoveryClass");
+  private static final long RECOVERY_METHOD = NAMES.mask("recovery") | NAMES.mask("recoveryMethod");
+  private static final long TOKEN_GENERATION = NAMES.mask("tokenGeneration");
+  private static final long RESET_OR_RECOVERY = NAMES.mask("resetOrRecovery");
+  private static final long SECURE_NAME = NAMES.mask("secure");
+  private static final long SECURITY_QUESTION_NAME = NAMES.mask("securityQuestion");
+
+  // Texts one of which occurs in any file this check reports on (see JavaCustomRuleRepository): the
+  // names of the recovery classes and methods, token generation methods also naming a reset or
+  // recovery, and the calls on an email object
+  static String[] triggerWords() {
+    List<String> words = new ArrayList<>();
+    for (String category : new String[] {"recovery", "recoveryClass", "recoveryMethod", "resetOrRecovery"}) {
+      words.addAll(NAMES.textSpellings(category));
+    }
+    words.add("email");
+    return words.toArray(new String[0]);
+  }
+
+  @RuleProperty(
+    key = "simpleEmailResetIndicators",
+    description = "Comma-separated words of the method names only sending a reset link by email, matched case-insensitively",
+    defaultValue = DEFAULT_SIMPLE_EMAIL_RESET_INDICATORS)
+  public String simpleEmailResetIndicators = DEFAULT_SIMPLE_EMAIL_RESET_INDICATORS;
+
+  @RuleProperty(
+    key = "secureLibraries",
+    description = "Comma-separated words of the classes and libraries implementing a secure recovery factor (TOTP, push, "
+      + "WebAuthn...), matched case-insensitively on whole words of the identifiers and literals of the recovery code, "
+      + "e.g. webauthn in WebAuthnService",
+    defaultValue = DEFAULT_SECURE_LIBRARIES)
+  public String secureLibraries = DEFAULT_SECURE_LIBRARIES;
 
   @Override
-  public void scanFile(JavaFileScannerContext context) {
-    this.context = context;
-    scan(context.getTree());
+  public List<Tree.Kind> nodesToVisit() {
+    // Every kind of class and method that BaseTreeVisitor.visitClass() and visitMethod() used to see
+    return Arrays.asList(
+        Tree.Kind.CLASS, Tree.Kind.INTERFACE, Tree.Kind.ENUM, Tree.Kind.RECORD, Tree.Kind.ANNOTATION_TYPE,
+        Tree.Kind.METHOD, Tree.Kind.CONSTRUCTOR,
+        Tree.Kind.METHOD_INVOCATION);
   }
 
   @Override
-  public void visitClass(ClassTree tree) {
-    // Check if this class is related to password recovery
-    String className = tree.simpleName().name().toLowerCase();
-    if (isPasswordRecoveryClass(className)) {
-      checkSecurePasswordRecovery(tree);
+  public void setContext(JavaFileScannerContext context) {
+    // Kept in the state of the thread, not in the context field of SubscriptionVisitor shared by the
+    // threads: issues are reported on the context of their file (see report())
+    FileState file = new FileState(context, secureVocabulary(secureLibraries), TextPatterns.keywordList(simpleEmailResetIndicators));
+    currentFile.set(file);
+    file.applicable = JavaCustomRuleRepository.PREFILTER.isApplicable(
+      this, context.getTree(), context::getFileContent)
+      && !file.issueReplay.start(this, context, (tree, message) -> context.reportIssue(this, tree, message));
+    METRICS.startFile(context.getInputFile());
+  }
+
+  @Override
+  public void leaveFile(JavaFileScannerContext context) {
+    METRICS.endFile();
+    FileState file = currentFile.get();
+    if (file != null) {
+      file.issueReplay.finish();
+      currentFile.remove();
     }
-    
-    // Continue visiting the class
-    super.visitClass(tree);
   }
-  
+
+  @Override
+  public void visitNode(Tree tree) {
+    FileState file = currentFile.get();
+    if (!file.applicable) {
+      return;
+    }
+    long start = METRICS.enterNode();
+    if (tree instanceof ClassTree) {
+      visitClass(file, (ClassTree) tree);
+    } else if (tree instanceof MethodTree) {
+      visitMethod(file, (MethodTree) tree);
+    } else {
+      visitMethodInvocation(file, (MethodInvocationTree) tree);
+    }
+    METRICS.exitNode(start);
+  }
+
   @Override
-  public void visitMethod(MethodTree tree) {
+  public void leaveNode(Tree tree) {
+    FileState file = currentFile.get();
+    if (!file.applicable) {
+      return;
+    }
+    if (tree.is(Tree.Kind.CLASS)) {
+      file.enclosingClasses.pop();
+    } else if (tree.is(Tree.Kind.METHOD)) {
+      file.enclosingMethods.pop();
+    }
+  }
+
+  private void visitClass(FileState file, ClassTree tree) {
+    if (tree.is(Tree.Kind.CLASS)) {
+      file.enclosingClasses.push(new Scope<>(tree));
+    }
+    // Check if this class is related to password recovery (anonymous classes have no name)
+    IdentifierTree simpleName = tree.simpleName();
+    if (simpleName != null && isPasswordRecoveryClass(simpleName.name())) {
+      checkSecurePasswordRecovery(file, tree);
+    }
+  }
+  
+  private void visitMethod(FileState file, MethodTree tree) {
     // Check if this method is related to password recovery
-    String methodName = tree.simpleName().name().toLowerCase();
-    System.out.println("visitMethod: " + methodName);
+    String methodName = tree.simpleName().name();
+    if (TRACER.sample()) {
+      TRACER.trace("visitMethod: {}", methodName);
+    }
+    if (tree.is(Tree.Kind.METHOD)) {
+      file.enclosingMethods.push(new Scope<>(tree));
+    }
     if (isPasswordRecoveryMethod(methodName)) {
-      checkSecurePasswordRecoveryMethod(tree);
+      checkSecurePasswordRecoveryMethod(file, tree);
     }
-
-    // Continue visiting the method
-    super.visitMethod(tree);
   }
   
-  @Override
-  public void visitMethodInvocation(MethodInvocationTree tree) {
+  private void visitMethodInvocation(FileState file, MethodInvocationTree tree) {
     // Check for calls to insecure password reset methods
     if (tree.methodSelect().is(Tree.Kind.MEMBER_SELECT)) {
       MemberSelectExpressionTree memberSelect = (MemberSelectExpressionTree) tree.methodSelect();
-      String methodName = memberSelect.identifier().name().toLowerCase();
-      String expressionText = memberSelect.expression().toString().toLowerCase();
+      String methodName = memberSelect.identifier().name();
       
       // Check if this is a method call related to password recovery
       if (isPasswordRecoveryMethod(methodName) || 
-          (expressionText.contains("email") && 
-           (methodName.contains("send") || methodName.contains("reset")))) {
+          (SEND_OR_RESET.containsAny(methodName) &&
+           EMAIL.containsAny(memberSelect.expression().toString()))) {
         
         // Check if it seems to be using just email for reset without additional verification
-        boolean hasSecureRecovery = hasSecureRecoveryMechanism(tree);
-        if (!hasSecureRecovery && !isInSecureContext(tree)) {
-          reportIssue(tree, "This password recovery mechanism appears to use only email-based reset without additional security factors. " +
+        boolean hasSecureRecovery = hasSecureRecoveryMechanism(file, tree);
+        if (!hasSecureRecovery && !isInSecureContext(file)) {
+          report(file, tree, "This password recovery mechanism appears to use only email-based reset without additional security factors. " +
                       "OWASP ASVS v2.5.6 requires secure recovery mechanisms like TOTP, soft tokens, mobile push, or offline verification.");
         }
       }
     }
-    
-    super.visitMethodInvocation(tree);
   }
   
   private boolean isPasswordRecoveryClass(String className) {
-    return PASSWORD_RECOVERY_PATTERN.matcher(className).find() ||
-           className.contains("forgotpassword") ||
-           className.contains("resetpassword") ||
-           className.contains("passwordreset") ||
-           className.contains("accountrecovery");
+    return (NAMES.classify(className) & RECOVERY_CLASS) != 0;
   }
   
   private boolean isPasswordRecoveryMethod(String methodName) {
-    return PASSWORD_RECOVERY_PATTERN.matcher(methodName).find() ||
-           methodName.contains("forgotpassword") ||
-           methodName.contains("resetpassword") ||
-           methodName.contains("sendrecovery") ||
-           methodName.contains("generatetoken") && 
-           (methodName.contains("reset") || methodName.contains("recovery"));
+    long categories = NAMES.classify(methodName);
+    return (categories & RECOVERY_METHOD) != 0 ||
+           ((categories & TOKEN_GENERATION) != 0 && (categories & RESET_OR_RECOVERY) != 0);
   }
   
-  private void checkSecurePasswordRecovery(ClassTree tree) {
+  private void checkSecurePasswordRecovery(FileState file, ClassTree tree) {
     boolean hasSecureMechanism = false;
     boolean hasInsecureMechanism = false;
     
@@ -142,15 +244,15 @@ public class SpringBootSecureCredentialRecoveryCheck extends BaseTreeVisitor imp
     for (Tree member : members) {
       if (member.is(Tree.Kind.VARIABLE)) {
         VariableTree variable = (VariableTree) member;
-        String varName = variable.simpleName().name().toLowerCase();
+        long found = NAMES.classify(variable.simpleName().name());
         
         // Check if this variable indicates a secure mechanism
-        if (SECURE_MECHANISM_PATTERN.matcher(varName).find()) {
+        if ((found & SECURE_NAME) != 0) {
           hasSecureMechanism = true;
         }
         
         // Check if this variable indicates security questions (insecure mechanism)
-        if (SECURITY_QUESTIONS_PATTERN.matcher(varName).find()) {
+        if ((found & SECURITY_QUESTION_NAME) != 0) {
           hasInsecureMechanism = true;
         }
       }
@@ -158,140 +260,149 @@ public class SpringBootSecureCredentialRecoveryCheck extends BaseTreeVisitor imp
     
     // If we found indications of password recovery but no secure mechanisms
     if (!hasSecureMechanism && hasInsecureMechanism) {
-      reportIssue(tree, "This password recovery implementation appears to use security questions or other insecure methods. " +
+      report(file, tree, "This password recovery implementation appears to use security questions or other insecure methods. " +
                    "OWASP ASVS v2.5.6 requires secure recovery mechanisms like TOTP, soft tokens, mobile push, or offline verification.");
     }
   }
   
-  private void checkSecurePasswordRecoveryMethod(MethodTree tree) {
-    // Check if method contains secure recovery implementations
-    boolean hasSecureImplementation = false;
-    
-    // Check method body for signs of secure implementations
-    BlockTree body = tree.block();
-    if (body != null) {
-      for (StatementTree statement : body.body()) {
-        if (containsSecureMechanism(statement)) {
-          hasSecureImplementation = true;
-          break;
-        }
-      }
-    }
+  private void checkSecurePasswordRecoveryMethod(FileState file, MethodTree tree) {
+    // Check method body for signs of secure implementations, reusing the verdict of the method scope
+    Scope<MethodTree> scope = file.enclosingMethods.peek();
+    boolean hasSecureImplementation = scope != null && scope.tree == tree
+      ? isSecureMethod(file, scope)
+      : bodyContainsSecureMechanism(file, tree);
     
     // Check dependencies and imports for secure libraries
-    if (!hasSecureImplementation && !isInSecureContext(tree)) {
+    if (!hasSecureImplementation && !isInSecureContext(file)) {
       // Log method name for potential false positive analysis
       String methodName = tree.simpleName().name();
       
       // Generate appropriate message based on context
-      if (isSimpleEmailResetMethod(methodName)) {
-        reportIssue(tree, "This password reset method appears to only send an email with reset link without additional verification. " +
+      if (isSimpleEmailResetMethod(file, methodName)) {
+        report(file, tree, "This password reset method appears to only send an email with reset link without additional verification. " +
                      "OWASP ASVS v2.5.6 requires secure recovery mechanisms like TOTP, soft tokens, mobile push, or offline verification.");
       } else {
-        reportIssue(tree, "This password recovery method doesn't appear to implement recommended secure recovery mechanisms. " +
+        report(file, tree, "This password recovery method doesn't appear to implement recommended secure recovery mechanisms. " +
                      "OWASP ASVS v2.5.6 requires secure recovery mechanisms like TOTP, soft tokens, mobile push, or offline verification.");
       }
     }
   }
   
-  private boolean isSimpleEmailResetMethod(String methodName) {
-    methodName = methodName.toLowerCase();
-    for (String indicator : SIMPLE_EMAIL_RESET_INDICATORS) {
-      if (methodName.contains(indicator.toLowerCase())) {
-        return true;
-      }
-    }
-    return false;
+  private boolean isSimpleEmailResetMethod(FileState file, String methodName) {
+    return file.simpleEmailReset.containsAny(methodName);
   }
   
-  private boolean containsSecureMechanism(Tree tree) {
-    // Simple string-based search for secure mechanisms
-    String treeString = tree.toString().toLowerCase();
-    // Check for TOTP or other secure implementations
-    if (SECURE_MECHANISM_PATTERN.matcher(treeString).find()) {
-      return true;
-    }
-    
-    // Check for known secure libraries
-    for (String library : SECURE_LIBRARIES) {
-      if (treeString.contains(library)) {
-        return true;
-      }
-    }
-    
-    return false;
+  private boolean containsSecureMechanism(FileState file, Tree tree) {
+    // Secure mechanism phrases (SECURE_MECHANISM_PHRASES) and known secure libraries, in one pass
+    return file.secureMechanismDetector.containsSecureMechanism(tree);
   }
   
-  private boolean hasSecureRecoveryMechanism(MethodInvocationTree tree) {
+  private boolean hasSecureRecoveryMechanism(FileState file, MethodInvocationTree tree) {
     // Check arguments and context for secure mechanisms
     for (ExpressionTree arg : tree.arguments()) {
-      if (containsSecureMechanism(arg)) {
+      if (containsSecureMechanism(file, arg)) {
         return true;
       }
     }
     
-    // Check the surrounding method
-    Tree parent = getEnclosingMethod(tree);
-    if (parent != null && parent.is(Tree.Kind.METHOD)) {
-      MethodTree method = (MethodTree) parent;
-      BlockTree body = method.block();
-      
-      if (body != null) {
-        for (StatementTree statement : body.body()) {
-          if (containsSecureMechanism(statement)) {
-            return true;
-          }
+    // Check the surrounding method, whose body is examined at most once whatever the number of calls in it
+    Scope<MethodTree> method = file.enclosingMethods.peek();
+    return method != null && isSecureMethod(file, method);
+  }
+  
+  private boolean isSecureMethod(FileState file, Scope<MethodTree> scope) {
+    if (scope.secure == null) {
+      scope.secure = bodyContainsSecureMechanism(file, scope.tree);
+    }
+    return scope.secure;
+  }
+  
+  private boolean bodyContainsSecureMechanism(FileState file, MethodTree method) {
+    BlockTree body = method.block();
+    if (body != null) {
+      for (StatementTree statement : body.body()) {
+        if (containsSecureMechanism(file, statement)) {
+          return true;
         }
       }
     }
-    
     return false;
   }
   
-  private boolean isInSecureContext(Tree tree) {
-    // Check if this tree is within a secure context
+  private boolean isInSecureContext(FileState file) {
+    // Check if the node being visited is within a secure context
     // For example, if the class implements or uses secure mechanisms
     
-    Tree classTree = getEnclosingClass(tree);
-    if (classTree != null && classTree.is(Tree.Kind.CLASS)) {
-      ClassTree enclosingClass = (ClassTree) classTree;
-      String className = enclosingClass.simpleName().name().toLowerCase();
-      
-      // Check class name for secure indicators
-      if (SECURE_MECHANISM_PATTERN.matcher(className).find()) {
-        return true;
-      }
-      
-      // Check for secure libraries in class members
-      for (Tree member : enclosingClass.members()) {
-        if (containsSecureMechanism(member)) {
-          return true;
-        }
+    // Computed at most once per class
+    Scope<ClassTree> scope = file.enclosingClasses.peek();
+    if (scope != null) {
+      if (scope.secure == null) {
+        scope.secure = isSecureClass(file, scope.tree);
       }
+      return scope.secure;
     }
     
     return false;
   }
   
-  private Tree getEnclosingMethod(Tree tree) {
-    // Find the enclosing method of a tree node
-    Tree parent = tree;
-    while (parent != null && !parent.is(Tree.Kind.METHOD)) {
-      parent = parent.parent();
+  private boolean isSecureClass(FileState file, ClassTree enclosingClass) {
+    IdentifierTree simpleName = enclosingClass.simpleName();
+    
+    // Check class name for secure indicators
+    if (simpleName != null && (NAMES.classify(simpleName.name()) & SECURE_NAME) != 0) {
+      return true;
+    }
+    
+    // Check for secure libraries in class members
+    for (Tree member : enclosingClass.members()) {
+      if (containsSecureMechanism(file, member)) {
+        return true;
+      }
     }
-    return parent;
+    return false;
+  }
+  
+  private void report(FileState file, Tree tree, String message) {
+    file.issueReplay.record(tree, message);
+    file.context.reportIssue(this, tree, message);
   }
   
-  private Tree getEnclosingClass(Tree tree) {
-    // Find the enclosing class of a tree node
-    Tree parent = tree;
-    while (parent != null && !parent.is(Tree.Kind.CLASS)) {
-      parent = parent.parent();
+  /**
+   * Everything the check learns about one file, from {@link #setContext} to {@link #leaveFile}.
+   * The check itself only holds constants.
+   */
+  private static final class FileState {
+    private final JavaFileScannerContext context;
+    // Enclosing classes and methods of the node being visited, innermost first (only Kind.CLASS and
+    // Kind.METHOD, which are the scopes the rule looks at), with their secure-mechanism verdict
+    private final Deque<Scope<ClassTree>> enclosingClasses = new ArrayDeque<>();
+    private final Deque<Scope<MethodTree>> enclosingMethods = new ArrayDeque<>();
+    // Issues of unchanged files are replayed from the previous analysis (see IssueCache)
+    private final JavaIssueReplay issueReplay = new JavaIssueReplay();
+    // Walks identifiers and literals of a subtree instead of serializing it with toString()
+    private final SecureMechanismDetector secureMechanismDetector;
+    // Compiled once per parameter value and shared (see CompiledParameter)
+    private final KeywordList simpleEmailReset;
+    // False when the text of the file cannot match this rule (see JavaCustomRuleRepository.PREFILTER)
+    // or when its issues were replayed from the cache
+    private boolean applicable;
+    
+    FileState(JavaFileScannerContext context, IdentifierClassifier secureVocabulary, KeywordList simpleEmailReset) {
+      this.context = context;
+      this.secureMechanismDetector = new SecureMechanismDetector(secureVocabulary);
+      this.simpleEmailReset = simpleEmailReset;
     }
-    return parent;
   }
-
-  private void reportIssue(Tree tree, String message) {
-    context.reportIssue(this, tree, message);
+  
+  /**
+   * Enclosing class or method, with its secure-mechanism verdict computed on first use.
+   */
+  private static final class Scope<T extends Tree> {
+    private final T tree;
+    private Boolean secure;
+    
+    Scope(T tree) {
+      this.tree = tree;
+    }
   }
 }
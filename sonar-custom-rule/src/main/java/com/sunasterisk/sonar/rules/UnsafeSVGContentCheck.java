@@ -2,8 +2,11 @@ package com.sunasterisk.sonar.rules;
 
 import org.sonar.check.Rule;
 import org.sonar.check.Priority;
+import org.sonar.check.RuleProperty;
 import org.sonar.plugins.php.api.tree.Tree;
 import org.sonar.plugins.php.api.tree.Tree.Kind;
+import org.sonar.plugins.php.api.tree.declaration.CallArgumentTree;
+import org.sonar.plugins.php.api.tree.declaration.NamespaceNameTree;
 import org.sonar.plugins.php.api.tree.expression.FunctionCallTree;
 import org.sonar.plugins.php.api.tree.expression.MemberAccessTree;
 import org.sonar.plugins.php.api.tree.expression.VariableIdentifierTree;
@@ -12,16 +15,22 @@ import org.sonar.plugins.php.api.tree.expression.LiteralTree;
 import org.sonar.plugins.php.api.tree.expression.AssignmentExpressionTree;
 import org.sonar.plugins.php.api.tree.expression.IdentifierTree;
 import org.sonar.plugins.php.api.tree.statement.ExpressionStatementTree;
-import org.sonar.plugins.php.api.visitors.PHPSubscriptionCheck;
 import org.sonar.plugins.php.api.visitors.CheckContext;
+import com.sunasterisk.sonar.instrumentation.RuleMetrics;
+import com.sunasterisk.sonar.instrumentation.RuleTracer;
+import com.sunasterisk.sonar.laravel.BladeTemplateScanner;
+import com.sunasterisk.sonar.text.CompiledParameter;
+import com.sunasterisk.sonar.text.KeywordList;
+import com.sunasterisk.sonar.text.KeywordMatcher;
+import com.sunasterisk.sonar.text.PatternMatcher;
+import com.sunasterisk.sonar.text.SourceTextCache;
+import com.sunasterisk.sonar.text.TextPatterns;
+import com.sunasterisk.sonar.text.TextSlice;
+import com.sunasterisk.sonar.text.WordSet;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
+import java.util.Collections;
 import java.util.List;
 import java.util.Arrays;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 
 @Rule(
   key = "UnsafeSVGContent",
@@ -29,20 +38,21 @@ import java.util.regex.Matcher;
   priority = Priority.CRITICAL,
   tags = {"security", "xss", "svg", "owasp-a3"}
 )
-public class UnsafeSVGContentCheck extends PHPSubscriptionCheck {
+public class UnsafeSVGContentCheck extends FileScopedSubscriptionCheck<UnsafeSVGContentCheck.FileState> {
 
-  private static final Logger LOGGER = LoggerFactory.getLogger(UnsafeSVGContentCheck.class);
+  // Sampled debug tracing, off by default (see RuleTracer)
+  private static final RuleTracer TRACER = RuleTracer.forCheck(UnsafeSVGContentCheck.class);
+  // Time and node counts reported at the end of the analysis (see RuleMetrics)
+  private static final RuleMetrics METRICS = RuleMetrics.forCheck(UnsafeSVGContentCheck.class);
   
   // Patterns to identify SVG content
-  private static final Pattern SVG_PATTERN = Pattern.compile("(?i)<\\s*svg|\\bsvg\\b|image\\/svg\\+xml|\\.(svg)");
+  private static final String SVG_PATTERN = "(?i)<\\s*svg|\\bsvg\\b|image\\/svg\\+xml|\\.(svg)";
   
   // Patterns for dangerous SVG elements and attributes
-  private static final Pattern SVG_DANGEROUS_ELEMENTS = Pattern.compile("(?i)<\\s*script|<\\s*foreignObject|<\\s*use\\s+xlink:href|<\\s*handler|<\\s*event");
+  private static final String SVG_DANGEROUS_ELEMENTS = "(?i)<\\s*script|<\\s*foreignObject|<\\s*use\\s+xlink:href|<\\s*handler|<\\s*event";
   
   // Laravel functions/methods that render content without escaping
-  private static final List<String> UNSAFE_OUTPUT_METHODS = Arrays.asList(
-    "html", "rawSvg", "raw", "unescape", "dangerouslySetInnerHTML", "innerHTML"
-  );
+  private static final String DEFAULT_UNSAFE_OUTPUT_METHODS = "html,rawSvg,raw,unescape,dangerouslySetInnerHTML,innerHTML";
   
   // JS frameworks methods commonly used for rendering
   private static final List<String> JS_RENDER_METHODS = Arrays.asList(
@@ -50,9 +60,40 @@ public class UnsafeSVGContentCheck extends PHPSubscriptionCheck {
   );
 
   // Safe sanitization libraries/functions
-  private static final List<String> SANITIZATION_METHODS = Arrays.asList(
-    "sanitize", "sanitizeSvg", "DOMPurify", "purify", "clean", "escape", "htmlspecialchars", "strip_tags"
-  );
+  private static final String DEFAULT_SANITIZATION_METHODS = "sanitize,sanitizeSvg,DOMPurify,purify,clean,escape,htmlspecialchars,strip_tags";
+
+  // Hints of user input in arguments and assigned values
+  private static final List<String> USER_INPUT_ARGUMENTS = Arrays.asList("$_", "request", "input", "props", "param");
+  private static final List<String> USER_INPUT_VALUES = Arrays.asList("$_", "request", "->input(", "props", "event.target");
+
+  // Shared automata (see TextPatterns): everything the rule looks for in one kind of text is found
+  // in a single pass; those including the sanitizers are compiled per value of the parameter (see
+  // Vocabulary)
+  private static final PatternMatcher ARGUMENT_TEXT = TextPatterns.patterns()
+      .pattern(SVG_PATTERN)
+      .pattern(SVG_DANGEROUS_ELEMENTS)
+      .keywords(USER_INPUT_ARGUMENTS)
+      .build();
+  private static final long ARGUMENT_SVG = ARGUMENT_TEXT.mask(SVG_PATTERN);
+  private static final long ARGUMENT_DANGEROUS = ARGUMENT_TEXT.mask(SVG_DANGEROUS_ELEMENTS);
+  private static final long ARGUMENT_USER_INPUT = ARGUMENT_TEXT.mask(USER_INPUT_ARGUMENTS);
+
+  private static final KeywordMatcher HTML_TARGETS = TextPatterns.keywords("innerhtml", "html", "svg");
+
+  private static final CompiledParameter<Vocabulary> VOCABULARIES = CompiledParameter.of(Vocabulary::new);
+
+  @RuleProperty(
+    key = "unsafeOutputMethods",
+    description = "Comma-separated methods rendering their arguments without escaping, e.g. raw()",
+    defaultValue = DEFAULT_UNSAFE_OUTPUT_METHODS)
+  public String unsafeOutputMethods = DEFAULT_UNSAFE_OUTPUT_METHODS;
+
+  @RuleProperty(
+    key = "sanitizationMethods",
+    description = "Comma-separated names of SVG and HTML sanitizers, matched case-insensitively anywhere in the code "
+      + "around the output, e.g. a project helper such as cleanSvg()",
+    defaultValue = DEFAULT_SANITIZATION_METHODS)
+  public String sanitizationMethods = DEFAULT_SANITIZATION_METHODS;
 
   @Override
   public List<Kind> nodesToVisit() {
@@ -60,73 +101,92 @@ public class UnsafeSVGContentCheck extends PHPSubscriptionCheck {
         Kind.FUNCTION_CALL,           // For function calls
         Kind.ASSIGNMENT,              // For assignments
         Kind.INLINE_HTML,             // For inline HTML in PHP
-        Kind.ECHO_TAG_STATEMENT       // For echo statements
+        Kind.ECHO_TAG_STATEMENT       // For <?= ?> tags, echo statements being function calls
     );
   }
 
+  @Override
+  protected FileState newFileState(CheckContext context) {
+    // Markup context carried from one inline HTML node to the next
+    return new FileState(VOCABULARIES.get(sanitizationMethods), TextPatterns.words(unsafeOutputMethods));
+  }
+
   @Override
   public void visitNode(Tree tree) {
-    switch (tree.getKind()) {
-      case FUNCTION_CALL:
-        checkFunctionCall((FunctionCallTree) tree);
-        break;
-      case ASSIGNMENT:
-        checkAssignment((AssignmentExpressionTree) tree);
-        break;
-      case INLINE_HTML:
-        checkInlineHTML(tree);
-        break;
-      case ECHO_TAG_STATEMENT:
-        checkEchoStatement(tree);
-        break;
-      default:
-        // Not interested in other tree types
-        break;
+    long start = METRICS.enterNode();
+    try {
+      if (TRACER.sample()) {
+        TRACER.trace("Visiting {}", tree.getKind());
+      }
+      FileState file = fileState();
+      switch (tree.getKind()) {
+        case FUNCTION_CALL:
+          checkFunctionCall(file, (FunctionCallTree) tree);
+          break;
+        case ASSIGNMENT:
+          checkAssignment(file, (AssignmentExpressionTree) tree);
+          break;
+        case INLINE_HTML:
+          checkInlineHTML(file, tree);
+          break;
+        case ECHO_TAG_STATEMENT:
+          checkEchoStatement(file, tree);
+          break;
+        default:
+          // Not interested in other tree types
+          break;
+      }
+    } finally {
+      METRICS.exitNode(start);
     }
   }
 
-  private void checkFunctionCall(FunctionCallTree functionCall) {
-    String functionText = functionCall.toString().toLowerCase();
+  private void checkFunctionCall(FileState file, FunctionCallTree functionCall) {
+    // echo statements between inline HTML are parsed as calls of echo
+    if (isEcho(functionCall)) {
+      checkEchoStatement(file, functionCall);
+    }
+
+    Vocabulary vocabulary = file.vocabulary;
+    long functionFound = vocabulary.functionText.matches(text(functionCall));
     
     // Skip if this is a sanitization function
-    for (String safeMethod : SANITIZATION_METHODS) {
-      if (functionText.contains(safeMethod.toLowerCase())) {
-        return;
-      }
+    if (vocabulary.isSanitized(functionFound, vocabulary.functionSanitized, text(functionCall))) {
+      return;
     }
     
     // Check if this is an unsafe method call that might output SVG
-    if (functionCall.callee().is(Kind.OBJECT_MEMBER_ACCESS) || 
-        functionCall.callee().is(Kind.CLASS_MEMBER_ACCESS)) {
+    // $obj->{$name}() has no method name to check
+    if ((functionCall.callee().is(Kind.OBJECT_MEMBER_ACCESS) || 
+        functionCall.callee().is(Kind.CLASS_MEMBER_ACCESS))
+        && ((MemberAccessTree) functionCall.callee()).member().is(Kind.NAME_IDENTIFIER)) {
       
       MemberAccessTree memberAccess = (MemberAccessTree) functionCall.callee();
-      String methodName = ((IdentifierTree) memberAccess.member()).text().toLowerCase();
+      String methodName = ((IdentifierTree) memberAccess.member()).text();
       
-      if (UNSAFE_OUTPUT_METHODS.contains(methodName) || JS_RENDER_METHODS.contains(methodName)) {
+      if (file.unsafeOutputMethods.contains(methodName) || TextPatterns.isOneOf(methodName, JS_RENDER_METHODS)) {
         // Check arguments for SVG content
-        for (ExpressionTree argument : functionCall.arguments()) {
-          String argText = argument.toString().toLowerCase();
+        for (CallArgumentTree callArgument : functionCall.callArguments()) {
+          ExpressionTree argument = callArgument.value();
+          long argumentFound = ARGUMENT_TEXT.matches(text(argument));
           
           // Check if argument contains SVG references
-          Matcher svgMatcher = SVG_PATTERN.matcher(argText);
-          if (svgMatcher.find()) {
+          if ((argumentFound & ARGUMENT_SVG) != 0) {
             // Check for dangerous SVG elements
-            if (SVG_DANGEROUS_ELEMENTS.matcher(argText).find()) {
-              context().newIssue(this, argument, 
+            if ((argumentFound & ARGUMENT_DANGEROUS) != 0) {
+              addIssue(argument,
                   "Potentially unsafe SVG content with script/foreignObject elements detected. Sanitize SVG before rendering.");
             } else {
               // Even without explicit dangerous elements, user-supplied SVG should be sanitized
-              if (!functionText.contains("sanitize") && !functionText.contains("dompurify")) {
-                context().newIssue(this, argument,
-                    "User-supplied SVG content should be sanitized before rendering to prevent XSS attacks.");
-              }
+              // (calls mentioning a sanitizer were skipped above)
+              addIssue(argument,
+                  "User-supplied SVG content should be sanitized before rendering to prevent XSS attacks.");
             }
           }
           
           // Check for user-input variables passed to unsafe methods
-          if (argText.contains("$_") || argText.contains("request") || argText.contains("input") || 
-              argText.contains("props") || argText.contains("param")) {
-            context().newIssue(this, argument,
+          if ((argumentFound & ARGUMENT_USER_INPUT) != 0) {
+            addIssue(argument,
                 "User input passed to " + methodName + "() could contain unsafe SVG content. Use an SVG sanitizer library.");
           }
         }
@@ -134,104 +194,203 @@ public class UnsafeSVGContentCheck extends PHPSubscriptionCheck {
     }
     
     // For React components, check for dangerouslySetInnerHTML use with SVG
-    if (functionText.contains("dangerouslysetinnerhtml")) {
-      checkForUnsafeSVGInFunction(functionCall);
+    if ((functionFound & vocabulary.functionInnerHtml) != 0) {
+      checkForUnsafeSVGInFunction(vocabulary, functionCall, functionFound);
     }
   }
 
-  private void checkAssignment(AssignmentExpressionTree assignment) {
-    String varName = assignment.variable().toString().toLowerCase();
-    String valueText = assignment.value().toString().toLowerCase();
+  private void checkAssignment(FileState file, AssignmentExpressionTree assignment) {
+    TextSlice varName = text(assignment.variable());
     
     // Check if assignment is to innerHTML-like properties
-    if (varName.contains("innerhtml") || varName.contains("html") || varName.contains("svg")) {
+    if (HTML_TARGETS.containsAny(varName)) {
+      Vocabulary vocabulary = file.vocabulary;
+      TextSlice value = text(assignment.value());
+      long valueFound = vocabulary.valueText.matches(value);
+      
       // Check if value might contain SVG
-      if (SVG_PATTERN.matcher(valueText).find()) {
+      if ((valueFound & vocabulary.valueSvg) != 0) {
         // Check if proper sanitization is used
-        boolean isSanitized = false;
-        
-        for (String safeMethod : SANITIZATION_METHODS) {
-          if (valueText.contains(safeMethod.toLowerCase())) {
-            isSanitized = true;
-            break;
-          }
-        }
-        
-        if (!isSanitized) {
-          context().newIssue(this, assignment,
+        if (!vocabulary.isSanitized(valueFound, vocabulary.valueSanitized, value)) {
+          addIssue(assignment,
               "Assignment to " + varName + " contains SVG content without proper sanitization. Use a sanitizer library.");
         }
       }
       
       // Check if value comes directly from user input
-      if (valueText.contains("$_") || valueText.contains("request") || valueText.contains("->input(") || 
-          valueText.contains("props") || valueText.contains("event.target")) {
-        context().newIssue(this, assignment,
+      if ((valueFound & vocabulary.valueUserInput) != 0) {
+        addIssue(assignment,
             "Assignment to " + varName + " with user input could contain unsafe SVG. Use DOMPurify or other sanitizer.");
       }
     }
   }
   
-  private void checkInlineHTML(Tree htmlTree) {
-    String htmlContent = htmlTree.toString().toLowerCase();
+  private void checkInlineHTML(FileState file, Tree htmlTree) {
+    // Only the unescaped outputs in SVG markup, or of SVG content, are reported: escaped {{ }}
+    // outputs and the markup itself are safe
+    file.unsafeOutputs = 0;
+    file.dangerousOutputs = 0;
+    file.scanner.scan(text(htmlTree), file);
     
-    // Check if inline HTML contains SVG elements
-    if (htmlContent.contains("<svg") || htmlContent.contains("image/svg+xml")) {
-      // Check for dynamic content insertion within SVG 
-      if (htmlContent.contains("<?php") || htmlContent.contains("{{") || htmlContent.contains("{")) {
-        
-        // Check if there are dangerous SVG elements
-        if (SVG_DANGEROUS_ELEMENTS.matcher(htmlContent).find()) {
-          context().newIssue(this, htmlTree,
-              "Inline SVG with dynamic content contains potentially dangerous elements (script/foreignObject). Sanitize user input.");
-        } else {
-          context().newIssue(this, htmlTree,
-              "Dynamic content in SVG should be properly sanitized to prevent XSS attacks.");
-        }
+    if (file.unsafeOutputs > 0) {
+      // Check if the outputs are in dangerous SVG elements
+      if (file.dangerousOutputs > 0) {
+        addIssue(htmlTree,
+            "Inline SVG with dynamic content contains potentially dangerous elements (script/foreignObject). Sanitize user input.");
+      } else {
+        addIssue(htmlTree,
+            "Dynamic content in SVG should be properly sanitized to prevent XSS attacks.");
       }
     }
   }
   
-  private void checkEchoStatement(Tree echoTree) {
-    String echoContent = echoTree.toString().toLowerCase();
+  private void checkEchoStatement(FileState file, Tree echoTree) {
+    Vocabulary vocabulary = file.vocabulary;
+    TextSlice echo = text(echoTree);
+    long echoFound = vocabulary.echoText.matches(echo);
     
-    // Check if echo statement might output SVG content
-    if (SVG_PATTERN.matcher(echoContent).find()) {
+    // Check if echo statement might output SVG content, or outputs into SVG markup
+    boolean svgOutput = echoTree.is(Kind.ECHO_TAG_STATEMENT) && (echoFound & vocabulary.echoSvg) != 0;
+    if (svgOutput || file.scanner.inSvg()) {
       // Check if content is properly sanitized
-      boolean isSanitized = false;
-      
-      for (String safeMethod : SANITIZATION_METHODS) {
-        if (echoContent.contains(safeMethod.toLowerCase())) {
-          isSanitized = true;
-          break;
-        }
-      }
-      
-      if (!isSanitized) {
-        context().newIssue(this, echoTree,
+      if (!vocabulary.isSanitized(echoFound, vocabulary.echoSanitized, echo)) {
+        addIssue(echoTree,
             "Echo statement may output unsanitized SVG content. Use htmlspecialchars() or a dedicated SVG sanitizer.");
       }
     }
   }
   
-  private void checkForUnsafeSVGInFunction(FunctionCallTree functionCall) {
-    String functionText = functionCall.toString().toLowerCase();
-    
-    // Check if function call includes SVG content
-    if (SVG_PATTERN.matcher(functionText).find()) {
-      boolean isSanitized = false;
-      
-      for (String safeMethod : SANITIZATION_METHODS) {
-        if (functionText.contains(safeMethod.toLowerCase())) {
-          isSanitized = true;
-          break;
+  private static boolean isEcho(FunctionCallTree functionCall) {
+    ExpressionTree callee = functionCall.callee();
+    return callee.is(Kind.NAMESPACE_NAME) && "echo".equalsIgnoreCase(((NamespaceNameTree) callee).name().text());
+  }
+
+  private TextSlice text(Tree tree) {
+    // Source of the node, computed once per file and shared with the other checks
+    return SourceTextCache.of(context()).text(tree);
+  }
+  
+  private void checkForUnsafeSVGInFunction(Vocabulary vocabulary, FunctionCallTree functionCall, long functionFound) {
+    // Check if function call includes SVG content, calls mentioning a sanitizer were skipped
+    if ((functionFound & vocabulary.functionSvg) != 0) {
+      addIssue(functionCall,
+          "Function may output unsanitized SVG content. Use DOMPurify.sanitize() or a dedicated SVG sanitizer.");
+    }
+  }
+
+  /**
+   * Markup context of one file, carried from one inline HTML node to the next while the file is
+   * scanned, and the unsafe outputs found in the current node.
+   */
+  static final class FileState implements BladeTemplateScanner.Listener {
+    private final BladeTemplateScanner scanner = new BladeTemplateScanner();
+    // Compiled once per parameter value and shared (see CompiledParameter)
+    private final Vocabulary vocabulary;
+    private final WordSet unsafeOutputMethods;
+    private int unsafeOutputs;
+    private int dangerousOutputs;
+
+    private FileState(Vocabulary vocabulary, WordSet unsafeOutputMethods) {
+      this.vocabulary = vocabulary;
+      this.unsafeOutputMethods = unsafeOutputMethods;
+    }
+
+    @Override
+    public void rawOutput(CharSequence chunk, int from, int to) {
+      CharSequence output = chunk.subSequence(from, to);
+      long outputFound = vocabulary.rawOutputText.matches(output);
+      if (vocabulary.isSanitized(outputFound, vocabulary.rawOutputSanitized, output)) {
+        return;
+      }
+      if (scanner.inSvg() || (outputFound & vocabulary.rawOutputSvg) != 0) {
+        unsafeOutputs++;
+        if (scanner.inDangerousElement()) {
+          dangerousOutputs++;
         }
       }
-      
-      if (!isSanitized) {
-        context().newIssue(this, functionCall,
-            "Function may output unsanitized SVG content. Use DOMPurify.sanitize() or a dedicated SVG sanitizer.");
+    }
+  }
+
+  /**
+   * Automata of the texts the rule looks at that depend on the sanitizers, compiled once per value
+   * of the {@code sanitizationMethods} parameter.
+   *
+   * <p>Sanitizers the automata cannot hold, a long list or non-ASCII names, are left out of them and
+   * looked for in the same texts by a {@link KeywordList}.</p>
+   */
+  private static final class Vocabulary {
+    // Leaves room in the automata for the patterns of the rule, at most 64 patterns and anchors
+    private static final int MAX_AUTOMATON_SANITIZERS = 48;
+
+    // Null when the sanitizers are part of the automata
+    private final KeywordList otherSanitizers;
+
+    private final PatternMatcher functionText;
+    private final long functionSanitized;
+    private final long functionInnerHtml;
+    private final long functionSvg;
+
+    private final PatternMatcher valueText;
+    private final long valueSvg;
+    private final long valueSanitized;
+    private final long valueUserInput;
+
+    // Expressions of the unescaped Blade outputs ({!! ... !!})
+    private final PatternMatcher rawOutputText;
+    private final long rawOutputSvg;
+    private final long rawOutputSanitized;
+
+    private final PatternMatcher echoText;
+    private final long echoSvg;
+    private final long echoSanitized;
+
+    private Vocabulary(List<String> allSanitizers) {
+      List<String> sanitizers = allSanitizers;
+      if (allSanitizers.size() <= MAX_AUTOMATON_SANITIZERS && KeywordMatcher.supports(allSanitizers)) {
+        otherSanitizers = null;
+      } else {
+        otherSanitizers = KeywordList.of(allSanitizers);
+        sanitizers = Collections.emptyList();
       }
+
+      functionText = TextPatterns.patterns()
+          .keywords(sanitizers)
+          .keywords("dangerouslysetinnerhtml")
+          .pattern(SVG_PATTERN)
+          .build();
+      functionSanitized = functionText.mask(sanitizers);
+      functionInnerHtml = functionText.mask("dangerouslysetinnerhtml");
+      functionSvg = functionText.mask(SVG_PATTERN);
+
+      valueText = TextPatterns.patterns()
+          .pattern(SVG_PATTERN)
+          .keywords(sanitizers)
+          .keywords(USER_INPUT_VALUES)
+          .build();
+      valueSvg = valueText.mask(SVG_PATTERN);
+      valueSanitized = valueText.mask(sanitizers);
+      valueUserInput = valueText.mask(USER_INPUT_VALUES);
+
+      rawOutputText = TextPatterns.patterns()
+          .keywords("svg")
+          .keywords(sanitizers)
+          .build();
+      rawOutputSvg = rawOutputText.mask("svg");
+      rawOutputSanitized = rawOutputText.mask(sanitizers);
+
+      echoText = TextPatterns.patterns()
+          .pattern(SVG_PATTERN)
+          .keywords(sanitizers)
+          .build();
+      echoSvg = echoText.mask(SVG_PATTERN);
+      echoSanitized = echoText.mask(sanitizers);
+    }
+
+    /**
+     * Whether the text, whose matches in one of the automata are {@code found}, mentions a sanitizer.
+     */
+    boolean isSanitized(long found, long sanitized, CharSequence text) {
+      return (found & sanitized) != 0 || (otherSanitizers != null && otherSanitizers.containsAny(text));
     }
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,55 @@
+package com.sunasterisk.sonar.text;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Matchers compiled from the value of a {@code @RuleProperty} list, such as
+ * {@code "create,insert,save"}, once per distinct value in the scanner process.
+ *
+ * <p>Every instance of a check receives its parameters from the quality profile, so the instances
+ * of one rule, and their analysis threads, ask for the same value: the first one compiles it, the
+ * others get the same immutable matcher. Checks resolve their parameters when a file starts and
+ * keep the matchers in their per-file state, so a parameter costs a map lookup per file and
+ * nothing per node.</p>
+ *
+ * @param <T> compiled form of the list, immutable and thread-safe
+ */
+public final class CompiledParameter<T> {
+
+  private final Function<List<String>, T> compiler;
+  private final Map<String, T> compiled = new ConcurrentHashMap<>();
+
+  private CompiledParameter(Function<List<String>, T> compiler) {
+    this.compiler = compiler;
+  }
+
+  /**
+   * @param compiler builds the matcher from the words of the list, in their order
+   */
+  public static <T> CompiledParameter<T> of(Function<List<String>, T> compiler) {
+    return new CompiledParameter<>(compiler);
+  }
+
+  public T get(String value) {
+    return compiled.computeIfAbsent(value == null ? "" : value, v -> compiler.apply(split(v)));
+  }
+
+  /**
+   * Words of a comma-separated parameter value, trimmed, empty words being ignored.
+   */
+  public static List<String> split(String value) {
+    List<String> words = new ArrayList<>();
+    for (String word : value.split(",")) {
+      String trimmed = word.trim();
+      if (!trimmed.isEmpty() && !words.contains(trimmed)) {
+        words.add(trimmed);
+      }
+    }
+    return Collections.unmodifiableList(words);
+  }
+}
@@ -0,0 +1,435 @@
+package com.sunasterisk.sonar.text;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Classifies identifiers such as class, method and variable names by the phrases they spell, e.g.
+ * {@code resetPassword}, {@code RESET_PASSWORD} and {@code resetpassword} all spell the phrase
+ * "reset password".
+ *
+ * <p>Identifiers are split into words once, on camelCase and snake_case boundaries, acronyms
+ * ({@code TOTPUtils} is "totp utils") and digits following letters ({@code password2} is
+ * "password 2", {@code get2FA} is "get 2fa"). Each word is interned as the index of a
+ * {@link WordSet} of the words of the phrases, a plural {@code s} being dropped when only the
+ * singular is known ({@code securityQuestions}). The phrases are found by an Aho-Corasick automaton
+ * over these word indices, in a single pass over the identifier that allocates nothing.</p>
+ *
+ * <p>Unlike a regular expression, a phrase only matches whole words: {@code footprint} and
+ * {@code forgotPassword} do not spell "otp". A phrase given as a single word also matches
+ * consecutive words of the identifier, as "webauthn" in {@code WebAuthnService}. A phrase of
+ * several words is also recognized joined anywhere in a word, since an all-lowercase identifier has
+ * no boundaries: {@code sendresetpasswordemail} spells "reset password". These spellings are found
+ * by a second {@link KeywordMatcher} pass over the characters (see {@link CompoundGroup}).</p>
+ *
+ * <p>Each category of phrases has a bit in the result of {@link #classify(CharSequence)}, see
+ * {@link #mask(String)}. Instances are immutable and thread-safe.</p>
+ */
+public final class IdentifierClassifier {
+
+  private static final int ROOT = 0;
+
+  // Types of characters, OTHER separating words
+  private static final int OTHER = 0;
+  private static final int LOWER = 1;
+  private static final int UPPER = 2;
+  private static final int DIGIT = 3;
+
+  // Between two words of a phrase in the text of an identifier, see textSpellings()
+  private static final String[] TEXT_SEPARATORS = {"", "s", "_", "s_", "$", "s$"};
+
+  private final List<String> categories;
+  // Phrases of each category, as given to the builder
+  private final Map<String, List<String>> phrases;
+  private final WordSet words;
+  // Number of symbols of the automaton: the interned words, then any other word
+  private final int alphabet;
+  // Full transition table, delta[state * alphabet + word] is the next state
+  private final int[] delta;
+  // Categories recognized when reaching each state
+  private final long[] output;
+  // Spellings of the phrases looked for in the characters of the identifier
+  private final CompoundGroup[] compounds;
+
+  private IdentifierClassifier(Map<String, List<String>> phrases) {
+    if (phrases.size() > Long.SIZE) {
+      throw new IllegalArgumentException("At most " + Long.SIZE + " categories are supported, got " + phrases.size());
+    }
+    this.categories = Collections.unmodifiableList(new ArrayList<>(phrases.keySet()));
+    this.phrases = new LinkedHashMap<>(phrases);
+
+    // 1. Every way of writing each phrase: "time based" is also the single word "timebased"
+    List<List<String>> spellings = new ArrayList<>();
+    List<Integer> spellingCategories = new ArrayList<>();
+    List<String> vocabulary = new ArrayList<>();
+    int category = 0;
+    for (List<String> categoryPhrases : phrases.values()) {
+      for (String phrase : categoryPhrases) {
+        String[] phraseWords = phrase.trim().toLowerCase(Locale.ROOT).split("\\s+");
+        for (List<String> spelling : spellings(phraseWords)) {
+          spellings.add(spelling);
+          spellingCategories.add(category);
+          for (String word : spelling) {
+            if (!vocabulary.contains(word)) {
+              vocabulary.add(word);
+            }
+          }
+        }
+      }
+      category++;
+    }
+    this.words = WordSet.of(vocabulary);
+    this.alphabet = vocabulary.size() + 1;
+
+    // 2. Trie of the spellings over the word indices
+    int maxStates = 1;
+    for (List<String> spelling : spellings) {
+      maxStates += spelling.size();
+    }
+    int[] trie = new int[maxStates * alphabet];
+    long[] out = new long[maxStates];
+    int states = 1;
+    for (int s = 0; s < spellings.size(); s++) {
+      int state = ROOT;
+      for (String word : spellings.get(s)) {
+        int symbol = words.indexOf(word, 0, word.length());
+        int next = trie[state * alphabet + symbol];
+        if (next == ROOT) {
+          next = states++;
+          trie[state * alphabet + symbol] = next;
+        }
+        state = next;
+      }
+      out[state] |= 1L << spellingCategories.get(s);
+    }
+
+    // 3. Failure links folded into a full transition table, breadth first
+    int[] fail = new int[states];
+    Deque<Integer> queue = new ArrayDeque<>();
+    for (int symbol = 0; symbol < alphabet; symbol++) {
+      int next = trie[ROOT * alphabet + symbol];
+      if (next != ROOT) {
+        fail[next] = ROOT;
+        queue.add(next);
+      }
+    }
+    while (!queue.isEmpty()) {
+      int state = queue.poll();
+      out[state] |= out[fail[state]];
+      for (int symbol = 0; symbol < alphabet; symbol++) {
+        int next = trie[state * alphabet + symbol];
+        if (next != ROOT) {
+          fail[next] = trie[fail[state] * alphabet + symbol];
+          queue.add(next);
+        } else {
+          trie[state * alphabet + symbol] = trie[fail[state] * alphabet + symbol];
+        }
+      }
+    }
+    this.delta = Arrays.copyOf(trie, states * alphabet);
+    this.output = Arrays.copyOf(out, states);
+
+    // 4. Phrases joined into single words, found character by character
+    this.compounds = CompoundGroup.of(phrases);
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public List<String> categories() {
+    return categories;
+  }
+
+  /**
+   * Bit mask of the categories of the phrases spelled by the identifier.
+   */
+  public long classify(CharSequence identifier) {
+    long found = 0L;
+    int state = ROOT;
+    int length = identifier.length();
+    // Current word: start, hash with and without its last character, type of its last character
+    int start = -1;
+    int hash = 0;
+    int singularHash = 0;
+    int previous = OTHER;
+    for (int i = 0; i < length; i++) {
+      char c = identifier.charAt(i);
+      int type = typeOf(c);
+      if (start >= 0 && (type == OTHER || isBoundary(identifier, i, previous, type))) {
+        state = delta[state * alphabet + symbol(identifier, start, i, hash, singularHash)];
+        found |= output[state];
+        start = -1;
+      }
+      if (type != OTHER) {
+        if (start < 0) {
+          start = i;
+          hash = 0;
+        }
+        singularHash = hash;
+        hash = WordSet.hash(hash, c);
+      }
+      previous = type;
+    }
+    if (start >= 0) {
+      state = delta[state * alphabet + symbol(identifier, start, length, hash, singularHash)];
+      found |= output[state];
+    }
+    for (CompoundGroup group : compounds) {
+      found |= group.classify(identifier);
+    }
+    return found;
+  }
+
+  /**
+   * Whether the identifier spells a phrase of the category.
+   */
+  public boolean is(CharSequence identifier, String category) {
+    return (classify(identifier) & mask(category)) != 0;
+  }
+
+  /**
+   * Texts, in lowercase, one of which occurs ignoring case in any identifier that spells a phrase of
+   * the category, e.g. to rule out a file from its raw text: each phrase with its words joined
+   * directly, as in {@code resetPassword}, or by {@code _} or {@code $}, a word followed by a
+   * plural {@code s} or not. Words separated by several characters, as in {@code reset__password},
+   * are not covered.
+   */
+  public List<String> textSpellings(String category) {
+    List<String> categoryPhrases = phrases.get(category);
+    if (categoryPhrases == null) {
+      throw new IllegalArgumentException("Unknown category: " + category);
+    }
+    List<String> spellings = new ArrayList<>();
+    for (String phrase : categoryPhrases) {
+      String[] phraseWords = phrase.trim().toLowerCase(Locale.ROOT).split("\\s+");
+      List<String> texts = Collections.singletonList(phraseWords[0]);
+      for (int i = 1; i < phraseWords.length; i++) {
+        List<String> longer = new ArrayList<>();
+        for (String text : texts) {
+          for (String separator : TEXT_SEPARATORS) {
+            longer.add(text + separator + phraseWords[i]);
+          }
+        }
+        texts = longer;
+      }
+      for (String text : texts) {
+        if (!spellings.contains(text)) {
+          spellings.add(text);
+        }
+      }
+    }
+    return spellings;
+  }
+
+  /**
+   * Mask with the bit of the given category, to test the result of {@link #classify(CharSequence)}.
+   */
+  public long mask(String category) {
+    int index = categories.indexOf(category);
+    if (index < 0) {
+      throw new IllegalArgumentException("Unknown category: " + category);
+    }
+    return 1L << index;
+  }
+
+  private static int typeOf(char c) {
+    if (c < 128) {
+      // ASCII identifiers without the Character lookups
+      if (c >= 'a' && c <= 'z') {
+        return LOWER;
+      }
+      if (c >= 'A' && c <= 'Z') {
+        return UPPER;
+      }
+      return c >= '0' && c <= '9' ? DIGIT : OTHER;
+    }
+    if (Character.isLowerCase(c)) {
+      return LOWER;
+    }
+    if (Character.isUpperCase(c)) {
+      return UPPER;
+    }
+    if (Character.isDigit(c)) {
+      return DIGIT;
+    }
+    return Character.isLetter(c) ? LOWER : OTHER;
+  }
+
+  // Whether a new word starts at i, the previous character being part of a word
+  private static boolean isBoundary(CharSequence identifier, int i, int previous, int type) {
+    if (type == UPPER) {
+      // fooBar, or the last capital of an acronym followed by a word: TOTPUtils
+      return previous == LOWER
+        || (previous == UPPER && i + 1 < identifier.length() && typeOf(identifier.charAt(i + 1)) == LOWER);
+    }
+    // password2, but not 2fa
+    return type == DIGIT && previous != DIGIT;
+  }
+
+  // Whether a word of the identifier starts at i, a character that is part of a word
+  private static boolean isWordStart(CharSequence identifier, int i) {
+    if (i == 0) {
+      return true;
+    }
+    int previous = typeOf(identifier.charAt(i - 1));
+    return previous == OTHER || isBoundary(identifier, i, previous, typeOf(identifier.charAt(i)));
+  }
+
+  // Whether a word of the identifier ends before i, the character before being part of a word
+  private static boolean isWordEnd(CharSequence identifier, int i) {
+    if (i == identifier.length()) {
+      return true;
+    }
+    int type = typeOf(identifier.charAt(i));
+    return type == OTHER || isBoundary(identifier, i, typeOf(identifier.charAt(i - 1)), type);
+  }
+
+  private int symbol(CharSequence identifier, int from, int to, int hash, int singularHash) {
+    int index = words.indexOf(identifier, from, to, hash);
+    char last = identifier.charAt(to - 1);
+    if (index < 0 && to - from > 3 && (last == 's' || last == 'S')) {
+      // Plural of a known word
+      index = words.indexOf(identifier, from, to - 1, singularHash);
+    }
+    return index < 0 ? alphabet - 1 : index;
+  }
+
+  // Groupings of consecutive words into single words: [a, b] and [ab] for "a b"
+  private static List<List<String>> spellings(String[] phraseWords) {
+    List<List<String>> spellings = new ArrayList<>();
+    int joins = phraseWords.length - 1;
+    for (int mask = 0; mask < 1 << joins; mask++) {
+      List<String> spelling = new ArrayList<>();
+      StringBuilder word = new StringBuilder(phraseWords[0]);
+      for (int i = 1; i < phraseWords.length; i++) {
+        if ((mask & (1 << (i - 1))) != 0) {
+          word.append(phraseWords[i]);
+        } else {
+          spelling.add(word.toString());
+          word.setLength(0);
+          word.append(phraseWords[i]);
+        }
+      }
+      spelling.add(word.toString());
+      spellings.add(spelling);
+    }
+    return spellings;
+  }
+
+  /**
+   * Spellings of the phrases without spaces, in a {@link KeywordMatcher} of at most 64 of them: a
+   * phrase of one word, which must start and end on word boundaries, or a phrase of several words,
+   * matched anywhere. Spellings a {@link KeywordMatcher} cannot hold, non-ASCII ones, are left to
+   * the word automaton.
+   */
+  private static final class CompoundGroup {
+    private final KeywordMatcher matcher;
+    // Per keyword: its length, its categories and whether it must match whole words
+    private final int[] lengths;
+    private final long[] categories;
+    private final boolean[] aligned;
+
+    private CompoundGroup(List<String> keywords, List<Long> keywordCategories, List<Boolean> keywordAligned) {
+      this.matcher = KeywordMatcher.of(keywords);
+      this.lengths = new int[keywords.size()];
+      this.categories = new long[keywords.size()];
+      this.aligned = new boolean[keywords.size()];
+      for (int k = 0; k < keywords.size(); k++) {
+        lengths[k] = keywords.get(k).length();
+        categories[k] = keywordCategories.get(k);
+        aligned[k] = keywordAligned.get(k);
+      }
+    }
+
+    private static CompoundGroup[] of(Map<String, List<String>> phrases) {
+      // Spellings keyed by their alignment, then text: a spelling shared by categories is looked for once
+      Map<String, Long> alignedSpellings = new LinkedHashMap<>();
+      Map<String, Long> joinedSpellings = new LinkedHashMap<>();
+      int category = 0;
+      for (List<String> categoryPhrases : phrases.values()) {
+        for (String phrase : categoryPhrases) {
+          String[] phraseWords = phrase.trim().toLowerCase(Locale.ROOT).split("\\s+");
+          String spelling = String.join("", phraseWords);
+          if (KeywordMatcher.supports(Collections.singletonList(spelling))) {
+            (phraseWords.length == 1 ? alignedSpellings : joinedSpellings).merge(spelling, 1L << category, (a, b) -> a | b);
+          }
+        }
+        category++;
+      }
+
+      List<CompoundGroup> groups = new ArrayList<>();
+      List<String> keywords = new ArrayList<>();
+      List<Long> keywordCategories = new ArrayList<>();
+      List<Boolean> keywordAligned = new ArrayList<>();
+      for (Map<String, Long> spellings : Arrays.asList(alignedSpellings, joinedSpellings)) {
+        for (Map.Entry<String, Long> spelling : spellings.entrySet()) {
+          if (keywords.size() == Long.SIZE) {
+            groups.add(new CompoundGroup(keywords, keywordCategories, keywordAligned));
+            keywords = new ArrayList<>();
+            keywordCategories = new ArrayList<>();
+            keywordAligned = new ArrayList<>();
+          }
+          keywords.add(spelling.getKey());
+          keywordCategories.add(spelling.getValue());
+          keywordAligned.add(spellings == alignedSpellings);
+        }
+      }
+      if (!keywords.isEmpty()) {
+        groups.add(new CompoundGroup(keywords, keywordCategories, keywordAligned));
+      }
+      return groups.toArray(new CompoundGroup[0]);
+    }
+
+    private long classify(CharSequence identifier) {
+      long found = 0L;
+      int state = KeywordMatcher.root();
+      for (int i = 0; i < identifier.length(); i++) {
+        char c = identifier.charAt(i);
+        if (typeOf(c) == OTHER) {
+          // Spellings do not span separators, which the word automaton handles
+          state = KeywordMatcher.root();
+          continue;
+        }
+        state = matcher.next(state, c);
+        for (long ending = matcher.output(state); ending != 0L; ending &= ending - 1) {
+          int k = Long.numberOfTrailingZeros(ending);
+          if (!aligned[k] || (isWordStart(identifier, i + 1 - lengths[k]) && isWordEnd(identifier, i + 1))) {
+            found |= categories[k];
+          }
+        }
+      }
+      return found;
+    }
+  }
+
+  /**
+   * Collects the phrases of each category, a category being declared once with all its phrases.
+   */
+  public static final class Builder {
+    private final Map<String, List<String>> phrases = new LinkedHashMap<>();
+
+    private Builder() {
+    }
+
+    /**
+     * Adds a category whose phrases are written in lowercase, words separated by spaces, e.g.
+     * {@code "reset password"}.
+     */
+    public Builder category(String name, String... categoryPhrases) {
+      phrases.computeIfAbsent(name, key -> new ArrayList<>()).addAll(Arrays.asList(categoryPhrases));
+      return this;
+    }
+
+    public IdentifierClassifier build() {
+      return new IdentifierClassifier(phrases);
+    }
+  }
+}
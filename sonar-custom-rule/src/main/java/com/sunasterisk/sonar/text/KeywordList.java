@@ -0,0 +1,61 @@
+package com.sunasterisk.sonar.text;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Keywords of a user-supplied list, such as a {@code @RuleProperty} value, looked for anywhere in
+ * a text ignoring case.
+ *
+ * <p>Lists a {@link KeywordMatcher} supports are matched by its automaton. The others, with more
+ * than 64 keywords or non-ASCII ones, are matched by a single regular expression of the quoted
+ * keywords instead: slower, but a quality profile must never fail the analysis. Instances are
+ * immutable and thread-safe.</p>
+ */
+public final class KeywordList {
+
+  private final List<String> keywords;
+  // Exactly one of them is set
+  private final KeywordMatcher automaton;
+  private final Pattern regex;
+
+  private KeywordList(List<String> keywords) {
+    this.keywords = keywords;
+    if (KeywordMatcher.supports(keywords)) {
+      this.automaton = KeywordMatcher.of(keywords);
+      this.regex = null;
+    } else {
+      this.automaton = null;
+      this.regex = compile(keywords);
+    }
+  }
+
+  /**
+   * @param keywords non-empty keywords, e.g. the words of {@link CompiledParameter#split(String)}
+   */
+  public static KeywordList of(List<String> keywords) {
+    return new KeywordList(keywords);
+  }
+
+  public List<String> keywords() {
+    return keywords;
+  }
+
+  /**
+   * Whether at least one keyword occurs in the text.
+   */
+  public boolean containsAny(CharSequence text) {
+    return automaton != null ? automaton.containsAny(text) : regex.matcher(text).find();
+  }
+
+  private static Pattern compile(List<String> keywords) {
+    StringBuilder alternatives = new StringBuilder();
+    for (String keyword : keywords) {
+      if (alternatives.length() > 0) {
+        alternatives.append('|');
+      }
+      alternatives.append(Pattern.quote(keyword));
+    }
+    return Pattern.compile(alternatives.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+  }
+}
@@ -0,0 +1,216 @@
+package com.sunasterisk.sonar.text;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton finding every occurrence of a fixed set of keywords in a single pass
+ * over the text, whatever the number of keywords. Matching is ASCII case-insensitive.
+ *
+ * <p>Build it once, typically in a static field of the rule class, and share it: instances are
+ * immutable and thread-safe. At most 64 keywords are supported so that the keywords found in a
+ * text can be returned as a bit mask, bit {@code i} standing for the {@code i}-th keyword.</p>
+ */
+public final class KeywordMatcher {
+
+  private static final int ALPHABET = 128;
+  private static final int ROOT = 0;
+
+  private final List<String> keywords;
+  // Full transition table, delta[state * ALPHABET + c] is the next state
+  private final int[] delta;
+  // Keywords recognized when reaching each state
+  private final long[] output;
+  private final long allKeywords;
+
+  private KeywordMatcher(List<String> keywords) {
+    if (keywords.size() > Long.SIZE) {
+      throw new IllegalArgumentException("At most " + Long.SIZE + " keywords are supported, got " + keywords.size());
+    }
+    this.keywords = Collections.unmodifiableList(new ArrayList<>(keywords));
+    this.allKeywords = keywords.size() == Long.SIZE ? -1L : (1L << keywords.size()) - 1;
+
+    // 1. Trie of the keywords
+    int maxStates = 1;
+    for (String keyword : keywords) {
+      maxStates += keyword.length();
+    }
+    int[] trie = new int[maxStates * ALPHABET];
+    long[] out = new long[maxStates];
+    int states = 1;
+    for (int k = 0; k < keywords.size(); k++) {
+      String keyword = keywords.get(k);
+      if (keyword.isEmpty()) {
+        throw new IllegalArgumentException("Keywords must not be empty");
+      }
+      int state = ROOT;
+      for (int i = 0; i < keyword.length(); i++) {
+        int c = fold(keyword.charAt(i));
+        if (c < 0) {
+          throw new IllegalArgumentException("Only ASCII keywords are supported: " + keyword);
+        }
+        int next = trie[state * ALPHABET + c];
+        if (next == ROOT) {
+          next = states++;
+          trie[state * ALPHABET + c] = next;
+        }
+        state = next;
+      }
+      out[state] |= 1L << k;
+    }
+
+    // 2. Failure links in breadth-first order, turning the trie into a complete automaton
+    int[] fail = new int[states];
+    Deque<Integer> queue = new ArrayDeque<>();
+    for (int c = 0; c < ALPHABET; c++) {
+      int next = trie[c];
+      if (next != ROOT) {
+        fail[next] = ROOT;
+        queue.add(next);
+      }
+    }
+    while (!queue.isEmpty()) {
+      int state = queue.poll();
+      out[state] |= out[fail[state]];
+      for (int c = 0; c < ALPHABET; c++) {
+        int next = trie[state * ALPHABET + c];
+        if (next != ROOT) {
+          fail[next] = trie[fail[state] * ALPHABET + c];
+          queue.add(next);
+        } else {
+          trie[state * ALPHABET + c] = trie[fail[state] * ALPHABET + c];
+        }
+      }
+    }
+    this.delta = Arrays.copyOf(trie, states * ALPHABET);
+    this.output = Arrays.copyOf(out, states);
+  }
+
+  public static KeywordMatcher of(String... keywords) {
+    return new KeywordMatcher(Arrays.asList(keywords));
+  }
+
+  public static KeywordMatcher of(List<String> keywords) {
+    return new KeywordMatcher(keywords);
+  }
+
+  /**
+   * Whether a matcher can be built from the keywords: at most 64 of them, none empty, all ASCII.
+   * Lists coming from the users, such as {@code @RuleProperty} values, are checked first (see
+   * {@link KeywordList}).
+   */
+  public static boolean supports(List<String> keywords) {
+    if (keywords.size() > Long.SIZE) {
+      return false;
+    }
+    for (String keyword : keywords) {
+      if (keyword.isEmpty()) {
+        return false;
+      }
+      for (int i = 0; i < keyword.length(); i++) {
+        if (fold(keyword.charAt(i)) < 0) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  public List<String> keywords() {
+    return keywords;
+  }
+
+  public int size() {
+    return keywords.size();
+  }
+
+  /**
+   * Bit mask of the keywords occurring in the text.
+   */
+  public long matches(CharSequence text) {
+    return matches(text, 0, text.length());
+  }
+
+  /**
+   * Bit mask of the keywords occurring in {@code text[from, to)}.
+   */
+  public long matches(CharSequence text, int from, int to) {
+    long found = 0L;
+    int state = ROOT;
+    for (int i = from; i < to; i++) {
+      int c = fold(text.charAt(i));
+      if (c < 0) {
+        state = ROOT;
+        continue;
+      }
+      state = delta[state * ALPHABET + c];
+      found |= output[state];
+      if (found == allKeywords) {
+        break;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Whether at least one keyword occurs in the text, stopping at the first one found.
+   */
+  public boolean containsAny(CharSequence text) {
+    int state = ROOT;
+    for (int i = 0; i < text.length(); i++) {
+      int c = fold(text.charAt(i));
+      if (c < 0) {
+        state = ROOT;
+        continue;
+      }
+      state = delta[state * ALPHABET + c];
+      if (output[state] != 0L) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Mask with the bit of the given keyword, to test the result of {@link #matches(CharSequence)}.
+   */
+  public long mask(String keyword) {
+    int index = keywords.indexOf(keyword);
+    if (index < 0) {
+      throw new IllegalArgumentException("Unknown keyword: " + keyword);
+    }
+    return 1L << index;
+  }
+
+  // Single steps of the automaton, for matchers built on top of it such as PatternMatcher
+
+  static int root() {
+    return ROOT;
+  }
+
+  /**
+   * State reached from the given one on the character, non-ASCII characters resetting to the root.
+   */
+  int next(int state, char c) {
+    int folded = fold(c);
+    return folded < 0 ? ROOT : delta[state * ALPHABET + folded];
+  }
+
+  /**
+   * Bit mask of the keywords ending at the character that led to the state.
+   */
+  long output(int state) {
+    return output[state];
+  }
+
+  static int fold(char c) {
+    if (c >= ALPHABET) {
+      return -1;
+    }
+    return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+  }
+}
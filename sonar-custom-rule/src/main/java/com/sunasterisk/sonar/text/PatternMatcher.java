@@ -0,0 +1,397 @@
+package com.sunasterisk.sonar.text;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Several patterns looked for in a single pass over the text, without copying it. Matching is
+ * ASCII case-insensitive, like {@code (?i)} regular expressions, so the text does not need to be
+ * lowercased first.
+ *
+ * <p>Patterns are written in the subset of the regular expression syntax used by the rules:
+ * alternatives separated by {@code |}, ASCII literals (other characters escaped with {@code \}),
+ * literal groups such as {@code (svg)}, {@code \b}, {@code \s*}, {@code \s+}, {@code .?} and the
+ * {@code (\s*|_)} separator. Anything else is rejected when the matcher is built. Keywords are
+ * patterns matching themselves literally.</p>
+ *
+ * <p>Each alternative starts with a literal, its anchor. The anchors of all the patterns are found by
+ * one {@link KeywordMatcher} pass and the rest of an alternative is only checked where its anchor
+ * occurs. Matchers are immutable and thread-safe; get them from {@link TextPatterns} so that rules
+ * share identical ones. At most 64 patterns and 64 distinct anchors are supported.</p>
+ */
+public final class PatternMatcher {
+
+  // Operations of an alternative after its anchor, ASCII literals being their lowercase code
+  private static final int BOUNDARY = -1;
+  private static final int SPACES = -2;
+  private static final int SPACES_PLUS = -3;
+  private static final int OPTIONAL_CHAR = -4;
+  private static final int SEPARATOR = -5;
+
+  private final List<String> patterns;
+  private final KeywordMatcher anchors;
+  private final long allPatterns;
+  // Alternatives starting with each anchor
+  private final Alternative[][] anchorAlternatives;
+
+  private PatternMatcher(List<String> patterns, List<List<String>> alternatives) {
+    if (patterns.size() > Long.SIZE) {
+      throw new IllegalArgumentException("At most " + Long.SIZE + " patterns are supported, got " + patterns.size());
+    }
+    this.patterns = Collections.unmodifiableList(new ArrayList<>(patterns));
+    this.allPatterns = patterns.size() == Long.SIZE ? -1L : (1L << patterns.size()) - 1;
+
+    Map<String, List<Alternative>> byAnchor = new LinkedHashMap<>();
+    for (int p = 0; p < patterns.size(); p++) {
+      for (String alternative : alternatives.get(p)) {
+        Alternative compiled = Alternative.compile(alternative, 1L << p);
+        byAnchor.computeIfAbsent(compiled.anchor, a -> new ArrayList<>()).add(compiled);
+      }
+    }
+    this.anchors = KeywordMatcher.of(new ArrayList<>(byAnchor.keySet()));
+    this.anchorAlternatives = new Alternative[byAnchor.size()][];
+    int a = 0;
+    for (List<Alternative> sameAnchor : byAnchor.values()) {
+      anchorAlternatives[a++] = sameAnchor.toArray(new Alternative[0]);
+    }
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Patterns and keywords of the matcher, in the order they were added: bit {@code i} of
+   * {@link #matches(CharSequence)} stands for the {@code i}-th one.
+   */
+  public List<String> patterns() {
+    return patterns;
+  }
+
+  /**
+   * Bit mask of the patterns found in the text.
+   */
+  public long matches(CharSequence text) {
+    return scan(text, allPatterns, false);
+  }
+
+  /**
+   * Whether at least one pattern is found in the text, stopping at the first one.
+   */
+  public boolean find(CharSequence text) {
+    return scan(text, allPatterns, true) != 0L;
+  }
+
+  /**
+   * Whether at least one of the patterns of the mask is found in the text.
+   */
+  public boolean find(CharSequence text, long mask) {
+    return scan(text, mask, true) != 0L;
+  }
+
+  /**
+   * Patterns of {@code wanted} found in the text, stopping at the first one or once all are found.
+   */
+  private long scan(CharSequence text, long wanted, boolean first) {
+    long found = 0L;
+    int state = KeywordMatcher.root();
+    int length = text.length();
+    for (int i = 0; i < length; i++) {
+      state = anchors.next(state, text.charAt(i));
+      long ending = anchors.output(state);
+      while (ending != 0L) {
+        int anchor = Long.numberOfTrailingZeros(ending);
+        ending &= ending - 1;
+        for (Alternative alternative : anchorAlternatives[anchor]) {
+          if ((wanted & alternative.pattern & ~found) != 0L && alternative.matchesAt(text, i + 1)) {
+            found |= alternative.pattern;
+            if (first || found == wanted) {
+              return found;
+            }
+          }
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Mask with the bit of the given pattern or keyword, to test the result of {@link #matches(CharSequence)}.
+   */
+  public long mask(String pattern) {
+    int index = patterns.indexOf(pattern);
+    if (index < 0) {
+      throw new IllegalArgumentException("Unknown pattern: " + pattern);
+    }
+    return 1L << index;
+  }
+
+  public long mask(Collection<String> patterns) {
+    long mask = 0L;
+    for (String pattern : patterns) {
+      mask |= mask(pattern);
+    }
+    return mask;
+  }
+
+  public static final class Builder {
+    private final List<String> patterns = new ArrayList<>();
+    // Definitions of the patterns, keywords being quoted, used as the registry key
+    private final List<String> definitions = new ArrayList<>();
+
+    private Builder() {
+    }
+
+    /**
+     * Adds a pattern; a leading {@code (?i)} is accepted and ignored.
+     */
+    public Builder pattern(String pattern) {
+      patterns.add(pattern);
+      definitions.add(pattern.startsWith("(?i)") ? pattern.substring(4) : pattern);
+      return this;
+    }
+
+    public Builder keywords(String... keywords) {
+      for (String keyword : keywords) {
+        patterns.add(keyword);
+        definitions.add(quote(keyword));
+      }
+      return this;
+    }
+
+    public Builder keywords(Collection<String> keywords) {
+      return keywords(keywords.toArray(new String[0]));
+    }
+
+    public PatternMatcher build() {
+      return TextPatterns.intern(patterns, definitions);
+    }
+  }
+
+  static PatternMatcher compile(List<String> patterns, List<String> definitions) {
+    List<List<String>> alternatives = new ArrayList<>(definitions.size());
+    for (String definition : definitions) {
+      alternatives.add(splitAlternatives(definition));
+    }
+    return new PatternMatcher(patterns, alternatives);
+  }
+
+  private static String quote(String keyword) {
+    StringBuilder quoted = new StringBuilder(keyword.length() * 2);
+    for (int i = 0; i < keyword.length(); i++) {
+      char c = keyword.charAt(i);
+      if (!Character.isLetterOrDigit(c) && c != ' ') {
+        quoted.append('\\');
+      }
+      quoted.append(c);
+    }
+    return quoted.toString();
+  }
+
+  private static List<String> splitAlternatives(String pattern) {
+    List<String> alternatives = new ArrayList<>();
+    int depth = 0;
+    int start = 0;
+    for (int i = 0; i < pattern.length(); i++) {
+      char c = pattern.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (c == '(') {
+        depth++;
+      } else if (c == ')') {
+        depth--;
+      } else if (c == '|' && depth == 0) {
+        alternatives.add(pattern.substring(start, i));
+        start = i + 1;
+      }
+    }
+    alternatives.add(pattern.substring(start));
+    return alternatives;
+  }
+
+  /**
+   * One alternative of a pattern: its anchor, whether it must start at a word boundary, and the
+   * operations checked after the anchor.
+   */
+  private static final class Alternative {
+    private final long pattern;
+    private final String anchor;
+    private final boolean leadingBoundary;
+    private final int[] tail;
+
+    private Alternative(long pattern, String anchor, boolean leadingBoundary, int[] tail) {
+      this.pattern = pattern;
+      this.anchor = anchor;
+      this.leadingBoundary = leadingBoundary;
+      this.tail = tail;
+    }
+
+    static Alternative compile(String alternative, long pattern) {
+      List<Integer> operations = parse(alternative);
+      int op = 0;
+      boolean leadingBoundary = false;
+      while (op < operations.size() && operations.get(op) == BOUNDARY) {
+        leadingBoundary = true;
+        op++;
+      }
+      StringBuilder anchor = new StringBuilder();
+      while (op < operations.size() && operations.get(op) >= 0) {
+        anchor.append((char) (int) operations.get(op));
+        op++;
+      }
+      if (anchor.length() == 0) {
+        throw new IllegalArgumentException("Alternatives must start with a literal: " + alternative);
+      }
+      int[] tail = new int[operations.size() - op];
+      for (int i = 0; i < tail.length; i++) {
+        tail[i] = operations.get(op + i);
+      }
+      return new Alternative(pattern, anchor.toString(), leadingBoundary, tail);
+    }
+
+    private static List<Integer> parse(String alternative) {
+      List<Integer> operations = new ArrayList<>();
+      int i = 0;
+      while (i < alternative.length()) {
+        char c = alternative.charAt(i);
+        if (c == '\\') {
+          if (alternative.startsWith("\\b", i)) {
+            operations.add(BOUNDARY);
+            i += 2;
+          } else if (alternative.startsWith("\\s*", i)) {
+            operations.add(SPACES);
+            i += 3;
+          } else if (alternative.startsWith("\\s+", i)) {
+            operations.add(SPACES_PLUS);
+            i += 3;
+          } else if (i + 1 < alternative.length() && !Character.isLetterOrDigit(alternative.charAt(i + 1))) {
+            operations.add(literal(alternative.charAt(i + 1), alternative));
+            i += 2;
+          } else {
+            throw unsupported(alternative);
+          }
+        } else if (c == '.' && alternative.startsWith(".?", i)) {
+          operations.add(OPTIONAL_CHAR);
+          i += 2;
+        } else if (c == '(') {
+          int close = alternative.indexOf(')', i);
+          if (close < 0) {
+            throw unsupported(alternative);
+          }
+          String group = alternative.substring(i + 1, close);
+          if ("\\s*|_".equals(group)) {
+            operations.add(SEPARATOR);
+          } else {
+            for (int g = 0; g < group.length(); g++) {
+              if (!Character.isLetterOrDigit(group.charAt(g))) {
+                throw unsupported(alternative);
+              }
+              operations.add(literal(group.charAt(g), alternative));
+            }
+          }
+          i = close + 1;
+        } else if ("*+?.[]{}()^$|".indexOf(c) >= 0) {
+          throw unsupported(alternative);
+        } else {
+          operations.add(literal(c, alternative));
+          i++;
+        }
+      }
+      return operations;
+    }
+
+    private static int literal(char c, String alternative) {
+      int folded = KeywordMatcher.fold(c);
+      if (folded < 0) {
+        throw new IllegalArgumentException("Only ASCII patterns are supported: " + alternative);
+      }
+      return folded;
+    }
+
+    private static IllegalArgumentException unsupported(String alternative) {
+      return new IllegalArgumentException("Unsupported pattern syntax: " + alternative);
+    }
+
+    /**
+     * Whether the alternative matches with its anchor ending right before {@code end}.
+     */
+    boolean matchesAt(CharSequence text, int end) {
+      if (leadingBoundary) {
+        int start = end - anchor.length();
+        if (isWord(text, start - 1) == isWord(text, start)) {
+          return false;
+        }
+      }
+      return matchTail(text, 0, end);
+    }
+
+    private boolean matchTail(CharSequence text, int op, int position) {
+      int pos = position;
+      for (int i = op; i < tail.length; i++) {
+        int operation = tail[i];
+        if (operation >= 0) {
+          if (pos >= text.length() || KeywordMatcher.fold(text.charAt(pos)) != operation) {
+            return false;
+          }
+          pos++;
+          continue;
+        }
+        switch (operation) {
+          case BOUNDARY:
+            if (isWord(text, pos - 1) == isWord(text, pos)) {
+              return false;
+            }
+            break;
+          case SPACES:
+            return matchSpaces(text, i + 1, pos);
+          case SPACES_PLUS:
+            return pos < text.length() && isSpace(text.charAt(pos)) && matchSpaces(text, i + 1, pos + 1);
+          case OPTIONAL_CHAR:
+            return (pos < text.length() && !isLineTerminator(text.charAt(pos)) && matchTail(text, i + 1, pos + 1))
+              || matchTail(text, i + 1, pos);
+          case SEPARATOR:
+            return (pos < text.length() && text.charAt(pos) == '_' && matchTail(text, i + 1, pos + 1))
+              || matchSpaces(text, i + 1, pos);
+          default:
+            throw new IllegalStateException("Unknown operation " + operation);
+        }
+      }
+      return true;
+    }
+
+    private boolean matchSpaces(CharSequence text, int op, int position) {
+      int end = position;
+      while (end < text.length() && isSpace(text.charAt(end))) {
+        end++;
+      }
+      for (int pos = end; pos >= position; pos--) {
+        if (matchTail(text, op, pos)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  // Same classes as java.util.regex: \s, \b and the characters . does not match
+
+  private static boolean isSpace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
+  private static boolean isWord(CharSequence text, int index) {
+    if (index < 0 || index >= text.length()) {
+      return false;
+    }
+    char c = text.charAt(index);
+    return c == '_' || Character.isLetterOrDigit(c);
+  }
+
+  private static boolean isLineTerminator(char c) {
+    return c == '\n' || c == '\r' || c == '\u0085' || c == (char) 0x2028 || c == (char) 0x2029;
+  }
+}
@@ -0,0 +1,52 @@
+package com.sunasterisk.sonar.text;
+
+import java.util.Arrays;
+
+/**
+ * Whole source file with a line index, built once per file.
+ * Any line/column range of the file can then be viewed as a {@link TextSlice} without copying.
+ * The text keeps its case: the matchers of {@link TextPatterns} ignore it.
+ */
+public final class SourceText {
+
+  private final String contents;
+  private final int[] lineStarts;
+
+  public SourceText(String contents) {
+    int length = contents.length();
+    int[] starts = new int[16];
+    int lines = 1;
+    for (int i = 0; i < length; i++) {
+      char c = contents.charAt(i);
+      boolean lineBreak = c == '\n' || (c == '\r' && (i + 1 == length || contents.charAt(i + 1) != '\n'));
+      if (lineBreak) {
+        if (lines == starts.length) {
+          starts = Arrays.copyOf(starts, lines * 2);
+        }
+        starts[lines++] = i + 1;
+      }
+    }
+    this.contents = contents;
+    this.lineStarts = Arrays.copyOf(starts, lines);
+  }
+
+  /**
+   * Offset in the file of a 1-based line and 0-based column, as reported by the parsers.
+   */
+  public int offset(int line, int column) {
+    int index = Math.min(Math.max(line, 1), lineStarts.length) - 1;
+    return Math.min(lineStarts[index] + column, contents.length());
+  }
+
+  public TextSlice slice(int startOffset, int endOffset) {
+    return new TextSlice(contents, startOffset, Math.max(startOffset, endOffset));
+  }
+
+  public TextSlice slice(int startLine, int startColumn, int endLine, int endColumn) {
+    return slice(offset(startLine, startColumn), offset(endLine, endColumn));
+  }
+
+  public TextSlice all() {
+    return new TextSlice(contents, 0, contents.length());
+  }
+}
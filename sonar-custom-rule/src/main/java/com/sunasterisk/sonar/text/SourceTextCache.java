@@ -0,0 +1,66 @@
+package com.sunasterisk.sonar.text;
+
+import com.sunasterisk.sonar.tree.SourceRange;
+import org.sonar.plugins.php.api.tree.CompilationUnitTree;
+import org.sonar.plugins.php.api.tree.Tree;
+import org.sonar.plugins.php.api.visitors.CheckContext;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Per-file cache of the source text of PHP tree nodes.
+ *
+ * <p>{@code Tree.toString()} re-serializes the whole subtree on every call, so checks calling it on
+ * nested nodes end up quadratic in the nesting depth. Here the file is indexed once and the
+ * text of a node is a view over its token range, memoized per node.</p>
+ *
+ * <p>The PHP sensor runs every check on a file before moving to the next one on the same thread,
+ * so the cache of the current file is kept in a thread local and shared by all checks.</p>
+ */
+public final class SourceTextCache {
+
+  private static final ThreadLocal<SourceTextCache> CURRENT = new ThreadLocal<>();
+
+  private final CompilationUnitTree tree;
+  private final SourceText source;
+  private final Map<Tree, TextSlice> slices = new IdentityHashMap<>();
+
+  private SourceTextCache(CompilationUnitTree tree, String contents) {
+    this.tree = tree;
+    this.source = new SourceText(contents);
+  }
+
+  public static SourceTextCache of(CheckContext context) {
+    SourceTextCache cache = CURRENT.get();
+    if (cache == null || cache.tree != context.tree()) {
+      cache = new SourceTextCache(context.tree(), context.getPhpFile().contents());
+      CURRENT.set(cache);
+    }
+    return cache;
+  }
+
+  /**
+   * Source text of the given node, from the start of its first token to the end of its last one.
+   */
+  public TextSlice text(Tree node) {
+    TextSlice slice = slices.get(node);
+    if (slice == null) {
+      slice = compute(node);
+      slices.put(node, slice);
+    }
+    return slice;
+  }
+
+  public SourceText source() {
+    return source;
+  }
+
+  private TextSlice compute(Tree node) {
+    SourceRange range = SourceRange.of(node);
+    if (range == null) {
+      return source.slice(0, 0);
+    }
+    return source.slice(range.line(), range.column(), range.endLine(), range.endColumn());
+  }
+}
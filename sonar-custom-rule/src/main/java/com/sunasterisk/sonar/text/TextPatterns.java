@@ -0,0 +1,88 @@
+package com.sunasterisk.sonar.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the keyword and pattern matchers of the rules, compiled once per definition and shared
+ * by every rule declaring the same one.
+ *
+ * <p>All the matchers work on {@link CharSequence} views of the source, such as {@link TextSlice},
+ * ignoring ASCII case: rules never need a lowercase copy of the text they look at. A rule applying
+ * several patterns to the same text declares them in one {@link PatternMatcher} and tests the bits
+ * of a single {@link PatternMatcher#matches(CharSequence)} call.</p>
+ */
+public final class TextPatterns {
+
+  private static final Map<List<String>, KeywordMatcher> KEYWORDS = new ConcurrentHashMap<>();
+  private static final Map<List<String>, PatternMatcher> PATTERNS = new ConcurrentHashMap<>();
+  private static final CompiledParameter<WordSet> WORD_PARAMETERS = CompiledParameter.of(WordSet::of);
+  private static final CompiledParameter<KeywordList> KEYWORD_PARAMETERS = CompiledParameter.of(KeywordList::of);
+
+  private TextPatterns() {
+  }
+
+  public static KeywordMatcher keywords(String... keywords) {
+    return keywords(Arrays.asList(keywords));
+  }
+
+  public static KeywordMatcher keywords(List<String> keywords) {
+    return KEYWORDS.computeIfAbsent(Collections.unmodifiableList(new ArrayList<>(keywords)), KeywordMatcher::of);
+  }
+
+  /**
+   * Set of the words of a comma-separated {@code @RuleProperty} value, compiled once per value (see
+   * {@link CompiledParameter}).
+   */
+  public static WordSet words(String parameter) {
+    return WORD_PARAMETERS.get(parameter);
+  }
+
+  /**
+   * Matcher of the keywords of a comma-separated {@code @RuleProperty} value, compiled once per
+   * value (see {@link CompiledParameter}). Any value is accepted, see {@link KeywordList}.
+   */
+  public static KeywordList keywordList(String parameter) {
+    return KEYWORD_PARAMETERS.get(parameter);
+  }
+
+  /**
+   * Matcher of a single pattern, see {@link PatternMatcher} for the supported syntax.
+   */
+  public static PatternMatcher pattern(String pattern) {
+    return PatternMatcher.builder().pattern(pattern).build();
+  }
+
+  /**
+   * Matcher of several patterns and keywords applied to the same text in one pass.
+   */
+  public static PatternMatcher.Builder patterns() {
+    return PatternMatcher.builder();
+  }
+
+  /**
+   * Whether the word is one of the given ones, ignoring case, without lowercasing it.
+   */
+  public static boolean isOneOf(String word, Collection<String> words) {
+    for (String candidate : words) {
+      if (candidate.equalsIgnoreCase(word)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  static PatternMatcher intern(List<String> patterns, List<String> definitions) {
+    // Both lists are part of the key: they give the masks and the matched language
+    List<String> key = new ArrayList<>(patterns.size() * 2);
+    key.addAll(patterns);
+    key.addAll(definitions);
+    return PATTERNS.computeIfAbsent(Collections.unmodifiableList(key),
+      k -> PatternMatcher.compile(patterns, definitions));
+  }
+}
@@ -0,0 +1,55 @@
+package com.sunasterisk.sonar.text;
+
+/**
+ * Read-only view over a range of a larger string. Unlike {@link String#subSequence(int, int)}
+ * it never copies characters, so checks can match on the text of any node for free.
+ */
+public final class TextSlice implements CharSequence {
+
+  private final String source;
+  private final int start;
+  private final int end;
+
+  TextSlice(String source, int start, int end) {
+    this.source = source;
+    this.start = start;
+    this.end = end;
+  }
+
+  @Override
+  public int length() {
+    return end - start;
+  }
+
+  @Override
+  public char charAt(int index) {
+    return source.charAt(start + index);
+  }
+
+  @Override
+  public TextSlice subSequence(int from, int to) {
+    return new TextSlice(source, start + from, start + to);
+  }
+
+  /**
+   * Same as {@link String#indexOf(String)} on the slice ignoring case, without materializing it.
+   */
+  public int indexOf(String needle) {
+    int limit = end - needle.length();
+    for (int i = start; i <= limit; i++) {
+      if (source.regionMatches(true, i, needle, 0, needle.length())) {
+        return i - start;
+      }
+    }
+    return -1;
+  }
+
+  public boolean contains(String needle) {
+    return indexOf(needle) >= 0;
+  }
+
+  @Override
+  public String toString() {
+    return source.substring(start, end);
+  }
+}
@@ -0,0 +1,121 @@
+package com.sunasterisk.sonar.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable set of words looked up ignoring ASCII case, such as the method names a rule reacts to.
+ *
+ * <p>Words are kept in an open-addressing table hashed on their case-folded characters, so a
+ * lookup hashes the candidate in place and compares it character by character: no lowercase copy,
+ * no allocation, whatever the number of words. Instances are thread-safe; build them once and
+ * share them, see {@link TextPatterns#words(String)}.</p>
+ */
+public final class WordSet {
+
+  private final List<String> words;
+  // Power of two, at most half full so that probes stay short
+  private final String[] table;
+  // Index in words of the word of each slot of the table
+  private final int[] indices;
+  private final int mask;
+
+  private WordSet(List<String> words) {
+    this.words = Collections.unmodifiableList(new ArrayList<>(words));
+    int capacity = Integer.highestOneBit(Math.max(words.size(), 1) * 2 - 1) << 1;
+    this.table = new String[capacity];
+    this.indices = new int[capacity];
+    this.mask = capacity - 1;
+    for (int i = 0; i < words.size(); i++) {
+      String word = words.get(i);
+      if (!contains(word)) {
+        int hash = hash(word, 0, word.length());
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (table[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        table[slot] = word;
+        indices[slot] = i;
+      }
+    }
+  }
+
+  public static WordSet of(String... words) {
+    return new WordSet(Arrays.asList(words));
+  }
+
+  public static WordSet of(Collection<String> words) {
+    return new WordSet(new ArrayList<>(words));
+  }
+
+  public List<String> words() {
+    return words;
+  }
+
+  public boolean contains(CharSequence word) {
+    return indexOf(word, 0, word.length()) >= 0;
+  }
+
+  /**
+   * Index in {@link #words()} of the word {@code text[from, to)}, -1 when it is not in the set:
+   * the words of a set are interned as small integers, e.g. to index tables.
+   */
+  public int indexOf(CharSequence text, int from, int to) {
+    return indexOf(text, from, to, hash(text, from, to));
+  }
+
+  /**
+   * {@link #indexOf(CharSequence, int, int)} for a caller that computed {@link #hash(int, char)}
+   * of the word while reading it.
+   */
+  int indexOf(CharSequence text, int from, int to, int hash) {
+    int slot = (hash ^ (hash >>> 16)) & mask;
+    String candidate;
+    while ((candidate = table[slot]) != null) {
+      if (equalsIgnoreCase(candidate, text, from, to)) {
+        return indices[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  public int size() {
+    return words.size();
+  }
+
+  private static int hash(CharSequence text, int from, int to) {
+    int hash = 0;
+    for (int i = from; i < to; i++) {
+      hash = hash(hash, text.charAt(i));
+    }
+    return hash;
+  }
+
+  /**
+   * Hash of a word followed by the character, from the hash of the word, 0 for the empty word.
+   * The low bits used by the table are spread at lookup.
+   */
+  static int hash(int hash, char c) {
+    return hash * 31 + fold(c);
+  }
+
+  private static boolean equalsIgnoreCase(String word, CharSequence text, int from, int to) {
+    if (word.length() != to - from) {
+      return false;
+    }
+    for (int i = 0; i < word.length(); i++) {
+      if (fold(word.charAt(i)) != fold(text.charAt(from + i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static char fold(char c) {
+    return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+  }
+}
@@ -0,0 +1,46 @@
+package com.sunasterisk.sonar.tree;
+
+import org.sonar.plugins.php.api.tree.Tree;
+import org.sonar.plugins.php.api.visitors.PHPVisitorCheck;
+
+/**
+ * Depth-first walk of a PHP syntax tree, tokens included, through the public API of the PHP
+ * analyzer.
+ *
+ * <p>The PHP plugin only exposes {@code org.sonar.plugins.php.api} to the other plugins, so the
+ * children of a node cannot be listed directly: every visit method of {@link PHPVisitorCheck} hands
+ * the visited node to {@link #scan(Tree)}, which visits its children. {@link #enter(Tree)} and
+ * {@link #leave(Tree)} are called there for every node, in source order.</p>
+ *
+ * <p>A walker keeps the state of the walk in progress: create one per walk.</p>
+ */
+public abstract class PhpTreeWalker extends PHPVisitorCheck {
+
+  public void walk(Tree root) {
+    root.accept(this);
+  }
+
+  /**
+   * Called before the children of the node are walked.
+   *
+   * @return whether to walk the children of the node
+   */
+  protected boolean enter(Tree tree) {
+    return true;
+  }
+
+  /**
+   * Called after the children of the node, whether they were walked or not.
+   */
+  protected void leave(Tree tree) {
+    // Nothing by default
+  }
+
+  @Override
+  protected final void scan(Tree tree) {
+    if (enter(tree)) {
+      super.scan(tree);
+    }
+    leave(tree);
+  }
+}
@@ -0,0 +1,102 @@
+package com.sunasterisk.sonar.tree;
+
+import org.sonar.plugins.php.api.tree.Tree;
+import org.sonar.plugins.php.api.tree.lexical.SyntaxToken;
+import org.sonar.plugins.php.api.visitors.IssueLocation;
+
+/**
+ * Source range of a PHP tree node, from the start of its first token to the end of its last one.
+ *
+ * <p>The tokens of a node are only reachable through the public API of the PHP analyzer by an
+ * {@link IssueLocation}, which fails on a node without any token, e.g. an empty argument list:
+ * {@link #of(Tree)} answers {@code null} for those.</p>
+ */
+public final class SourceRange {
+
+  private final int line;
+  private final int column;
+  private final int endLine;
+  private final int endColumn;
+
+  public SourceRange(int line, int column, int endLine, int endColumn) {
+    this.line = line;
+    this.column = column;
+    this.endLine = endLine;
+    this.endColumn = endColumn;
+  }
+
+  /**
+   * Range of the node, or {@code null} if it has no token.
+   */
+  public static SourceRange of(Tree tree) {
+    if (!(tree instanceof SyntaxToken) && !new FirstTokenFinder().hasToken(tree)) {
+      return null;
+    }
+    IssueLocation location = new IssueLocation(tree, null);
+    return new SourceRange(location.startLine(), location.startLineOffset(), location.endLine(), location.endLineOffset());
+  }
+
+  public int line() {
+    return line;
+  }
+
+  public int column() {
+    return column;
+  }
+
+  public int endLine() {
+    return endLine;
+  }
+
+  public int endColumn() {
+    return endColumn;
+  }
+
+  public boolean contains(int otherLine, int otherColumn, int otherEndLine, int otherEndColumn) {
+    return compare(line, column, otherLine, otherColumn) <= 0
+      && compare(otherEndLine, otherEndColumn, endLine, endColumn) <= 0;
+  }
+
+  private static int compare(int line, int column, int otherLine, int otherColumn) {
+    return line != otherLine ? Integer.compare(line, otherLine) : Integer.compare(column, otherColumn);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (!(other instanceof SourceRange)) {
+      return false;
+    }
+    SourceRange range = (SourceRange) other;
+    return line == range.line && column == range.column && endLine == range.endLine && endColumn == range.endColumn;
+  }
+
+  @Override
+  public int hashCode() {
+    return ((line * 31 + column) * 31 + endLine) * 31 + endColumn;
+  }
+
+  @Override
+  public String toString() {
+    return line + ":" + column + "-" + endLine + ":" + endColumn;
+  }
+
+  /**
+   * Stops at the first token: only the leftmost path of the node and its empty siblings are walked.
+   */
+  private static final class FirstTokenFinder extends PhpTreeWalker {
+    private boolean found;
+
+    private boolean hasToken(Tree tree) {
+      walk(tree);
+      return found;
+    }
+
+    @Override
+    protected boolean enter(Tree tree) {
+      if (tree instanceof SyntaxToken) {
+        found = true;
+      }
+      return !found;
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package com.sunasterisk.sonar.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs successive analyses on a {@link VerdictStore}, each opening and closing the store.
+ */
+public class VerdictStoreTest {
+
+  private static final String VERSION = "1.0";
+
+  private Path directory;
+
+  @Before
+  public void createDirectory() throws IOException {
+    directory = Files.createTempDirectory("verdicts");
+  }
+
+  @After
+  public void deleteDirectory() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : files.sorted((a, b) -> b.compareTo(a)).collect(Collectors.toList())) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  @Test
+  public void keys_are_kept_between_analyses() throws IOException {
+    VerdictStore store = VerdictStore.open(directory, VERSION);
+    assertFalse(store.contains(key(1)));
+    store.add(key(1));
+    assertTrue(store.contains(key(1)));
+    store.close();
+
+    store = VerdictStore.open(directory, VERSION);
+    assertTrue(store.contains(key(1)));
+    assertFalse(store.contains(key(2)));
+    assertEquals(1, store.size());
+    store.close();
+  }
+
+  @Test
+  public void another_plugin_version_starts_empty() throws IOException {
+    analysis(0, 10);
+    VerdictStore store = VerdictStore.open(directory, "2.0");
+    assertEquals(0, store.size());
+    assertFalse(store.contains(key(0)));
+    store.close();
+  }
+
+  @Test
+  public void few_new_keys_go_to_the_log_many_to_a_new_generation() throws IOException {
+    // The first analysis writes the index of the first generation
+    analysis(0, 100);
+    assertEquals(Arrays.asList("verdicts.1.idx", "verdicts.log"), files());
+
+    // Less than a quarter of the index: appended to the log
+    analysis(0, 110);
+    assertEquals(Arrays.asList("verdicts.1.idx", "verdicts.log"), files());
+    assertTrue(Files.size(directory.resolve(VerdictStore.LOG_FILE)) > 0);
+
+    // More than a quarter: merged into the index of the next generation, the log being emptied
+    analysis(0, 150);
+    VerdictStore store = VerdictStore.open(directory, VERSION);
+    assertEquals(Arrays.asList("verdicts.2.idx", "verdicts.log"), files());
+    assertEquals(150, store.size());
+    for (int i = 0; i < 150; i++) {
+      assertTrue(String.valueOf(i), store.contains(key(i)));
+    }
+    store.close();
+  }
+
+  @Test
+  public void keys_used_from_the_log_do_not_age_out() throws IOException {
+    analysis(0, 100);
+    // Key 100 is in the log from then on
+    analysis(0, 101);
+    for (int i = 0; i <= VerdictStore.MAX_UNUSED_ANALYSES + 2; i++) {
+      analysis(0, 101);
+    }
+    // Compacts without looking up key 100, last used by the previous analysis
+    analysis(101, 200);
+
+    VerdictStore store = VerdictStore.open(directory, VERSION);
+    assertEquals(Arrays.asList("verdicts.2.idx", "verdicts.log"), files());
+    assertTrue(store.contains(key(100)));
+    assertEquals(200, store.size());
+    store.close();
+  }
+
+  @Test
+  public void unused_keys_age_out() throws IOException {
+    analysis(0, 100);
+    // Keys 100 to 109 of the log and 50 to 99 of the index are not used anymore
+    analysis(0, 110);
+    for (int i = 0; i <= VerdictStore.MAX_UNUSED_ANALYSES; i++) {
+      analysis(0, 50);
+    }
+
+    VerdictStore store = VerdictStore.open(directory, VERSION);
+    assertEquals(50, store.size());
+    assertTrue(store.contains(key(0)));
+    assertFalse(store.contains(key(50)));
+    assertFalse(store.contains(key(100)));
+    store.close();
+  }
+
+  // Analysis looking up keys [from, to), adding the missing ones
+  private void analysis(int from, int to) throws IOException {
+    VerdictStore store = VerdictStore.open(directory, VERSION);
+    for (int i = from; i < to; i++) {
+      if (!store.contains(key(i))) {
+        store.add(key(i));
+      }
+    }
+    store.close();
+  }
+
+  private static byte[] key(int i) {
+    return ByteBuffer.allocate(16).putLong(i * 0x9E3779B97F4A7C15L).putLong(i).array();
+  }
+
+  private List<String> files() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package com.sunasterisk.sonar.laravel;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link BladeTemplateScanner}, templates being given as the chunks of inline HTML the PHP
+ * parser splits them into.
+ */
+public class BladeTemplateScannerTest {
+
+  @Test
+  public void raw_outputs_are_reported_with_their_context() {
+    assertEquals(Arrays.asList(" $a ", "in svg: $b", " $c "),
+      rawOutputs("<p>{!! $a !!}</p><svg><g>{!!$b!!}</g></svg>{!! $c !!}"));
+  }
+
+  @Test
+  public void escaped_outputs_and_comments_are_not_markup() {
+    assertEquals(Collections.singletonList(" $a "), rawOutputs("{{ '<svg>' }}{{-- <svg> {!! $x !!} --}}{!! $a !!}"));
+    assertEquals(Collections.singletonList("in svg: $a"), rawOutputs("<svg>{{ '</svg>' }}{!!$a!!}"));
+    // An HTML comment is markup for the browser, not for Blade
+    assertEquals(Collections.singletonList(" $a "), rawOutputs("<!-- <svg> -->{!! $a !!}"));
+  }
+
+  @Test
+  public void escaped_blade_delimiters_are_text() {
+    assertEquals(Collections.singletonList(" $b "), rawOutputs("@{{ $a }} @{!! $a !!} {!! $b !!}"));
+  }
+
+  @Test
+  public void outputs_and_comments_go_on_in_the_next_chunk() {
+    assertEquals(Collections.singletonList(" $a . $b "), rawOutputs("{!! $a . ", "$b !!}"));
+    assertEquals(Collections.singletonList(" $c "), rawOutputs("{{ $a ", " '<svg>' }}{!! $c !!}"));
+    assertEquals(Collections.singletonList(" $c "), rawOutputs("{{-- <svg> ", " </svg> {!! $b !!} --}}{!! $c !!}"));
+    assertEquals(Collections.singletonList(" $c "), rawOutputs("<!-- <svg> ", " --><p>{!! $c !!}</p>"));
+  }
+
+  @Test
+  public void delimiters_split_between_chunks() {
+    assertEquals(Collections.singletonList(" $a "), rawOutputs("<p>{", "!! $a !!}"));
+    assertEquals(Collections.singletonList(" $a "), rawOutputs("<p>{!", "! $a !", "!}"));
+    assertEquals(Collections.singletonList(" $a !! $b "), rawOutputs("{!! $a !!", " $b !!}"));
+    assertEquals(Collections.singletonList(" $b "), rawOutputs("{{ $a }", "} {!! $b !!}"));
+    assertEquals(Collections.singletonList(" $b "), rawOutputs("{{", "-- <svg> {!! $a !!} --", "}} {!! $b !!}"));
+    assertEquals(Collections.singletonList(" $b "), rawOutputs("@", "{{ $a }} {!! $b !!}"));
+    // Not a delimiter once the next chunk is known
+    assertEquals(Collections.singletonList(" $b "), rawOutputs("a {", " b { c {!! $b !!}"));
+  }
+
+  @Test
+  public void svg_context_spans_chunks() {
+    BladeTemplateScanner scanner = new BladeTemplateScanner();
+    List<String> outputs = new ArrayList<>();
+    scanner.scan("<div><svg width=\"10\">", listener(scanner, outputs));
+    assertTrue(scanner.inSvg());
+    scanner.scan("<foreignObject>", listener(scanner, outputs));
+    assertTrue(scanner.inDangerousElement());
+    scanner.scan("</foreignObject></svg>", listener(scanner, outputs));
+    assertFalse(scanner.inSvg());
+    assertFalse(scanner.inDangerousElement());
+    scanner.scan("<img src=\"data:image/svg+xml;base64,", listener(scanner, outputs));
+    assertTrue(scanner.inSvg());
+    scanner.scan("\">", listener(scanner, outputs));
+    assertFalse(scanner.inSvg());
+  }
+
+  @Test
+  public void script_contents_are_not_markup() {
+    assertEquals(Collections.singletonList(" $a "), rawOutputs("<script>var s = '<svg>';</script>{!! $a !!}"));
+  }
+
+  // Expressions of the raw outputs, prefixed by "in svg: " when in an <svg> element
+  private static List<String> rawOutputs(String... chunks) {
+    BladeTemplateScanner scanner = new BladeTemplateScanner();
+    List<String> outputs = new ArrayList<>();
+    for (String chunk : chunks) {
+      scanner.scan(chunk, listener(scanner, outputs));
+    }
+    return outputs;
+  }
+
+  private static BladeTemplateScanner.Listener listener(BladeTemplateScanner scanner, List<String> outputs) {
+    return (chunk, from, to) -> outputs.add((scanner.inSvg() ? "in svg: " : "") + chunk.subSequence(from, to));
+  }
+}
@@ -0,0 +1,115 @@
+package com.sunasterisk.sonar.rules;
+
+import com.sunasterisk.sonar.testing.JavaAnalysisHarness;
+import com.sunasterisk.sonar.testing.PhpAnalysisHarness;
+import com.sunasterisk.sonar.testing.SyntheticCorpus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.plugins.java.api.JavaCheck;
+import org.sonar.plugins.java.api.JavaFileScanner;
+import org.sonar.plugins.php.api.visitors.PHPCheck;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs one instance of every PHP and Java check on the synthetic corpora from many threads at the
+ * same time: each file must get exactly the issues of a single-threaded run with the same
+ * instances, in the same order, whatever the order the files are submitted in. A check keeping
+ * the state of a file in its fields mixes up the files analyzed at the same time.
+ */
+public class ConcurrentAnalysisTest {
+
+  private static final int ROUNDS = 3;
+
+  private ExecutorService executor;
+
+  @Before
+  public void startThreads() {
+    executor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+  }
+
+  @After
+  public void stopThreads() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void php_checks_give_the_same_issues_on_concurrent_files() throws Exception {
+    List<PHPCheck> checks = new ArrayList<>();
+    for (Class<?> checkClass : new CustomPhpRuleRepository().checkClasses()) {
+      checks.add(PhpAnalysisHarness.newCheck(checkClass.getSimpleName()));
+    }
+    for (String corpus : new String[] {SyntheticCorpus.CONTROLLERS, SyntheticCorpus.VIEWS}) {
+      assertSameIssuesConcurrently(corpus, PhpAnalysisHarness.parse(SyntheticCorpus.php(corpus)), file -> {
+        List<String> issues = new ArrayList<>();
+        for (PHPCheck check : checks) {
+          issues.addAll(PhpAnalysisHarness.issues(check, file));
+        }
+        return issues;
+      });
+    }
+  }
+
+  @Test
+  public void java_checks_give_the_same_issues_on_concurrent_files() throws Exception {
+    List<JavaFileScanner> checks = new ArrayList<>();
+    for (Class<? extends JavaCheck> checkClass : JavaCustomRuleRepository.checkClasses()) {
+      checks.add(JavaAnalysisHarness.newCheck(checkClass.getSimpleName()));
+    }
+    for (String corpus : new String[] {SyntheticCorpus.SERVICES, SyntheticCorpus.SPRING_APP}) {
+      assertSameIssuesConcurrently(corpus, JavaAnalysisHarness.parse(SyntheticCorpus.java(corpus)), file -> {
+        List<String> issues = new ArrayList<>();
+        for (JavaFileScanner check : checks) {
+          issues.addAll(JavaAnalysisHarness.issues(check, file));
+        }
+        return issues;
+      });
+    }
+  }
+
+  private <F> void assertSameIssuesConcurrently(String corpus, List<F> files, Function<F, List<String>> analysis)
+    throws Exception {
+    // Reference: the same check instances, one file after the other
+    Map<F, List<String>> expected = new LinkedHashMap<>();
+    int issues = 0;
+    for (F file : files) {
+      List<String> fileIssues = analysis.apply(file);
+      expected.put(file, fileIssues);
+      issues += fileIssues.size();
+    }
+    // A corpus without issues would not tell the files apart
+    assertTrue(corpus + " has no issue", issues > 0);
+
+    Random random = new Random(corpus.hashCode());
+    for (int round = 1; round <= ROUNDS; round++) {
+      List<F> order = new ArrayList<>(files);
+      Collections.shuffle(order, random);
+      Map<F, List<String>> actual = new ConcurrentHashMap<>();
+      List<Future<?>> tasks = new ArrayList<>(order.size());
+      for (F file : order) {
+        tasks.add(executor.submit(() -> actual.put(file, analysis.apply(file))));
+      }
+      for (Future<?> task : tasks) {
+        task.get();
+      }
+      for (Map.Entry<F, List<String>> entry : expected.entrySet()) {
+        // Issues of a file are reported in traversal order, whatever the thread
+        assertEquals(entry.getKey() + ", round " + round, entry.getValue(), actual.get(entry.getKey()));
+      }
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package com.sunasterisk.sonar.rules;
+
+import com.sunasterisk.sonar.testing.JavaAnalysisHarness;
+import com.sunasterisk.sonar.testing.JavaAnalysisHarness.ParsedFile;
+import com.sunasterisk.sonar.testing.SyntheticCorpus;
+import com.sunasterisk.sonar.testing.SyntheticCorpus.SourceFile;
+import org.junit.Test;
+import org.sonar.plugins.java.api.JavaFileScanner;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link JavaCustomRuleRepository#PREFILTER} never rules out a file the checks report
+ * on: the prefilter is built from the phrases the checks classify names with, in every spelling.
+ */
+public class JavaCustomRuleRepositoryTest {
+
+  // Recovery methods in the spellings of their names, each reported by the check
+  private static final String[] RECOVERY_METHODS = {
+    "resetPassword", "reset_password", "RESET_PASSWORD", "resetpassword", "resetsPassword", "reset$password",
+    "handleForgotPassword", "forgot_password_form", "FORGOT$PASSWORD", "recoverPassword", "recover_password",
+    "passwordRecovery", "PASSWORD_RECOVERY", "sendRecoveryLink", "send_recovery", "generateTokenForReset",
+    "generate_token_for_reset", "GENERATE_TOKEN_RECOVERY", "generate$token$reset",
+  };
+
+  @Test
+  public void every_spelling_of_a_recovery_method_is_analyzed() {
+    List<SourceFile> sources = new ArrayList<>();
+    for (String method : RECOVERY_METHODS) {
+      sources.add(new SourceFile(method + ".java", "class Names {\n  void " + method + "() {\n  }\n}\n"));
+    }
+    JavaFileScanner check = JavaAnalysisHarness.newCheck("SpringBootSecureCredentialRecoveryCheck");
+    for (ParsedFile file : JavaAnalysisHarness.parse(sources)) {
+      assertEquals(file.toString(), 1, JavaAnalysisHarness.analyze(check, file));
+    }
+  }
+
+  @Test
+  public void prefilter_keeps_every_file_the_original_check_reports_on() throws IOException {
+    List<SourceFile> sources = new ArrayList<>(SpringBootSecureCredentialRecoveryCheckTest.javaSources(
+      Paths.get("..", "app_test", "spring-app")));
+    sources.addAll(SyntheticCorpus.java(SyntheticCorpus.SERVICES));
+    sources.addAll(SyntheticCorpus.java(SyntheticCorpus.SPRING_APP));
+    int reported = 0;
+    for (ParsedFile file : JavaAnalysisHarness.parse(sources)) {
+      JavaFileScanner original = JavaAnalysisHarness.newCheck("SpringBootSecureCredentialRecoveryBaselineCheck");
+      int issues;
+      try {
+        issues = JavaAnalysisHarness.analyze(original, file);
+      } catch (NullPointerException e) {
+        // Anonymous classes, see SpringBootSecureCredentialRecoveryCheckTest
+        continue;
+      }
+      if (issues > 0) {
+        reported++;
+        assertTrue(file.toString(), JavaCustomRuleRepository.PREFILTER.isApplicable(
+          new SpringBootSecureCredentialRecoveryCheck(), file.tree(), file::contents));
+      }
+    }
+    assertTrue(reported > 0);
+  }
+
+  @Test
+  public void spellings_containing_a_shorter_trigger_are_dropped() {
+    // Phrases such as "reset password" or "account recovery" are covered by reset and recovery
+    assertEquals(Arrays.asList(
+      "forgotpassword", "forgotspassword", "forgot_password", "forgots_password", "forgot$password", "forgots$password",
+      "recoverpassword", "recoverspassword", "recover_password", "recovers_password", "recover$password", "recovers$password",
+      "reset", "recovery", "email"), JavaCustomRuleRepository.PREFILTER.vocabulary().keywords());
+  }
+}
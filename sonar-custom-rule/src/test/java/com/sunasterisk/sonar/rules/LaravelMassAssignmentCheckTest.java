@@ -0,0 +1,47 @@
+package com.sunasterisk.sonar.rules;
+
+import com.sunasterisk.sonar.laravel.EloquentModelIndex;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.php.parser.PHPParserBuilder;
+import org.sonar.plugins.php.api.tests.PHPCheckVerifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Runs the check on the samples of {@code src/test/resources/checks/LaravelMassAssignmentCheck},
+ * whose {@code // Noncompliant} comments mark the expected issues.
+ */
+public class LaravelMassAssignmentCheckTest {
+
+  private static final File SAMPLES = new File("src/test/resources/checks/LaravelMassAssignmentCheck");
+
+  @Before
+  public void indexModels() throws IOException {
+    // Indexed before the analysis, as EloquentModelIndexer does
+    EloquentModelIndex.Builder builder = EloquentModelIndex.builder();
+    for (File model : new File(SAMPLES, "models").listFiles()) {
+      builder.add(PHPParserBuilder.createParser().parse(new String(Files.readAllBytes(model.toPath()), StandardCharsets.UTF_8)));
+    }
+    EloquentModelIndex.install(builder.build());
+  }
+
+  @After
+  public void removeIndex() {
+    EloquentModelIndex.install(null);
+  }
+
+  @Test
+  public void guarded_models_are_resolved_by_qualified_name() {
+    PHPCheckVerifier.verify(new File(SAMPLES, "GuardedModels.php"), new LaravelMassAssignmentCheck());
+  }
+
+  @Test
+  public void request_data_is_followed_through_local_variables() {
+    PHPCheckVerifier.verify(new File(SAMPLES, "LocalTaint.php"), new LaravelMassAssignmentCheck());
+  }
+}
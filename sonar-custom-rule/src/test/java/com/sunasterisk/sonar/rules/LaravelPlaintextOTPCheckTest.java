@@ -0,0 +1,25 @@
+package com.sunasterisk.sonar.rules;
+
+import org.junit.Test;
+import org.sonar.plugins.php.api.tests.PHPCheckVerifier;
+
+import java.io.File;
+
+/**
+ * Runs the check on the samples of {@code src/test/resources/checks/LaravelPlaintextOTPCheck},
+ * whose {@code // Noncompliant} comments mark the expected issues.
+ */
+public class LaravelPlaintextOTPCheckTest {
+
+  private static final File SAMPLES = new File("src/test/resources/checks/LaravelPlaintextOTPCheck");
+
+  @Test
+  public void storages_are_resolved_by_qualified_name() {
+    PHPCheckVerifier.verify(new File(SAMPLES, "Storages.php"), new LaravelPlaintextOTPCheck());
+  }
+
+  @Test
+  public void pairs_reported_by_the_array_and_the_call_are_one_issue() {
+    PHPCheckVerifier.verify(new File(SAMPLES, "MergedIssues.php"), new LaravelPlaintextOTPCheck());
+  }
+}
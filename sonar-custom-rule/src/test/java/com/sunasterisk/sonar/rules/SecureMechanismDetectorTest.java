@@ -0,0 +1,118 @@
+package com.sunasterisk.sonar.rules;
+
+import com.sunasterisk.sonar.testing.JavaAnalysisHarness;
+import com.sunasterisk.sonar.testing.JavaAnalysisHarness.ParsedFile;
+import org.junit.Test;
+import org.sonar.plugins.java.api.tree.BaseTreeVisitor;
+import org.sonar.plugins.java.api.tree.ClassTree;
+import org.sonar.plugins.java.api.tree.MethodInvocationTree;
+import org.sonar.plugins.java.api.tree.MethodTree;
+import org.sonar.plugins.java.api.tree.Tree;
+
+import java.lang.reflect.Method;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pins the verdicts of {@link SecureMechanismDetector} against {@code containsSecureMechanism()} of
+ * the original check ({@link SpringBootSecureCredentialRecoveryBaselineCheck}) on the trees the check
+ * passes to it in the sample Spring application: class members, statements of method bodies and
+ * arguments of method invocations.
+ *
+ * <p>The original searched {@code Tree.toString()}, which is the source text of identifiers only:
+ * other trees print as their class name and identity hash, so its verdict on them was accidental,
+ * true when the hash happened to contain "2fa". On identifiers both agree; the other trees the
+ * detector finds secure are listed.</p>
+ */
+public class SecureMechanismDetectorTest {
+
+  @Test
+  public void verdicts_on_sample_application() throws Exception {
+    SpringBootSecureCredentialRecoveryBaselineCheck original = new SpringBootSecureCredentialRecoveryBaselineCheck();
+    Method originalVerdict = SpringBootSecureCredentialRecoveryBaselineCheck.class.getDeclaredMethod("containsSecureMechanism", Tree.class);
+    originalVerdict.setAccessible(true);
+    SecureMechanismDetector detector = new SecureMechanismDetector(
+      SpringBootSecureCredentialRecoveryCheck.secureVocabulary(SpringBootSecureCredentialRecoveryCheck.DEFAULT_SECURE_LIBRARIES));
+
+    List<String> secure = new ArrayList<>();
+    for (ParsedFile file : JavaAnalysisHarness.parse(SpringBootSecureCredentialRecoveryCheckTest.javaSources(
+      Paths.get("..", "app_test", "spring-app")))) {
+      for (Tree tree : checkedTrees(file)) {
+        boolean before = (Boolean) originalVerdict.invoke(original, tree);
+        boolean after = detector.containsSecureMechanism(tree);
+        String location = file + ":" + tree.firstToken().range().start().line() + " " + tree.kind();
+        if (printsIdentity(tree)) {
+          assertTrue(location, !before || tree.toString().contains("2fa"));
+        } else {
+          assertEquals(location + " " + tree, before, after);
+        }
+        if (after) {
+          secure.add(location);
+        }
+      }
+    }
+
+    String controller = "src/main/java/com/example/demo/controller/PasswordResetController.java:";
+    String service = "src/main/java/com/example/demo/service/";
+    assertEquals(Arrays.asList(
+      // TOTPService totpService field, used by the recovery methods
+      controller + "31 VARIABLE",
+      controller + "40 METHOD",
+      controller + "72 METHOD",
+      controller + "43 IF_STATEMENT",
+      controller + "47 IDENTIFIER",
+      controller + "50 IDENTIFIER",
+      controller + "78 IF_STATEMENT",
+      controller + "79 IDENTIFIER",
+      // sendOTP(phoneNumber, otpCode)
+      service + "SmsService.java:15 METHOD",
+      service + "SmsService.java:18 VARIABLE",
+      // generateTOTP(secretKey)...
+      service + "TOTPService.java:19 METHOD",
+      service + "TOTPService.java:31 METHOD",
+      service + "TOTPService.java:62 METHOD",
+      service + "TOTPService.java:25 RETURN_STATEMENT",
+      service + "TOTPService.java:39 FOR_STATEMENT",
+      service + "TOTPService.java:63 TRY_STATEMENT",
+      // createPasswordResetToken(user, token, otp)
+      service + "UserService.java:22 METHOD",
+      service + "UserService.java:25 EXPRESSION_STATEMENT",
+      service + "UserService.java:25 IDENTIFIER"), secure);
+  }
+
+  private static List<Tree> checkedTrees(ParsedFile file) {
+    List<Tree> trees = new ArrayList<>();
+    file.tree().accept(new BaseTreeVisitor() {
+      @Override
+      public void visitClass(ClassTree tree) {
+        trees.addAll(tree.members());
+        super.visitClass(tree);
+      }
+
+      @Override
+      public void visitMethod(MethodTree tree) {
+        if (tree.block() != null) {
+          trees.addAll(tree.block().body());
+        }
+        super.visitMethod(tree);
+      }
+
+      @Override
+      public void visitMethodInvocation(MethodInvocationTree tree) {
+        trees.addAll(tree.arguments());
+        super.visitMethodInvocation(tree);
+      }
+    });
+    return trees;
+  }
+
+  // Object.toString(), e.g. org.sonar.java.model.statement.IfStatementTreeImpl@5a5a729f
+  private static boolean printsIdentity(Tree tree) {
+    return tree.toString().equals(tree.getClass().getName() + "@" + Integer.toHexString(tree.hashCode()));
+  }
+}
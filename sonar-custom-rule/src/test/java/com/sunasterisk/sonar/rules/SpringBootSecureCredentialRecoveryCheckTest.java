@@ -0,0 +1,185 @@
+package com.sunasterisk.sonar.rules;
+
+import com.sunasterisk.sonar.testing.JavaAnalysisHarness;
+import com.sunasterisk.sonar.testing.JavaAnalysisHarness.ParsedFile;
+import com.sunasterisk.sonar.testing.SyntheticCorpus;
+import com.sunasterisk.sonar.testing.SyntheticCorpus.SourceFile;
+import org.junit.Test;
+import org.sonar.plugins.java.api.JavaFileScanner;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares {@link SpringBootSecureCredentialRecoveryCheck} with
+ * {@link SpringBootSecureCredentialRecoveryBaselineCheck}, the original check, on the sample Spring
+ * application and on the synthetic corpora of the benchmarks. They only disagree where the check
+ * was meant to, and each of these differences is asserted:
+ * <ul>
+ *   <li>the original looked for the secure vocabulary in {@code Tree.toString()}, which is the
+ *   source text of identifiers and literals only: fields, statements and members printed as their
+ *   class name and identity hash. The check reads the names in the trees, so recovery code in a
+ *   class naming a secure mechanism, such as a {@code TOTPService} field, is no longer reported;</li>
+ *   <li>the original failed with a {@link NullPointerException} on anonymous classes, which have no
+ *   name; the check analyzes these files.</li>
+ * </ul>
+ *
+ * <p>An identity hash containing "2fa" made the original take a class or method as secure at
+ * random. Such accidental matches can only remove issues, so the issues of the original are the
+ * union of a few runs on freshly parsed trees.</p>
+ */
+public class SpringBootSecureCredentialRecoveryCheckTest {
+
+  // Relative to the module, where Maven runs the tests
+  private static final Path SPRING_APP = Paths.get("..", "app_test", "spring-app");
+
+  private static final int REFERENCE_RUNS = 4;
+
+  static final String METHOD_ISSUE = "This password recovery method doesn't appear to implement recommended secure "
+    + "recovery mechanisms. OWASP ASVS v2.5.6 requires secure recovery mechanisms like TOTP, soft tokens, mobile push, "
+    + "or offline verification.";
+  static final String EMAIL_ONLY_ISSUE = "This password recovery mechanism appears to use only email-based reset "
+    + "without additional security factors. OWASP ASVS v2.5.6 requires secure recovery mechanisms like TOTP, soft "
+    + "tokens, mobile push, or offline verification.";
+
+  // Names of a secure mechanism the original could not see, e.g. the TOTPService type or a totp variable
+  private static final Pattern SECURE_NAME = Pattern.compile("\\b\\w*(?i:totp|otp|authenticator|two_?factor)\\w*\\b");
+  private static final Pattern ANONYMOUS_CLASS = Pattern.compile("new [\\w.<>]+\\([^)]*\\)\\s*\\{");
+
+  @Test
+  public void differences_with_the_original_check_on_sample_application() throws IOException {
+    List<SourceFile> sources = javaSources(SPRING_APP);
+    assertFalse("No Java file in " + SPRING_APP.toAbsolutePath(), sources.isEmpty());
+    Comparison comparison = compare(sources);
+
+    // Secure mechanisms named in the class: TOTPService field, otp parameters
+    String controller = "src/main/java/com/example/demo/controller/PasswordResetController.java";
+    assertEquals(Arrays.asList(
+      controller + ":40:" + METHOD_ISSUE,
+      controller + ":48:" + EMAIL_ONLY_ISSUE,
+      controller + ":59:" + METHOD_ISSUE,
+      controller + ":65:" + EMAIL_ONLY_ISSUE,
+      controller + ":72:" + METHOD_ISSUE,
+      controller + ":80:" + EMAIL_ONLY_ISSUE,
+      "src/main/java/com/example/demo/service/UserService.java:37:" + METHOD_ISSUE), comparison.onlyReference);
+    assertEquals(Collections.emptyList(), comparison.onlyCheck);
+    assertEquals(Collections.emptyList(), comparison.referenceFailures);
+    // The rest of the sample application is insecure recovery code, reported by both
+    assertEquals(6, comparison.common);
+  }
+
+  @Test
+  public void differences_with_the_original_check_on_synthetic_corpora() {
+    for (String corpus : new String[] {SyntheticCorpus.SERVICES, SyntheticCorpus.SPRING_APP}) {
+      List<SourceFile> sources = SyntheticCorpus.java(corpus);
+      Comparison comparison = compare(sources);
+      assertTrue(corpus, comparison.common > 0);
+      assertEquals(corpus, Collections.emptyList(), comparison.onlyCheck);
+      for (String issue : comparison.onlyReference) {
+        String file = issue.substring(0, issue.indexOf(':'));
+        assertTrue(issue, SECURE_NAME.matcher(contentOf(sources, file)).find());
+      }
+      for (String file : comparison.referenceFailures) {
+        assertTrue(file, ANONYMOUS_CLASS.matcher(contentOf(sources, file)).find());
+      }
+    }
+  }
+
+  /**
+   * Issues of both checks, as {@code file:line:message}, sorted.
+   */
+  private static Comparison compare(List<SourceFile> sources) {
+    JavaFileScanner check = JavaAnalysisHarness.newCheck("SpringBootSecureCredentialRecoveryCheck");
+    Map<String, List<String>> checkIssues = new TreeMap<>();
+    for (ParsedFile file : JavaAnalysisHarness.parse(sources)) {
+      checkIssues.put(file.toString(), JavaAnalysisHarness.issues(check, file));
+    }
+
+    Map<String, TreeSet<String>> referenceIssues = new TreeMap<>();
+    TreeSet<String> referenceFailures = new TreeSet<>();
+    for (int run = 0; run < REFERENCE_RUNS; run++) {
+      for (ParsedFile file : JavaAnalysisHarness.parse(sources)) {
+        try {
+          JavaFileScanner reference = JavaAnalysisHarness.newCheck("SpringBootSecureCredentialRecoveryBaselineCheck");
+          referenceIssues.computeIfAbsent(file.toString(), key -> new TreeSet<>())
+            .addAll(JavaAnalysisHarness.issues(reference, file));
+        } catch (NullPointerException e) {
+          referenceFailures.add(file.toString());
+        }
+      }
+    }
+
+    Comparison comparison = new Comparison(new ArrayList<>(referenceFailures));
+    for (Map.Entry<String, List<String>> entry : checkIssues.entrySet()) {
+      String file = entry.getKey();
+      if (referenceFailures.contains(file)) {
+        continue;
+      }
+      TreeSet<String> expected = referenceIssues.getOrDefault(file, new TreeSet<>());
+      TreeSet<String> actual = new TreeSet<>(entry.getValue());
+      for (String issue : actual) {
+        if (expected.contains(issue)) {
+          comparison.common++;
+        } else {
+          comparison.onlyCheck.add(file + ":" + issue);
+        }
+      }
+      for (String issue : expected) {
+        if (!actual.contains(issue)) {
+          comparison.onlyReference.add(file + ":" + issue);
+        }
+      }
+    }
+    comparison.onlyCheck.sort(null);
+    comparison.onlyReference.sort(null);
+    return comparison;
+  }
+
+  private static final class Comparison {
+    private final List<String> onlyReference = new ArrayList<>();
+    private final List<String> onlyCheck = new ArrayList<>();
+    private final List<String> referenceFailures;
+    private int common;
+
+    private Comparison(List<String> referenceFailures) {
+      this.referenceFailures = referenceFailures;
+    }
+  }
+
+  static List<SourceFile> javaSources(Path directory) throws IOException {
+    List<SourceFile> sources = new ArrayList<>();
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : files.filter(f -> f.toString().endsWith(".java")).sorted().collect(Collectors.toList())) {
+        sources.add(new SourceFile(directory.relativize(file).toString(),
+          new String(Files.readAllBytes(file), StandardCharsets.UTF_8)));
+      }
+    }
+    return sources;
+  }
+
+  private static String contentOf(List<SourceFile> sources, String name) {
+    for (SourceFile source : sources) {
+      if (source.name().equals(name)) {
+        return source.content();
+      }
+    }
+    throw new IllegalArgumentException(name);
+  }
+}
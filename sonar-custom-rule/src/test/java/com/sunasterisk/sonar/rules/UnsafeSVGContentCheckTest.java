@@ -0,0 +1,20 @@
+package com.sunasterisk.sonar.rules;
+
+import org.junit.Test;
+import org.sonar.plugins.php.api.tests.PHPCheckVerifier;
+
+import java.io.File;
+
+/**
+ * Runs the check on the samples of {@code src/test/resources/checks/UnsafeSVGContentCheck},
+ * whose {@code // Noncompliant} comments mark the expected issues.
+ */
+public class UnsafeSVGContentCheckTest {
+
+  private static final File SAMPLES = new File("src/test/resources/checks/UnsafeSVGContentCheck");
+
+  @Test
+  public void detections_on_the_same_code_are_one_issue() {
+    PHPCheckVerifier.verify(new File(SAMPLES, "MergedIssues.php"), new UnsafeSVGContentCheck());
+  }
+}
@@ -0,0 +1,246 @@
+package com.sunasterisk.sonar.testing;
+
+import com.sunasterisk.sonar.testing.SyntheticCorpus.SourceFile;
+import com.sunasterisk.sonar.rules.JavaCustomRuleRepository;
+import org.sonar.java.model.JParser;
+import org.sonar.java.model.JParserConfig;
+import org.sonar.java.model.JavaTree;
+import org.sonar.plugins.java.api.IssuableSubscriptionVisitor;
+import org.sonar.plugins.java.api.JavaCheck;
+import org.sonar.plugins.java.api.JavaFileScanner;
+import org.sonar.plugins.java.api.JavaFileScannerContext;
+import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+import org.sonar.plugins.java.api.tree.Tree;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parses Java sources once and runs the checks of {@link JavaCustomRuleRepository} on them
+ * without a SonarQube server. Subscription-based checks are driven the way the Java sensor does:
+ * {@code setContext}, then {@code visitNode}/{@code leaveNode} on the subscribed kinds in
+ * depth-first order, then {@code leaveFile}.
+ */
+public final class JavaAnalysisHarness {
+
+  private static final String JAVA_VERSION = "17";
+
+  private JavaAnalysisHarness() {
+  }
+
+  /**
+   * A Java file parsed ahead of time so that benchmarks only measure the checks, and tests run
+   * several checks on the same tree.
+   */
+  public static final class ParsedFile {
+    private final SourceFile source;
+    private final CompilationUnitTree tree;
+
+    ParsedFile(SourceFile source, CompilationUnitTree tree) {
+      this.source = source;
+      this.tree = tree;
+    }
+
+    public CompilationUnitTree tree() {
+      return tree;
+    }
+
+    public String contents() {
+      return source.content();
+    }
+
+    @Override
+    public String toString() {
+      return source.name();
+    }
+  }
+
+  public static JavaFileScanner newCheck(String simpleName) {
+    for (Class<? extends JavaCheck> checkClass : JavaCustomRuleRepository.checkClasses()) {
+      if (checkClass.getSimpleName().equals(simpleName)) {
+        return instantiate(checkClass);
+      }
+    }
+    // Checks kept in the tests for before/after comparisons
+    try {
+      return instantiate(Class.forName("com.sunasterisk.sonar.rules." + simpleName));
+    } catch (ClassNotFoundException e) {
+      throw new IllegalArgumentException("No such check in JavaCustomRuleRepository: " + simpleName, e);
+    }
+  }
+
+  private static JavaFileScanner instantiate(Class<?> checkClass) {
+    try {
+      return (JavaFileScanner) checkClass.getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Cannot instantiate " + checkClass, e);
+    }
+  }
+
+  public static List<ParsedFile> parse(List<SourceFile> sources) {
+    JParserConfig config = JParserConfig.Mode.FILE_BY_FILE.create(
+      JParserConfig.MAXIMUM_SUPPORTED_JAVA_VERSION, Collections.emptyList());
+    List<ParsedFile> files = new ArrayList<>(sources.size());
+    for (SourceFile source : sources) {
+      String unitName = source.name().substring(source.name().lastIndexOf('/') + 1);
+      CompilationUnitTree tree = JParser.parse(config.astParser(), JAVA_VERSION, unitName, source.content());
+      files.add(new ParsedFile(source, tree));
+    }
+    return files;
+  }
+
+  /**
+   * Runs one check on one file and returns the number of issues it raised.
+   */
+  public static int analyze(JavaFileScanner check, ParsedFile file) {
+    return run(check, new IssueCollectingContext(file, false)).count;
+  }
+
+  /**
+   * Runs one check on one file and returns its issues as {@code line:message}, in reporting order.
+   */
+  public static List<String> issues(JavaFileScanner check, ParsedFile file) {
+    return run(check, new IssueCollectingContext(file, true)).issues;
+  }
+
+  private static IssueCollectingContext run(JavaFileScanner check, IssueCollectingContext handler) {
+    JavaFileScannerContext context = handler.proxy();
+    if (check instanceof IssuableSubscriptionVisitor) {
+      IssuableSubscriptionVisitor visitor = (IssuableSubscriptionVisitor) check;
+      Set<Tree.Kind> kinds = subscribedKinds(visitor);
+      visitor.setContext(context);
+      visit(visitor, kinds, handler.file.tree);
+      visitor.leaveFile(context);
+    } else {
+      check.scanFile(context);
+    }
+    return handler;
+  }
+
+  private static void visit(IssuableSubscriptionVisitor visitor, Set<Tree.Kind> kinds, Tree tree) {
+    boolean subscribed = kinds.contains(tree.kind());
+    if (subscribed) {
+      visitor.visitNode(tree);
+    }
+    // Inferred types of lambda parameters have no children, and fail when asked for them
+    if (!tree.is(Tree.Kind.TOKEN, Tree.Kind.INFERED_TYPE)) {
+      for (Tree child : ((JavaTree) tree).getChildren()) {
+        if (child != null) {
+          visit(visitor, kinds, child);
+        }
+      }
+    }
+    if (subscribed) {
+      visitor.leaveNode(tree);
+    }
+  }
+
+  private static Set<Tree.Kind> subscribedKinds(IssuableSubscriptionVisitor visitor) {
+    Set<Tree.Kind> kinds = EnumSet.noneOf(Tree.Kind.class);
+    kinds.addAll(visitor.nodesToVisit());
+    return kinds;
+  }
+
+  /**
+   * Counts the nodes the check is called on: the subscribed kinds for subscription-based checks,
+   * every syntax tree node for checks based on {@code BaseTreeVisitor}.
+   */
+  public static long visitedNodes(JavaFileScanner check, ParsedFile file) {
+    Set<Tree.Kind> kinds = check instanceof IssuableSubscriptionVisitor
+      ? subscribedKinds((IssuableSubscriptionVisitor) check)
+      : null;
+    long count = 0;
+    Deque<Tree> stack = new ArrayDeque<>();
+    stack.push(file.tree);
+    while (!stack.isEmpty()) {
+      Tree tree = stack.pop();
+      if (tree.is(Tree.Kind.TOKEN, Tree.Kind.INFERED_TYPE)) {
+        continue;
+      }
+      if (kinds == null || kinds.contains(tree.kind())) {
+        count++;
+      }
+      for (Tree child : ((JavaTree) tree).getChildren()) {
+        if (child != null) {
+          stack.push(child);
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Minimal {@link JavaFileScannerContext}: exposes the tree and source, counts (or records) reported issues
+   * and answers every other call with a neutral value. A proxy keeps the harness independent of
+   * the methods added to the interface between sonar-java versions.
+   */
+  private static final class IssueCollectingContext implements InvocationHandler {
+    private final ParsedFile file;
+    private final boolean collect;
+    private final List<String> issues = new ArrayList<>();
+    private int count;
+
+    IssueCollectingContext(ParsedFile file, boolean collect) {
+      this.file = file;
+      this.collect = collect;
+    }
+
+    JavaFileScannerContext proxy() {
+      return (JavaFileScannerContext) Proxy.newProxyInstance(
+        JavaFileScannerContext.class.getClassLoader(), new Class<?>[] {JavaFileScannerContext.class}, this);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+      switch (method.getName()) {
+        case "getTree":
+          return file.tree;
+        case "getFileContent":
+          return file.source.content();
+        case "reportIssue":
+          count++;
+          if (collect) {
+            // reportIssue(check, tree, message) or reportIssue(check, startTree, endTree, message)
+            Tree tree = (Tree) args[1];
+            issues.add(tree.firstToken().line() + ":" + args[args.length - 1]);
+          }
+          return null;
+        case "addIssue":
+        case "addIssueOnFile":
+        case "addIssueOnProject":
+          count++;
+          if (collect) {
+            issues.add(String.valueOf(args[args.length - 1]));
+          }
+          return null;
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "equals":
+          return proxy == args[0];
+        case "toString":
+          return "JavaFileScannerContext[" + file + "]";
+        default:
+          return neutralValue(method.getReturnType());
+      }
+    }
+
+    private static Object neutralValue(Class<?> type) {
+      if (type == boolean.class) {
+        return Boolean.FALSE;
+      } else if (type == int.class) {
+        return 0;
+      } else if (type == long.class) {
+        return 0L;
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,163 @@
+package com.sunasterisk.sonar.testing;
+
+import com.sonar.sslr.api.typed.ActionParser;
+import com.sunasterisk.sonar.testing.SyntheticCorpus.SourceFile;
+import com.sunasterisk.sonar.rules.CustomPhpRuleRepository;
+import com.sunasterisk.sonar.rules.FileScopedSubscriptionCheck;
+import org.sonar.php.parser.PHPParserBuilder;
+import org.sonar.php.tree.impl.PHPTree;
+import org.sonar.php.tree.symbols.SymbolTableImpl;
+import org.sonar.php.tree.visitors.PHPCheckContext;
+import org.sonar.plugins.php.api.symbols.SymbolTable;
+import org.sonar.plugins.php.api.tree.CompilationUnitTree;
+import org.sonar.plugins.php.api.tree.Tree;
+import org.sonar.plugins.php.api.tree.Tree.Kind;
+import org.sonar.plugins.php.api.visitors.IssueLocation;
+import org.sonar.plugins.php.api.visitors.LineIssue;
+import org.sonar.plugins.php.api.visitors.PHPCheck;
+import org.sonar.plugins.php.api.visitors.PhpFile;
+import org.sonar.plugins.php.api.visitors.PhpIssue;
+import org.sonar.plugins.php.api.visitors.PreciseIssue;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parses PHP sources once and runs the checks of {@link CustomPhpRuleRepository} on them
+ * the same way the PHP sensor does, without a SonarQube server.
+ */
+public final class PhpAnalysisHarness {
+
+  private PhpAnalysisHarness() {
+  }
+
+  /**
+   * A PHP file parsed ahead of time so that benchmarks only measure the checks, and tests run
+   * several checks on the same tree.
+   */
+  public static final class ParsedFile implements PhpFile {
+    private final SourceFile source;
+    private final CompilationUnitTree tree;
+    private final SymbolTable symbolTable;
+
+    ParsedFile(SourceFile source, CompilationUnitTree tree, SymbolTable symbolTable) {
+      this.source = source;
+      this.tree = tree;
+      this.symbolTable = symbolTable;
+    }
+
+    public CompilationUnitTree tree() {
+      return tree;
+    }
+
+    @Override
+    public String contents() {
+      return source.content();
+    }
+
+    @Override
+    public String filename() {
+      return source.name().substring(source.name().lastIndexOf('/') + 1);
+    }
+
+    @Override
+    public URI uri() {
+      return URI.create("file:///" + source.name());
+    }
+
+    public String key() {
+      return source.name();
+    }
+
+    @Override
+    public String toString() {
+      return source.name();
+    }
+  }
+
+  public static PHPCheck newCheck(String simpleName) {
+    for (Class<?> checkClass : new CustomPhpRuleRepository().checkClasses()) {
+      if (checkClass.getSimpleName().equals(simpleName)) {
+        try {
+          PHPCheck check = (PHPCheck) checkClass.getDeclaredConstructor().newInstance();
+          check.init();
+          return check;
+        } catch (ReflectiveOperationException e) {
+          throw new IllegalStateException("Cannot instantiate " + checkClass, e);
+        }
+      }
+    }
+    throw new IllegalArgumentException("No such check in CustomPhpRuleRepository: " + simpleName);
+  }
+
+  public static List<ParsedFile> parse(List<SourceFile> sources) {
+    ActionParser<Tree> parser = PHPParserBuilder.createParser();
+    List<ParsedFile> files = new ArrayList<>(sources.size());
+    for (SourceFile source : sources) {
+      CompilationUnitTree tree = (CompilationUnitTree) parser.parse(source.content());
+      files.add(new ParsedFile(source, tree, SymbolTableImpl.create(tree)));
+    }
+    return files;
+  }
+
+  /**
+   * Runs one check on one file and returns the number of issues it raised.
+   */
+  public static int analyze(PHPCheck check, ParsedFile file) {
+    PHPCheckContext context = new PHPCheckContext(file, file.tree, null, file.symbolTable);
+    return check.analyze(context).size();
+  }
+
+  /**
+   * Runs one check on one file and returns its issues as {@code line:message}, in reporting order.
+   */
+  public static List<String> issues(PHPCheck check, ParsedFile file) {
+    PHPCheckContext context = new PHPCheckContext(file, file.tree, null, file.symbolTable);
+    List<String> issues = new ArrayList<>();
+    for (PhpIssue issue : check.analyze(context)) {
+      if (issue instanceof PreciseIssue) {
+        IssueLocation location = ((PreciseIssue) issue).primaryLocation();
+        issues.add(location.startLine() + ":" + location.message());
+      } else {
+        LineIssue lineIssue = (LineIssue) issue;
+        issues.add(lineIssue.line() + ":" + lineIssue.message());
+      }
+    }
+    return issues;
+  }
+
+  /**
+   * Counts the nodes that the subscription framework dispatches to the check for this file.
+   */
+  public static long visitedNodes(PHPCheck check, ParsedFile file) {
+    Set<Kind> kinds = EnumSet.noneOf(Kind.class);
+    kinds.addAll(((FileScopedSubscriptionCheck<?>) check).nodesToVisit());
+    return nodesOfKinds(file, kinds).size();
+  }
+
+  public static List<Tree> nodesOfKinds(ParsedFile file, Set<Kind> kinds) {
+    List<Tree> nodes = new ArrayList<>();
+    Deque<Tree> stack = new ArrayDeque<>();
+    stack.push(file.tree);
+    while (!stack.isEmpty()) {
+      Tree tree = stack.pop();
+      if (kinds.contains(tree.getKind())) {
+        nodes.add(tree);
+      }
+      Iterator<Tree> children = ((PHPTree) tree).childrenIterator();
+      while (children.hasNext()) {
+        Tree child = children.next();
+        if (child != null) {
+          stack.push(child);
+        }
+      }
+    }
+    return nodes;
+  }
+}
@@ -0,0 +1,359 @@
+package com.sunasterisk.sonar.testing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic generator of Laravel and Spring Boot sources used as benchmark and test input.
+ * Every corpus has {@link #FILES} files of realistic size, mixing safe code with the
+ * patterns each custom rule is looking for. {@link #SPRING_APP} is a larger Spring codebase
+ * (controllers, services, entities, configurations) where most nodes are irrelevant to the rules.
+ */
+public final class SyntheticCorpus {
+
+  public static final int FILES = 200;
+
+  public static final String CONTROLLERS = "controllers";
+  public static final String VIEWS = "views";
+  public static final String SERVICES = "services";
+  public static final String SPRING_APP = "spring-app";
+
+  private static final long SEED = 42L;
+
+  private static final String[] MODELS = {
+    "User", "Order", "Invoice", "Product", "Customer", "Payment", "Ticket", "Profile"
+  };
+
+  private SyntheticCorpus() {
+  }
+
+  /**
+   * A generated source file, or one read from disk such as the sample projects of {@code app_test}.
+   */
+  public static final class SourceFile {
+    private final String name;
+    private final String content;
+
+    public SourceFile(String name, String content) {
+      this.name = name;
+      this.content = content;
+    }
+
+    public String name() {
+      return name;
+    }
+
+    public String content() {
+      return content;
+    }
+  }
+
+  public static List<SourceFile> php(String corpus) {
+    return php(corpus, FILES);
+  }
+
+  public static List<SourceFile> php(String corpus, int count) {
+    Random random = new Random(SEED);
+    List<SourceFile> files = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      if (CONTROLLERS.equals(corpus)) {
+        String name = MODELS[i % MODELS.length] + "Controller" + i;
+        files.add(new SourceFile("app/Http/Controllers/" + name + ".php", controller(name, random)));
+      } else if (VIEWS.equals(corpus)) {
+        files.add(new SourceFile("resources/views/page" + i + ".blade.php", bladeView(i, random)));
+      } else {
+        throw new IllegalArgumentException("Unknown PHP corpus: " + corpus);
+      }
+    }
+    return Collections.unmodifiableList(files);
+  }
+
+  public static List<SourceFile> java(String corpus) {
+    return java(corpus, FILES);
+  }
+
+  public static List<SourceFile> java(String corpus, int count) {
+    if (!SERVICES.equals(corpus) && !SPRING_APP.equals(corpus)) {
+      throw new IllegalArgumentException("Unknown Java corpus: " + corpus);
+    }
+    Random random = new Random(SEED);
+    List<SourceFile> files = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      if (SERVICES.equals(corpus) || i % 4 == 0) {
+        String name = (i % 5 == 0 ? "PasswordReset" : MODELS[i % MODELS.length]) + "Service" + i;
+        files.add(new SourceFile("src/main/java/com/example/service/" + name + ".java", springService(name, random)));
+      } else if (i % 4 == 1) {
+        String name = MODELS[i % MODELS.length] + "Controller" + i;
+        files.add(new SourceFile("src/main/java/com/example/web/" + name + ".java", springController(name, random)));
+      } else if (i % 4 == 2) {
+        String name = MODELS[i % MODELS.length] + i;
+        files.add(new SourceFile("src/main/java/com/example/domain/" + name + ".java", springEntity(name, random)));
+      } else {
+        String name = MODELS[i % MODELS.length] + "Configuration" + i;
+        files.add(new SourceFile("src/main/java/com/example/config/" + name + ".java", springConfiguration(name, random)));
+      }
+    }
+    return Collections.unmodifiableList(files);
+  }
+
+  private static String controller(String className, Random random) {
+    StringBuilder sb = new StringBuilder(8192);
+    sb.append("<?php\n\nnamespace App\\Http\\Controllers;\n\n")
+      .append("use App\\Models\\User;\n")
+      .append("use Illuminate\\Http\\Request;\n")
+      .append("use Illuminate\\Support\\Facades\\Cache;\n")
+      .append("use Illuminate\\Support\\Facades\\DB;\n")
+      .append("use Illuminate\\Support\\Facades\\Hash;\n")
+      .append("use Illuminate\\Support\\Facades\\Log;\n\n")
+      .append("class ").append(className).append(" extends Controller\n{\n");
+    int methods = 12 + random.nextInt(10);
+    for (int m = 0; m < methods; m++) {
+      String model = MODELS[random.nextInt(MODELS.length)];
+      sb.append("    /**\n     * Handle action ").append(m).append(".\n     */\n")
+        .append("    public function action").append(m).append("(Request $request, $id)\n    {\n")
+        .append("        $validated = $request->validate(['name' => 'required|string|max:255', 'email' => 'email']);\n")
+        .append("        $record = ").append(model).append("::findOrFail($id);\n");
+      switch (random.nextInt(6)) {
+        case 0:
+          sb.append("        $record->update($request->all());\n");
+          break;
+        case 1:
+          sb.append("        $otp = random_int(100000, 999999);\n")
+            .append("        Cache::put('otp_' . $id, $otp, 300);\n")
+            .append("        DB::table('otp_codes')->insert(['user_id' => $id, 'otp' => $otp, 'created_at' => now()]);\n")
+            .append("        Log::info('Generated code', ['otp' => $otp]);\n");
+          break;
+        case 2:
+          sb.append("        $svg = $request->file('icon')->get();\n")
+            .append("        $record->icon_svg = $svg;\n")
+            .append("        return response()->raw($request->input('svg'))->header('Content-Type', 'image/svg+xml');\n");
+          break;
+        case 3:
+          sb.append("        ").append(model).append("::create($request->only(['name', 'email']));\n")
+            .append("        $record->fill($validated);\n");
+          break;
+        case 4:
+          sb.append("        $code = Hash::make(random_int(100000, 999999) . $id);\n")
+            .append("        ").append(model).append("::create(['otp' => Hash::make($code), 'user_id' => $id]);\n");
+          break;
+        default:
+          break;
+      }
+      sb.append("        $items = collect($record->items()->where('active', true)->orderBy('created_at')->get())\n")
+        .append("            ->map(function ($item) use ($record) {\n")
+        .append("                return array_merge($item->toArray(), ['owner' => strtoupper(trim($record->name))]);\n")
+        .append("            })\n")
+        .append("            ->filter(fn ($item) => !empty($item['owner']))\n")
+        .append("            ->values();\n")
+        .append("        return response()->json(['data' => $items, 'meta' => ['count' => count($items), 'page' => (int) $request->query('page', 1)]]);\n")
+        .append("    }\n\n");
+    }
+    sb.append("}\n");
+    return sb.toString();
+  }
+
+  private static String bladeView(int index, Random random) {
+    StringBuilder sb = new StringBuilder(8192);
+    sb.append("@extends('layouts.app')\n\n@section('content')\n")
+      .append("<div class=\"container\">\n")
+      .append("    <h1>{{ __('Page ").append(index).append("') }}</h1>\n");
+    int blocks = 15 + random.nextInt(15);
+    for (int b = 0; b < blocks; b++) {
+      switch (random.nextInt(5)) {
+        case 0:
+          sb.append("    <div class=\"icon\">\n        {!! $icons[").append(b).append("]->svg !!}\n    </div>\n");
+          break;
+        case 1:
+          sb.append("    <svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 24 24\" width=\"24\" height=\"24\">\n")
+            .append("        <path d=\"{{ $paths[").append(b).append("] }}\" fill=\"currentColor\"/>\n")
+            .append("        <title>{{ $titles[").append(b).append("] }}</title>\n")
+            .append("    </svg>\n");
+          break;
+        case 2:
+          sb.append("    @foreach ($users as $user)\n")
+            .append("        <tr>\n            <td>{{ $user->name }}</td>\n            <td>{{ $user->email }}</td>\n")
+            .append("            <td><a href=\"{{ route('users.edit', $user) }}\" class=\"btn btn-sm\">Edit</a></td>\n        </tr>\n")
+            .append("    @endforeach\n");
+          break;
+        case 3:
+          sb.append("    <?php echo $widgets[").append(b).append("]; ?>\n");
+          break;
+        default:
+          sb.append("    <form method=\"POST\" action=\"{{ route('profile.update') }}\">\n")
+            .append("        @csrf\n        <input type=\"text\" name=\"name\" value=\"{{ old('name', $profile->name) }}\">\n")
+            .append("        <button type=\"submit\">Save</button>\n    </form>\n");
+          break;
+      }
+    }
+    sb.append("    <script>\n        const data = {!! json_encode($payload) !!};\n")
+      .append("        document.querySelector('.preview').innerHTML = data.svg;\n    </script>\n")
+      .append("</div>\n@endsection\n");
+    return sb.toString();
+  }
+
+  private static String springService(String className, Random random) {
+    StringBuilder sb = new StringBuilder(8192);
+    boolean secure = random.nextInt(3) == 0;
+    sb.append("package com.example.service;\n\n")
+      .append("import java.util.List;\n")
+      .append("import java.util.Optional;\n")
+      .append("import java.util.UUID;\n")
+      .append("import org.springframework.beans.factory.annotation.Autowired;\n")
+      .append("import org.springframework.stereotype.Service;\n\n")
+      .append("@Service\npublic class ").append(className).append(" {\n\n")
+      .append("  @Autowired\n  private UserRepository userRepository;\n\n")
+      .append("  @Autowired\n  private EmailService emailService;\n\n");
+    if (secure) {
+      sb.append("  @Autowired\n  private TOTPService totpService;\n\n");
+    }
+    int methods = 15 + random.nextInt(10);
+    for (int m = 0; m < methods; m++) {
+      switch (random.nextInt(5)) {
+        case 0:
+          sb.append("  public void resetPassword").append(m).append("(String email) {\n")
+            .append("    Optional<User> user = userRepository.findByEmail(email);\n")
+            .append("    if (user.isPresent()) {\n")
+            .append("      String token = UUID.randomUUID().toString();\n")
+            .append("      user.get().setResetToken(token);\n")
+            .append("      userRepository.save(user.get());\n")
+            .append("      emailService.sendPasswordResetEmail(user.get().getEmail(), token);\n");
+          if (secure) {
+            sb.append("      String code = totpService.generateTOTP(user.get().getSecretKey());\n");
+          }
+          sb.append("    }\n  }\n\n");
+          break;
+        case 1:
+          sb.append("  public String securityQuestion").append(m).append("(User user) {\n")
+            .append("    return user.getSecurityQuestion() + \":\" + user.getSecurityAnswer();\n  }\n\n");
+          break;
+        default:
+          sb.append("  public List<User> findActive").append(m).append("(int page, int size) {\n")
+            .append("    List<User> users = userRepository.findAll();\n")
+            .append("    int from = Math.min(page * size, users.size());\n")
+            .append("    int to = Math.min(from + size, users.size());\n")
+            .append("    for (User candidate : users.subList(from, to)) {\n")
+            .append("      if (candidate.getEmail() != null && candidate.getEmail().endsWith(\"@example.com\")) {\n")
+            .append("        candidate.setName(candidate.getName().trim().toLowerCase());\n")
+            .append("      }\n    }\n")
+            .append("    return users.subList(from, to);\n  }\n\n");
+          break;
+      }
+    }
+    sb.append("}\n");
+    return sb.toString();
+  }
+
+  private static String springController(String className, Random random) {
+    StringBuilder sb = new StringBuilder(16384);
+    sb.append("package com.example.web;\n\n")
+      .append("import java.util.List;\n")
+      .append("import java.util.stream.Collectors;\n")
+      .append("import org.springframework.http.ResponseEntity;\n")
+      .append("import org.springframework.web.bind.annotation.*;\n\n")
+      .append("@RestController\n@RequestMapping(\"/api/").append(className.toLowerCase()).append("\")\n")
+      .append("public class ").append(className).append(" {\n\n")
+      .append("  private final UserService userService;\n")
+      .append("  private final AuditService auditService;\n\n")
+      .append("  public ").append(className).append("(UserService userService, AuditService auditService) {\n")
+      .append("    this.userService = userService;\n")
+      .append("    this.auditService = auditService;\n  }\n\n");
+    int endpoints = 30 + random.nextInt(20);
+    for (int m = 0; m < endpoints; m++) {
+      switch (random.nextInt(6)) {
+        case 0:
+          sb.append("  @PostMapping(\"/forgot-password").append(m).append("\")\n")
+            .append("  public ResponseEntity<Void> forgotPassword").append(m).append("(@RequestParam String email) {\n")
+            .append("    userService.findByEmail(email).ifPresent(user -> emailService().sendResetLink(user.getEmail()));\n")
+            .append("    return ResponseEntity.accepted().build();\n  }\n\n");
+          break;
+        case 1:
+          sb.append("  @GetMapping(\"/search").append(m).append("\")\n")
+            .append("  public List<UserDto> search").append(m).append("(@RequestParam String q, @RequestParam int limit) {\n")
+            .append("    return userService.findAll().stream()\n")
+            .append("      .filter(user -> user.getName() != null && user.getName().contains(q))\n")
+            .append("      .sorted((a, b) -> a.getName().compareToIgnoreCase(b.getName()))\n")
+            .append("      .limit(limit)\n")
+            .append("      .map(user -> new UserDto(user.getId(), user.getName(), user.getEmail()))\n")
+            .append("      .collect(Collectors.toList());\n  }\n\n");
+          break;
+        default:
+          sb.append("  @PutMapping(\"/{id}/profile").append(m).append("\")\n")
+            .append("  public ResponseEntity<UserDto> updateProfile").append(m).append("(@PathVariable long id, @RequestBody ProfileForm form) {\n")
+            .append("    return userService.findById(id)\n")
+            .append("      .map(user -> {\n")
+            .append("        user.setName(form.getName().trim());\n")
+            .append("        user.setPhone(form.getPhone() == null ? user.getPhone() : form.getPhone().replace(\" \", \"\"));\n")
+            .append("        auditService.record(\"profile\", id, new Object() {\n")
+            .append("          @Override\n          public String toString() {\n")
+            .append("            return \"profile:\" + id + \":\" + form.getName();\n          }\n        });\n")
+            .append("        return ResponseEntity.ok(new UserDto(user.getId(), user.getName(), user.getEmail()));\n")
+            .append("      })\n")
+            .append("      .orElseGet(() -> ResponseEntity.notFound().build());\n  }\n\n");
+          break;
+      }
+    }
+    sb.append("  private EmailService emailService() {\n    return userService.emailService();\n  }\n}\n");
+    return sb.toString();
+  }
+
+  private static String springEntity(String className, Random random) {
+    StringBuilder sb = new StringBuilder(16384);
+    sb.append("package com.example.domain;\n\n")
+      .append("import java.time.Instant;\n")
+      .append("import java.util.Objects;\n")
+      .append("import javax.persistence.*;\n\n")
+      .append("@Entity\n@Table(name = \"").append(className.toLowerCase()).append("\")\n")
+      .append("public class ").append(className).append(" {\n\n")
+      .append("  @Id\n  @GeneratedValue(strategy = GenerationType.IDENTITY)\n  private Long id;\n\n");
+    int fields = 25 + random.nextInt(15);
+    for (int f = 0; f < fields; f++) {
+      String type = f % 3 == 0 ? "Instant" : f % 3 == 1 ? "String" : "Integer";
+      sb.append("  @Column(name = \"field_").append(f).append("\")\n  private ").append(type).append(" field").append(f).append(";\n\n");
+    }
+    for (int f = 0; f < fields; f++) {
+      String type = f % 3 == 0 ? "Instant" : f % 3 == 1 ? "String" : "Integer";
+      sb.append("  public ").append(type).append(" getField").append(f).append("() {\n    return field").append(f).append(";\n  }\n\n")
+        .append("  public void setField").append(f).append("(").append(type).append(" value) {\n    this.field").append(f).append(" = value;\n  }\n\n");
+    }
+    sb.append("  @Override\n  public boolean equals(Object o) {\n")
+      .append("    if (this == o) {\n      return true;\n    }\n")
+      .append("    if (!(o instanceof ").append(className).append(")) {\n      return false;\n    }\n")
+      .append("    return Objects.equals(id, ((").append(className).append(") o).id);\n  }\n\n")
+      .append("  @Override\n  public int hashCode() {\n    return Objects.hashCode(id);\n  }\n}\n");
+    return sb.toString();
+  }
+
+  private static String springConfiguration(String className, Random random) {
+    StringBuilder sb = new StringBuilder(16384);
+    sb.append("package com.example.config;\n\n")
+      .append("import java.util.concurrent.Executor;\n")
+      .append("import org.springframework.context.annotation.Bean;\n")
+      .append("import org.springframework.context.annotation.Configuration;\n\n")
+      .append("@Configuration\npublic class ").append(className).append(" {\n\n")
+      .append("  enum Mode {\n    STRICT, LENIENT;\n\n")
+      .append("    boolean allows(String value) {\n      return this == LENIENT || value.matches(\"[a-z]+\");\n    }\n  }\n\n");
+    int beans = 20 + random.nextInt(10);
+    for (int b = 0; b < beans; b++) {
+      if (random.nextInt(4) == 0) {
+        sb.append("  @Bean\n  public PasswordResetPolicy resetPolicy").append(b).append("() {\n")
+          .append("    return new PasswordResetPolicy() {\n")
+          .append("      @Override\n      public void resetPassword(String email) {\n")
+          .append("        mailer().sendPasswordResetEmail(email, TokenGenerator.generateResetToken());\n")
+          .append("      }\n    };\n  }\n\n");
+      } else {
+        sb.append("  @Bean\n  public Executor executor").append(b).append("() {\n")
+          .append("    int threads = Math.max(2, Runtime.getRuntime().availableProcessors() / ").append(1 + b % 4).append(");\n")
+          .append("    return command -> {\n")
+          .append("      Thread thread = new Thread(command, \"worker-").append(b).append("-\" + threads);\n")
+          .append("      thread.setDaemon(true);\n")
+          .append("      thread.start();\n    };\n  }\n\n");
+      }
+    }
+    sb.append("  static class Settings {\n    private int retries = 3;\n\n")
+      .append("    int retries() {\n      return retries;\n    }\n  }\n\n")
+      .append("  private Mailer mailer() {\n    return new Mailer();\n  }\n}\n");
+    return sb.toString();
+  }
+}
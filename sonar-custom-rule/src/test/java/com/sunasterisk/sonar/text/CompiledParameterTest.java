@@ -0,0 +1,48 @@
+package com.sunasterisk.sonar.text;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompiledParameterTest {
+
+  @Test
+  public void split_trims_and_ignores_empty_and_repeated_words() {
+    assertEquals(Arrays.asList("create", "insert", "save"), CompiledParameter.split(" create,insert ,, save,create,"));
+    assertEquals(Collections.emptyList(), CompiledParameter.split(""));
+    assertEquals(Collections.emptyList(), CompiledParameter.split(" , ,"));
+    // Case is kept, the matchers decide how to compare
+    assertEquals(Arrays.asList("Hash::make", "hash::make"), CompiledParameter.split("Hash::make,hash::make"));
+  }
+
+  @Test
+  public void each_value_is_compiled_once() {
+    AtomicInteger compilations = new AtomicInteger();
+    CompiledParameter<List<String>> parameter = CompiledParameter.of(words -> {
+      compilations.incrementAndGet();
+      return words;
+    });
+
+    List<String> first = parameter.get("put,set");
+    assertTrue(first == parameter.get("put,set"));
+    assertEquals(1, compilations.get());
+    assertEquals(Arrays.asList("put", "set"), first);
+
+    // Values are cached as written
+    assertEquals(first, parameter.get("put, set"));
+    assertEquals(2, compilations.get());
+  }
+
+  @Test
+  public void null_is_the_empty_list() {
+    CompiledParameter<List<String>> parameter = CompiledParameter.of(words -> words);
+    assertEquals(Collections.emptyList(), parameter.get(null));
+    assertTrue(parameter.get(null) == parameter.get(""));
+  }
+}
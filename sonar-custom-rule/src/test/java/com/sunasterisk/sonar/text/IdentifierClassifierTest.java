@@ -0,0 +1,184 @@
+package com.sunasterisk.sonar.text;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link IdentifierClassifier}.
+ */
+public class IdentifierClassifierTest {
+
+  // Vocabulary of the secure recovery mechanisms of SpringBootSecureCredentialRecoveryCheck
+  private static final IdentifierClassifier SECURE = IdentifierClassifier.builder()
+    .category("secure", "two factor", "2fa", "mfa", "multi factor", "otp", "totp", "hotp", "authenticator", "time based",
+      "time base")
+    .category("secure", "totp", "googleauthenticator", "totputils", "otputil", "twofactorauthentication", "webauthn",
+      "pushnotification", "timebased", "speakeasy")
+    .build();
+
+  private static final IdentifierClassifier RECOVERY = IdentifierClassifier.builder()
+    .category("recovery", "reset password", "forgot password")
+    .category("question", "security question")
+    .category("token", "generate token")
+    .build();
+
+  // The same vocabulary as the substrings the check looked for before, in Tree.toString() and names
+  private static final KeywordList SECURE_SUBSTRINGS = KeywordList.of(Arrays.asList(
+    "twofactor", "2fa", "mfa", "multifactor", "otp", "totp", "hotp", "authenticator", "timebased", "timebase",
+    "googleauthenticator", "totputils", "otputil", "twofactorauthentication", "webauthn", "pushnotification",
+    "speakeasy"));
+
+  /**
+   * Behavior change: secure mechanisms are matched on whole words instead of anywhere in a name.
+   */
+  @Test
+  public void whole_words_instead_of_substrings() {
+    String[][] verdicts = {
+      // identifier, substring verdict, whole-word verdict
+      {"forgotPassword", "true", "false"},
+      {"ForgotPasswordController", "true", "false"},
+      {"footprint", "true", "false"},
+      {"hotplug", "true", "false"},
+      {"WebAuthnService", "true", "true"},
+      {"TOTPService", "true", "true"},
+      {"sendOTP", "true", "true"},
+      {"otp_code", "true", "true"},
+      {"isTwoFactorEnabled", "true", "true"},
+      {"resetPassword", "false", "false"},
+    };
+    for (String[] verdict : verdicts) {
+      String identifier = verdict[0];
+      assertEquals(identifier, Boolean.parseBoolean(verdict[1]), SECURE_SUBSTRINGS.containsAny(identifier.toLowerCase()));
+      assertEquals(identifier, Boolean.parseBoolean(verdict[2]), SECURE.is(identifier, "secure"));
+    }
+  }
+
+  @Test
+  public void camel_case_and_snake_case() {
+    for (String identifier : new String[] {"resetPassword", "ResetPassword", "reset_password", "RESET_PASSWORD",
+      "reset-password", "resetpassword", "doResetPasswordNow", "forgot_password_form"}) {
+      assertTrue(identifier, RECOVERY.is(identifier, "recovery"));
+    }
+    for (String identifier : new String[] {"reset", "password", "passwordReset", "resetUserPassword", "resetPass"}) {
+      assertFalse(identifier, RECOVERY.is(identifier, "recovery"));
+    }
+  }
+
+  @Test
+  public void acronyms() {
+    assertTrue(SECURE.is("OTPCode", "secure"));
+    assertTrue(SECURE.is("TOTPUtils", "secure"));
+    assertTrue(SECURE.is("validateMFA", "secure"));
+    assertTrue(SECURE.is("MFA", "secure"));
+    assertFalse(SECURE.is("OPTIONS", "secure"));
+  }
+
+  @Test
+  public void digits() {
+    assertTrue(SECURE.is("use2FA", "secure"));
+    assertTrue(SECURE.is("get2fa", "secure"));
+    assertTrue(SECURE.is("is_2fa_enabled", "secure"));
+    assertTrue(SECURE.is("otp6", "secure"));
+    assertTrue(RECOVERY.is("resetPassword2", "recovery"));
+    // A digit following letters starts a word
+    assertTrue(SECURE.is("f2fa", "secure"));
+    assertFalse(SECURE.is("x2fab", "secure"));
+  }
+
+  @Test
+  public void plurals() {
+    assertTrue(RECOVERY.is("securityQuestions", "question"));
+    assertTrue(RECOVERY.is("SECURITY_QUESTIONS", "question"));
+    assertTrue(RECOVERY.is("generateTokens", "token"));
+    assertTrue(SECURE.is("otps", "secure"));
+    assertTrue(SECURE.is("mfaCodes", "secure"));
+    assertFalse(RECOVERY.is("securitiesQuestion", "question"));
+  }
+
+  @Test
+  public void compounds() {
+    // Joined phrases of several words are found anywhere, single words only on word boundaries
+    assertTrue(RECOVERY.is("sendresetpasswordemail", "recovery"));
+    assertTrue(SECURE.is("WebAuthnService", "secure"));
+    assertTrue(SECURE.is("isTimeBased", "secure"));
+    assertTrue(SECURE.is("timebasedOtp", "secure"));
+    assertTrue(SECURE.is("GoogleAuthenticatorConfig", "secure"));
+    assertFalse(SECURE.is("laptop", "secure"));
+    assertFalse(SECURE.is("chmfactor", "secure"));
+  }
+
+  @Test
+  public void categories() {
+    long found = RECOVERY.classify("resetPasswordSecurityQuestion");
+    assertEquals(RECOVERY.mask("recovery") | RECOVERY.mask("question"), found);
+    assertEquals(0L, RECOVERY.classify(""));
+    assertEquals(0L, RECOVERY.classify("__"));
+    assertEquals(Arrays.asList("recovery", "question", "token"), RECOVERY.categories());
+  }
+
+  @Test
+  public void text_spellings() {
+    assertEquals(Arrays.asList("generatetoken", "generatestoken", "generate_token", "generates_token", "generate$token",
+      "generates$token"), RECOVERY.textSpellings("token"));
+    assertEquals(Arrays.asList("2fa", "otp"), IdentifierClassifier.builder().category("secure", "2fa", "OTP", "otp").build()
+      .textSpellings("secure"));
+    // Every identifier spelling a phrase contains one of them
+    String[] spelled = {"resetPassword", "RESET_PASSWORD", "doResetsPassword", "reset$password", "forgotpasswordform"};
+    for (String identifier : spelled) {
+      assertTrue(identifier, RECOVERY.is(identifier, "recovery"));
+      boolean found = false;
+      for (String spelling : RECOVERY.textSpellings("recovery")) {
+        found |= identifier.toLowerCase(Locale.ROOT).contains(spelling);
+      }
+      assertTrue(identifier, found);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknown_category_of_text_spellings() {
+    RECOVERY.textSpellings("secure");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknown_category() {
+    RECOVERY.mask("secure");
+  }
+
+  @Test
+  public void non_ascii_identifiers() {
+    IdentifierClassifier classifier = IdentifierClassifier.builder().category("reset", "réinitialiser mot").build();
+    assertTrue(classifier.is("réinitialiserMot", "reset"));
+    assertTrue(classifier.is("réinitialiser_mot", "reset"));
+    assertTrue(classifier.is("RéinitialiserMOT", "reset"));
+    assertFalse(classifier.is("réinitialiserMotif", "reset"));
+    // Case is only ignored for ASCII letters, see WordSet
+    assertFalse(classifier.is("RÉINITIALISER_MOT", "reset"));
+  }
+
+  @Test
+  public void classifying_allocates_nothing() {
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    String[] identifiers = {"forgotPassword", "sendResetPasswordEmail", "TOTPUtils", "use2FA", "securityQuestions",
+      "webauthnservice", "réinitialiserMot"};
+    long found = 0L;
+    // Warm up, so that the measure does not include the compilation of the classifier
+    for (int i = 0; i < 100_000; i++) {
+      found |= SECURE.classify(identifiers[i % identifiers.length]);
+    }
+    long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    for (int i = 0; i < 100_000; i++) {
+      found |= SECURE.classify(identifiers[i % identifiers.length]);
+    }
+    long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+    assertTrue(found != 0L);
+    // A few bytes of the measure itself, far from an allocation per call
+    assertTrue(allocated + " bytes", allocated < 100_000);
+  }
+}
@@ -0,0 +1,79 @@
+package com.sunasterisk.sonar.text;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link KeywordList} accepts any list of keywords, matching the ones a
+ * {@link KeywordMatcher} cannot represent with a regular expression.
+ */
+public class KeywordListTest {
+
+  private static final String[] TEXTS = {
+    "", "purify", "Purifier::clean($svg)", "DOMPURIFY.sanitize(svg)", "sanitizeSvg($x)", "echo $svg;",
+    "keyword63", "KEYWORD64", "keyword6", "xkeyword10y", "làm sạch svg", "LÀM SẠCH", "nettoyer l'image", "NETTOYER",
+  };
+
+  @Test
+  public void ascii_lists_use_the_automaton() {
+    List<String> keywords = Arrays.asList("purif", "sanitize", "clean");
+    assertTrue(KeywordMatcher.supports(keywords));
+    assertSameResultsAsRegularExpression(keywords);
+  }
+
+  @Test
+  public void more_than_64_keywords() {
+    List<String> keywords = new ArrayList<>();
+    for (int i = 0; i <= 64; i++) {
+      keywords.add("keyword" + i);
+    }
+    assertFalse(KeywordMatcher.supports(keywords));
+    KeywordList list = KeywordList.of(keywords);
+    assertEquals(keywords, list.keywords());
+    assertTrue(list.containsAny("KEYWORD64"));
+    assertTrue(list.containsAny("xkeyword10y"));
+    assertFalse(list.containsAny("keyword"));
+    assertSameResultsAsRegularExpression(keywords);
+  }
+
+  @Test
+  public void non_ascii_keywords() {
+    List<String> keywords = Arrays.asList("purif", "làm sạch", "nettoyer");
+    assertFalse(KeywordMatcher.supports(keywords));
+    KeywordList list = KeywordList.of(keywords);
+    assertTrue(list.containsAny("làm sạch svg"));
+    // Non-ASCII letters are compared ignoring case too
+    assertTrue(list.containsAny("LÀM SẠCH"));
+    assertFalse(list.containsAny("lam sach"));
+    assertSameResultsAsRegularExpression(keywords);
+  }
+
+  @Test
+  public void keywords_are_not_regular_expressions() {
+    KeywordList list = TextPatterns.keywordList("Purifier::clean(,a.b,[x]");
+    assertTrue(list.containsAny("Purifier::clean($svg)"));
+    assertTrue(list.containsAny("a.b"));
+    assertFalse(list.containsAny("axb"));
+    assertTrue(list.containsAny("$a[x]"));
+    assertFalse(list.containsAny("x"));
+  }
+
+  private static void assertSameResultsAsRegularExpression(List<String> keywords) {
+    KeywordList list = KeywordList.of(keywords);
+    for (String text : TEXTS) {
+      boolean expected = false;
+      for (String keyword : keywords) {
+        expected |= text.toLowerCase(Locale.ROOT).contains(keyword.toLowerCase(Locale.ROOT));
+      }
+      assertEquals(keywords + " in \"" + text + "\"", expected, list.containsAny(text));
+    }
+  }
+}
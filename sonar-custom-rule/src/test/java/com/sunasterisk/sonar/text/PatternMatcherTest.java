@@ -0,0 +1,116 @@
+package com.sunasterisk.sonar.text;
+
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks {@link PatternMatcher} against {@code java.util.regex} with {@code (?i)}, on every
+ * supported construct and on texts around their edge cases.
+ */
+public class PatternMatcherTest {
+
+  private static final String[] PATTERNS = {
+    // Patterns of the rules
+    "(?i)\\botp\\b|one.?time.?password|verification.?code|auth.?code",
+    "(?i)<\\s*svg|\\bsvg\\b|image\\/svg\\+xml|\\.(svg)",
+    "(?i)<\\s*script|<\\s*foreignObject|<\\s*use\\s+xlink:href|<\\s*handler|<\\s*event",
+    // One construct at a time
+    "\\bcode",
+    "code\\b",
+    "\\bcode\\b",
+    "a\\s*b",
+    "a\\s+b",
+    "a.?b",
+    "a.?.?b",
+    "reset(\\s*|_)password",
+    "(reset)password",
+    "\\$_|->input\\(|event\\.target",
+  };
+
+  private static final String[] TEXTS = {
+    "", "otp", "OTP", "Otp", "otps", "my_otp", "my otp", "my-otp", "otp2", "(otp)", "\"otp\"",
+    "onetimepassword", "one-time-password", "one time password", "one  time password", "one\ntime\npassword",
+    "verification_code", "Verification Code", "authcode", "AUTH-CODE", "auth\r\ncode", "authorization code",
+    "<svg", "< svg", "<\tSVG>", "svg", "svgs", "an svg", "image/svg+xml", "image/svgxml", "file.svg", "file.SVG", "file svg",
+    "<script>", "< script", "<foreignObject", "<use xlink:href", "<usexlink:href", "<use\txlink:href", "<handler", "< event",
+    "code", "decode", "codes", "_code", "code_", "code-", "-code-",
+    "ab", "a b", "a \t\n b", "axb", "a\nb", "a\u0085b", "a b", "a xb", "axxb", "a..b", "ba",
+    "resetpassword", "reset password", "reset_password", "reset__password", "reset \t password", "reset-password",
+    "RESET_PASSWORD", "ResetPassword",
+    "$_GET", "$request->input('x')", "event.target", "eventxtarget",
+    // Non-ASCII text: case is only ignored for ASCII letters, as without UNICODE_CASE
+    "mã otp", "ÖTP", "otp code", "one time password", "ａuth code", "résumé of the auth code", "< svg",
+    "verificationécode", "İmage/svg+xml", "ſvg",
+  };
+
+  @Test
+  public void same_results_as_regular_expressions() {
+    for (String pattern : PATTERNS) {
+      Pattern regex = Pattern.compile(pattern, Pattern.CASE_INSENSITIVE);
+      PatternMatcher matcher = TextPatterns.pattern(pattern);
+      for (String text : TEXTS) {
+        assertEquals(pattern + " in \"" + text + "\"", regex.matcher(text).find(), matcher.find(text));
+      }
+    }
+  }
+
+  @Test
+  public void patterns_found_in_a_single_pass() {
+    PatternMatcher.Builder builder = TextPatterns.patterns();
+    for (String pattern : PATTERNS) {
+      builder.pattern(pattern);
+    }
+    PatternMatcher matcher = builder.build();
+    for (String text : TEXTS) {
+      long expected = 0L;
+      for (int p = 0; p < PATTERNS.length; p++) {
+        if (Pattern.compile(PATTERNS[p], Pattern.CASE_INSENSITIVE).matcher(text).find()) {
+          expected |= matcher.mask(PATTERNS[p]);
+        }
+      }
+      assertEquals(text, expected, matcher.matches(text));
+      assertEquals(text, expected != 0L, matcher.find(text));
+    }
+  }
+
+  @Test
+  public void keywords_match_literally() {
+    PatternMatcher matcher = TextPatterns.patterns().keywords("->input(", "a.b", "$_").build();
+    assertTrue(matcher.find("$request->INPUT('x')"));
+    assertTrue(matcher.find("a.b"));
+    assertFalse(matcher.find("axb"));
+    assertTrue(matcher.find("$_POST"));
+    assertFalse(matcher.find("$ _"));
+  }
+
+  @Test
+  public void letters_of_other_alphabets_are_word_characters() {
+    // As \b of java.util.regex up to Java 18, whatever the JDK running the analysis
+    PatternMatcher matcher = TextPatterns.pattern("\\botp\\b");
+    assertFalse(matcher.find("éotp"));
+    assertFalse(matcher.find("otpé"));
+    assertTrue(matcher.find("é otp"));
+  }
+
+  @Test
+  public void unsupported_syntax_is_rejected() {
+    String[] unsupported = {
+      "a*", "a+", "a?", "a.b", "[ab]", "a{2}", "^a", "a$", "(a|b)", "(?:ab)", "a(b", "\\d", "\\w+", "\\s?", "\\S",
+      "\\sa", "\\bb*", "ab\\", "é", "\\s*a", ".?a", "(\\s*|_)a",
+    };
+    for (String pattern : unsupported) {
+      try {
+        TextPatterns.pattern(pattern);
+        fail("Accepted " + pattern);
+      } catch (IllegalArgumentException e) {
+        // Expected
+      }
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package com.sunasterisk.sonar.text;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WordSetTest {
+
+  @Test
+  public void words_are_looked_up_ignoring_ascii_case() {
+    WordSet words = WordSet.of("create", "Insert", "Hash::make");
+    assertTrue(words.contains("create"));
+    assertTrue(words.contains("CREATE"));
+    assertTrue(words.contains("insert"));
+    assertTrue(words.contains("hash::MAKE"));
+    // Whole words only
+    assertFalse(words.contains("creat"));
+    assertFalse(words.contains("creates"));
+    assertFalse(words.contains("make"));
+    assertFalse(words.contains(""));
+  }
+
+  @Test
+  public void non_ascii_letters_are_compared_as_written() {
+    WordSet words = WordSet.of("lưu", "Éditer");
+    assertTrue(words.contains("lưu"));
+    assertFalse(words.contains("LƯU"));
+    assertTrue(words.contains("Éditer"));
+    assertTrue(words.contains("ÉDITER"));
+    assertFalse(words.contains("éditer"));
+    // 'ſ' and 'K' (Kelvin) fold to ASCII letters with Unicode case folding, not here
+    assertFalse(WordSet.of("set").contains("ſet"));
+    assertFalse(WordSet.of("key").contains("Key"));
+  }
+
+  @Test
+  public void index_of_a_range_of_the_text() {
+    WordSet words = WordSet.of("put", "set", "put", "add");
+    assertEquals(Arrays.asList("put", "set", "put", "add"), words.words());
+    assertEquals(0, words.indexOf("$cache->PUT(", 8, 11));
+    assertEquals(1, words.indexOf("reset", 2, 5));
+    assertEquals(3, words.indexOf("add", 0, 3));
+    assertEquals(-1, words.indexOf("adds", 0, 4));
+    assertEquals(-1, words.indexOf("reset", 0, 5));
+  }
+
+  @Test
+  public void empty_and_large_sets() {
+    WordSet empty = WordSet.of();
+    assertEquals(0, empty.size());
+    assertFalse(empty.contains("put"));
+
+    List<String> many = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      many.add("method" + i);
+    }
+    WordSet words = WordSet.of(many);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i, words.indexOf("METHOD" + i, 0, ("method" + i).length()));
+    }
+    assertFalse(words.contains("method1000"));
+    assertFalse(words.contains("method"));
+  }
+}
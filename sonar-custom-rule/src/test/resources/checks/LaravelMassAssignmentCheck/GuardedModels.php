@@ -0,0 +1,50 @@
+<?php
+
+namespace App\Http\Controllers;
+
+use App\Models\User;
+use App\Admin\User as AdminUser;
+use App\Legacy\Account;
+use App\Legacy\Profile as LegacyProfile;
+use Illuminate\Http\Request;
+
+class UserController extends Controller
+{
+    public function store(Request $request)
+    {
+        // $fillable declared on App\Models\User
+        User::create($request->all());
+        $user = new User();
+        $user->fill($request->all());
+    }
+
+    public function storeAdmin(Request $request)
+    {
+        // Another class named User, in another namespace
+        AdminUser::create($request->all()); // Noncompliant
+        \App\Admin\User::create($request->all()); // Noncompliant
+        $admin = AdminUser::find(1);
+        $admin->update($request->all()); // Noncompliant
+    }
+
+    public function update(Request $request, User $user, AdminUser $admin)
+    {
+        // Route model binding
+        $user->update($request->all());
+        $admin->update($request->all()); // Noncompliant
+    }
+
+    public function legacy(Request $request)
+    {
+        // An empty $guarded protects nothing
+        Account::create($request->all()); // Noncompliant
+        LegacyProfile::create($request->all());
+        \App\Legacy\Profile::create($request->input());
+    }
+
+    public function unknown(Request $request)
+    {
+        // Classes that are not indexed keep being reported
+        Post::create($request->all()); // Noncompliant
+    }
+}
@@ -0,0 +1,138 @@
+<?php
+
+namespace App\Http\Controllers;
+
+use App\Models\Post;
+use Illuminate\Http\Request;
+
+class PostController extends Controller
+{
+    public function reassigned(Request $request)
+    {
+        $data = $request->all();
+        $data = ['title' => 'draft'];
+        Post::create($data);
+
+        $data = $request->input();
+        Post::create($data); // Noncompliant
+        $copy = $data;
+        Post::create($copy); // Noncompliant
+    }
+
+    public function branches(Request $request, bool $draft)
+    {
+        // Strong updates in source order: the last assignment wins, whatever the branch
+        if ($draft) {
+            $data = $request->all();
+        } else {
+            $data = [];
+        }
+        Post::create($data);
+
+        if ($draft) {
+            $other = [];
+        } else {
+            $other = $request->all();
+        }
+        Post::create($other); // Noncompliant
+    }
+
+    public function combined(Request $request)
+    {
+        $data = ['author' => 1];
+        $data += $request->all();
+        Post::create($data); // Noncompliant
+
+        $merged = array_merge(['author' => 1], $request->input());
+        Post::create($merged); // Noncompliant
+        Post::create(['author' => 1] + $request->all()); // Noncompliant
+        Post::create($inline = $request->all()); // Noncompliant
+    }
+
+    public function untyped($request, $input)
+    {
+        // $request holds the request by name, other untyped parameters are unknown
+        Post::create($request->all()); // Noncompliant
+        Post::create($input->all());
+    }
+
+    public function closures(Request $request)
+    {
+        $data = $request->all();
+        $store = function () use ($data) {
+            Post::create($data); // Noncompliant
+        };
+        $clean = fn () => Post::create($data = []);
+    }
+
+    public function tooManyVariables(Request $request)
+    {
+        // At most 64 variables are tracked per function, here $request and $v1 to $v63
+        $v1 = $request->all();
+        $v2 = $request->all();
+        $v3 = $request->all();
+        $v4 = $request->all();
+        $v5 = $request->all();
+        $v6 = $request->all();
+        $v7 = $request->all();
+        $v8 = $request->all();
+        $v9 = $request->all();
+        $v10 = $request->all();
+        $v11 = $request->all();
+        $v12 = $request->all();
+        $v13 = $request->all();
+        $v14 = $request->all();
+        $v15 = $request->all();
+        $v16 = $request->all();
+        $v17 = $request->all();
+        $v18 = $request->all();
+        $v19 = $request->all();
+        $v20 = $request->all();
+        $v21 = $request->all();
+        $v22 = $request->all();
+        $v23 = $request->all();
+        $v24 = $request->all();
+        $v25 = $request->all();
+        $v26 = $request->all();
+        $v27 = $request->all();
+        $v28 = $request->all();
+        $v29 = $request->all();
+        $v30 = $request->all();
+        $v31 = $request->all();
+        $v32 = $request->all();
+        $v33 = $request->all();
+        $v34 = $request->all();
+        $v35 = $request->all();
+        $v36 = $request->all();
+        $v37 = $request->all();
+        $v38 = $request->all();
+        $v39 = $request->all();
+        $v40 = $request->all();
+        $v41 = $request->all();
+        $v42 = $request->all();
+        $v43 = $request->all();
+        $v44 = $request->all();
+        $v45 = $request->all();
+        $v46 = $request->all();
+        $v47 = $request->all();
+        $v48 = $request->all();
+        $v49 = $request->all();
+        $v50 = $request->all();
+        $v51 = $request->all();
+        $v52 = $request->all();
+        $v53 = $request->all();
+        $v54 = $request->all();
+        $v55 = $request->all();
+        $v56 = $request->all();
+        $v57 = $request->all();
+        $v58 = $request->all();
+        $v59 = $request->all();
+        $v60 = $request->all();
+        $v61 = $request->all();
+        $v62 = $request->all();
+        $v63 = $request->all();
+        $v64 = $request->all();
+        Post::create($v63); // Noncompliant
+        Post::create($v64);
+    }
+}
@@ -0,0 +1,10 @@
+<?php
+
+namespace App\Admin;
+
+use Illuminate\Database\Eloquent\Model;
+
+// Same short name as App\Models\User, without any protection
+class User extends Model
+{
+}
@@ -0,0 +1,16 @@
+<?php
+
+namespace App\Legacy {
+
+    use Illuminate\Database\Eloquent\Model;
+
+    class Account extends Model
+    {
+        protected $guarded = [];
+    }
+
+    class Profile extends Model
+    {
+        protected $guarded = ['id'];
+    }
+}
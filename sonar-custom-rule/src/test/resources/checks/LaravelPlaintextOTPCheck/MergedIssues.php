@@ -0,0 +1,24 @@
+<?php
+
+namespace App\Http\Controllers;
+
+use App\Models\OneTimePassword;
+
+class VerificationController extends Controller
+{
+    public function store($user, $otp)
+    {
+        // The pair is reported by the array and by create()
+        OneTimePassword::create(['user_id' => $user->id, 'otp' => $otp]); // Noncompliant {{OTP should not be stored in plaintext when using create(). Use a secure hashing function. OTP should not be stored in plaintext. Use a secure hashing function with a salt.}}
+        OneTimePassword::create(['otp' => random_int(100000, 999999)]); // Noncompliant {{Potential plaintext OTP detected in create() call. Use a secure hashing function. Potential plaintext OTP detected in array. Use a secure hashing function.}}
+        $user->update([
+            'verification_code' => $otp, // Noncompliant {{OTP should not be stored in plaintext when using update(). Use a secure hashing function. OTP should not be stored in plaintext. Use a secure hashing function with a salt.}}
+            'auth_code' => '1234', // Noncompliant {{OTP should not be stored in plaintext when using update(). Use a secure hashing function. Potential plaintext OTP detected in array. Use a secure hashing function.}}
+        ]);
+
+        // Only the array: not the first argument of create()
+        OneTimePassword::create([], ['otp' => $otp]); // Noncompliant {{OTP should not be stored in plaintext. Use a secure hashing function with a salt.}}
+
+        OneTimePassword::create(['otp' => bcrypt($otp)]);
+    }
+}
@@ -0,0 +1,52 @@
+<?php
+
+namespace App\Http\Controllers;
+
+use Cache;
+use Illuminate\Support\Facades\Cache as Store;
+use Illuminate\Contracts\Cache\Repository;
+use App\Support\Debugger;
+
+class OtpController extends Controller
+{
+    private $cache;
+
+    public function __construct(Repository $cache)
+    {
+        $this->cache = $cache;
+    }
+
+    public function facades($otp)
+    {
+        // Global alias imported by its name
+        Cache::put(['otp' => $otp]); // Noncompliant {{OTP should not be stored in plaintext when using put(). Use a secure hashing function. OTP should not be stored in plaintext. Use a secure hashing function with a salt.}}
+        \Cache::put(['otp' => $otp]); // Noncompliant {{OTP should not be stored in plaintext when using put(). Use a secure hashing function. OTP should not be stored in plaintext. Use a secure hashing function with a salt.}}
+        // Facade imported under another name
+        Store::put(['otp' => $otp]); // Noncompliant {{OTP should not be stored in plaintext when using put(). Use a secure hashing function. OTP should not be stored in plaintext. Use a secure hashing function with a salt.}}
+        Store::store('redis')->put(['otp' => $otp]); // Noncompliant {{OTP should not be stored in plaintext when using put(). Use a secure hashing function. OTP should not be stored in plaintext. Use a secure hashing function with a salt.}}
+    }
+
+    public function injected(Repository $cache, $otp)
+    {
+        // Parameter and property typed with a storage contract
+        $cache->put(['otp' => $otp]); // Noncompliant {{OTP should not be stored in plaintext when using put(). Use a secure hashing function. OTP should not be stored in plaintext. Use a secure hashing function with a salt.}}
+        $this->cache->forever(['otp' => $otp]); // Noncompliant {{OTP should not be stored in plaintext when using forever(). Use a secure hashing function. OTP should not be stored in plaintext. Use a secure hashing function with a salt.}}
+        $local = $cache;
+        $local->add(['otp' => $otp]); // Noncompliant {{OTP should not be stored in plaintext when using add(). Use a secure hashing function. OTP should not be stored in plaintext. Use a secure hashing function with a salt.}}
+    }
+
+    public function notStorages(Debugger $dbg, $otp)
+    {
+        // A set() of another class only raises the issue of the array
+        $dbg->set(['otp' => $otp]); // Noncompliant {{OTP should not be stored in plaintext. Use a secure hashing function with a salt.}}
+        $dbg = Store::get('debugger');
+        $dbg->set(['otp' => $otp]); // Noncompliant {{OTP should not be stored in plaintext. Use a secure hashing function with a salt.}}
+    }
+
+    public function hashed(Repository $cache, $otp)
+    {
+        $cache->put(['otp' => bcrypt($otp)]);
+        $hashed = \Hash::make($otp);
+        Store::put(['otp' => $hashed]);
+    }
+}
@@ -0,0 +1,26 @@
+<?php
+
+class IconController
+{
+    public function show($request, $view, $el, $icon)
+    {
+        // SVG content and user input in the same argument
+        $view->raw($request->input('svg')); // Noncompliant {{User-supplied SVG content should be sanitized before rendering to prevent XSS attacks. User input passed to raw() could contain unsafe SVG content. Use an SVG sanitizer library.}}
+        $view->raw('<svg><script>' . $_GET['icon']); // Noncompliant {{Potentially unsafe SVG content with script/foreignObject elements detected. Sanitize SVG before rendering. User input passed to raw() could contain unsafe SVG content. Use an SVG sanitizer library.}}
+
+        // Both detections of an assignment
+        $el->innerHTML = $request->svg; // Noncompliant {{Assignment to $el->innerHTML contains SVG content without proper sanitization. Use a sanitizer library. Assignment to $el->innerHTML with user input could contain unsafe SVG. Use DOMPurify or other sanitizer.}}
+
+        // The call and its argument are different ranges, reported separately. The expected messages
+        // are written above the call, whose text would otherwise mention a sanitizer
+        // Noncompliant@+2 {{Function may output unsanitized SVG content. Use DOMPurify.sanitize() or a dedicated SVG sanitizer.}}
+        // Noncompliant@+2 {{User-supplied SVG content should be sanitized before rendering to prevent XSS attacks.}}
+        $view->dangerouslySetInnerHTML(
+            '<svg>' . $icon
+        );
+
+        // Sanitized
+        $view->raw(sanitizeSvg($request->input('svg')));
+        $el->innerHTML = DOMPurify::sanitize($icon);
+    }
+}